@@ -0,0 +1,338 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.api.adaptator.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import com.izforge.izpack.api.adaptator.IXMLElement;
+import com.izforge.izpack.api.adaptator.XMLException;
+
+
+/**
+ * Reads and writes XML documents in a compact, pre-parsed binary form.
+ * <p/>
+ * The compiler writes XML specifications that are read by the installer in this form, so that the installer
+ * doesn't need to parse and transform them at runtime. The element tree, attributes, text, CDATA sections,
+ * comments and line numbers are preserved, so that elements read back behave the same as those returned by
+ * {@link XMLParser}.
+ * <p/>
+ * Element and attribute names and namespaces are written once, and subsequently referred to by index.
+ *
+ * @author Tim Anderson
+ */
+public final class BinaryXML
+{
+
+    /**
+     * The prefix of the resource names of compiled documents. This is prepended rather than appended to the
+     * name of the source resource, so that localised variants are resolved the same way.
+     */
+    public static final String PREFIX = "compiled.";
+
+    /**
+     * Identifies the format.
+     */
+    private static final int MAGIC = 0x495a5842;
+
+    /**
+     * The format version.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Node type of the end of an element's children.
+     */
+    private static final int END = 0;
+
+    /**
+     * Default constructor.
+     */
+    private BinaryXML()
+    {
+    }
+
+    /**
+     * Returns the resource name of the compiled form of a resource.
+     *
+     * @param name the source resource name
+     * @return the compiled resource name
+     */
+    public static String getResourceName(String name)
+    {
+        return PREFIX + name;
+    }
+
+    /**
+     * Writes an element and its descendants.
+     *
+     * @param element the element to write
+     * @param output  the stream to write to. This is flushed but not closed
+     * @throws IOException for any I/O error
+     */
+    public static void write(IXMLElement element, OutputStream output) throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        write(element.getElement(), out, new HashMap<String, Integer>());
+        out.flush();
+    }
+
+    /**
+     * Reads an element and its descendants, written by {@link #write}.
+     *
+     * @param input the stream to read from. This is not closed
+     * @return the element
+     * @throws IOException  for any I/O error
+     * @throws XMLException if the stream is not in the expected format
+     */
+    public static IXMLElement read(InputStream input) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION)
+        {
+            throw new XMLException("Unsupported compiled XML format");
+        }
+        Document document;
+        try
+        {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            document = factory.newDocumentBuilder().newDocument();
+        }
+        catch (ParserConfigurationException exception)
+        {
+            throw new XMLException(exception);
+        }
+        List<String> names = new ArrayList<String>();
+        if (in.readByte() != Node.ELEMENT_NODE)
+        {
+            throw new XMLException("Compiled XML does not start with an element");
+        }
+        Element root = readElement(in, document, names);
+        document.appendChild(root);
+        return new XMLElementImpl(root);
+    }
+
+    /**
+     * Writes a node and its descendants.
+     *
+     * @param node  the node to write
+     * @param out   the stream to write to
+     * @param names the names written so far, and their indexes
+     * @throws IOException for any I/O error
+     */
+    private static void write(Node node, DataOutputStream out, Map<String, Integer> names) throws IOException
+    {
+        switch (node.getNodeType())
+        {
+            case Node.ELEMENT_NODE:
+                out.writeByte(Node.ELEMENT_NODE);
+                writeName(node.getNamespaceURI(), out, names);
+                writeName(node.getNodeName(), out, names);
+                Object line = node.getUserData("ln");
+                out.writeInt((line instanceof Integer) ? (Integer) line : IXMLElement.NO_LINE);
+                NamedNodeMap attributes = node.getAttributes();
+                out.writeInt(attributes.getLength());
+                for (int i = 0; i < attributes.getLength(); ++i)
+                {
+                    Node attribute = attributes.item(i);
+                    writeName(attribute.getNamespaceURI(), out, names);
+                    writeName(attribute.getNodeName(), out, names);
+                    writeString(attribute.getNodeValue(), out);
+                }
+                for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling())
+                {
+                    write(child, out, names);
+                }
+                out.writeByte(END);
+                break;
+            case Node.TEXT_NODE:
+            case Node.CDATA_SECTION_NODE:
+            case Node.COMMENT_NODE:
+                out.writeByte(node.getNodeType());
+                writeString(node.getNodeValue(), out);
+                break;
+            default:
+                // processing instructions and entity references aren't used by specifications
+                break;
+        }
+    }
+
+    /**
+     * Reads an element and its descendants. The element type must have already been read.
+     *
+     * @param in       the stream to read from
+     * @param document the document to create nodes in
+     * @param names    the names read so far
+     * @return the element
+     * @throws IOException for any I/O error
+     */
+    private static Element readElement(DataInputStream in, Document document, List<String> names)
+            throws IOException
+    {
+        String namespace = readName(in, names);
+        String name = readName(in, names);
+        Element result = document.createElementNS(namespace, name);
+        int line = in.readInt();
+        if (line != IXMLElement.NO_LINE)
+        {
+            result.setUserData("ln", line, null);
+        }
+        int attributes = in.readInt();
+        for (int i = 0; i < attributes; ++i)
+        {
+            String attrNamespace = readName(in, names);
+            String attrName = readName(in, names);
+            result.setAttributeNS(attrNamespace, attrName, readString(in));
+        }
+        int type;
+        while ((type = in.readByte()) != END)
+        {
+            switch (type)
+            {
+                case Node.ELEMENT_NODE:
+                    result.appendChild(readElement(in, document, names));
+                    break;
+                case Node.TEXT_NODE:
+                    result.appendChild(document.createTextNode(readString(in)));
+                    break;
+                case Node.CDATA_SECTION_NODE:
+                    result.appendChild(document.createCDATASection(readString(in)));
+                    break;
+                case Node.COMMENT_NODE:
+                    result.appendChild(document.createComment(readString(in)));
+                    break;
+                default:
+                    throw new XMLException("Invalid node type in compiled XML: " + type);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes a name, or a reference to it if it has already been written.
+     *
+     * @param name  the name. May be {@code null}
+     * @param out   the stream to write to
+     * @param names the names written so far, and their indexes
+     * @throws IOException for any I/O error
+     */
+    private static void writeName(String name, DataOutputStream out, Map<String, Integer> names) throws IOException
+    {
+        if (name == null)
+        {
+            out.writeInt(-1);
+        }
+        else
+        {
+            Integer index = names.get(name);
+            if (index != null)
+            {
+                out.writeInt(index);
+            }
+            else
+            {
+                out.writeInt(names.size());
+                names.put(name, names.size());
+                out.writeUTF(name);
+            }
+        }
+    }
+
+    /**
+     * Reads a name written by {@link #writeName}.
+     *
+     * @param in    the stream to read from
+     * @param names the names read so far
+     * @return the name. May be {@code null}
+     * @throws IOException for any I/O error
+     */
+    private static String readName(DataInputStream in, List<String> names) throws IOException
+    {
+        int index = in.readInt();
+        String result;
+        if (index == -1)
+        {
+            result = null;
+        }
+        else if (index < names.size())
+        {
+            result = names.get(index);
+        }
+        else if (index == names.size())
+        {
+            result = in.readUTF();
+            names.add(result);
+        }
+        else
+        {
+            throw new XMLException("Invalid name reference in compiled XML: " + index);
+        }
+        return result;
+    }
+
+    /**
+     * Writes a string of arbitrary length as UTF-8.
+     *
+     * @param value the string to write
+     * @param out   the stream to write to
+     * @throws IOException for any I/O error
+     */
+    private static void writeString(String value, DataOutputStream out) throws IOException
+    {
+        byte[] bytes = value.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString}.
+     *
+     * @param in the stream to read from
+     * @return the string
+     * @throws IOException for any I/O error
+     */
+    private static String readString(DataInputStream in) throws IOException
+    {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+}
@@ -130,6 +130,16 @@ public class Info implements Serializable
 
     private boolean pack200Compression;
 
+    /**
+     * Determines if packs are stored uncompressed in the installer jar.
+     */
+    private boolean storePacks;
+
+    /**
+     * Determines if the POSIX permissions of source files are applied to installed files.
+     */
+    private boolean preservePermissions;
+
     private boolean requirePrivilegedExecution = false;
 
     private boolean requirePrivilegedExecutionUninstaller = false;
@@ -412,6 +422,48 @@ public class Info implements Serializable
         return pack200Compression;
     }
 
+    /**
+     * Determines if packs are stored uncompressed in the installer jar, so that they may be memory-mapped by the
+     * installer.
+     *
+     * @param storePacks if <tt>true</tt>, store packs uncompressed
+     */
+    public void setStorePacks(boolean storePacks)
+    {
+        this.storePacks = storePacks;
+    }
+
+    /**
+     * Determines if packs are stored uncompressed in the installer jar.
+     *
+     * @return <tt>true</tt> if packs are stored uncompressed
+     */
+    public boolean isStorePacks()
+    {
+        return storePacks;
+    }
+
+    /**
+     * Determines if the POSIX permissions of source files are recorded at compile time, and applied to the
+     * installed files.
+     *
+     * @param preservePermissions if <tt>true</tt>, preserve source file permissions
+     */
+    public void setPreservePermissions(boolean preservePermissions)
+    {
+        this.preservePermissions = preservePermissions;
+    }
+
+    /**
+     * Determines if the POSIX permissions of source files are applied to the installed files.
+     *
+     * @return <tt>true</tt> if source file permissions are preserved
+     */
+    public boolean isPreservePermissions()
+    {
+        return preservePermissions;
+    }
+
     /**
      * This class represents an author.
      *
@@ -126,6 +126,12 @@ public class Pack implements Serializable
      */
     private long fileSize;
 
+    /**
+     * The size of files in the pack, in bytes, keyed on the unresolved root of their target paths.
+     * May be {@code null} for packs compiled before this was recorded.
+     */
+    private Map<String, Long> targetSizes;
+
     /**
      * Determines if the pack should be preselected for installation.
      */
@@ -509,6 +515,41 @@ public class Pack implements Serializable
         return fileSize;
     }
 
+    /**
+     * Adds to the size of files installed under the root of the specified target path.
+     * <p/>
+     * The root is the leading variable of the path (e.g. <em>$INSTALL_PATH</em>) if it starts with one, otherwise
+     * the parent directory of the path. This allows the installer to determine which volumes a pack is
+     * installed to, without needing to read the pack.
+     *
+     * @param target the unresolved target path of the file
+     * @param add    the no. of bytes to add
+     */
+    public void addTargetSize(String target, long add)
+    {
+        if (targetSizes == null)
+        {
+            targetSizes = new LinkedHashMap<String, Long>();
+        }
+        String root = getTargetRoot(target);
+        Long size = targetSizes.get(root);
+        targetSizes.put(root, (size != null) ? size + add : add);
+    }
+
+    /**
+     * Returns the size of files in the pack, keyed on the unresolved root of their target paths.
+     *
+     * @return the sizes, in bytes. May be empty if the pack was compiled without recording them
+     */
+    public Map<String, Long> getTargetSizes()
+    {
+        if (targetSizes == null)
+        {
+            return Collections.emptyMap();
+        }
+        return Collections.unmodifiableMap(targetSizes);
+    }
+
     /**
      * Sets the parent pack name.
      *
@@ -738,4 +779,22 @@ public class Pack implements Serializable
     {
         return this.onDeselectPacks;
     }
+
+    /**
+     * Returns the root of a target path.
+     *
+     * @param target the unresolved target path
+     * @return the leading variable of the path if it starts with one, otherwise its parent directory
+     */
+    private static String getTargetRoot(String target)
+    {
+        String path = target.replace('\\', '/');
+        boolean variable = path.startsWith("$");
+        int index = (variable) ? path.indexOf('/') : path.lastIndexOf('/');
+        if (index == -1)
+        {
+            return (variable) ? path : "";
+        }
+        return (index == 0) ? "/" : path.substring(0, index);
+    }
 }
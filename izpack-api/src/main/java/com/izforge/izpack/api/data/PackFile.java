@@ -23,6 +23,7 @@ package com.izforge.izpack.api.data;
 
 
 import com.izforge.izpack.api.data.binding.OsModel;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
 import com.izforge.izpack.util.FileUtil;
 
 import java.io.File;
@@ -43,6 +44,11 @@ public class PackFile implements Serializable
 
     static final long serialVersionUID = -834377078706854909L;
 
+    /**
+     * The algorithm used to calculate content digests.
+     */
+    public static final String DIGEST_ALGORITHM = "SHA-1";
+
     /**
      * Only available when compiling. Makes no sense when installing, use relativePath instead.
      */
@@ -119,6 +125,36 @@ public class PackFile implements Serializable
      */
     private String condition = null;
 
+    /**
+     * The substitution type, if variables may be substituted as the file is unpacked.
+     */
+    private SubstitutionType parseType = null;
+
+    /**
+     * The encoding to use when substituting variables as the file is unpacked, or {@code null} for the default.
+     */
+    private String parseEncoding = null;
+
+    /**
+     * Determines if the file is the target of a parsable declaration of its pack.
+     */
+    private boolean parsableTarget = false;
+
+    /**
+     * The digest of the file content, or {@code null} if it is not known.
+     */
+    private byte[] digest = null;
+
+    /**
+     * The CRC-32 checksum of the file content, or {@code -1} if it is not known.
+     */
+    private long checksum = -1;
+
+    /**
+     * The POSIX mode bits of the installed file, or {@code -1} if they aren't specified.
+     */
+    private int mode = -1;
+
     /**
      * Constructs and initializes from a source file.
      *
@@ -339,6 +375,139 @@ public class PackFile implements Serializable
         this.pack200Jar = pack200Jar;
     }
 
+    /**
+     * Determines if variables may be substituted in the file as it is unpacked.
+     * <p/>
+     * This is only set for files that have a single, unconditional parsable declaration.
+     *
+     * @return {@code true} if the file may be parsed as it is unpacked
+     */
+    public boolean isParsable()
+    {
+        return parseType != null;
+    }
+
+    /**
+     * Marks the file as one whose variables may be substituted as it is unpacked.
+     *
+     * @param type     the substitution type, or {@code null} if the file may not be parsed as it is unpacked
+     * @param encoding the file encoding, or {@code null} for the default
+     */
+    public void setParsable(SubstitutionType type, String encoding)
+    {
+        this.parseType = type;
+        this.parseEncoding = encoding;
+    }
+
+    /**
+     * Determines if the file is the target of a parsable declaration of its pack.
+     * <p/>
+     * Unlike {@link #isParsable()}, this includes declarations with conditions or OS constraints, which may cause
+     * the installed file to be parsed after its pack is unpacked.
+     *
+     * @return {@code true} if the file is the target of a parsable declaration
+     */
+    public boolean isParsableTarget()
+    {
+        return parsableTarget;
+    }
+
+    /**
+     * Marks the file as the target of a parsable declaration of its pack.
+     *
+     * @param parsableTarget if {@code true}, the file is the target of a parsable declaration
+     */
+    public void setParsableTarget(boolean parsableTarget)
+    {
+        this.parsableTarget = parsableTarget;
+    }
+
+    /**
+     * Returns the substitution type used to parse the file as it is unpacked.
+     *
+     * @return the substitution type, or {@code null} if the file may not be parsed as it is unpacked
+     */
+    public SubstitutionType getParseType()
+    {
+        return parseType;
+    }
+
+    /**
+     * Returns the encoding used to parse the file as it is unpacked.
+     *
+     * @return the encoding, or {@code null} for the default
+     */
+    public String getParseEncoding()
+    {
+        return parseEncoding;
+    }
+
+    /**
+     * Returns the digest of the file content, calculated at compile time using {@link #DIGEST_ALGORITHM}.
+     * <p/>
+     * This is not available for directories, nor for files whose content is transformed when unpacked, such as
+     * pack200 jars.
+     *
+     * @return the content digest, or {@code null} if it is not known
+     */
+    public byte[] getDigest()
+    {
+        return digest;
+    }
+
+    /**
+     * Sets the digest of the file content.
+     *
+     * @param digest the content digest. May be {@code null}
+     */
+    public void setDigest(byte[] digest)
+    {
+        this.digest = digest;
+    }
+
+    /**
+     * Returns the CRC-32 checksum of the file content, calculated at compile time.
+     * <p/>
+     * This is not available for directories, nor for files whose content is transformed when unpacked, such as
+     * pack200 jars.
+     *
+     * @return the checksum, or {@code -1} if it is not known
+     */
+    public long getChecksum()
+    {
+        return checksum;
+    }
+
+    /**
+     * Sets the CRC-32 checksum of the file content.
+     *
+     * @param checksum the checksum, or {@code -1} if it is not known
+     */
+    public void setChecksum(long checksum)
+    {
+        this.checksum = checksum;
+    }
+
+    /**
+     * Returns the POSIX mode bits to apply to the installed file, e.g. {@code 0755}.
+     *
+     * @return the mode bits, or {@code -1} if they aren't specified, in which case the platform default applies
+     */
+    public int getMode()
+    {
+        return mode;
+    }
+
+    /**
+     * Sets the POSIX mode bits to apply to the installed file.
+     *
+     * @param mode the mode bits, or {@code -1} if they aren't specified
+     */
+    public void setMode(int mode)
+    {
+        this.mode = mode;
+    }
+
     public void setLoosePackInfo(boolean loose)
     {
         if (loose)
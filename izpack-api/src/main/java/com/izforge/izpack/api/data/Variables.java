@@ -118,6 +118,26 @@ public interface Variables
      */
     String replace(String value);
 
+    /**
+     * Returns the version of the variables.
+     * <p/>
+     * This is incremented each time a variable is set to a different value, or unset. It allows values derived from
+     * variables to be cached until the variables they depend on change.
+     *
+     * @return the version
+     */
+    long getVersion();
+
+    /**
+     * Returns the version of a variable.
+     * <p/>
+     * This is the value of {@link #getVersion()} when the variable last changed.
+     *
+     * @param name the variable name
+     * @return the variable version, or {@code 0} if the variable has never been set
+     */
+    long getVersion(String name);
+
     /**
      * Adds a dynamic variable.
      *
@@ -91,6 +91,20 @@ public abstract class Condition implements Serializable
         return "No dependencies for this condition.";
     }
 
+    /**
+     * Determines if the result of this condition depends only on the values of variables, and the conditions it
+     * references.
+     * <p/>
+     * If so, the rules engine may cache the result until one of the variables it reads changes. Conditions that
+     * examine files, pack selections or other state must return {@code false}, the default.
+     *
+     * @return {@code true} if the result may be cached
+     */
+    public boolean isCacheable()
+    {
+        return false;
+    }
+
     /**
      * This element will be called by the RulesEngine to serialize the configuration
      * of a condition into XML.
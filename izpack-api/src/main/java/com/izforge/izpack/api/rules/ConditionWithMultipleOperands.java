@@ -38,4 +38,22 @@ public abstract class ConditionWithMultipleOperands extends Condition
     {
         Collections.addAll(nestedConditions, operands);
     }
+
+    /**
+     * Determines if the result of this condition may be cached.
+     *
+     * @return {@code true} if each of the operands may be cached
+     */
+    @Override
+    public boolean isCacheable()
+    {
+        for (Condition condition : nestedConditions)
+        {
+            if (condition == null || !condition.isCacheable())
+            {
+                return false;
+            }
+        }
+        return true;
+    }
 }
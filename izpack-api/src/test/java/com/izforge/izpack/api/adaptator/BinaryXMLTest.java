@@ -0,0 +1,112 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.api.adaptator;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Test;
+
+import com.izforge.izpack.api.adaptator.impl.BinaryXML;
+import com.izforge.izpack.api.adaptator.impl.XMLParser;
+
+/**
+ * Tests {@link BinaryXML}.
+ *
+ * @author Tim Anderson
+ */
+public class BinaryXMLTest
+{
+
+    /**
+     * Verifies that a specification read back from its compiled form has the same elements, attributes, content
+     * and line numbers as that parsed from the XML.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testReadWriteSpec() throws Exception
+    {
+        InputStream input = getClass().getResourceAsStream("shortcutSpec.xml");
+        IXMLElement expected = new XMLParser().parse(input);
+        IXMLElement actual = roundTrip(expected);
+        assertEquals("izpack:shortcuts", actual.getName());
+        checkEquals(expected, actual);
+    }
+
+    /**
+     * Verifies that CDATA sections, comments and mixed content are preserved.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testReadWriteContent() throws Exception
+    {
+        String xml = "<root a=\"1\" b=\"x &amp; y\">\n"
+                + "  <text>some text</text>\n"
+                + "  <cdata><![CDATA[<not> an element]]></cdata>\n"
+                + "  <!-- a comment -->\n"
+                + "  <mixed>before<child/>after</mixed>\n"
+                + "</root>";
+        IXMLElement expected = new XMLParser().parse(xml);
+        IXMLElement actual = roundTrip(expected);
+        checkEquals(expected, actual);
+        assertEquals("x & y", actual.getAttribute("b"));
+        assertEquals("<not> an element", actual.getFirstChildNamed("cdata").getContent());
+        assertEquals(3, actual.getFirstChildNamed("cdata").getLineNr());
+    }
+
+    /**
+     * Writes an element to its compiled form, and reads it back.
+     *
+     * @param element the element
+     * @return the element read back
+     * @throws IOException for any I/O error
+     */
+    private IXMLElement roundTrip(IXMLElement element) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryXML.write(element, out);
+        return BinaryXML.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    /**
+     * Verifies two elements and their descendants are the same.
+     *
+     * @param expected the expected element
+     * @param actual   the actual element
+     */
+    private void checkEquals(IXMLElement expected, IXMLElement actual)
+    {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getAttributes(), actual.getAttributes());
+        assertEquals(expected.getContent(), actual.getContent());
+        assertEquals(expected.getLineNr(), actual.getLineNr());
+        assertEquals(expected.getChildrenCount(), actual.getChildrenCount());
+        for (int i = 0; i < expected.getChildrenCount(); ++i)
+        {
+            checkEquals(expected.getChildAtIndex(i), actual.getChildAtIndex(i));
+        }
+    }
+}
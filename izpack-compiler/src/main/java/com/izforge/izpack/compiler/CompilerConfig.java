@@ -64,6 +64,7 @@ import org.apache.commons.lang.StringUtils;
 import com.izforge.izpack.api.adaptator.IXMLElement;
 import com.izforge.izpack.api.adaptator.IXMLParser;
 import com.izforge.izpack.api.adaptator.IXMLWriter;
+import com.izforge.izpack.api.adaptator.impl.BinaryXML;
 import com.izforge.izpack.api.adaptator.impl.XMLParser;
 import com.izforge.izpack.api.adaptator.impl.XMLWriter;
 import com.izforge.izpack.api.data.Blockable;
@@ -109,6 +110,7 @@ import com.izforge.izpack.core.variable.ConfigFileValue;
 import com.izforge.izpack.core.variable.EnvironmentValue;
 import com.izforge.izpack.core.variable.ExecValue;
 import com.izforge.izpack.core.variable.JarEntryConfigValue;
+import com.izforge.izpack.core.variable.JavaVersionValue;
 import com.izforge.izpack.core.variable.PlainConfigFileValue;
 import com.izforge.izpack.core.variable.PlainValue;
 import com.izforge.izpack.core.variable.RegistryValue;
@@ -124,11 +126,13 @@ import com.izforge.izpack.data.UpdateCheck;
 import com.izforge.izpack.installer.gui.IzPanel;
 import com.izforge.izpack.installer.unpacker.IUnpacker;
 import com.izforge.izpack.merge.MergeManager;
+import com.izforge.izpack.event.ConfigurationInstallerListener;
 import com.izforge.izpack.panels.extendedinstall.ExtendedInstallPanel;
 import com.izforge.izpack.panels.install.InstallPanel;
 import com.izforge.izpack.panels.treepacks.PackValidator;
 import com.izforge.izpack.panels.userinput.UserInputPanel;
 import com.izforge.izpack.panels.userinput.field.UserInputPanelSpec;
+import com.izforge.izpack.util.FilePermissions;
 import com.izforge.izpack.util.FileUtil;
 import com.izforge.izpack.util.IoHelper;
 import com.izforge.izpack.util.OsConstraintHelper;
@@ -954,9 +958,11 @@ public class CompilerConfig extends Thread
                                 File file = new File(fs.getDir(), filePath);
                                 String target = new File(fs.getTargetDir(), filePath).getPath();
                                 logger.info("Adding file: " + file + ", as target file=" + target);
-                                pack.addFile(baseDir, file, target, fs.getOsList(),
-                                             fs.getOverride(), fs.getOverrideRenameTo(),
-                                             fs.getBlockable(), fs.getAdditionals(), fs.getCondition());
+                                PackFile packFile = pack.addFile(baseDir, file, target, fs.getOsList(),
+                                                                 fs.getOverride(), fs.getOverrideRenameTo(),
+                                                                 fs.getBlockable(), fs.getAdditionals(),
+                                                                 fs.getCondition());
+                                setMode(packFile, file, fs.getMode());
                             }
                         }
                     }
@@ -1012,6 +1018,7 @@ public class CompilerConfig extends Thread
             Blockable blockable = getBlockableValue(singleFileNode, osList);
             Map additionals = getAdditionals(singleFileNode);
             String condition = singleFileNode.getAttribute("condition");
+            int mode = getModeValue(singleFileNode);
             File file = new File(src);
             if (!file.isAbsolute())
             {
@@ -1035,8 +1042,9 @@ public class CompilerConfig extends Thread
             try
             {
                 logger.info("Adding file: " + file + ", as target file=" + target);
-                pack.addFile(baseDir, file, target, osList, override, overrideRenameTo, blockable,
-                             additionals, condition);
+                PackFile packFile = pack.addFile(baseDir, file, target, osList, override, overrideRenameTo,
+                                                 blockable, additionals, condition);
+                setMode(packFile, file, mode);
             }
             catch (IOException x)
             {
@@ -1079,6 +1087,7 @@ public class CompilerConfig extends Thread
                 fs.setBlockable(getBlockableValue(fileNode, osList));
                 fs.setAdditionals(getAdditionals(fileNode));
                 fs.setCondition(fileNode.getAttribute("condition"));
+                fs.setMode(getModeValue(fileNode));
 
                 String boolval = fileNode.getAttribute("casesensitive");
                 if (boolval != null)
@@ -1117,9 +1126,11 @@ public class CompilerConfig extends Thread
                         {
                             String target = fs.getTargetDir() + "/" + filePath;
                             logger.info("Adding file: " + abssrcfile + ", as target file=" + target);
-                            pack.addFile(baseDir, abssrcfile, target, fs.getOsList(),
-                                         fs.getOverride(), fs.getOverrideRenameTo(), fs.getBlockable(),
-                                         fs.getAdditionals(), fs.getCondition());
+                            PackFile packFile = pack.addFile(baseDir, abssrcfile, target, fs.getOsList(),
+                                                             fs.getOverride(), fs.getOverrideRenameTo(),
+                                                             fs.getBlockable(), fs.getAdditionals(),
+                                                             fs.getCondition());
+                            setMode(packFile, abssrcfile, fs.getMode());
                         }
                     }
                 }
@@ -1872,11 +1883,83 @@ public class CompilerConfig extends Thread
                                 + userPanelId + "'");
                     }
                 }
+                addCompiledResource(resNode, id, xml);
+            }
+            else if (id.startsWith(ConfigurationInstallerListener.SPEC_FILE_NAME))
+            {
+                // the installer substitutes variables in the text before parsing it, so it can only be
+                // precompiled if it doesn't contain any references
+                if (!containsVariableReferences(resNode, url))
+                {
+                    addCompiledResource(resNode, id, new XMLParser().parse(url));
+                }
             }
         }
         notifyCompilerListener("addResources", CompilerListener.END, data);
     }
 
+    /**
+     * Adds the precompiled form of an XML resource, so that the installer doesn't need to parse it.
+     *
+     * @param resNode the resource element, for error reporting
+     * @param id      the resource identifier
+     * @param xml     the parsed resource
+     * @throws CompilerException if the resource cannot be written
+     */
+    private void addCompiledResource(IXMLElement resNode, String id, IXMLElement xml) throws CompilerException
+    {
+        OutputStream out = null;
+        try
+        {
+            File compiled = FileUtils.createTempFile("izpc", null);
+            compiled.deleteOnExit();
+            out = new FileOutputStream(compiled);
+            BinaryXML.write(xml, out);
+            packager.addResource(BinaryXML.getResourceName(id), compiled.toURI().toURL());
+        }
+        catch (IOException exception)
+        {
+            assertionHelper.parseError(resNode, "Failed to compile resource " + id, exception);
+        }
+        finally
+        {
+            FileUtils.close(out);
+        }
+    }
+
+    /**
+     * Determines if a resource contains characters that may start a variable reference, for any substitution
+     * type.
+     *
+     * @param resNode the resource element, for error reporting
+     * @param url     the resource URL
+     * @return {@code true} if the resource may contain variable references
+     * @throws CompilerException if the resource cannot be read
+     */
+    private boolean containsVariableReferences(IXMLElement resNode, URL url) throws CompilerException
+    {
+        boolean result = false;
+        InputStream in = null;
+        try
+        {
+            in = new BufferedInputStream(url.openStream());
+            int c;
+            while (!result && (c = in.read()) != -1)
+            {
+                result = (c == '$' || c == '%' || c == '@');
+            }
+        }
+        catch (IOException exception)
+        {
+            assertionHelper.parseError(resNode, "Failed to read resource " + url, exception);
+        }
+        finally
+        {
+            FileUtils.close(in);
+        }
+        return result;
+    }
+
     /**
      * Adds the ISO3 codes of the langpacks and associated resources.
      *
@@ -2009,6 +2092,14 @@ public class CompilerConfig extends Thread
         IXMLElement pack200 = root.getFirstChildNamed("pack200");
         info.setPack200Compression(pack200 != null);
 
+        // Store packs uncompressed in the installer jar
+        IXMLElement storedPacks = root.getFirstChildNamed("storedpacks");
+        info.setStorePacks(storedPacks != null);
+
+        // Preserve the POSIX permissions of source files
+        IXMLElement preservePermissions = root.getFirstChildNamed("preservepermissions");
+        info.setPreservePermissions(preservePermissions != null);
+
         // Privileged execution
         IXMLElement privileged = root.getFirstChildNamed("run-privileged");
         info.setRequirePrivilegedExecution(privileged != null);
@@ -2441,6 +2532,11 @@ public class CompilerConfig extends Thread
                         assertionHelper.parseError(
                                 "Bad execution type " + exectype + " given for dynamic variable " + name);
                     }
+                    if (dynamicVariable.getValue() instanceof ExecValue)
+                    {
+                        long timeout = xmlCompilerHelper.getLong(var, "cachetimeout", 0);
+                        ((ExecValue) dynamicVariable.getValue()).setCacheTimeout(timeout);
+                    }
                 }
                 else
                 {
@@ -2449,6 +2545,31 @@ public class CompilerConfig extends Thread
                             "Ambiguous execution output value definition for dynamic variable " + name);
                 }
             }
+            // Check for the output of java -version
+            value = var.getAttribute("javaversion");
+            if (value != null)
+            {
+                if (dynamicVariable.getValue() == null)
+                {
+                    String boolval = var.getAttribute("stderr");
+                    boolean stderr = true;
+                    if (boolval != null)
+                    {
+                        stderr = Boolean.parseBoolean(boolval);
+                    }
+                    if (value.length() <= 0)
+                    {
+                        assertionHelper.parseError("No java launcher given in definition of dynamic variable "
+                                                           + name);
+                    }
+                    dynamicVariable.setValue(new JavaVersionValue(value, stderr));
+                }
+                else
+                {
+                    // unexpected combination of variable attributes
+                    assertionHelper.parseError("Ambiguous java version value definition for dynamic variable " + name);
+                }
+            }
 
             if (dynamicVariable.getValue() == null)
             {
@@ -2768,6 +2889,52 @@ public class CompilerConfig extends Thread
         return overrideRenameTo;
     }
 
+    /**
+     * Parses the optional <em>mode</em> attribute, specifying the octal POSIX mode bits of installed files.
+     *
+     * @param element the element
+     * @return the mode bits, or {@code -1} if the attribute isn't present
+     * @throws CompilerException if the attribute is invalid
+     */
+    protected int getModeValue(IXMLElement element) throws CompilerException
+    {
+        int result = -1;
+        String mode = element.getAttribute("mode");
+        if (mode != null)
+        {
+            if (mode.matches("[0-7]{3,4}"))
+            {
+                result = Integer.parseInt(mode, 8);
+            }
+            else
+            {
+                assertionHelper.parseError(element, "invalid value for attribute \"mode\": " + mode);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sets the POSIX mode bits of a pack file.
+     * <p/>
+     * If no mode is declared and the installation preserves permissions, the mode of the source file is used.
+     *
+     * @param packFile the pack file
+     * @param file     the source file
+     * @param mode     the declared mode, or {@code -1} if none was declared
+     */
+    private void setMode(PackFile packFile, File file, int mode)
+    {
+        if (!packFile.isDirectory())
+        {
+            if (mode == -1 && compilerData.getExternalInfo().isPreservePermissions())
+            {
+                mode = FilePermissions.getMode(file);
+            }
+            packFile.setMode(mode);
+        }
+    }
+
     /**
      * Parses the blockable element value and adds automatically the OS constraint
      * family=windows if not already se in the given constraint list.
@@ -3146,6 +3313,7 @@ public class CompilerConfig extends Thread
         fs.setBlockable(getBlockableValue(fileSetNode, osList));
         fs.setAdditionals(getAdditionals(fileSetNode));
         fs.setCondition(fileSetNode.getAttribute("condition"));
+        fs.setMode(getModeValue(fileSetNode));
 
         String dir_attr = xmlCompilerHelper.requireAttribute(fileSetNode, "dir");
         try
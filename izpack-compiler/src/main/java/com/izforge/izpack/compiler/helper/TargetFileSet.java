@@ -37,6 +37,7 @@ public class TargetFileSet extends FileSet
     Blockable blockable;
     Map additionals;
     String condition;
+    int mode = -1;
 
     public String getTargetDir()
     {
@@ -107,4 +108,24 @@ public class TargetFileSet extends FileSet
     {
         this.condition = condition;
     }
+
+    /**
+     * Returns the POSIX mode bits to apply to the installed files.
+     *
+     * @return the mode bits, or {@code -1} if they aren't specified
+     */
+    public int getMode()
+    {
+        return mode;
+    }
+
+    /**
+     * Sets the POSIX mode bits to apply to the installed files.
+     *
+     * @param mode the mode bits, or {@code -1} if they aren't specified
+     */
+    public void setMode(int mode)
+    {
+        this.mode = mode;
+    }
 }
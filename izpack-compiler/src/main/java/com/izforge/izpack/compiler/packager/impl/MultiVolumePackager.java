@@ -29,6 +29,7 @@ import java.util.List;
 import java.util.Properties;
 import java.util.Set;
 import java.util.logging.Logger;
+import java.util.zip.CRC32;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.tools.zip.ZipEntry;
@@ -49,6 +50,7 @@ import com.izforge.izpack.data.ParsableFile;
 import com.izforge.izpack.data.UpdateCheck;
 import com.izforge.izpack.merge.MergeManager;
 import com.izforge.izpack.merge.resolve.MergeableResolver;
+import com.izforge.izpack.util.FileUtil;
 import com.izforge.izpack.util.IoHelper;
 
 
@@ -265,6 +267,11 @@ public class MultiVolumePackager extends PackagerBase
         sendMsg("Writing Pack: " + name, PackagerListener.MSG_VERBOSE);
         logger.fine("Writing Pack: " + name);
         ZipEntry entry = new ZipEntry(RESOURCES_PATH + "packs/pack-" + name);
+        if (getInfo().isStorePacks())
+        {
+            // store uncompressed, so that the installer can memory-map the pack
+            entry.setMethod(ZipEntry.STORED);
+        }
 
         JarOutputStream installerJar = getInstallerJar();
         installerJar.putNextEntry(entry);
@@ -324,6 +331,9 @@ public class MultiVolumePackager extends PackagerBase
 
             if (!pf.isDirectory())
             {
+                CRC32 checksum = new CRC32();
+                pf.setDigest(FileUtil.getDigest(file, PackFile.DIGEST_ALGORITHM, checksum));
+                pf.setChecksum(checksum.getValue());
                 if (!pack.isLoose())
                 {
                     writePackFile(file, volumes, pf);
@@ -340,6 +350,7 @@ public class MultiVolumePackager extends PackagerBase
             packStream.flush(); // make sure it is written
             // even if not written, it counts towards pack size
             pack.addFileSize(pf.length());
+            pack.addTargetSize(pf.getTargetPath(), pf.length());
         }
 
         if (pack.getFileSize() > pack.getSize())
@@ -33,6 +33,7 @@ import java.util.Properties;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.Pack200;
+import java.util.zip.CRC32;
 
 import com.izforge.izpack.api.adaptator.IXMLElement;
 import com.izforge.izpack.api.adaptator.impl.XMLElementImpl;
@@ -50,6 +51,7 @@ import com.izforge.izpack.data.ParsableFile;
 import com.izforge.izpack.data.UpdateCheck;
 import com.izforge.izpack.merge.MergeManager;
 import com.izforge.izpack.merge.resolve.MergeableResolver;
+import com.izforge.izpack.util.FileUtil;
 import com.izforge.izpack.util.IoHelper;
 
 /**
@@ -141,6 +143,11 @@ public class Packager extends PackagerBase
             // Retrieve the correct output stream
             org.apache.tools.zip.ZipEntry entry = new org.apache.tools.zip.ZipEntry(
                     RESOURCES_PATH + "packs/pack-" + pack.getName());
+            if (getInfo().isStorePacks())
+            {
+                // store uncompressed, so that the installer can memory-map the pack
+                entry.setMethod(org.apache.tools.zip.ZipEntry.STORED);
+            }
             installerJar.putNextEntry(entry);
             installerJar.flush(); // flush before we start counting
 
@@ -148,6 +155,7 @@ public class Packager extends PackagerBase
             ObjectOutputStream objOut = new ObjectOutputStream(dos);
 
             // We write the actual pack files
+            setParsables(packInfo);
             objOut.writeInt(packInfo.getPackFiles().size());
 
             for (PackFile packFile : packInfo.getPackFiles())
@@ -160,6 +168,7 @@ public class Packager extends PackagerBase
                         && isNotSignedJar(file))
                 {
                     packFile.setPack200Jar(true);
+                    packFile.setParsable(null, null);
                     pack200 = true;
                 }
 
@@ -172,6 +181,22 @@ public class Packager extends PackagerBase
                     addFile = false;
                 }
 
+                if (!packFile.isDirectory())
+                {
+                    // digest the unpacked content, which differs for pack200 jars
+                    if (pack200)
+                    {
+                        packFile.setDigest(null);
+                        packFile.setChecksum(-1);
+                    }
+                    else
+                    {
+                        CRC32 checksum = new CRC32();
+                        packFile.setDigest(FileUtil.getDigest(file, PackFile.DIGEST_ALGORITHM, checksum));
+                        packFile.setChecksum(checksum.getValue());
+                    }
+                }
+
                 objOut.writeObject(packFile); // base info
 
                 if (addFile && !packFile.isDirectory())
@@ -208,6 +233,7 @@ public class Packager extends PackagerBase
 
                 // even if not written, it counts towards pack size
                 pack.addFileSize(packFile.size());
+                pack.addTargetSize(packFile.getTargetPath(), packFile.size());
             }
 
             if (pack.getFileSize() > pack.getSize())
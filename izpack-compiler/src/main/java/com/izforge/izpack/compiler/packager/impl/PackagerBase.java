@@ -45,6 +45,7 @@ import com.izforge.izpack.api.data.GUIPrefs;
 import com.izforge.izpack.api.data.Info;
 import com.izforge.izpack.api.data.InstallerRequirement;
 import com.izforge.izpack.api.data.Panel;
+import com.izforge.izpack.api.data.PackFile;
 import com.izforge.izpack.api.rules.Condition;
 import com.izforge.izpack.compiler.compressor.PackCompressor;
 import com.izforge.izpack.compiler.data.CompilerData;
@@ -55,6 +56,7 @@ import com.izforge.izpack.compiler.packager.IPackager;
 import com.izforge.izpack.compiler.stream.JarOutputStream;
 import com.izforge.izpack.data.CustomData;
 import com.izforge.izpack.data.PackInfo;
+import com.izforge.izpack.data.ParsableFile;
 import com.izforge.izpack.merge.MergeManager;
 import com.izforge.izpack.merge.resolve.MergeableResolver;
 import com.izforge.izpack.util.FileUtil;
@@ -533,6 +535,48 @@ public abstract class PackagerBase implements IPackager
      */
     protected abstract void writePacks() throws IOException;
 
+    /**
+     * Flags the pack files of a pack that are the target of parsable declarations, and those that may have their
+     * variables substituted as they are unpacked.
+     * <p/>
+     * A pack file is eligible for substitution as it is unpacked if it is the target of exactly one parsable
+     * declaration that has neither a condition nor OS constraints, as these can only be evaluated once the pack has
+     * been unpacked.
+     *
+     * @param packInfo the pack
+     */
+    protected void setParsables(PackInfo packInfo)
+    {
+        if (packInfo.getParsables().isEmpty() || packInfo.getPack().isLoose())
+        {
+            return;
+        }
+        Map<String, ParsableFile> parsables = new HashMap<String, ParsableFile>();
+        Set<String> excluded = new HashSet<String>();
+        for (ParsableFile parsable : packInfo.getParsables())
+        {
+            String path = parsable.getPath().replace('\\', '/');
+            if (parsables.put(path, parsable) != null || parsable.hasCondition()
+                    || (parsable.getOsConstraints() != null && !parsable.getOsConstraints().isEmpty()))
+            {
+                excluded.add(path);
+            }
+        }
+        for (PackFile file : packInfo.getPackFiles())
+        {
+            String path = file.getTargetPath();
+            ParsableFile parsable = parsables.get(path);
+            if (parsable != null && !file.isDirectory())
+            {
+                file.setParsableTarget(true);
+                if (!excluded.contains(path) && !file.isPack200Jar())
+                {
+                    file.setParsable(parsable.getType(), parsable.getEncoding());
+                }
+            }
+        }
+    }
+
     /**
      * Returns the installer jar stream.
      *
@@ -0,0 +1,355 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.data;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * A {@link DefaultVariables} whose variables are held in a concurrent map, so that they may be read and written
+ * by several threads without contending on a global lock.
+ * <p/>
+ * In addition, listeners may subscribe to changes to individual variables, or to all variables whose names start
+ * with a prefix, and immutable snapshots of the variables may be taken. A snapshot is only copied if a variable
+ * has changed since the last one was taken.
+ * <p/>
+ * As the variables aren't held in {@code Properties}, {@link #getProperties()} returns a copy of them.
+ *
+ * @author Tim Anderson
+ */
+public class ConcurrentVariables extends DefaultVariables
+{
+
+    /**
+     * The variable values, keyed on name.
+     */
+    private final ConcurrentMap<String, String> values = new ConcurrentHashMap<String, String>();
+
+    /**
+     * The subscriptions.
+     */
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<Subscription>();
+
+    /**
+     * The most recent snapshot.
+     */
+    private volatile Snapshot snapshot;
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(ConcurrentVariables.class.getName());
+
+
+    /**
+     * Constructs a {@code ConcurrentVariables}, with an empty set of variables.
+     */
+    public ConcurrentVariables()
+    {
+        this(new Properties());
+    }
+
+    /**
+     * Constructs a {@code ConcurrentVariables}, initialised from properties.
+     * <p/>
+     * The properties are copied; subsequent changes to them aren't reflected in the variables.
+     *
+     * @param properties the properties
+     */
+    public ConcurrentVariables(Properties properties)
+    {
+        for (String name : properties.stringPropertyNames())
+        {
+            values.put(name, properties.getProperty(name));
+        }
+    }
+
+    /**
+     * Subscribes to changes to a variable.
+     *
+     * @param name     the variable name
+     * @param listener the listener to notify
+     */
+    public void addListener(String name, Listener listener)
+    {
+        subscriptions.add(new Subscription(name, false, listener));
+    }
+
+    /**
+     * Subscribes to changes to all variables whose names start with a prefix.
+     *
+     * @param prefix   the variable name prefix. An empty prefix matches all variables
+     * @param listener the listener to notify
+     */
+    public void addPrefixListener(String prefix, Listener listener)
+    {
+        subscriptions.add(new Subscription(prefix, true, listener));
+    }
+
+    /**
+     * Removes all subscriptions for a listener.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeListener(Listener listener)
+    {
+        for (Subscription subscription : subscriptions)
+        {
+            if (subscription.listener == listener)
+            {
+                subscriptions.remove(subscription);
+            }
+        }
+    }
+
+    /**
+     * Returns a snapshot of the variables.
+     * <p/>
+     * If no variable has changed since the previous snapshot was taken, it is returned.
+     *
+     * @return a snapshot of the variables
+     */
+    public Snapshot getSnapshot()
+    {
+        Snapshot result = snapshot;
+        long version = getVersion();
+        if (result == null || result.getVersion() != version)
+        {
+            // the version is read before the copy, so the copy is at least as recent as it
+            result = new Snapshot(new HashMap<String, String>(values), version);
+            snapshot = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns a copy of the variables as properties.
+     * <p/>
+     * Changes to the copy aren't reflected in the variables.
+     *
+     * @return a copy of the variables
+     */
+    @Override
+    public Properties getProperties()
+    {
+        Properties result = new Properties();
+        result.putAll(values);
+        return result;
+    }
+
+    /**
+     * Returns the value of a variable, without recording it as read.
+     *
+     * @param name the variable name
+     * @return the value. May be {@code null}
+     */
+    @Override
+    protected String lookup(String name)
+    {
+        return values.get(name);
+    }
+
+    /**
+     * Stores the value of a variable.
+     *
+     * @param name  the variable name
+     * @param value the variable value, or {@code null} to remove it
+     * @return the previous value. May be {@code null}
+     */
+    @Override
+    protected String store(String name, String value)
+    {
+        return (value != null) ? values.put(name, value) : values.remove(name);
+    }
+
+    /**
+     * Invoked when a variable is set to a different value, or unset.
+     * <p/>
+     * This notifies the listeners subscribed to the variable, in the thread that changed it. Exceptions thrown by
+     * listeners are logged, and don't prevent other listeners from being notified.
+     *
+     * @param name     the variable name
+     * @param oldValue the previous value. May be {@code null}
+     * @param newValue the new value. May be {@code null}
+     * @param version  the version of the variable after the change
+     */
+    @Override
+    protected void changed(String name, String oldValue, String newValue, long version)
+    {
+        for (Subscription subscription : subscriptions)
+        {
+            if (subscription.matches(name))
+            {
+                try
+                {
+                    subscription.listener.changed(name, oldValue, newValue, version);
+                }
+                catch (Throwable exception)
+                {
+                    logger.log(Level.WARNING, "Listener failed for change to variable " + name, exception);
+                }
+            }
+        }
+    }
+
+    /**
+     * Listener for variable changes.
+     */
+    public interface Listener
+    {
+
+        /**
+         * Invoked when a variable is set to a different value, or unset.
+         *
+         * @param name     the variable name
+         * @param oldValue the previous value. May be {@code null}
+         * @param newValue the new value. May be {@code null}
+         * @param version  the version of the variable after the change
+         */
+        void changed(String name, String oldValue, String newValue, long version);
+    }
+
+    /**
+     * An immutable snapshot of the variables.
+     */
+    public static class Snapshot
+    {
+
+        /**
+         * The variable values, keyed on name.
+         */
+        private final Map<String, String> values;
+
+        /**
+         * The version of the variables when the snapshot was taken.
+         */
+        private final long version;
+
+        /**
+         * Constructs a {@code Snapshot}.
+         *
+         * @param values  the variable values, keyed on name
+         * @param version the version of the variables
+         */
+        private Snapshot(Map<String, String> values, long version)
+        {
+            this.values = Collections.unmodifiableMap(values);
+            this.version = version;
+        }
+
+        /**
+         * Returns the value of a variable.
+         *
+         * @param name the variable name
+         * @return the value. May be {@code null}
+         */
+        public String get(String name)
+        {
+            return values.get(name);
+        }
+
+        /**
+         * Returns the variable names.
+         *
+         * @return the variable names
+         */
+        public Set<String> getNames()
+        {
+            return values.keySet();
+        }
+
+        /**
+         * Returns the variable values.
+         *
+         * @return the variable values, keyed on name
+         */
+        public Map<String, String> getValues()
+        {
+            return values;
+        }
+
+        /**
+         * Returns the version of the variables when the snapshot was taken.
+         *
+         * @return the version
+         */
+        public long getVersion()
+        {
+            return version;
+        }
+    }
+
+    /**
+     * A listener's subscription to a variable, or to variables with a common prefix.
+     */
+    private static class Subscription
+    {
+
+        /**
+         * The variable name, or prefix.
+         */
+        private final String name;
+
+        /**
+         * Determines if the name is a prefix.
+         */
+        private final boolean prefix;
+
+        /**
+         * The listener.
+         */
+        private final Listener listener;
+
+        /**
+         * Constructs a {@code Subscription}.
+         *
+         * @param name     the variable name, or prefix
+         * @param prefix   if {@code true}, the name is a prefix
+         * @param listener the listener
+         */
+        public Subscription(String name, boolean prefix, Listener listener)
+        {
+            this.name = name;
+            this.prefix = prefix;
+            this.listener = listener;
+        }
+
+        /**
+         * Determines if the subscription matches a variable.
+         *
+         * @param variable the variable name
+         * @return {@code true} if the subscription matches the variable
+         */
+        public boolean matches(String variable)
+        {
+            return prefix ? variable.startsWith(name) : variable.equals(name);
+        }
+    }
+}
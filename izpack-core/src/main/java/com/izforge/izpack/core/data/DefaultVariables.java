@@ -22,28 +22,36 @@
 package com.izforge.izpack.core.data;
 
 import java.util.ArrayDeque;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.izforge.izpack.api.data.DynamicVariable;
+import com.izforge.izpack.api.data.Value;
 import com.izforge.izpack.api.data.Variables;
 import com.izforge.izpack.api.exception.InstallerException;
-import com.izforge.izpack.api.exception.IzPackException;
 import com.izforge.izpack.api.rules.RulesEngine;
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
+import com.izforge.izpack.core.variable.PlainValue;
+import com.izforge.izpack.util.Tracer;
 
 
 /**
  * Default implementation of the {@link Variables} interface.
+ * <p/>
+ * Each change to a variable is versioned. The variables read by a thread may also be tracked, via
+ * {@link #startTracking()} and {@link #stopTracking()}, so that values derived from them can be cached until
+ * one of them changes. Changes made directly to the {@link #getProperties() properties} bypass versioning.
  *
  * @author Tim Anderson
  */
@@ -58,7 +66,7 @@ public class DefaultVariables implements Variables
     /**
      * The dynamic variables.
      */
-    private List<DynamicVariable> dynamicVariables = new ArrayList<DynamicVariable>();
+    private final DynamicVariableGraph graph = new DynamicVariableGraph(this);
 
     /**
      * The variable replacer.
@@ -75,6 +83,21 @@ public class DefaultVariables implements Variables
      */
     private transient Map<String, Deque<Object>> blockedVariableNameStacks = new HashMap<String, Deque<Object>>();
 
+    /**
+     * The version of each variable that has been changed.
+     */
+    private final ConcurrentMap<String, Long> versions = new ConcurrentHashMap<String, Long>();
+
+    /**
+     * The version of the variables.
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * The names of the variables read by each thread, for each level of tracking.
+     */
+    private final ThreadLocal<Deque<Set<String>>> tracking = new ThreadLocal<Deque<Set<String>>>();
+
 
     /**
      * The logger.
@@ -97,7 +120,15 @@ public class DefaultVariables implements Variables
     public DefaultVariables(Properties properties)
     {
         this.properties = properties;
-        replacer = new VariableSubstitutorImpl(properties);
+        replacer = new VariableSubstitutorImpl(properties)
+        {
+            @Override
+            public Value getValue(String name)
+            {
+                read(name);
+                return new PlainValue(lookup(name));
+            }
+        };
     }
 
     /**
@@ -119,16 +150,31 @@ public class DefaultVariables implements Variables
     @Override
     public void set(String name, String value)
     {
+        String old = store(name, value);
         if (value != null)
         {
-            properties.setProperty(name, value);
             logger.fine("Dynamic variable '" + name + "' set to '" + value + "'");
         }
         else
         {
-            properties.remove(name);
             logger.fine("Dynamic variable '" + name + "' unset");
         }
+        if (old == null ? value != null : !old.equals(value))
+        {
+            long newVersion = version.incrementAndGet();
+            Long current = versions.putIfAbsent(name, newVersion);
+            while (current != null && current < newVersion && !versions.replace(name, current, newVersion))
+            {
+                // a concurrent change to the same variable intervened. Versions of a variable only ever increase
+                current = versions.get(name);
+            }
+            if (Tracer.isEnabled())
+            {
+                // values aren't traced, as they may be passwords
+                Tracer.event("variable", 0, "name", name, "version", newVersion, "set", value != null);
+            }
+            changed(name, old, value, newVersion);
+        }
     }
 
     /**
@@ -140,7 +186,8 @@ public class DefaultVariables implements Variables
     @Override
     public String get(String name)
     {
-        return properties.getProperty(name);
+        read(name);
+        return lookup(name);
     }
 
     /**
@@ -152,7 +199,9 @@ public class DefaultVariables implements Variables
     @Override
     public String get(String name, String defaultValue)
     {
-        return properties.getProperty(name, defaultValue);
+        read(name);
+        String value = lookup(name);
+        return (value != null) ? value : defaultValue;
     }
 
     /**
@@ -291,6 +340,90 @@ public class DefaultVariables implements Variables
         return value;
     }
 
+    /**
+     * Returns the version of the variables.
+     * <p/>
+     * This is incremented each time a variable is set to a different value, or unset.
+     *
+     * @return the version
+     */
+    @Override
+    public long getVersion()
+    {
+        return version.get();
+    }
+
+    /**
+     * Returns the version of a variable.
+     *
+     * @param name the variable name
+     * @return the variable version, or {@code 0} if the variable has never been set
+     */
+    @Override
+    public long getVersion(String name)
+    {
+        Long result = versions.get(name);
+        return (result != null) ? result : 0;
+    }
+
+    /**
+     * Starts tracking the variables read by the current thread.
+     * <p/>
+     * Tracking may be nested. Variables read at an inner level are also reported to the enclosing levels.
+     */
+    public void startTracking()
+    {
+        Deque<Set<String>> stack = tracking.get();
+        if (stack == null)
+        {
+            stack = new ArrayDeque<Set<String>>();
+            tracking.set(stack);
+        }
+        stack.push(new HashSet<String>());
+    }
+
+    /**
+     * Stops tracking the variables read by the current thread.
+     *
+     * @return the names of the variables read since the matching {@link #startTracking()}
+     * @throws IllegalStateException if tracking wasn't started
+     */
+    public Set<String> stopTracking()
+    {
+        Deque<Set<String>> stack = tracking.get();
+        if (stack == null || stack.isEmpty())
+        {
+            throw new IllegalStateException("Variables are not being tracked");
+        }
+        Set<String> result = stack.pop();
+        if (stack.isEmpty())
+        {
+            tracking.remove();
+        }
+        else
+        {
+            stack.peek().addAll(result);
+        }
+        return result;
+    }
+
+    /**
+     * Reports variables as having been read by the current thread, if it is tracking variables.
+     * <p/>
+     * This is used when a value derived from the variables is cached, so that enclosing levels of tracking depend
+     * on the same variables.
+     *
+     * @param names the variable names
+     */
+    public void read(Collection<String> names)
+    {
+        Deque<Set<String>> stack = tracking.get();
+        if (stack != null)
+        {
+            stack.peek().addAll(names);
+        }
+    }
+
     /**
      * Adds a dynamic variable.
      *
@@ -299,7 +432,7 @@ public class DefaultVariables implements Variables
     @Override
     public synchronized void add(DynamicVariable variable)
     {
-        dynamicVariables.add(variable);
+        graph.add(variable);
     }
 
     /**
@@ -311,112 +444,11 @@ public class DefaultVariables implements Variables
     public synchronized void refresh() throws InstallerException
     {
         logger.fine("Refreshing dynamic variables");
-        Set<DynamicVariable> checkedVariables = new HashSet<DynamicVariable>();
-        // for dependent dynamic variables a size of dynamicVariables.size()+1 would be enough
-        // in case of conditions, which depend on dynamic variables also, we need more iterations
-        // to be on the safe side, we take 10*dynamicVariables.size()+1
-        int maxCount = 10*dynamicVariables.size()+1;
-        int count=maxCount;
-        boolean changed = true;
-        while (changed) {
-            changed = false;
-            count--;		// decrement number of remaining loops
-            if (count<0) {
-            	throw new InstallerException(
-            		String.format("Refresh of dynamic variables seem to produce a loop. "
-            				     +"Stopped after %1s iterations. "
-            				     +"(Maybe a cyclic dependency of variables?)", maxCount));
-            }
-            Properties setVariables = new Properties();
-            Set<String> unsetVariables = new HashSet<String>();
-
-            for (DynamicVariable variable : dynamicVariables)
-            {
-                String name = variable.getName();
-                if (!isBlockedVariableName(name))
-                {
-                    String conditionId = variable.getConditionid();
-                    if (conditionId == null || rules.isConditionTrue(conditionId))
-                    {
-                        if (!(variable.isCheckonce() && variable.isChecked()))
-                        {
-                            String newValue;
-                            try
-                            {
-                                newValue = variable.evaluate(replacer);
-                            }
-                            catch (IzPackException exception)
-                            {
-                                throw exception;
-                            }
-                            catch (Exception exception)
-                            {
-                                throw new IzPackException("Failed to refresh dynamic variable (" + name + ")", exception);
-                            }
-                            if (newValue == null)
-                            {
-                                // Mark unset if dynamic variable cannot be evaluated and failOnError set
-                                unsetVariables.add(name);
-                            }
-                            else
-                            {
-                                setVariables.put(name, newValue);
-                            }
-                            if (newValue==null || ! newValue.contains("$"))
-                            {
-                                variable.setChecked();
-                            } else {
-                                checkedVariables.add(variable);
-                            }
-                        }
-                        else
-                        {
-                            String oldvalue = properties.getProperty(name);
-                            if (oldvalue != null)
-                            {
-                                setVariables.put(name, oldvalue);
-                            }
-                        }
-                    }
-                    else
-                    {
-                        // Mark unset if condition is not true
-                        unsetVariables.add(name);
-                    }
-                }
-                else {
-                    logger.fine("Dynamic variable '" + name + "' blocked from changing due to user input");
-                }
-            }
-
-            for (String key : unsetVariables)
-            {
-                // Don't unset dynamic variable from one definition, which
-                // are set to a value from another one during this refresh
-                if (!setVariables.containsKey(key))
-                {
-                    if (get(key)!=null)
-                    {
-                        changed = true;
-                        set(key, null);
-                    }
-                }
-            }
-
-            for (String key : setVariables.stringPropertyNames())
-            {
-                String newValue = setVariables.getProperty(key);
-                String oldValue = get(key);
-                if (oldValue==null || ! oldValue.equals(newValue))
-                {
-                    changed = true;
-                    set(key,newValue);
-                }
-            }
-        }
-        for (DynamicVariable variable : checkedVariables)
+        long start = Tracer.start();
+        int evaluated = graph.refresh(rules, replacer);
+        if (Tracer.isEnabled())
         {
-            variable.setChecked();
+            Tracer.event("refresh", start, "evaluated", evaluated);
         }
     }
 
@@ -471,4 +503,58 @@ public class DefaultVariables implements Variables
         Deque<Object> blockerStack = blockedVariableNameStacks.get(name);
         return (blockerStack != null && !blockerStack.isEmpty());
     }
+
+    /**
+     * Invoked when a variable is set to a different value, or unset.
+     * <p/>
+     * This implementation is a no-op.
+     *
+     * @param name     the variable name
+     * @param oldValue the previous value. May be {@code null}
+     * @param newValue the new value. May be {@code null}
+     * @param version  the version of the variable after the change
+     */
+    protected void changed(String name, String oldValue, String newValue, long version)
+    {
+    }
+
+    /**
+     * Returns the value of a variable, without recording it as read.
+     * <p/>
+     * Subclasses that hold the variables elsewhere must override this, {@link #store} and {@link #getProperties}.
+     *
+     * @param name the variable name
+     * @return the value. May be {@code null}
+     */
+    protected String lookup(String name)
+    {
+        return properties.getProperty(name);
+    }
+
+    /**
+     * Stores the value of a variable.
+     *
+     * @param name  the variable name
+     * @param value the variable value, or {@code null} to remove it
+     * @return the previous value. May be {@code null}
+     */
+    protected String store(String name, String value)
+    {
+        Object old = (value != null) ? properties.setProperty(name, value) : properties.remove(name);
+        return (old != null) ? old.toString() : null;
+    }
+
+    /**
+     * Records a variable as having been read by the current thread, if it is tracking variables.
+     *
+     * @param name the variable name
+     */
+    private void read(String name)
+    {
+        Deque<Set<String>> stack = tracking.get();
+        if (stack != null)
+        {
+            stack.peek().add(name);
+        }
+    }
 }
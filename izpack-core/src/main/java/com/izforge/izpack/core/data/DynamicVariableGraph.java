@@ -0,0 +1,734 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.core.data;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.izforge.izpack.api.data.DynamicVariable;
+import com.izforge.izpack.api.data.InstallData;
+import com.izforge.izpack.api.data.Value;
+import com.izforge.izpack.api.exception.InstallerException;
+import com.izforge.izpack.api.exception.IzPackException;
+import com.izforge.izpack.api.rules.Condition;
+import com.izforge.izpack.api.rules.RulesEngine;
+import com.izforge.izpack.api.substitutor.VariableSubstitutor;
+import com.izforge.izpack.core.variable.EnvironmentValue;
+import com.izforge.izpack.core.variable.PlainValue;
+
+
+/**
+ * The dependency graph of dynamic variables, used by {@link DefaultVariables} to refresh them.
+ * <p/>
+ * Each variable name is a node, evaluated from all of the dynamic variable definitions with that name. The
+ * variables read when evaluating a node, whether by its values or its conditions, are recorded, and are its
+ * dependencies.
+ * <p/>
+ * On refresh, only nodes whose dependencies have changed since they were last evaluated are re-evaluated, in
+ * topological order. When a node's value changes, the nodes that read it are re-evaluated in turn. Nodes whose
+ * values or conditions depend on more than variables, such as the output of a command or the content of a file, are
+ * re-evaluated on every refresh.
+ * <p/>
+ * Cycles, including variables that read themselves, are detected whenever the nodes are ordered, which happens
+ * during a refresh as soon as the variables a node reads change. A cycle of value references, where each value
+ * refers to the next variable in the cycle, fails the refresh unless one of its variables is check-once, as
+ * only that can break it. Cycles that pass through conditions are permitted, as the conditions may select values
+ * that break the cycle. Their nodes are re-evaluated until they stabilise, failing the refresh if they don't.
+ *
+ * @author Tim Anderson
+ */
+class DynamicVariableGraph
+{
+
+    /**
+     * The variables.
+     */
+    private final DefaultVariables variables;
+
+    /**
+     * The nodes, keyed on variable name, in order of declaration.
+     */
+    private final Map<String, Node> nodes = new LinkedHashMap<String, Node>();
+
+    /**
+     * The nodes that read each variable.
+     */
+    private final Map<String, Set<Node>> readers = new HashMap<String, Set<Node>>();
+
+    /**
+     * Determines if the nodes have been ordered since the graph last changed.
+     */
+    private boolean ordered;
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(DynamicVariableGraph.class.getName());
+
+
+    /**
+     * Constructs a {@code DynamicVariableGraph}.
+     *
+     * @param variables the variables
+     */
+    public DynamicVariableGraph(DefaultVariables variables)
+    {
+        this.variables = variables;
+    }
+
+    /**
+     * Adds a dynamic variable.
+     *
+     * @param variable the variable to add
+     */
+    public void add(DynamicVariable variable)
+    {
+        String name = variable.getName();
+        Node node = nodes.get(name);
+        if (node == null)
+        {
+            node = new Node(name, nodes.size());
+            nodes.put(name, node);
+        }
+        node.definitions.add(variable);
+        node.evaluated = false;
+        ordered = false;
+    }
+
+    /**
+     * Refreshes the dynamic variables.
+     *
+     * @param rules    the rules, used to evaluate conditions
+     * @param replacer the replacer, used to evaluate values
+     * @return the number of nodes evaluated
+     * @throws InstallerException if the variables have a cyclic dependency of value references, or don't stabilise
+     * @throws IzPackException    if a variable cannot be evaluated
+     */
+    public int refresh(RulesEngine rules, VariableSubstitutor replacer)
+    {
+        if (!ordered)
+        {
+            order();
+        }
+        TreeSet<Node> queue = new TreeSet<Node>();
+        for (Node node : nodes.values())
+        {
+            if (node.isDirty())
+            {
+                queue.add(node);
+            }
+        }
+        Set<DynamicVariable> checked = new HashSet<DynamicVariable>();
+        Map<Node, Integer> counts = new HashMap<Node, Integer>();
+        int limit = nodes.size() + 1;
+        int evaluated = 0;
+        while (!queue.isEmpty())
+        {
+            if (!ordered)
+            {
+                // the variables read have changed, so detect any cycles, and re-rank the queued nodes
+                List<Node> queued = new ArrayList<Node>(queue);
+                order();
+                queue = new TreeSet<Node>(queued);
+            }
+            Node node = queue.pollFirst();
+            if (variables.isBlockedVariableName(node.name))
+            {
+                logger.fine("Dynamic variable '" + node.name + "' blocked from changing due to user input");
+                node.evaluated = false;
+                continue;
+            }
+            Integer count = counts.get(node);
+            count = (count == null) ? 1 : count + 1;
+            if (count > limit)
+            {
+                throw new InstallerException("Refresh of dynamic variables seem to produce a loop. Stopped after "
+                                                     + limit + " evaluations of " + node.name
+                                                     + " (Maybe a cyclic dependency of variables?)");
+            }
+            counts.put(node, count);
+            ++evaluated;
+            if (node.refresh(rules, replacer, checked))
+            {
+                Set<Node> dependents = readers.get(node.name);
+                if (dependents != null)
+                {
+                    queue.addAll(dependents);
+                }
+            }
+        }
+        for (DynamicVariable variable : checked)
+        {
+            variable.setChecked();
+        }
+        if (!ordered)
+        {
+            // detect any cycles introduced by the variables read by the last node evaluated
+            order();
+        }
+        return evaluated;
+    }
+
+    /**
+     * Orders the nodes topologically, so that each node is evaluated after the nodes it reads.
+     * <p/>
+     * This uses Tarjan's algorithm to find the strongly connected components of the graph, which are produced in
+     * reverse topological order. Any component with more than one node, or a node that reads itself, is a cycle.
+     *
+     * @throws InstallerException if the variables have a cyclic dependency of value references that no check-once
+     *                            variable breaks
+     */
+    private void order()
+    {
+        Tarjan values = new Tarjan(true);
+        values.visitAll();
+        for (List<Node> cycle : values.cycles)
+        {
+            if (!isCheckOnce(cycle))
+            {
+                throw new InstallerException("Refresh of dynamic variables seem to produce a loop. "
+                                                     + "Dynamic variables have a cyclic dependency: "
+                                                     + getNames(cycle));
+            }
+        }
+        Tarjan all = new Tarjan(false);
+        all.visitAll();
+        if (!all.cycles.isEmpty() && logger.isLoggable(Level.FINE))
+        {
+            List<List<String>> names = new ArrayList<List<String>>();
+            for (List<Node> cycle : all.cycles)
+            {
+                names.add(getNames(cycle));
+            }
+            logger.fine("Dynamic variables have a cyclic dependency: " + names);
+        }
+        ordered = true;
+    }
+
+    /**
+     * Determines if any node in a cycle has a check-once definition, which may break the cycle.
+     *
+     * @param cycle the nodes in the cycle
+     * @return {@code true} if a node has a check-once definition
+     */
+    private static boolean isCheckOnce(List<Node> cycle)
+    {
+        for (Node node : cycle)
+        {
+            for (DynamicVariable variable : node.definitions)
+            {
+                if (variable.isCheckonce())
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the variable names of nodes.
+     *
+     * @param nodes the nodes
+     * @return the variable names
+     */
+    private static List<String> getNames(List<Node> nodes)
+    {
+        List<String> result = new ArrayList<String>();
+        for (Node node : nodes)
+        {
+            result.add(node.name);
+        }
+        return result;
+    }
+
+    /**
+     * Updates the index of the nodes that read each variable.
+     *
+     * @param node   the node
+     * @param before the variables the node previously read
+     * @param after  the variables the node now reads
+     * @return {@code true} if the variables read changed
+     */
+    private boolean updateReaders(Node node, Set<String> before, Set<String> after)
+    {
+        boolean changed = false;
+        for (String name : before)
+        {
+            if (!after.contains(name))
+            {
+                readers.get(name).remove(node);
+                changed = true;
+            }
+        }
+        for (String name : after)
+        {
+            if (!before.contains(name))
+            {
+                Set<Node> set = readers.get(name);
+                if (set == null)
+                {
+                    set = new HashSet<Node>();
+                    readers.put(name, set);
+                }
+                set.add(node);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Determines if a dynamic variable value depends only on variables.
+     *
+     * @param variable the dynamic variable
+     * @return {@code true} if the value depends only on variables and the environment
+     */
+    private static boolean isPure(DynamicVariable variable)
+    {
+        Value value = variable.getValue();
+        return value == null || value instanceof PlainValue || value instanceof EnvironmentValue;
+    }
+
+    /**
+     * A variable name, and the dynamic variables that define it.
+     */
+    private class Node implements Comparable<Node>
+    {
+
+        /**
+         * The variable name.
+         */
+        private final String name;
+
+        /**
+         * The declaration order.
+         */
+        private final int index;
+
+        /**
+         * The dynamic variable definitions, in order of declaration.
+         */
+        private final List<DynamicVariable> definitions = new ArrayList<DynamicVariable>();
+
+        /**
+         * The versions of the variables read when the node was last evaluated, keyed on name.
+         */
+        private Map<String, Long> reads = new HashMap<String, Long>();
+
+        /**
+         * The variables read by values, rather than conditions, when the node was last evaluated.
+         */
+        private Set<String> valueReads = new HashSet<String>();
+
+        /**
+         * The version of the variable after the node was last evaluated.
+         */
+        private long version;
+
+        /**
+         * Determines if the node has been evaluated since it last changed.
+         */
+        private boolean evaluated;
+
+        /**
+         * Determines if the node depends on more than variables, and must be evaluated on every refresh.
+         */
+        private boolean external;
+
+        /**
+         * The topological rank.
+         */
+        private int rank = -1;
+
+        /**
+         * Constructs a {@code Node}.
+         *
+         * @param name  the variable name
+         * @param index the declaration order
+         */
+        public Node(String name, int index)
+        {
+            this.name = name;
+            this.index = index;
+        }
+
+        /**
+         * Determines if the node needs to be evaluated.
+         *
+         * @return {@code true} if the node has never been evaluated, depends on more than variables, or if a variable
+         *         it read, or the variable itself, has changed since it was evaluated
+         */
+        public boolean isDirty()
+        {
+            if (!evaluated || external || variables.getVersion(name) != version)
+            {
+                return true;
+            }
+            for (Map.Entry<String, Long> entry : reads.entrySet())
+            {
+                if (variables.getVersion(entry.getKey()) != entry.getValue())
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Evaluates the node, and updates the variable.
+         * <p/>
+         * If any definition's condition is true, the variable is set to the value of the last such definition.
+         * Otherwise, it is unset.
+         *
+         * @param rules    the rules, used to evaluate conditions
+         * @param replacer the replacer, used to evaluate values
+         * @param checked  collects check-once variables to mark as checked once the refresh completes
+         * @return {@code true} if the variable changed
+         */
+        public boolean refresh(RulesEngine rules, VariableSubstitutor replacer, Set<DynamicVariable> checked)
+        {
+            String value = null;
+            boolean unset = false;
+            boolean isExternal = false;
+            Set<String> read;
+            Set<String> valueRead = new HashSet<String>();
+            variables.startTracking();
+            try
+            {
+                for (DynamicVariable variable : definitions)
+                {
+                    String conditionId = variable.getConditionid();
+                    if (conditionId != null && !isCacheable(rules.getCondition(conditionId)))
+                    {
+                        isExternal = true;
+                    }
+                    if (conditionId == null || rules.isConditionTrue(conditionId))
+                    {
+                        if (!(variable.isCheckonce() && variable.isChecked()))
+                        {
+                            isExternal |= !isPure(variable);
+                            String newValue;
+                            variables.startTracking();
+                            try
+                            {
+                                newValue = evaluate(variable, replacer);
+                            }
+                            finally
+                            {
+                                valueRead.addAll(variables.stopTracking());
+                            }
+                            if (newValue == null)
+                            {
+                                // Mark unset if dynamic variable cannot be evaluated and failOnError set
+                                unset = true;
+                            }
+                            else
+                            {
+                                value = newValue;
+                            }
+                            if (newValue == null || !newValue.contains("$"))
+                            {
+                                variable.setChecked();
+                            }
+                            else
+                            {
+                                checked.add(variable);
+                            }
+                        }
+                        else
+                        {
+                            String old = variables.lookup(name);
+                            if (old != null)
+                            {
+                                value = old;
+                            }
+                        }
+                    }
+                    else
+                    {
+                        // Mark unset if condition is not true
+                        unset = true;
+                    }
+                }
+            }
+            finally
+            {
+                read = variables.stopTracking();
+            }
+
+            Map<String, Long> versions = new HashMap<String, Long>();
+            for (String id : read)
+            {
+                versions.put(id, variables.getVersion(id));
+            }
+            if (updateReaders(this, reads.keySet(), read) || !valueReads.equals(valueRead))
+            {
+                ordered = false;
+            }
+            reads = versions;
+            valueReads = valueRead;
+            external = isExternal;
+
+            // Don't unset dynamic variable from one definition, which is set to a value from another one
+            boolean changed = false;
+            String current = variables.lookup(name);
+            if (value != null)
+            {
+                if (!value.equals(current))
+                {
+                    variables.set(name, value);
+                    changed = true;
+                }
+            }
+            else if (unset && current != null)
+            {
+                variables.set(name, null);
+                changed = true;
+            }
+            version = variables.getVersion(name);
+            evaluated = true;
+            return changed;
+        }
+
+        /**
+         * Orders nodes on topological rank, then declaration order.
+         *
+         * @param other the node to compare with
+         * @return the comparison result
+         */
+        @Override
+        public int compareTo(Node other)
+        {
+            if (rank != other.rank)
+            {
+                return (rank < other.rank) ? -1 : 1;
+            }
+            return (index < other.index) ? -1 : (index == other.index) ? 0 : 1;
+        }
+
+        /**
+         * Evaluates a dynamic variable definition.
+         *
+         * @param variable the variable
+         * @param replacer the replacer
+         * @return the value. May be {@code null}
+         * @throws IzPackException if the variable cannot be evaluated
+         */
+        private String evaluate(DynamicVariable variable, VariableSubstitutor replacer)
+        {
+            try
+            {
+                return variable.evaluate(replacer);
+            }
+            catch (IzPackException exception)
+            {
+                throw exception;
+            }
+            catch (Exception exception)
+            {
+                throw new IzPackException("Failed to refresh dynamic variable (" + name + ")", exception);
+            }
+        }
+
+        /**
+         * Determines if a condition's result depends only on these variables.
+         *
+         * @param condition the condition. May be {@code null}
+         * @return {@code true} if the condition is cacheable, and reads these variables
+         */
+        private boolean isCacheable(Condition condition)
+        {
+            if (condition == null || !condition.isCacheable())
+            {
+                return false;
+            }
+            InstallData installData = condition.getInstallData();
+            return installData == null || installData.getVariables() == variables;
+        }
+    }
+
+    /**
+     * Tarjan's strongly connected components algorithm.
+     */
+    private class Tarjan
+    {
+
+        /**
+         * Determines if only the variables read by values are followed.
+         */
+        private final boolean valuesOnly;
+
+        /**
+         * The visit order of each node.
+         */
+        private final Map<Node, Integer> indexes = new HashMap<Node, Integer>();
+
+        /**
+         * The lowest visit order reachable from each node.
+         */
+        private final Map<Node, Integer> lowLinks = new HashMap<Node, Integer>();
+
+        /**
+         * The nodes in the current path.
+         */
+        private final Deque<Node> stack = new ArrayDeque<Node>();
+
+        /**
+         * The nodes on the stack.
+         */
+        private final Set<Node> onStack = new HashSet<Node>();
+
+        /**
+         * The nodes in each cycle found.
+         */
+        private final List<List<Node>> cycles = new ArrayList<List<Node>>();
+
+        /**
+         * The next rank to assign.
+         */
+        private int rank;
+
+        /**
+         * Constructs a {@code Tarjan}.
+         *
+         * @param valuesOnly if {@code true}, only follow the variables read by values, and don't rank the nodes
+         */
+        public Tarjan(boolean valuesOnly)
+        {
+            this.valuesOnly = valuesOnly;
+        }
+
+        /**
+         * Visits all nodes.
+         */
+        public void visitAll()
+        {
+            for (Node node : nodes.values())
+            {
+                if (!visited(node))
+                {
+                    visit(node);
+                }
+            }
+        }
+
+        /**
+         * Determines if a node has been visited.
+         *
+         * @param node the node
+         * @return {@code true} if the node has been visited
+         */
+        public boolean visited(Node node)
+        {
+            return indexes.containsKey(node);
+        }
+
+        /**
+         * Visits a node and the nodes it reads, collecting the cycles and ranking each component found.
+         *
+         * @param node the node
+         */
+        public void visit(Node node)
+        {
+            int index = indexes.size();
+            indexes.put(node, index);
+            lowLinks.put(node, index);
+            stack.push(node);
+            onStack.add(node);
+            for (Node dependency : getDependencies(node))
+            {
+                if (!visited(dependency))
+                {
+                    visit(dependency);
+                    lowLinks.put(node, Math.min(lowLinks.get(node), lowLinks.get(dependency)));
+                }
+                else if (onStack.contains(dependency))
+                {
+                    lowLinks.put(node, Math.min(lowLinks.get(node), indexes.get(dependency)));
+                }
+            }
+            if (lowLinks.get(node).equals(index))
+            {
+                List<Node> component = new ArrayList<Node>();
+                Node member;
+                do
+                {
+                    member = stack.pop();
+                    onStack.remove(member);
+                    if (!valuesOnly)
+                    {
+                        member.rank = rank;
+                    }
+                    component.add(0, member);
+                }
+                while (member != node);
+                ++rank;
+                if (component.size() > 1 || getReads(node).contains(node.name))
+                {
+                    cycles.add(component);
+                }
+            }
+        }
+
+        /**
+         * Returns the nodes that a node reads.
+         *
+         * @param node the node
+         * @return the nodes read
+         */
+        private Collection<Node> getDependencies(Node node)
+        {
+            List<Node> result = new ArrayList<Node>();
+            for (String name : getReads(node))
+            {
+                Node dependency = nodes.get(name);
+                if (dependency != null)
+                {
+                    result.add(dependency);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Returns the names of the variables that a node reads.
+         *
+         * @param node the node
+         * @return the variable names
+         */
+        private Collection<String> getReads(Node node)
+        {
+            return valuesOnly ? node.valueReads : node.reads.keySet();
+        }
+    }
+}
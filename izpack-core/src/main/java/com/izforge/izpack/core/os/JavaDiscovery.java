@@ -0,0 +1,743 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.os;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.coi.tools.os.win.MSWinConstants;
+import com.izforge.izpack.api.exception.ResourceInterruptedException;
+import com.izforge.izpack.util.FileExecutor;
+import com.izforge.izpack.util.OsVersion;
+
+
+/**
+ * Discovers the Java installations on the local machine, and caches them for the installer session.
+ * <p/>
+ * Candidate locations are the running JRE, <em>JAVA_HOME</em>, the directories on the <em>PATH</em>, the
+ * platform's standard installation directories, the JavaSoft registry keys on Windows, and any user-configured
+ * roots. The candidates are examined in parallel. Versions are read from each installation's <em>release</em>
+ * file where present, and only determined by running <em>java -version</em> otherwise.
+ *
+ * @author Tim Anderson
+ */
+public class JavaDiscovery
+{
+
+    /**
+     * Variable specifying additional directories to search, separated by the path separator. Each directory may
+     * be a Java installation, or contain Java installations.
+     */
+    public static final String ROOTS = "izpack.java.roots";
+
+    /**
+     * The shared instance.
+     */
+    private static final JavaDiscovery INSTANCE = new JavaDiscovery();
+
+    /**
+     * The JavaSoft registry keys, under HKEY_LOCAL_MACHINE.
+     */
+    private static final String[] REGISTRY_KEYS = {"Software\\JavaSoft\\Java Development Kit",
+                                                   "Software\\JavaSoft\\JDK",
+                                                   "Software\\JavaSoft\\Java Runtime Environment",
+                                                   "Software\\JavaSoft\\JRE"};
+
+    /**
+     * The registry value holding the installation directory.
+     */
+    private static final String JAVA_HOME_VALUE = "JavaHome";
+
+    /**
+     * Pattern to extract the version from <em>java -version</em> output.
+     */
+    private static final Pattern VERSION = Pattern.compile("version \"([^\"]+)\"");
+
+    /**
+     * The examined directories, keyed on canonical path. The value is {@code null} if the directory isn't a Java
+     * installation.
+     */
+    private final Map<File, JavaInstallation> installations = new HashMap<File, JavaInstallation>();
+
+    /**
+     * The cached <em>java -version</em> output, keyed on canonical launcher path.
+     */
+    private final Map<File, String[]> versionOutput = new HashMap<File, String[]>();
+
+    /**
+     * The candidates from the environment and standard locations, or {@code null} if they haven't been determined.
+     */
+    private List<File> defaults;
+
+    /**
+     * The candidates from the registry, or {@code null} if the registry hasn't been searched.
+     */
+    private List<File> registry;
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(JavaDiscovery.class.getName());
+
+
+    /**
+     * Returns the shared instance.
+     *
+     * @return the shared instance
+     */
+    public static JavaDiscovery getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the Java installations.
+     * <p/>
+     * Installations are returned in the order in which they were found, so that the running JRE, <em>JAVA_HOME</em>
+     * and <em>PATH</em> take precedence over installations that merely exist.
+     *
+     * @param handler the registry handler. May be {@code null}, in which case the registry isn't searched
+     * @param roots   additional directories to search, separated by the path separator. May be {@code null}
+     * @return the Java installations
+     */
+    public List<JavaInstallation> getInstallations(RegistryDefaultHandler handler, String roots)
+    {
+        Set<File> candidates = new LinkedHashSet<File>(getDefaults());
+        candidates.addAll(getRegistryCandidates(handler));
+        if (roots != null)
+        {
+            for (String root : roots.split(File.pathSeparator))
+            {
+                if (root.trim().length() != 0)
+                {
+                    addRoot(new File(root.trim()), candidates);
+                }
+            }
+        }
+        probe(candidates);
+        Set<JavaInstallation> result = new LinkedHashSet<JavaInstallation>();
+        synchronized (this)
+        {
+            for (File candidate : candidates)
+            {
+                JavaInstallation installation = installations.get(canonical(candidate));
+                if (installation != null)
+                {
+                    result.add(installation);
+                }
+            }
+        }
+        return new ArrayList<JavaInstallation>(result);
+    }
+
+    /**
+     * Returns the first JDK.
+     *
+     * @param handler the registry handler. May be {@code null}, in which case the registry isn't searched
+     * @param roots   additional directories to search, separated by the path separator. May be {@code null}
+     * @return the first JDK, or {@code null} if none was found
+     */
+    public JavaInstallation getJDK(RegistryDefaultHandler handler, String roots)
+    {
+        for (JavaInstallation installation : getInstallations(handler, roots))
+        {
+            if (installation.isJDK())
+            {
+                return installation;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the Java installation in a directory.
+     *
+     * @param home the installation directory
+     * @return the installation, or {@code null} if the directory isn't a Java installation
+     */
+    public JavaInstallation getInstallation(File home)
+    {
+        File dir = canonical(home);
+        synchronized (this)
+        {
+            if (installations.containsKey(dir))
+            {
+                return installations.get(dir);
+            }
+        }
+        JavaInstallation result = examine(dir);
+        synchronized (this)
+        {
+            installations.put(dir, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the output of running <em>java -version</em>.
+     * <p/>
+     * The output is cached, so the launcher is only run once per installer session.
+     *
+     * @param java the path of the java launcher
+     * @return the standard output and standard error, or {@code null} if the launcher failed
+     */
+    public String[] getVersionOutput(File java)
+    {
+        File launcher = canonical(java);
+        String[] result;
+        synchronized (versionOutput)
+        {
+            if (versionOutput.containsKey(launcher))
+            {
+                result = versionOutput.get(launcher);
+                return (result != null) ? result.clone() : null;
+            }
+        }
+        // run the launcher without holding the lock, so that different launchers can be run concurrently
+        String[] output = new String[2];
+        int status = new FileExecutor().executeCommand(new String[]{launcher.getPath(), "-version"}, output);
+        result = (status == 0) ? output : null;
+        synchronized (versionOutput)
+        {
+            versionOutput.put(launcher, result);
+        }
+        return (result != null) ? result.clone() : null;
+    }
+
+    /**
+     * Locates a launcher on the <em>PATH</em>.
+     *
+     * @param name the launcher name, e.g. <em>"java"</em>
+     * @return the launcher, or {@code null} if it isn't on the path
+     */
+    public File findOnPath(String name)
+    {
+        String path = System.getenv("PATH");
+        if (path != null)
+        {
+            for (String dir : path.split(File.pathSeparator))
+            {
+                File launcher = getLauncher(new File(dir), name);
+                if (launcher != null)
+                {
+                    return launcher;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Discards all cached results.
+     */
+    public synchronized void clear()
+    {
+        installations.clear();
+        defaults = null;
+        registry = null;
+        synchronized (versionOutput)
+        {
+            versionOutput.clear();
+        }
+    }
+
+    /**
+     * Returns the candidates from the environment and the standard installation directories.
+     *
+     * @return the candidates
+     */
+    private synchronized List<File> getDefaults()
+    {
+        if (defaults == null)
+        {
+            Set<File> candidates = new LinkedHashSet<File>();
+            String javaHome = System.getProperty("java.home");
+            if (javaHome != null)
+            {
+                addHome(new File(javaHome), candidates);
+            }
+            String env = System.getenv("JAVA_HOME");
+            if (env != null && env.length() != 0)
+            {
+                addHome(new File(env), candidates);
+            }
+            String path = System.getenv("PATH");
+            if (path != null)
+            {
+                for (String dir : path.split(File.pathSeparator))
+                {
+                    File java = getLauncher(new File(dir), "java");
+                    if (java != null)
+                    {
+                        // resolve symbolic links such as /usr/bin/java -> /usr/lib/jvm/.../bin/java
+                        addHome(canonical(java).getParentFile().getParentFile(), candidates);
+                    }
+                }
+            }
+            if (OsVersion.IS_OSX)
+            {
+                File[] vms = new File("/Library/Java/JavaVirtualMachines").listFiles();
+                if (vms != null)
+                {
+                    for (File vm : vms)
+                    {
+                        candidates.add(new File(vm, "Contents/Home"));
+                    }
+                }
+            }
+            else if (OsVersion.IS_UNIX)
+            {
+                addRoot(new File("/usr/lib/jvm"), candidates);
+                addRoot(new File("/usr/java"), candidates);
+            }
+            defaults = new ArrayList<File>(candidates);
+        }
+        return defaults;
+    }
+
+    /**
+     * Returns the candidates from the JavaSoft registry keys.
+     * <p/>
+     * The registry is only searched once. It is accessed on the calling thread, as the native registry handler
+     * isn't thread safe.
+     *
+     * @param handler the registry handler. May be {@code null}
+     * @return the candidates
+     */
+    private synchronized List<File> getRegistryCandidates(RegistryDefaultHandler handler)
+    {
+        if (registry != null)
+        {
+            return registry;
+        }
+        RegistryHandler registryHandler = (handler != null && OsVersion.IS_WINDOWS) ? handler.getInstance() : null;
+        if (registryHandler == null)
+        {
+            return Collections.emptyList();
+        }
+        List<File> result = new ArrayList<File>();
+        synchronized (registryHandler)
+        {
+            int root = -1;
+            try
+            {
+                root = registryHandler.getRoot();
+                registryHandler.setRoot(MSWinConstants.HKEY_LOCAL_MACHINE);
+                for (String key : REGISTRY_KEYS)
+                {
+                    if (registryHandler.keyExist(key))
+                    {
+                        String[] versions = registryHandler.getSubkeys(key);
+                        if (versions != null)
+                        {
+                            for (String version : versions)
+                            {
+                                String path = getRegistryValue(registryHandler, key + "\\" + version);
+                                if (path != null)
+                                {
+                                    result.add(new File(path));
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            catch (Exception exception)
+            {
+                logger.log(Level.WARNING, "Failed to search registry for Java installations", exception);
+            }
+            finally
+            {
+                if (root != -1)
+                {
+                    try
+                    {
+                        registryHandler.setRoot(root);
+                    }
+                    catch (Exception exception)
+                    {
+                        logger.log(Level.WARNING, "Failed to restore registry root", exception);
+                    }
+                }
+            }
+        }
+        registry = result;
+        return registry;
+    }
+
+    /**
+     * Returns the <em>JavaHome</em> value of a registry key.
+     *
+     * @param handler the registry handler
+     * @param key     the key
+     * @return the value, or {@code null} if it doesn't exist
+     */
+    private String getRegistryValue(RegistryHandler handler, String key)
+    {
+        try
+        {
+            return handler.getValue(key, JAVA_HOME_VALUE).getStringData();
+        }
+        catch (Exception exception)
+        {
+            logger.fine("No " + JAVA_HOME_VALUE + " for " + key);
+            return null;
+        }
+    }
+
+    /**
+     * Examines candidate directories that haven't been examined before, in parallel.
+     *
+     * @param candidates the candidate directories
+     * @throws ResourceInterruptedException if the calling thread is interrupted
+     */
+    private void probe(Set<File> candidates)
+    {
+        final List<File> dirs = new ArrayList<File>();
+        synchronized (this)
+        {
+            for (File candidate : candidates)
+            {
+                File dir = canonical(candidate);
+                if (!installations.containsKey(dir) && !dirs.contains(dir))
+                {
+                    dirs.add(dir);
+                }
+            }
+        }
+        if (dirs.isEmpty())
+        {
+            return;
+        }
+        int threads = Math.min(dirs.size(), Math.max(2, Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+        {
+            public Thread newThread(Runnable runnable)
+            {
+                // don't prevent the installer from exiting
+                Thread thread = new Thread(runnable, "JavaDiscovery");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try
+        {
+            List<Future<JavaInstallation>> futures = new ArrayList<Future<JavaInstallation>>();
+            for (final File dir : dirs)
+            {
+                futures.add(executor.submit(new Callable<JavaInstallation>()
+                {
+                    public JavaInstallation call()
+                    {
+                        return examine(dir);
+                    }
+                }));
+            }
+            for (int i = 0; i < dirs.size(); ++i)
+            {
+                File dir = dirs.get(i);
+                try
+                {
+                    JavaInstallation installation = futures.get(i).get();
+                    synchronized (this)
+                    {
+                        installations.put(dir, installation);
+                    }
+                }
+                catch (ExecutionException exception)
+                {
+                    // not cached, so that it is examined again on the next probe
+                    logger.log(Level.WARNING, "Failed to examine Java installation: " + dir, exception.getCause());
+                }
+            }
+        }
+        catch (InterruptedException exception)
+        {
+            throw new ResourceInterruptedException("Installation cancelled");
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Examines a directory to determine if it is a Java installation.
+     *
+     * @param dir the canonical directory
+     * @return the installation, or {@code null} if the directory isn't a Java installation
+     */
+    private JavaInstallation examine(File dir)
+    {
+        File bin = new File(dir, "bin");
+        File java = getLauncher(bin, "java");
+        if (java == null)
+        {
+            return null;
+        }
+        String version = getReleaseVersion(dir);
+        if (version == null)
+        {
+            String[] output = getVersionOutput(java);
+            if (output != null)
+            {
+                // the version is written to stderr, but may vary across machines
+                Matcher matcher = VERSION.matcher(output[1] + "\n" + output[0]);
+                if (matcher.find())
+                {
+                    version = matcher.group(1);
+                }
+            }
+        }
+        return new JavaInstallation(dir, version, getLauncher(bin, "javac") != null);
+    }
+
+    /**
+     * Reads the version from the <em>release</em> file of a Java installation.
+     *
+     * @param dir the installation directory
+     * @return the version, or {@code null} if there is no release file, or it doesn't contain the version
+     */
+    private String getReleaseVersion(File dir)
+    {
+        File release = new File(dir, "release");
+        if (!release.isFile())
+        {
+            return null;
+        }
+        Properties properties = new Properties();
+        InputStream input = null;
+        try
+        {
+            input = new FileInputStream(release);
+            properties.load(input);
+        }
+        catch (IOException exception)
+        {
+            logger.log(Level.FINE, "Failed to read " + release, exception);
+        }
+        finally
+        {
+            if (input != null)
+            {
+                try
+                {
+                    input.close();
+                }
+                catch (IOException ignore)
+                {
+                    // no-op
+                }
+            }
+        }
+        String version = properties.getProperty("JAVA_VERSION");
+        if (version != null)
+        {
+            version = version.trim();
+            if (version.length() > 1 && version.startsWith("\"") && version.endsWith("\""))
+            {
+                version = version.substring(1, version.length() - 1);
+            }
+            if (version.length() == 0)
+            {
+                version = null;
+            }
+        }
+        return version;
+    }
+
+    /**
+     * Adds a Java installation directory to the candidates. If it is a JRE within a JDK, the JDK is added first.
+     *
+     * @param home       the installation directory
+     * @param candidates the candidates
+     */
+    private void addHome(File home, Set<File> candidates)
+    {
+        File parent = home.getParentFile();
+        if ("jre".equals(home.getName()) && parent != null && getLauncher(new File(parent, "bin"), "java") != null)
+        {
+            candidates.add(parent);
+        }
+        candidates.add(home);
+    }
+
+    /**
+     * Adds a root directory to the candidates. If the root is a Java installation, it is added, otherwise its
+     * sub-directories are added.
+     *
+     * @param root       the root directory
+     * @param candidates the candidates
+     */
+    private void addRoot(File root, Set<File> candidates)
+    {
+        if (getLauncher(new File(root, "bin"), "java") != null)
+        {
+            addHome(root, candidates);
+        }
+        else
+        {
+            File[] dirs = root.listFiles();
+            if (dirs != null)
+            {
+                for (File dir : dirs)
+                {
+                    if (dir.isDirectory())
+                    {
+                        addHome(dir, candidates);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a launcher in a directory.
+     *
+     * @param dir  the directory
+     * @param name the launcher name, without extension
+     * @return the launcher, or {@code null} if it doesn't exist
+     */
+    private static File getLauncher(File dir, String name)
+    {
+        File result = new File(dir, name);
+        if (!result.isFile())
+        {
+            result = new File(dir, name + ".exe");
+        }
+        return result.isFile() ? result : null;
+    }
+
+    /**
+     * Returns the canonical form of a file, resolving symbolic links where possible.
+     *
+     * @param file the file
+     * @return the canonical file, or the absolute file if it cannot be determined
+     */
+    private static File canonical(File file)
+    {
+        try
+        {
+            return file.getCanonicalFile();
+        }
+        catch (IOException exception)
+        {
+            return file.getAbsoluteFile();
+        }
+    }
+
+    /**
+     * A Java installation.
+     */
+    public static class JavaInstallation
+    {
+
+        /**
+         * The installation directory.
+         */
+        private final File home;
+
+        /**
+         * The version, or {@code null} if it is unknown.
+         */
+        private final String version;
+
+        /**
+         * Determines if the installation is a JDK.
+         */
+        private final boolean jdk;
+
+        /**
+         * Constructs a {@code JavaInstallation}.
+         *
+         * @param home    the installation directory
+         * @param version the version. May be {@code null}
+         * @param jdk     determines if the installation is a JDK
+         */
+        public JavaInstallation(File home, String version, boolean jdk)
+        {
+            this.home = home;
+            this.version = version;
+            this.jdk = jdk;
+        }
+
+        /**
+         * Returns the installation directory.
+         *
+         * @return the installation directory
+         */
+        public File getHome()
+        {
+            return home;
+        }
+
+        /**
+         * Returns the version.
+         *
+         * @return the version, or {@code null} if it is unknown
+         */
+        public String getVersion()
+        {
+            return version;
+        }
+
+        /**
+         * Determines if the installation is a JDK, i.e. it includes the compiler.
+         *
+         * @return {@code true} if the installation is a JDK
+         */
+        public boolean isJDK()
+        {
+            return jdk;
+        }
+
+        /**
+         * Returns a string representation of the installation.
+         *
+         * @return the installation directory and version
+         */
+        @Override
+        public String toString()
+        {
+            return home + " (" + version + ")";
+        }
+    }
+
+}
@@ -0,0 +1,497 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.core.rules;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * An immutable, parsed condition expression.
+ * <p/>
+ * Two syntaxes are supported:
+ * <ul>
+ * <li><em>simple</em> expressions, using <tt>+</tt> (AND), <tt>|</tt> (OR), <tt>\</tt> (XOR) and a leading
+ * <tt>!</tt> (NOT). These have no precedence, and group to the right, i.e. <tt>a+b|c</tt> is evaluated as
+ * <tt>a AND (b OR c)</tt>.</li>
+ * <li><em>complex</em> expressions, using <tt>&&</tt> (AND), <tt>||</tt> (OR), <tt>^</tt> (XOR), <tt>!</tt> (NOT)
+ * and parentheses. NOT binds tightest, followed by XOR, AND, then OR.</li>
+ * </ul>
+ * Expressions are parsed once, and may then be bound to conditions by the {@link RulesEngineImpl} each time the
+ * conditions they refer to change.
+ *
+ * @author Tim Anderson
+ */
+public abstract class ConditionExpression
+{
+
+    /**
+     * The AND operation type.
+     */
+    public static final String AND = "and";
+
+    /**
+     * The OR operation type.
+     */
+    public static final String OR = "or";
+
+    /**
+     * The XOR operation type.
+     */
+    public static final String XOR = "xor";
+
+
+    /**
+     * Parses a simple expression.
+     *
+     * @param expression the expression
+     * @return the parsed expression
+     * @throws IllegalArgumentException if the expression is invalid
+     */
+    public static ConditionExpression parseSimple(String expression)
+    {
+        if (expression.startsWith("!"))
+        {
+            return new Not(parseSimple(expression.substring(1)));
+        }
+        for (int i = 0; i < expression.length(); ++i)
+        {
+            String type = null;
+            switch (expression.charAt(i))
+            {
+                case '+':
+                    type = AND;
+                    break;
+                case '|':
+                    type = OR;
+                    break;
+                case '\\':
+                    type = XOR;
+                    break;
+                default:
+                    // part of an identifier
+            }
+            if (type != null)
+            {
+                ConditionExpression left = reference(expression.substring(0, i), expression);
+                ConditionExpression right = parseSimple(expression.substring(i + 1));
+                return new Operation(type, left, right);
+            }
+        }
+        return reference(expression, expression);
+    }
+
+    /**
+     * Parses a complex expression.
+     *
+     * @param expression the expression, excluding the leading <tt>@</tt>
+     * @return the parsed expression
+     * @throws IllegalArgumentException if the expression is invalid
+     */
+    public static ConditionExpression parseComplex(String expression)
+    {
+        return new ComplexParser(expression).parse();
+    }
+
+    /**
+     * Creates a reference to a condition.
+     *
+     * @param id         the condition identifier
+     * @param expression the expression being parsed
+     * @return a new reference
+     * @throws IllegalArgumentException if the identifier is empty
+     */
+    private static Reference reference(String id, String expression)
+    {
+        id = id.trim();
+        if (id.length() == 0)
+        {
+            throw new IllegalArgumentException("Missing condition identifier in expression: " + expression);
+        }
+        return new Reference(id);
+    }
+
+    /**
+     * A reference to a condition, by identifier.
+     */
+    public static final class Reference extends ConditionExpression
+    {
+
+        /**
+         * The condition identifier.
+         */
+        private final String id;
+
+        /**
+         * Constructs a {@code Reference}.
+         *
+         * @param id the condition identifier
+         */
+        public Reference(String id)
+        {
+            this.id = id;
+        }
+
+        /**
+         * Returns the condition identifier.
+         *
+         * @return the condition identifier
+         */
+        public String getId()
+        {
+            return id;
+        }
+
+        /**
+         * Returns a string representation of the expression.
+         *
+         * @return the condition identifier
+         */
+        @Override
+        public String toString()
+        {
+            return id;
+        }
+    }
+
+    /**
+     * Negates an expression.
+     */
+    public static final class Not extends ConditionExpression
+    {
+
+        /**
+         * The expression to negate.
+         */
+        private final ConditionExpression operand;
+
+        /**
+         * Constructs a {@code Not}.
+         *
+         * @param operand the expression to negate
+         */
+        public Not(ConditionExpression operand)
+        {
+            this.operand = operand;
+        }
+
+        /**
+         * Returns the expression to negate.
+         *
+         * @return the expression to negate
+         */
+        public ConditionExpression getOperand()
+        {
+            return operand;
+        }
+
+        /**
+         * Returns a string representation of the expression.
+         *
+         * @return a string representation of the expression
+         */
+        @Override
+        public String toString()
+        {
+            return "!" + operand;
+        }
+    }
+
+    /**
+     * An AND, OR or XOR of two or more expressions.
+     */
+    public static final class Operation extends ConditionExpression
+    {
+
+        /**
+         * The operation type. One of {@link #AND}, {@link #OR} or {@link #XOR}.
+         */
+        private final String type;
+
+        /**
+         * The operands.
+         */
+        private final List<ConditionExpression> operands;
+
+        /**
+         * Constructs an {@code Operation}.
+         *
+         * @param type     the operation type. One of {@link #AND}, {@link #OR} or {@link #XOR}
+         * @param operands the operands
+         */
+        public Operation(String type, ConditionExpression... operands)
+        {
+            this(type, Arrays.asList(operands));
+        }
+
+        /**
+         * Constructs an {@code Operation}.
+         *
+         * @param type     the operation type. One of {@link #AND}, {@link #OR} or {@link #XOR}
+         * @param operands the operands
+         */
+        public Operation(String type, List<ConditionExpression> operands)
+        {
+            this.type = type;
+            this.operands = Collections.unmodifiableList(new ArrayList<ConditionExpression>(operands));
+        }
+
+        /**
+         * Returns the operation type.
+         *
+         * @return one of {@link #AND}, {@link #OR} or {@link #XOR}
+         */
+        public String getType()
+        {
+            return type;
+        }
+
+        /**
+         * Returns the operands.
+         *
+         * @return the operands
+         */
+        public List<ConditionExpression> getOperands()
+        {
+            return operands;
+        }
+
+        /**
+         * Returns a string representation of the expression.
+         *
+         * @return a string representation of the expression
+         */
+        @Override
+        public String toString()
+        {
+            String operator = AND.equals(type) ? " && " : OR.equals(type) ? " || " : " ^ ";
+            StringBuilder result = new StringBuilder("(");
+            for (int i = 0; i < operands.size(); ++i)
+            {
+                if (i > 0)
+                {
+                    result.append(operator);
+                }
+                result.append(operands.get(i));
+            }
+            return result.append(")").toString();
+        }
+    }
+
+    /**
+     * Recursive descent parser for complex expressions.
+     * <p/>
+     * The grammar is:
+     * <pre>
+     * or      := and ('||' and)*
+     * and     := xor ('&&' xor)*
+     * xor     := not ('^' not)*
+     * not     := '!' not | primary
+     * primary := '(' or ')' | identifier
+     * </pre>
+     */
+    private static class ComplexParser
+    {
+
+        /**
+         * The expression being parsed.
+         */
+        private final String expression;
+
+        /**
+         * The current position in the expression.
+         */
+        private int pos;
+
+        /**
+         * Constructs a {@code ComplexParser}.
+         *
+         * @param expression the expression to parse
+         */
+        public ComplexParser(String expression)
+        {
+            this.expression = expression;
+        }
+
+        /**
+         * Parses the expression.
+         *
+         * @return the parsed expression
+         * @throws IllegalArgumentException if the expression is invalid
+         */
+        public ConditionExpression parse()
+        {
+            ConditionExpression result = parseOr();
+            skipWhitespace();
+            if (pos < expression.length())
+            {
+                throw error("Unexpected '" + expression.charAt(pos) + "'");
+            }
+            return result;
+        }
+
+        /**
+         * Parses an OR of one or more AND expressions.
+         *
+         * @return the parsed expression
+         */
+        private ConditionExpression parseOr()
+        {
+            List<ConditionExpression> operands = new ArrayList<ConditionExpression>();
+            operands.add(parseAnd());
+            while (accept("||"))
+            {
+                operands.add(parseAnd());
+            }
+            return (operands.size() == 1) ? operands.get(0) : new Operation(OR, operands);
+        }
+
+        /**
+         * Parses an AND of one or more XOR expressions.
+         *
+         * @return the parsed expression
+         */
+        private ConditionExpression parseAnd()
+        {
+            List<ConditionExpression> operands = new ArrayList<ConditionExpression>();
+            operands.add(parseXor());
+            while (accept("&&"))
+            {
+                operands.add(parseXor());
+            }
+            return (operands.size() == 1) ? operands.get(0) : new Operation(AND, operands);
+        }
+
+        /**
+         * Parses an XOR of one or more NOT expressions.
+         *
+         * @return the parsed expression
+         */
+        private ConditionExpression parseXor()
+        {
+            List<ConditionExpression> operands = new ArrayList<ConditionExpression>();
+            operands.add(parseNot());
+            while (accept("^"))
+            {
+                operands.add(parseNot());
+            }
+            return (operands.size() == 1) ? operands.get(0) : new Operation(XOR, operands);
+        }
+
+        /**
+         * Parses an optionally negated primary expression.
+         *
+         * @return the parsed expression
+         */
+        private ConditionExpression parseNot()
+        {
+            if (accept("!"))
+            {
+                return new Not(parseNot());
+            }
+            return parsePrimary();
+        }
+
+        /**
+         * Parses a parenthesised expression, or a condition identifier.
+         *
+         * @return the parsed expression
+         */
+        private ConditionExpression parsePrimary()
+        {
+            if (accept("("))
+            {
+                ConditionExpression result = parseOr();
+                if (!accept(")"))
+                {
+                    throw error("Missing ')'");
+                }
+                return result;
+            }
+            skipWhitespace();
+            int start = pos;
+            while (pos < expression.length() && !isOperator())
+            {
+                ++pos;
+            }
+            String id = expression.substring(start, pos).trim();
+            if (id.length() == 0)
+            {
+                throw error("Missing condition identifier");
+            }
+            return new Reference(id);
+        }
+
+        /**
+         * Determines if an operator or parenthesis starts at the current position.
+         *
+         * @return {@code true} if an operator or parenthesis starts at the current position
+         */
+        private boolean isOperator()
+        {
+            char ch = expression.charAt(pos);
+            return ch == '(' || ch == ')' || ch == '^' || expression.startsWith("&&", pos)
+                    || expression.startsWith("||", pos);
+        }
+
+        /**
+         * Consumes a token if it occurs at the current position, ignoring leading whitespace.
+         *
+         * @param token the token
+         * @return {@code true} if the token was consumed
+         */
+        private boolean accept(String token)
+        {
+            skipWhitespace();
+            if (expression.startsWith(token, pos))
+            {
+                pos += token.length();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Skips whitespace.
+         */
+        private void skipWhitespace()
+        {
+            while (pos < expression.length() && Character.isWhitespace(expression.charAt(pos)))
+            {
+                ++pos;
+            }
+        }
+
+        /**
+         * Creates an exception for a syntax error at the current position.
+         *
+         * @param message the error message
+         * @return a new exception
+         */
+        private IllegalArgumentException error(String message)
+        {
+            return new IllegalArgumentException(message + " at position " + pos + " in expression: " + expression);
+        }
+    }
+
+}
@@ -24,12 +24,16 @@ package com.izforge.izpack.core.rules;
 import java.io.OutputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.WeakHashMap;
 import java.util.logging.Logger;
 
 import com.izforge.izpack.api.adaptator.IXMLElement;
@@ -45,6 +49,7 @@ import com.izforge.izpack.api.rules.Condition;
 import com.izforge.izpack.api.rules.ConditionReference;
 import com.izforge.izpack.api.rules.ConditionWithMultipleOperands;
 import com.izforge.izpack.api.rules.RulesEngine;
+import com.izforge.izpack.core.data.DefaultVariables;
 import com.izforge.izpack.core.rules.logic.AndCondition;
 import com.izforge.izpack.core.rules.logic.NotCondition;
 import com.izforge.izpack.core.rules.logic.OrCondition;
@@ -61,6 +66,7 @@ import com.izforge.izpack.core.rules.process.UserCondition;
 import com.izforge.izpack.core.rules.process.VariableCondition;
 import com.izforge.izpack.util.Platform;
 import com.izforge.izpack.util.Platforms;
+import com.izforge.izpack.util.Tracer;
 
 
 /**
@@ -85,6 +91,40 @@ public class RulesEngineImpl implements RulesEngine
 
     private final ConditionContainer container;
 
+    /**
+     * The compiled expressions, keyed on expression, in least recently used order.
+     */
+    private final Map<String, CompiledExpression> expressions
+            = new LinkedHashMap<String, CompiledExpression>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CompiledExpression> eldest)
+        {
+            return size() > MAX_EXPRESSIONS;
+        }
+    };
+
+    /**
+     * Incremented each time a condition is registered or references are resolved, to invalidate the conditions
+     * bound to expressions, and cached evaluations.
+     */
+    private int generation;
+
+    /**
+     * Determines if constant conditions have been folded. If so, conditions bound to expressions are also folded.
+     */
+    private boolean folded;
+
+    /**
+     * The cached evaluations of conditions. Guarded by {@link #expressions}.
+     */
+    private final Map<Condition, Evaluation> evaluations = new WeakHashMap<Condition, Evaluation>();
+
+    /**
+     * The maximum no. of compiled expressions to cache.
+     */
+    private static final int MAX_EXPRESSIONS = 1000;
+
     private static final Logger logger = Logger.getLogger(RulesEngineImpl.class.getName());
 
     /**
@@ -136,7 +176,7 @@ public class RulesEngineImpl implements RulesEngine
             // skip BuiltinConditions - these must be created by initStandardConditions().
             if (!(condition instanceof BuiltinCondition))
             {
-                conditionsMap.put(entry.getKey(), condition);
+                putCondition(entry.getKey(), condition);
                 condition.setInstallData(installData);
                 resolveBuiltinConditions(condition);
             }
@@ -189,7 +229,7 @@ public class RulesEngineImpl implements RulesEngine
                 result.setId(id);
                 result.setInstallData(installData);
                 result.readFromXML(condition);
-                conditionsMap.put(id, result);
+                putCondition(id, result);
                 if (result instanceof ConditionReference)
                 {
                     refConditions.add((ConditionReference) result);
@@ -210,6 +250,38 @@ public class RulesEngineImpl implements RulesEngine
         {
             refCondition.resolveReference();
         }
+        conditionsChanged();
+    }
+
+    /**
+     * Replaces conditions whose results cannot change for the life of the installation with constants.
+     * <p/>
+     * The platform conditions are constant, as are the results of {@link NotCondition}, {@link RefCondition},
+     * {@link AndCondition}, {@link OrCondition} and {@link XorCondition} conditions whose operands are constant.
+     * Each registered condition that evaluates to a constant is replaced by one. Constant operands that don't
+     * affect the result of a condition are removed from it, so that only its variable operands are evaluated.
+     * <p/>
+     * This must only be invoked by the installer, once its conditions have been read and resolved; the platform
+     * conditions of the compiler don't reflect that of the installation.
+     */
+    public void foldConstantConditions()
+    {
+        Map<Condition, Condition> results = new IdentityHashMap<Condition, Condition>();
+        int count = 0;
+        for (Map.Entry<String, Condition> entry : new ArrayList<Map.Entry<String, Condition>>(
+                conditionsMap.entrySet()))
+        {
+            Condition condition = entry.getValue();
+            Condition result = fold(condition, results);
+            if (result != condition)
+            {
+                conditionsMap.put(entry.getKey(), result);
+                ++count;
+            }
+        }
+        folded = true;
+        conditionsChanged();
+        logger.fine("Replaced " + count + " conditions with constants");
     }
 
     /**
@@ -241,7 +313,7 @@ public class RulesEngineImpl implements RulesEngine
                     if ((condid != null) && !("UNKNOWN".equals(condid)))
                     {
                         resolveBuiltinConditions(cond);
-                        conditionsMap.put(condid, cond);
+                        putCondition(condid, cond);
                     }
                 }
             }
@@ -282,7 +354,9 @@ public class RulesEngineImpl implements RulesEngine
      * The id may be one of the following:
      * A condition ID as defined in the install.xml
      * A simple expression with !,+,|,\
-     * A complex expression with !,&&,||,\\ - must begin with char @
+     * A complex expression with !,&&,||,^ and parentheses - must begin with char @
+     * <p/>
+     * Expressions are compiled once and cached. See {@link ConditionExpression} for their syntax.
      *
      * @param id ID to find in the conditionMap
      * @return the condition. May be <tt>null</tt>
@@ -293,14 +367,7 @@ public class RulesEngineImpl implements RulesEngine
         Condition result = conditionsMap.get(id);
         if (result == null)
         {
-            if (id.startsWith("@"))
-            {
-                result = parseComplexCondition(id.substring(1));
-            }
-            else
-            {
-                result = getConditionByExpr(new StringBuffer(id));
-            }
+            result = getConditionByExpression(id);
         }
         return result;
     }
@@ -350,7 +417,7 @@ public class RulesEngineImpl implements RulesEngine
         {
             cond.setInstallData(this.installData);
         }
-        boolean value = cond.isTrue();
+        boolean value = evaluate(cond);
         logger.fine("Condition " + cond.getId() + ": " + Boolean.toString(value));
         return value;
     }
@@ -372,7 +439,7 @@ public class RulesEngineImpl implements RulesEngine
             return true;
         }
         Condition condition = getCondition(this.panelConditions.get(panelId));
-        boolean b = condition.isTrue();
+        boolean b = evaluate(condition);
         logger.fine("Panel " + panelId + ": activation depends on condition "
                             + condition.getId() + " -> " + b);
         return b;
@@ -418,7 +485,7 @@ public class RulesEngineImpl implements RulesEngine
             return true;
         }
         Condition condition = getCondition(this.packConditions.get(packid));
-        boolean b = condition.isTrue();
+        boolean b = evaluate(condition);
         logger.fine("Package " + packid + ": installation depends on condition "
                 + condition.getId() + " -> " + b);
         return b;
@@ -462,7 +529,7 @@ public class RulesEngineImpl implements RulesEngine
             }
             else
             {
-                conditionsMap.put(id, condition);
+                putCondition(id, condition);
             }
         }
         else
@@ -522,7 +589,7 @@ public class RulesEngineImpl implements RulesEngine
                 selectionCondition.setInstallData(installData);
                 selectionCondition.setId("izpack.selected." + pack.getName());
                 selectionCondition.setPack(pack.getName());
-                conditionsMap.put(selectionCondition.getId(), selectionCondition);
+                putCondition(selectionCondition.getId(), selectionCondition);
 
                 String condition = pack.getCondition();
                 if (condition != null && !condition.isEmpty())
@@ -570,229 +637,285 @@ public class RulesEngineImpl implements RulesEngine
         Condition condition = new StaticCondition(isA);
         condition.setInstallData(installData);
         condition.setId(conditionId);
-        conditionsMap.put(condition.getId(), condition);
+        putCondition(condition.getId(), condition);
     }
 
     /**
-     * Parses the given complex expression into a condition.
-     * Understands the boolean operations && (AND), || (OR)
-     * and ! (NOT).
-     * <p/>
-     * Precedence is:
-     * NOT is evaluated first.
-     * AND is evaluated after NOT, but before OR.
-     * OR is evaluated last.
+     * Returns the condition for an expression, compiling it if required.
      * <p/>
-     * Parentheses may be added at a later time.
+     * Expressions are parsed once, and cached. The conditions they are bound to are also cached, and rebound if
+     * conditions are subsequently added.
      *
-     * @param expression given complex condition
-     * @return
+     * @param expression the expression. Complex expressions are prefixed with <tt>@</tt>
+     * @return the corresponding condition, or {@code null} if the expression is invalid or refers to undefined
+     *         conditions
      */
-    private Condition parseComplexCondition(String expression)
+    private Condition getConditionByExpression(String expression)
     {
-        Condition result = null;
-
-        if (expression.contains("||"))
+        CompiledExpression compiled;
+        synchronized (expressions)
         {
-            result = parseComplexOrCondition(expression);
+            compiled = expressions.get(expression);
         }
-        else if (expression.contains("&&"))
+        if (compiled == null)
         {
-            result = parseComplexAndCondition(expression);
+            ConditionExpression parsed;
+            try
+            {
+                parsed = expression.startsWith("@") ? ConditionExpression.parseComplex(expression.substring(1))
+                        : ConditionExpression.parseSimple(expression);
+            }
+            catch (IllegalArgumentException exception)
+            {
+                logger.warning(exception.getMessage());
+                return null;
+            }
+            compiled = new CompiledExpression(parsed);
+            synchronized (expressions)
+            {
+                expressions.put(expression, compiled);
+            }
         }
-        else if (expression.contains("^"))
+        return compiled.getCondition(expression);
+    }
+
+    /**
+     * Binds a parsed expression to conditions.
+     *
+     * @param expression the parsed expression
+     * @param source     the expression source, for error reporting
+     * @return the corresponding condition, or {@code null} if the expression refers to undefined conditions
+     */
+    private Condition bind(ConditionExpression expression, String source)
+    {
+        Condition result = null;
+        if (expression instanceof ConditionExpression.Reference)
         {
-            result = parseComplexXorCondition(expression);
+            String id = ((ConditionExpression.Reference) expression).getId();
+            result = conditionsMap.get(id);
+            if (result == null)
+            {
+                logger.warning("Condition: " + source + " contains reference to undefined condition: " + id);
+            }
         }
-        else if (expression.contains("!"))
+        else if (expression instanceof ConditionExpression.Not)
         {
-            result = parseComplexNotCondition(expression);
+            Condition operand = bind(((ConditionExpression.Not) expression).getOperand(), source);
+            result = NotCondition.createFromCondition(operand, this);
         }
         else
         {
-            result = conditionsMap.get(expression);
+            ConditionExpression.Operation operation = (ConditionExpression.Operation) expression;
+            List<ConditionExpression> operands = operation.getOperands();
+            Condition[] conditions = new Condition[operands.size()];
+            for (int i = 0; i < conditions.length; ++i)
+            {
+                conditions[i] = bind(operands.get(i), source);
+                if (conditions[i] == null)
+                {
+                    return null;
+                }
+            }
+            result = instantiateConditionClass(operation.getType());
+            if (result != null)
+            {
+                ((ConditionWithMultipleOperands) result).addOperands(conditions);
+            }
         }
-
-        if (result != null){
+        if (result != null)
+        {
             result.setInstallData(installData);
+            if (folded)
+            {
+                result = fold(result, new IdentityHashMap<Condition, Condition>());
+            }
         }
-
         return result;
     }
 
     /**
-     * Creates an OR condition from the given complex expression.
-     * Uses the substring up to the first || delimiter as first operand and
-     * the rest as second operand.
+     * Folds a condition to a constant, if its result cannot change.
+     * <p/>
+     * Constant operands that don't affect the result of a logical condition are removed from it.
      *
-     * @param expression given complex expression
-     * @return OrCondition
+     * @param condition the condition. May be {@code null}
+     * @param results   the results of conditions already folded
+     * @return a constant condition, or {@code condition} if it isn't constant
      */
-    private Condition parseComplexOrCondition(String expression) {
-        String[] parts = expression.split("\\|\\|", 2);
-        Condition result = evaluateComplexExpression("or", expression, parts);
+    private Condition fold(Condition condition, Map<Condition, Condition> results)
+    {
+        if (condition == null || condition instanceof StaticCondition)
+        {
+            return condition;
+        }
+        Condition result = results.get(condition);
+        if (result != null)
+        {
+            return result;
+        }
+        // guard against cyclic references
+        results.put(condition, condition);
+        result = condition;
+        Class<?> type = condition.getClass();
+        if (type == NotCondition.class || type == RefCondition.class)
+        {
+            ConditionReference reference = (ConditionReference) condition;
+            Condition referenced = fold(reference.getReferencedCondition(), results);
+            if (referenced instanceof StaticCondition)
+            {
+                boolean value = referenced.isTrue();
+                result = createConstant(condition, (type == NotCondition.class) != value);
+            }
+            else if (referenced != reference.getReferencedCondition())
+            {
+                reference.setReferencedCondition(referenced);
+            }
+        }
+        else if (type == AndCondition.class || type == OrCondition.class || type == XorCondition.class)
+        {
+            result = foldOperands((ConditionWithMultipleOperands) condition, results);
+        }
+        results.put(condition, result);
         return result;
     }
 
     /**
-     * Creates a XOR condition from the given complex expression
+     * Folds the operands of a logical condition.
      *
-     * @param expression given complex expression
-     * @return
+     * @param condition the condition
+     * @param results   the results of conditions already folded
+     * @return a constant condition, or {@code condition} if it isn't constant
      */
-    private Condition parseComplexXorCondition(String expression)
+    private Condition foldOperands(ConditionWithMultipleOperands condition, Map<Condition, Condition> results)
     {
-        String[] parts = expression.split("\\^", 2);
-        Condition result = evaluateComplexExpression("xor",expression, parts);
-        return result;
+        boolean and = condition instanceof AndCondition;
+        boolean xor = condition instanceof XorCondition;
+        boolean parity = false;
+        boolean constants = false;
+        List<Condition> operands = condition.getOperands();
+        List<Condition> variable = new ArrayList<Condition>();
+        for (Condition operand : operands)
+        {
+            Condition result = fold(operand, results);
+            if (result instanceof StaticCondition)
+            {
+                boolean value = result.isTrue();
+                constants = true;
+                if (xor)
+                {
+                    parity ^= value;
+                }
+                else if (value != and)
+                {
+                    // false for AND, and true for OR, determine the result
+                    return createConstant(condition, value);
+                }
+            }
+            else
+            {
+                variable.add(result);
+            }
+        }
+        if (constants && variable.isEmpty())
+        {
+            return createConstant(condition, xor ? parity : and);
+        }
+        if (!xor || !parity)
+        {
+            // the remaining constant operands don't affect the result
+            operands.clear();
+            operands.addAll(variable);
+        }
+        else
+        {
+            // keep the constant operands, as they invert the result
+            for (int i = 0; i < operands.size(); ++i)
+            {
+                operands.set(i, fold(operands.get(i), results));
+            }
+        }
+        return condition;
     }
 
     /**
-     * Creates an AND condition from the given complex expression.
-     * Uses the expression up to the first && delimiter as first operand and
-     * the rest as second operand.
+     * Creates a constant condition to replace another.
      *
-     * @param expression given complex expression
-     * @return AndCondition
+     * @param condition the condition to replace
+     * @param value     the constant value
+     * @return a new constant condition
      */
-    private Condition parseComplexAndCondition(String expression)
+    private Condition createConstant(Condition condition, boolean value)
     {
-        String[] parts = expression.split("&&", 2);
-        Condition result = evaluateComplexExpression("and", expression, parts);
+        Condition result = new StaticCondition(value);
+        result.setId(condition.getId());
+        result.setInstallData(condition.getInstallData());
         return result;
     }
 
     /**
-     * Creates a NOT condition from the given complex expression.
-     * Negates the result of the whole expression!
+     * Registers a condition.
+     * <p/>
+     * This invalidates the conditions bound to cached expressions.
      *
-     * @param expression given complex expression
-     * @return NotCondtion
+     * @param id        the condition identifier
+     * @param condition the condition
      */
-    private Condition parseComplexNotCondition(String expression)
+    private void putCondition(String id, Condition condition)
     {
-        Condition result = null;
-        result = NotCondition.createFromCondition(
-                parseComplexCondition(expression.substring(1).trim()),
-                this);
-        return result;
+        conditionsMap.put(id, condition);
+        conditionsChanged();
     }
 
-    private Condition getConditionByExpr(StringBuffer conditionexpr)
+    /**
+     * Invoked when conditions are registered or resolved, to invalidate the conditions bound to expressions, and
+     * cached evaluations.
+     */
+    private void conditionsChanged()
     {
-        Condition result = null;
-        int index = 0;
-        while (index < conditionexpr.length())
-        {
-            char currentchar = conditionexpr.charAt(index);
-            switch (currentchar)
-            {
-                case '+':
-                    // and-condition
-                    result = evaluateSimpleExpression("and", conditionexpr, index);
-                    break;
-                case '|':
-                    // or-condition
-                    result = evaluateSimpleExpression("or", conditionexpr, index);
-                    break;
-                case '\\':
-                    // xor-condition
-                    result = evaluateSimpleExpression("xor", conditionexpr, index);
-                    break;
-                case '!':
-                    // not-condition
-                    if (index > 0)
-                    {
-                        logger.warning("! operator only allowed at position 0");
-                    }
-                    else
-                    {
-                        // delete not symbol
-                        conditionexpr.deleteCharAt(index);
-                        result = NotCondition.createFromCondition(
-                                getConditionByExpr(conditionexpr),
-                                this);
-                    }
-                    break;
-                default:
-                    // do nothing
-            }
-            index++;
-        }
-        if (conditionexpr.length() > 0)
+        synchronized (expressions)
         {
-            result = conditionsMap.get(conditionexpr.toString());
-            if (result != null)
-            {
-                result.setInstallData(installData);
-                conditionexpr.delete(0, conditionexpr.length());
-            }
+            ++generation;
         }
-        return result;
     }
 
     /**
-     * This method replaces some of the functionality in the getConditionByExpr() method. It checks both operands in either side of the relation,
-     * and returns a warning / null value if any of the operands is actually undefined. Fixes the NPE in IZPACK-1109.
-     *
-     * @param condType the type of simple expression. Should correspond to either a fully qualified classname of a condition, or a key in the TYPE_CLASS_NAMES map
-     * @param expression the remaining characters in the expression
-     * @param index the index where the split in operands is. Example: aaa&bbb would have index = 3.
-     * @return the resultant condition, or null if evaluation failed for any reason
-     */
-    private Condition evaluateSimpleExpression(String condType, StringBuffer expression, int index)  {
-        Condition result = instantiateConditionClass(condType);
-        String warningMsg = "Condition: %s contains reference to undefined condition: %s";
-        String conditionId = expression.toString();
-        String operand1Id = expression.substring(0,index);
-        Condition operand1 = conditionsMap.get(operand1Id);
-        if (operand1 != null) {
-            expression.delete(0, index + 1); // delete everything up to the '+' char
-
-            String operand2Id = expression.toString();
-            Condition operand2 = getConditionByExpr(expression);
-            if (operand2 != null){
-                ((ConditionWithMultipleOperands) result).addOperands(operand1, operand2);
-            } else {
-                // the second operand doesn't exist
-                logger.warning(String.format(warningMsg, conditionId, operand2Id));
-                result = null;
-            }
-        } else {
-            // the first operand doesn't exist
-            logger.warning(String.format(warningMsg, conditionId, operand1Id));
-            result = null;
-        }
-        return result;
-    }
-
-    /**
-     * This method replaces some of the functionality in the parseComplexExpression() method. It checks operands for existence instead of immediately adding them
-     * into a new condition, which fixes IZPACK-1109.
+     * Evaluates a condition.
+     * <p/>
+     * If the condition is {@link Condition#isCacheable() cacheable}, its result is cached along with the variables
+     * read to determine it. The cached result is returned until one of those variables changes.
      *
-     * @param condType the type of complex expression (one of 'and', 'or', 'xor', 'not')
-     * @param expression the expression
-     * @return a Condition representing the expression, or null if evaluation failed for any reason
+     * @param condition the condition to evaluate
+     * @return the result of the condition
      */
-    private Condition evaluateComplexExpression(String condType, String expression, String[]parts){
-        final String warning = "Complex condition: "+expression+" contains reference to undefined condition: %s";
-        Condition result = instantiateConditionClass(condType);
-
-        String operand1Id = parts[0].trim();
-        String operand2Id = parts[1].trim();
-        Condition operand1 = parseComplexCondition(operand1Id);
-        Condition operand2 = parseComplexCondition(operand2Id);
-
-        if (operand1 == null){
-            logger.warning(String.format(warning, operand1Id));
-            return null;
-        } else if (operand2 == null){
-            logger.warning(String.format(warning, operand2Id));
-            return null;
+    private boolean evaluate(Condition condition)
+    {
+        long start = Tracer.start();
+        boolean result;
+        InstallData data = condition.getInstallData();
+        Variables variables = (data != null) ? data.getVariables() : null;
+        if (!(variables instanceof DefaultVariables))
+        {
+            // can only cache evaluations if the variables read can be tracked
+            result = condition.isTrue();
+        }
+        else
+        {
+            Evaluation evaluation;
+            synchronized (expressions)
+            {
+                evaluation = evaluations.get(condition);
+                if (evaluation == null || evaluation.generation != generation)
+                {
+                    evaluation = new Evaluation(condition.isCacheable(), generation);
+                    evaluations.put(condition, evaluation);
+                }
+            }
+            result = evaluation.evaluate(condition, (DefaultVariables) variables);
+        }
+        if (Tracer.isEnabled())
+        {
+            Tracer.event("condition", start, "id", condition.getId(), "result", result);
         }
-
-        ((ConditionWithMultipleOperands) result).addOperands(operand1, operand2);
-
         return result;
     }
 
@@ -929,5 +1052,206 @@ public class RulesEngineImpl implements RulesEngine
             return result;
         }
 
+        @Override
+        public boolean isCacheable()
+        {
+            return true;
+        }
+    }
+
+    /**
+     * The cached result of a condition, and the versions of the variables it was determined from.
+     */
+    private static class Evaluation
+    {
+
+        /**
+         * Determines if the result may be cached.
+         */
+        private final boolean cacheable;
+
+        /**
+         * The generation of the conditions that the evaluation applies to.
+         */
+        private final int generation;
+
+        /**
+         * The variables the result was determined from, or {@code null} if there is no cached result.
+         */
+        private DefaultVariables variables;
+
+        /**
+         * The version of the variables when the result was last verified.
+         */
+        private long version;
+
+        /**
+         * The names of the variables read.
+         */
+        private Set<String> names;
+
+        /**
+         * The versions of the variables read, in the iteration order of {@link #names}.
+         */
+        private long[] versions;
+
+        /**
+         * The cached result.
+         */
+        private boolean result;
+
+        /**
+         * Constructs an {@code Evaluation}.
+         *
+         * @param cacheable  determines if the result may be cached
+         * @param generation the generation of the conditions
+         */
+        public Evaluation(boolean cacheable, int generation)
+        {
+            this.cacheable = cacheable;
+            this.generation = generation;
+        }
+
+        /**
+         * Evaluates a condition, returning the cached result if none of the variables it read have changed.
+         * <p/>
+         * The condition isn't evaluated while holding the lock, as it may evaluate other conditions.
+         *
+         * @param condition the condition
+         * @param variables the variables
+         * @return the result of the condition
+         */
+        public boolean evaluate(Condition condition, DefaultVariables variables)
+        {
+            if (!cacheable)
+            {
+                return condition.isTrue();
+            }
+            synchronized (this)
+            {
+                if (isCurrent(variables))
+                {
+                    variables.read(names);
+                    return result;
+                }
+            }
+            long start = variables.getVersion();
+            boolean value;
+            Set<String> read;
+            variables.startTracking();
+            try
+            {
+                value = condition.isTrue();
+            }
+            finally
+            {
+                read = variables.stopTracking();
+            }
+            synchronized (this)
+            {
+                if (variables.getVersion() == start)
+                {
+                    long[] list = new long[read.size()];
+                    int i = 0;
+                    for (String name : read)
+                    {
+                        list[i++] = variables.getVersion(name);
+                    }
+                    this.variables = variables;
+                    this.version = start;
+                    this.names = read;
+                    this.versions = list;
+                    this.result = value;
+                }
+                else
+                {
+                    // variables changed during evaluation, so the result may be inconsistent
+                    this.variables = null;
+                }
+            }
+            return value;
+        }
+
+        /**
+         * Determines if the cached result is current.
+         *
+         * @param variables the variables
+         * @return {@code true} if none of the variables read have changed since the result was determined
+         */
+        private boolean isCurrent(DefaultVariables variables)
+        {
+            if (this.variables != variables)
+            {
+                return false;
+            }
+            long current = variables.getVersion();
+            if (current != version)
+            {
+                int i = 0;
+                for (String name : names)
+                {
+                    if (variables.getVersion(name) != versions[i++])
+                    {
+                        return false;
+                    }
+                }
+                version = current;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A parsed expression, and the condition it is bound to.
+     */
+    private class CompiledExpression
+    {
+
+        /**
+         * The parsed expression.
+         */
+        private final ConditionExpression expression;
+
+        /**
+         * The bound condition. May be {@code null}.
+         */
+        private Condition condition;
+
+        /**
+         * The generation of the conditions that the expression was bound to, or {@code -1} if it is unbound.
+         */
+        private int bound = -1;
+
+        /**
+         * Constructs a {@code CompiledExpression}.
+         *
+         * @param expression the parsed expression
+         */
+        public CompiledExpression(ConditionExpression expression)
+        {
+            this.expression = expression;
+        }
+
+        /**
+         * Returns the condition that the expression is bound to, binding it if conditions have been registered since
+         * it was last bound.
+         *
+         * @param source the expression source, for error reporting
+         * @return the condition, or {@code null} if the expression refers to undefined conditions
+         */
+        public synchronized Condition getCondition(String source)
+        {
+            int current;
+            synchronized (expressions)
+            {
+                current = generation;
+            }
+            if (bound != current)
+            {
+                condition = bind(expression, source);
+                bound = current;
+            }
+            return condition;
+        }
     }
 }
@@ -84,4 +84,15 @@ public class CompareNumericsCondition extends CompareCondition
         }
         return result;
     }
+
+    /**
+     * Determines if the result of this condition may be cached.
+     *
+     * @return {@code true}, as the result depends only on variables
+     */
+    @Override
+    public boolean isCacheable()
+    {
+        return true;
+    }
 }
\ No newline at end of file
@@ -75,6 +75,17 @@ public class CompareVersionsCondition extends CompareCondition
         return result;
     }
 
+    /**
+     * Determines if the result of this condition may be cached.
+     *
+     * @return {@code true}, as the result depends only on variables
+     */
+    @Override
+    public boolean isCacheable()
+    {
+        return true;
+    }
+
     private static class VersionStringComparator implements Comparator<String>
     {
         @Override
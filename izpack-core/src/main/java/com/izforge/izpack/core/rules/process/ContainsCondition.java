@@ -136,6 +136,17 @@ public class ContainsCondition extends Condition {
     return matchesString(content);
   }
 
+  /**
+   * Determines if the result of this condition may be cached.
+   *
+   * @return {@code true} if the source is a string or variable, {@code false} if it is a file
+   */
+  @Override
+  public boolean isCacheable()
+  {
+    return contentType == ContentType.STRING || contentType == ContentType.VARIABLE;
+  }
+
   private boolean matchesByLine(Reader reader)
   {
       BufferedReader in = null;
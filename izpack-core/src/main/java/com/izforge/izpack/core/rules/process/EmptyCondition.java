@@ -106,6 +106,17 @@ public class EmptyCondition extends Condition
         return result;
     }
 
+    /**
+     * Determines if the result of this condition may be cached.
+     *
+     * @return {@code true} if the content is a string or variable, {@code false} if it is a file or directory
+     */
+    @Override
+    public boolean isCacheable()
+    {
+        return contentType == ContentType.STRING || contentType == ContentType.VARIABLE;
+    }
+
     @Override
     public void readFromXML(IXMLElement xmlcondition) throws Exception
     {
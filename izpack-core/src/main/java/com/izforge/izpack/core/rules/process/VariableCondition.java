@@ -107,6 +107,17 @@ public class VariableCondition extends Condition
         }
     }
 
+    /**
+     * Determines if the result of this condition may be cached.
+     *
+     * @return {@code true}, as the result depends only on variables
+     */
+    @Override
+    public boolean isCacheable()
+    {
+        return true;
+    }
+
     @Override
     public String getDependenciesDetails()
     {
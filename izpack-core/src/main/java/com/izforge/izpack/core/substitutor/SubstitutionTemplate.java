@@ -0,0 +1,311 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.core.substitutor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+
+
+/**
+ * A string compiled to a sequence of literals and variable references, to avoid rescanning it each time variables
+ * are substituted.
+ * <p/>
+ * Substitution produces identical output to {@link VariableSubstitutorBase#substitute(String, SubstitutionType)}.
+ * Strings whose parse would depend on variable values cannot be compiled.
+ *
+ * @author Tim Anderson
+ */
+public class SubstitutionTemplate
+{
+
+    /**
+     * The literals. There is one more literal than references.
+     */
+    private final String[] literals;
+
+    /**
+     * The variable references.
+     */
+    private final Reference[] references;
+
+    /**
+     * The estimated length of substituted strings.
+     */
+    private final int length;
+
+    /**
+     * Constructs a <tt>SubstitutionTemplate</tt>.
+     *
+     * @param literals   the literals
+     * @param references the variable references
+     * @param length     the estimated length of substituted strings
+     */
+    private SubstitutionTemplate(String[] literals, Reference[] references, int length)
+    {
+        this.literals = literals;
+        this.references = references;
+        this.length = length;
+    }
+
+    /**
+     * Compiles a string.
+     *
+     * @param str            the string to compile
+     * @param type           the substitution type
+     * @param bracesRequired determines if braces are required for substitution
+     * @return the compiled template, or {@code null} if the parse of the string depends on variable values
+     */
+    public static SubstitutionTemplate compile(String str, SubstitutionType type, boolean bracesRequired)
+    {
+        if (type == null)
+        {
+            type = SubstitutionType.getDefault();
+        }
+        return compile(str, VariableSubstitutorBase.getVariableStart(type),
+                       VariableSubstitutorBase.getVariableEnd(type), bracesRequired);
+    }
+
+    /**
+     * Returns the number of variable references.
+     *
+     * @return the number of variable references
+     */
+    public int getReferences()
+    {
+        return references.length;
+    }
+
+    /**
+     * Returns the value of a variable reference.
+     *
+     * @param index       the reference index
+     * @param substitutor the substitutor used to resolve the value
+     * @return the variable value, or {@code null} if the variable is undefined
+     * @throws Exception if the variable cannot be resolved
+     */
+    public String getValue(int index, VariableSubstitutorBase substitutor) throws Exception
+    {
+        Reference reference = references[index];
+        return substitutor.getVariableValue(reference.name, reference.braces);
+    }
+
+    /**
+     * Substitutes variables.
+     *
+     * @param substitutor the substitutor used to resolve and escape values
+     * @param type        the substitution type
+     * @return the substituted string
+     * @throws Exception if a variable cannot be resolved
+     */
+    public String substitute(VariableSubstitutorBase substitutor, SubstitutionType type) throws Exception
+    {
+        StringBuilder result = new StringBuilder(length);
+        for (int i = 0; i < references.length; ++i)
+        {
+            result.append(literals[i]);
+            append(result, getValue(i, substitutor), i, substitutor, type);
+        }
+        result.append(literals[references.length]);
+        return result.toString();
+    }
+
+    /**
+     * Substitutes pre-resolved variable values.
+     *
+     * @param values      the variable values, as returned by {@link #getValue}. There must be one value per reference
+     * @param substitutor the substitutor used to escape values
+     * @param type        the substitution type
+     * @return the substituted string
+     */
+    public String substitute(String[] values, VariableSubstitutorBase substitutor, SubstitutionType type)
+    {
+        StringBuilder result = new StringBuilder(length);
+        for (int i = 0; i < references.length; ++i)
+        {
+            result.append(literals[i]);
+            append(result, values[i], i, substitutor, type);
+        }
+        result.append(literals[references.length]);
+        return result.toString();
+    }
+
+    /**
+     * Appends a variable value, or the original reference text if the variable is undefined.
+     *
+     * @param result      the result to append to
+     * @param value       the variable value. May be {@code null}
+     * @param index       the reference index
+     * @param substitutor the substitutor used to escape values
+     * @param type        the substitution type
+     */
+    private void append(StringBuilder result, String value, int index, VariableSubstitutorBase substitutor,
+                        SubstitutionType type)
+    {
+        if (value != null)
+        {
+            result.append(substitutor.escapeSpecialChars(value, type));
+        }
+        else
+        {
+            result.append(references[index].text);
+        }
+    }
+
+    /**
+     * Compiles a string.
+     * <p/>
+     * This mirrors the parse performed by {@link VariableSubstitutorBase#substitute(java.io.Reader, java.io.Writer,
+     * SubstitutionType)}.
+     *
+     * @param str            the string to compile
+     * @param start          the character that starts a variable reference
+     * @param end            the character that ends a variable reference, or <tt>'\0'</tt> if there is none
+     * @param bracesRequired determines if braces are required for substitution
+     * @return the compiled template, or {@code null} if the parse of the string depends on variable values
+     */
+    static SubstitutionTemplate compile(String str, char start, char end, boolean bracesRequired)
+    {
+        List<String> literals = new ArrayList<String>();
+        List<Reference> references = new ArrayList<Reference>();
+        StringBuilder literal = new StringBuilder();
+        int length = str.length();
+        int pos = 0;
+
+        while (true)
+        {
+            int index = str.indexOf(start, pos);
+            if (index == -1)
+            {
+                literal.append(str, pos, length);
+                break;
+            }
+            literal.append(str, pos, index);
+            pos = index + 1;
+
+            boolean braces = false;
+            int c = charAt(str, pos);
+            if (c == '{')
+            {
+                braces = true;
+                c = charAt(str, ++pos);
+            }
+            else if (bracesRequired)
+            {
+                literal.append(start);
+                continue;
+            }
+            else if (c == -1)
+            {
+                literal.append(start);
+                break;
+            }
+
+            int nameStart = pos;
+            while (VariableSubstitutorBase.isNameChar(c, braces, pos == nameStart))
+            {
+                c = charAt(str, ++pos);
+            }
+            String name = str.substring(nameStart, pos);
+
+            if (!VariableSubstitutorBase.isReference(name, c, braces, end))
+            {
+                // not a reference; the following character is processed as normal
+                literal.append(start);
+                if (braces)
+                {
+                    literal.append('{');
+                }
+                literal.append(name);
+                continue;
+            }
+
+            int textEnd = pos;
+            if (braces || end != '\0')
+            {
+                // the following character is consumed only if the variable is defined
+                if (c == start)
+                {
+                    return null;
+                }
+                if (c != -1)
+                {
+                    textEnd = ++pos;
+                }
+            }
+            literals.add(literal.toString());
+            literal.setLength(0);
+            references.add(new Reference(name, braces, str.substring(index, textEnd)));
+        }
+        literals.add(literal.toString());
+        return new SubstitutionTemplate(literals.toArray(new String[literals.size()]),
+                                        references.toArray(new Reference[references.size()]), length + 16);
+    }
+
+    /**
+     * Returns the character at the specified position of a string.
+     *
+     * @param str the string
+     * @param pos the position
+     * @return the character, or {@code -1} if the position is past the end of the string
+     */
+    private static int charAt(String str, int pos)
+    {
+        return pos < str.length() ? str.charAt(pos) : -1;
+    }
+
+    /**
+     * A variable reference.
+     */
+    private static class Reference
+    {
+
+        /**
+         * The variable name.
+         */
+        private final String name;
+
+        /**
+         * Determines if the reference is enclosed in braces.
+         */
+        private final boolean braces;
+
+        /**
+         * The text of the reference, output if the variable is undefined.
+         */
+        private final String text;
+
+        /**
+         * Constructs a <tt>Reference</tt>.
+         *
+         * @param name   the variable name
+         * @param braces determines if the reference is enclosed in braces
+         * @param text   the text of the reference
+         */
+        public Reference(String name, boolean braces, String text)
+        {
+            this.name = name;
+            this.braces = braces;
+            this.text = text;
+        }
+    }
+}
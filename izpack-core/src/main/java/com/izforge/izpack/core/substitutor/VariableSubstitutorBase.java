@@ -30,6 +30,8 @@ import com.izforge.izpack.util.IoHelper;
 import java.io.*;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -97,6 +99,26 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
      */
     public final static String PLAIN = "plain";
 
+    /**
+     * The maximum number of compiled templates cached per substitution type.
+     */
+    private static final int MAX_TEMPLATES = 256;
+
+    /**
+     * The maximum length of strings that are compiled to templates.
+     */
+    private static final int MAX_TEMPLATE_LENGTH = 1024;
+
+    /**
+     * The buffer size used when substituting variables in streams.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Compiled templates of recently substituted strings, keyed on substitution type. Lazily created.
+     */
+    private transient volatile ConcurrentMap<SubstitutionType, ConcurrentMap<String, SubstitutionTemplate>> templates;
+
     /**
      * A mapping of file type names to corresponding integer constants.
      */
@@ -132,6 +154,8 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
     public void setBracesRequired(boolean braces)
     {
         bracesRequired = braces;
+        // templates depend on whether braces are required
+        templates = null;
     }
 
     /**
@@ -162,24 +186,34 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
         {
             return null;
         }
+        if (type == null)
+        {
+            type = SubstitutionType.getDefault();
+        }
+        if (str.indexOf(getVariableStart(type)) == -1)
+        {
+            // nothing to substitute
+            return str;
+        }
 
-        // Create reader and write for the strings
-        StringReader reader = new StringReader(str);
-        StringWriter writer = new StringWriter();
-
-        // Substitute any variables
         try
         {
-            substitute(reader, writer, type);
+            SubstitutionTemplate template = getTemplate(str, type);
+            if (template != null)
+            {
+                return template.substitute(this, type);
+            }
+
+            // Substitute any variables
+            StringWriter writer = new StringWriter(str.length() + 16);
+            substitute(new CharSource(str), writer, type);
+            return writer.getBuffer().toString();
         }
         catch (Exception e)
         {
             LOGGER.log(Level.SEVERE, "Error when substituting variables", e);
             throw new IzPackException(e);
         }
-
-        // Return the resulting string
-        return writer.getBuffer().toString();
     }
 
     /**
@@ -290,6 +324,66 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
      * @throws IOException
      */
     public int substitute(Reader reader, Writer writer, SubstitutionType type) throws Exception
+    {
+        return substitute(new CharSource(reader), writer, type);
+    }
+
+    /**
+     * Returns the value of a variable reference.
+     * <p/>
+     * References enclosed in braces may refer to environment variables using <em>ENV[NAME]</em>, and to system
+     * properties using <em>SYSTEM[NAME]</em>.
+     *
+     * @param name   the variable name
+     * @param braces determines if the reference was enclosed in braces
+     * @return the variable value, or {@code null} if the variable is undefined
+     * @throws Exception if the variable cannot be resolved
+     */
+    protected String getVariableValue(String name, boolean braces) throws Exception
+    {
+        String varvalue = null;
+
+        // check for environment variables
+        if (braces && name.startsWith("ENV[")
+                && (name.lastIndexOf(']') == name.length() - 1))
+        {
+            varvalue = IoHelper.getenv(name.substring(4, name.length() - 1));
+            if (varvalue == null)
+            {
+                varvalue = "";
+            }
+        }
+        else if (braces && name.startsWith("SYSTEM[")
+                && (name.lastIndexOf(']') == name.length() - 1))
+        {
+            varvalue = System.getProperty(name.substring(7, name.length() - 1));
+        }
+        // TODO: Compatibility mode - to be removed in future
+        else if (braces && name.startsWith("SYSTEM_") && name.length() > 7)
+        {
+            varvalue = System.getProperty(name.substring(7).replace('_', '.'));
+        }
+        else
+        {
+            Value val = getValue(name);
+            if (val != null)
+            {
+                varvalue = val.resolve();
+            }
+        }
+        return varvalue;
+    }
+
+    /**
+     * Substitutes the variables found in the data read from the specified source.
+     *
+     * @param source the source to read
+     * @param writer the writer used to write data out
+     * @param type   the file type or null for plain
+     * @return the number of substitutions made
+     * @throws Exception for any error
+     */
+    private int substitute(CharSource source, Writer writer, SubstitutionType type) throws Exception
     {
         if (type == null)
         {
@@ -297,52 +391,38 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
         }
 
         // determine character which starts (and ends) a variable
-        char variable_start = '$';
-        char variable_end = '\0';
-        switch (type)
-        {
-            case TYPE_SHELL:
-                variable_start = '%';
-                break;
-
-            case TYPE_AT:
-                variable_start = '@';
-                break;
-
-            case TYPE_ANT:
-                variable_start = '@';
-                variable_end = '@';
-                break;
-
-            default:
-                break;
-        }
+        char variable_start = getVariableStart(type);
+        char variable_end = getVariableEnd(type);
 
         int subs = 0;
 
         // Copy data and substitute variables
-        int c = reader.read();
+        int c = source.read();
 
         while (true)
         {
             // Find the next potential variable reference or EOF
-            while (c != -1 && c != variable_start)
+            if (c != variable_start)
             {
+                if (c == -1)
+                {
+                    return subs;
+                }
                 writer.write(c);
-                c = reader.read();
-            }
-            if (c == -1)
-            {
-                return subs;
+                c = source.copy(variable_start, writer);
+                if (c == -1)
+                {
+                    return subs;
+                }
             }
 
             // Check if braces used or start char escaped
             boolean braces = false;
-            c = reader.read();
+            c = source.read();
             if (c == '{')
             {
                 braces = true;
-                c = reader.read();
+                c = source.read();
             }
             else if (bracesRequired)
             {
@@ -356,52 +436,20 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
             }
 
             // Read the variable name
-            StringBuffer nameBuffer = new StringBuffer();
-            while (c != -1 && (braces && c != '}') || (c >= 'a' && c <= 'z')
-                    || (c >= 'A' && c <= 'Z') || (braces && ((c == '[') || (c == ']')))
-                    || (((c >= '0' && c <= '9') || c == '_' || c == '.' || c == '-') && nameBuffer.length() > 0))
+            StringBuilder nameBuffer = new StringBuilder();
+            while (isNameChar(c, braces, nameBuffer.length() == 0))
             {
                 nameBuffer.append((char) c);
-                c = reader.read();
+                c = source.read();
             }
             String name = nameBuffer.toString();
 
             // Check if a legal and defined variable found
             String varvalue = null;
 
-            if (((!braces || c == '}') &&
-                    (!braces || variable_end == '\0' || variable_end == c)
-            ) && name.length() > 0)
+            if (isReference(name, c, braces, variable_end))
             {
-                // check for environment variables
-                if (braces && name.startsWith("ENV[")
-                        && (name.lastIndexOf(']') == name.length() - 1))
-                {
-                    varvalue = IoHelper.getenv(name.substring(4, name.length() - 1));
-                    if (varvalue == null)
-                    {
-                        varvalue = "";
-                    }
-                }
-                else if (braces && name.startsWith("SYSTEM[")
-                        && (name.lastIndexOf(']') == name.length() - 1))
-                {
-                    varvalue = System.getProperty(name.substring(7, name.length() - 1));
-                }
-                // TODO: Compatibility mode - to be removed in future
-                else if (braces && name.startsWith("SYSTEM_") && name.length() > 7)
-                {
-                    varvalue = System.getProperty(name.substring(7).replace('_', '.'));
-                }
-                else
-                {
-                    Value val = getValue(name);
-                    if (val != null)
-                    {
-                        varvalue = val.resolve();
-                    }
-                }
-
+                varvalue = getVariableValue(name, braces);
                 subs++;
             }
 
@@ -411,7 +459,7 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
                 writer.write(escapeSpecialChars(varvalue, type));
                 if (braces || variable_end != '\0')
                 {
-                    c = reader.read();
+                    c = source.read();
                 }
             }
             // ...or ignore it
@@ -427,6 +475,115 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
         }
     }
 
+    /**
+     * Returns the compiled template for a string, compiling and caching it if required.
+     *
+     * @param str  the string
+     * @param type the substitution type
+     * @return the template, or {@code null} if the string cannot be compiled
+     */
+    private SubstitutionTemplate getTemplate(String str, SubstitutionType type)
+    {
+        if (str.length() > MAX_TEMPLATE_LENGTH)
+        {
+            return null;
+        }
+        ConcurrentMap<SubstitutionType, ConcurrentMap<String, SubstitutionTemplate>> types = templates;
+        if (types == null)
+        {
+            // a race here only discards templates, so no lock is needed
+            types = new ConcurrentHashMap<SubstitutionType, ConcurrentMap<String, SubstitutionTemplate>>();
+            templates = types;
+        }
+        ConcurrentMap<String, SubstitutionTemplate> cache = types.get(type);
+        if (cache == null)
+        {
+            cache = new ConcurrentHashMap<String, SubstitutionTemplate>();
+            ConcurrentMap<String, SubstitutionTemplate> existing = types.putIfAbsent(type, cache);
+            if (existing != null)
+            {
+                cache = existing;
+            }
+        }
+        SubstitutionTemplate template = cache.get(str);
+        if (template == null)
+        {
+            template = SubstitutionTemplate.compile(str, getVariableStart(type), getVariableEnd(type), bracesRequired);
+            if (template != null)
+            {
+                if (cache.size() >= MAX_TEMPLATES)
+                {
+                    // start again rather than tracking usage, which would need every lookup to update shared state
+                    cache.clear();
+                }
+                cache.put(str, template);
+            }
+        }
+        return template;
+    }
+
+    /**
+     * Returns the character that starts a variable reference.
+     *
+     * @param type the substitution type
+     * @return the character that starts a variable reference
+     */
+    static char getVariableStart(SubstitutionType type)
+    {
+        switch (type)
+        {
+            case TYPE_SHELL:
+                return '%';
+            case TYPE_AT:
+            case TYPE_ANT:
+                return '@';
+            default:
+                return '$';
+        }
+    }
+
+    /**
+     * Returns the character that ends a variable reference.
+     *
+     * @param type the substitution type
+     * @return the character that ends a variable reference, or <tt>'\0'</tt> if references have no end character
+     */
+    static char getVariableEnd(SubstitutionType type)
+    {
+        return (type == SubstitutionType.TYPE_ANT) ? '@' : '\0';
+    }
+
+    /**
+     * Determines if a character may be part of a variable name.
+     *
+     * @param c      the character, or {@code -1} to indicate end of input
+     * @param braces determines if the reference is enclosed in braces
+     * @param first  determines if the character is the first in the name
+     * @return {@code true} if the character may be part of the variable name
+     */
+    static boolean isNameChar(int c, boolean braces, boolean first)
+    {
+        return (c != -1 && braces && c != '}') || (c >= 'a' && c <= 'z')
+                || (c >= 'A' && c <= 'Z') || (braces && ((c == '[') || (c == ']')))
+                || (((c >= '0' && c <= '9') || c == '_' || c == '.' || c == '-') && !first);
+    }
+
+    /**
+     * Determines if a variable name forms a legal reference.
+     *
+     * @param name         the variable name
+     * @param c            the character following the name, or {@code -1} to indicate end of input
+     * @param braces       determines if the reference is enclosed in braces
+     * @param variable_end the character that ends a variable reference, or <tt>'\0'</tt> if there is none
+     * @return {@code true} if the reference is legal
+     */
+    static boolean isReference(String name, int c, boolean braces, char variable_end)
+    {
+        return ((!braces || c == '}') &&
+                (!braces || variable_end == '\0' || variable_end == c)
+        ) && name.length() > 0;
+    }
+
     /**
      * Returns the internal constant for the specified file type.
      *
@@ -583,4 +740,130 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
                 throw new Error("Unknown file type constant " + type);
         }
     }
+
+    /**
+     * A buffered source of characters.
+     * <p/>
+     * This avoids the per-character overhead of {@link Reader#read()}, and allows runs of characters that contain
+     * no variable references to be copied in bulk.
+     */
+    private static class CharSource
+    {
+
+        /**
+         * The reader, or {@code null} if the source is a string.
+         */
+        private final Reader reader;
+
+        /**
+         * The buffer.
+         */
+        private final char[] buffer;
+
+        /**
+         * The position of the next character to read.
+         */
+        private int pos;
+
+        /**
+         * The no. of characters in the buffer.
+         */
+        private int limit;
+
+        /**
+         * Constructs a <tt>CharSource</tt> that reads from a reader.
+         *
+         * @param reader the reader
+         */
+        public CharSource(Reader reader)
+        {
+            this.reader = reader;
+            this.buffer = new char[BUFFER_SIZE];
+        }
+
+        /**
+         * Constructs a <tt>CharSource</tt> that reads from a string.
+         *
+         * @param str the string
+         */
+        public CharSource(String str)
+        {
+            this.reader = null;
+            this.buffer = str.toCharArray();
+            this.limit = buffer.length;
+        }
+
+        /**
+         * Reads a character.
+         *
+         * @return the character, or {@code -1} if the end of input has been reached
+         * @throws IOException for any I/O error
+         */
+        public int read() throws IOException
+        {
+            if (pos == limit && !fill())
+            {
+                return -1;
+            }
+            return buffer[pos++];
+        }
+
+        /**
+         * Copies characters to a writer, up to and including the next occurrence of the specified character.
+         * The specified character is not written.
+         *
+         * @param c      the character to stop at
+         * @param writer the writer
+         * @return the character, or {@code -1} if the end of input was reached before it was found
+         * @throws IOException for any I/O error
+         */
+        public int copy(char c, Writer writer) throws IOException
+        {
+            while (pos < limit || fill())
+            {
+                int start = pos;
+                while (pos < limit && buffer[pos] != c)
+                {
+                    ++pos;
+                }
+                if (pos > start)
+                {
+                    writer.write(buffer, start, pos - start);
+                }
+                if (pos < limit)
+                {
+                    ++pos;
+                    return c;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Fills the buffer.
+         *
+         * @return {@code true} if characters were read, {@code false} if the end of input was reached
+         * @throws IOException for any I/O error
+         */
+        private boolean fill() throws IOException
+        {
+            if (reader == null)
+            {
+                return false;
+            }
+            int read;
+            do
+            {
+                read = reader.read(buffer, 0, buffer.length);
+            }
+            while (read == 0);
+            if (read == -1)
+            {
+                return false;
+            }
+            pos = 0;
+            limit = read;
+            return true;
+        }
+    }
 }
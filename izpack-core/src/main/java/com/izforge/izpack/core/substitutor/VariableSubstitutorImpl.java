@@ -33,18 +33,25 @@ public class VariableSubstitutorImpl extends VariableSubstitutorBase implements
     private static final long serialVersionUID = 3907213762447685687L;
 
     /**
-     * The variable value mappings
+     * The variable value mappings. Only used if the substitutor was constructed with properties
      */
     protected transient Properties variables;
 
+    /**
+     * The variables to read values from, or {@code null} if they are read from the properties.
+     */
+    private transient Variables source;
+
     /**
      * Constructs a substituter with the specified variables.
+     * <p/>
+     * Values are read from the variables as they are substituted, so subsequent changes are reflected.
      *
      * @param variables the variables
      */
     public VariableSubstitutorImpl(Variables variables)
     {
-        this(variables.getProperties());
+        this.source = variables;
     }
 
     /**
@@ -61,6 +68,6 @@ public class VariableSubstitutorImpl extends VariableSubstitutorBase implements
     @Override
     public Value getValue(String name)
     {
-        return new PlainValue(variables.getProperty(name));
+        return new PlainValue((source != null) ? source.get(name) : variables.getProperty(name));
     }
 }
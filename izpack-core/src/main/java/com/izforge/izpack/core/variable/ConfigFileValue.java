@@ -21,22 +21,20 @@
 
 package com.izforge.izpack.core.variable;
 
-import java.io.IOException;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.InputStream;
 import java.io.Serializable;
+import java.util.concurrent.Callable;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.util.config.base.Config;
@@ -123,6 +121,71 @@ public abstract class ConfigFileValue extends ValueImpl implements Serializable
     }
 
     protected String resolve(InputStream in) throws Exception
+    {
+        return get(parse(in), section, key);
+    }
+
+    protected String resolve(InputStream in, VariableSubstitutor... substitutors)
+            throws Exception
+    {
+        return get(parse(in), section, substitute(key, substitutors));
+    }
+
+    /**
+     * Resolves the value from a configuration file.
+     * <p/>
+     * The parsed file is cached by {@link ValueCache}, and only re-parsed if the file changes.
+     *
+     * @param file         the file
+     * @param entry        the entry within the file to read, for zip and jar files. May be {@code null}
+     * @param substitutors the substitutors to apply to the key
+     * @return the value. May be {@code null}
+     * @throws Exception if the file cannot be read or parsed
+     */
+    protected String resolve(final File file, final String entry, VariableSubstitutor... substitutors)
+            throws Exception
+    {
+        String format = (type == CONFIGFILE_TYPE_XML) ? Integer.toString(type) : type + ":" + isEscape();
+        Object document = ValueCache.getInstance().getDocument(file, entry, format, new Callable<Object>()
+        {
+            @Override
+            public Object call() throws Exception
+            {
+                InputStream in = open(file, entry);
+                try
+                {
+                    return parse(in);
+                }
+                finally
+                {
+                    in.close();
+                }
+            }
+        });
+        return get(document, section, substitute(key, substitutors));
+    }
+
+    /**
+     * Opens a configuration file.
+     *
+     * @param file  the file
+     * @param entry the entry within the file to read. May be {@code null}
+     * @return a stream to read the configuration from
+     * @throws Exception if the file cannot be opened
+     */
+    protected InputStream open(File file, String entry) throws Exception
+    {
+        return new FileInputStream(file);
+    }
+
+    /**
+     * Parses a configuration file.
+     *
+     * @param in the stream to read
+     * @return the parsed configuration
+     * @throws Exception if the configuration cannot be parsed
+     */
+    private Object parse(InputStream in) throws Exception
     {
         Config config;
         switch (type)
@@ -130,82 +193,77 @@ public abstract class ConfigFileValue extends ValueImpl implements Serializable
             case CONFIGFILE_TYPE_OPTIONS:
                 config = Config.getGlobal().clone();
                 config.setEscape(isEscape());
-                Options opts = new Options(config);
-                opts.load(in);
-                return opts.get(key);
+                return new Options(in, config);
             case CONFIGFILE_TYPE_INI:
                 config = Config.getGlobal().clone();
                 config.setEscape(isEscape());
-                Ini ini = new Ini(config);
-                ini.load(in);
-                return ini.get(section, key);
+                return new Ini(in, config);
             case CONFIGFILE_TYPE_XML:
-                return parseXPath(in, key, System.getProperty("line.separator"));
+                DocumentBuilderFactory domFactory = DocumentBuilderFactory.newInstance();
+                domFactory.setNamespaceAware(true);
+                DocumentBuilder builder = domFactory.newDocumentBuilder();
+                return builder.parse(in);
             default:
-                throw new Exception("Invalid configuration file type " + type);
+                throw new Exception("Invalid configuration file type '" + type + "'");
         }
     }
 
-    protected String resolve(InputStream in, VariableSubstitutor... substitutors)
-            throws Exception
+    /**
+     * Returns a value from a parsed configuration.
+     *
+     * @param document the parsed configuration
+     * @param section  the section, for INI files
+     * @param key      the key, or XPath expression for XML files
+     * @return the value. May be {@code null}
+     * @throws XPathExpressionException if the XPath expression is invalid
+     */
+    private String get(Object document, String section, String key) throws XPathExpressionException
     {
-        Config config;
-        String _key_ = key;
-        for (VariableSubstitutor substitutor : substitutors)
-        {
-            _key_ = substitutor.substitute(_key_);
-        }
-
         switch (type)
         {
             case CONFIGFILE_TYPE_OPTIONS:
-                config = Config.getGlobal().clone();
-                config.setEscape(isEscape());
-                Options opts;
-                opts = new Options(in, config);
-                return opts.get(_key_);
+                return ((Options) document).get(key);
             case CONFIGFILE_TYPE_INI:
-                config = Config.getGlobal().clone();
-                config.setEscape(isEscape());
-                Ini ini;
-                String _section_ = section;
-                for (VariableSubstitutor substitutor : substitutors)
-                {
-                    _key_ = substitutor.substitute(_key_);
-                }
-                ini = new Ini(in, config);
-                return ini.get(_section_, _key_);
-            case CONFIGFILE_TYPE_XML:
-                return parseXPath(in, _key_, System.getProperty("line.separator"));
+                return ((Ini) document).get(section, key);
             default:
-                throw new Exception("Invalid configuration file type '" + type + "'");
+                return evaluateXPath((Document) document, key, System.getProperty("line.separator"));
+        }
+    }
+
+    private static String substitute(String value, VariableSubstitutor... substitutors)
+    {
+        for (VariableSubstitutor substitutor : substitutors)
+        {
+            value = substitutor.substitute(value);
         }
+        return value;
     }
 
-    private static String parseXPath(InputStream in, String expression, String separator)
-            throws ParserConfigurationException, SAXException, IOException, XPathExpressionException
+    private static String evaluateXPath(Document doc, String expression, String separator)
+            throws XPathExpressionException
     {
-        DocumentBuilderFactory domFactory = DocumentBuilderFactory.newInstance();
-        domFactory.setNamespaceAware(true);
-        DocumentBuilder builder;
-        builder = domFactory.newDocumentBuilder();
-        Document doc = builder.parse(in);
-        XPath xpath = XPathFactory.newInstance().newXPath();
-        // XPath Query for showing all nodes value
-        XPathExpression expr = xpath.compile(expression);
-        Object result = expr.evaluate(doc, XPathConstants.NODESET);
-        NodeList nodes = (NodeList) result;
+        // XPath Query for showing all nodes value. Neither the compiled expression nor the cached document may be
+        // accessed concurrently
+        XPathExpression expr = ValueCache.getInstance().getXPath(expression);
+        NodeList nodes;
         StringBuffer sb = new StringBuffer();
-        for (int i = 0; i < nodes.getLength(); i++)
+        synchronized (expr)
         {
-            String value = nodes.item(i).getNodeValue();
-            if (value != null)
+            synchronized (doc)
             {
-                if (sb.length() > 0)
+                nodes = (NodeList) expr.evaluate(doc, XPathConstants.NODESET);
+                for (int i = 0; i < nodes.getLength(); i++)
                 {
-                    sb.append(separator);
+                    String value = nodes.item(i).getNodeValue();
+                    if (value != null)
+                    {
+                        if (sb.length() > 0)
+                        {
+                            sb.append(separator);
+                        }
+                        sb.append(value);
+                    }
                 }
-                sb.append(value);
             }
         }
         return sb.toString();
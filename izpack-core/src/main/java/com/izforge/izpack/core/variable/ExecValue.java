@@ -22,6 +22,8 @@
 package com.izforge.izpack.core.variable;
 
 import java.io.Serializable;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
 
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
@@ -40,6 +42,11 @@ public class ExecValue extends ValueImpl implements Serializable
     private String dir;
     private boolean useStdErr = true;
 
+    /**
+     * The period to cache the command output for, in milliseconds. If {@code 0}, the command is run on each resolve.
+     */
+    private long cacheTimeout;
+
     public ExecValue(String[] command, String dir, boolean isShellCommand, boolean useStdErr)
     {
         super();
@@ -88,6 +95,28 @@ public class ExecValue extends ValueImpl implements Serializable
         this.cmd = cmd;
     }
 
+    /**
+     * Returns the period to cache the command output for.
+     *
+     * @return the period, in milliseconds. If {@code 0}, the command is run on each resolve
+     */
+    public long getCacheTimeout()
+    {
+        return cacheTimeout;
+    }
+
+    /**
+     * Sets the period to cache the command output for.
+     * <p/>
+     * Output is shared by all values that run the same command in the same directory.
+     *
+     * @param cacheTimeout the period, in milliseconds. If {@code 0}, the command is run on each resolve
+     */
+    public void setCacheTimeout(long cacheTimeout)
+    {
+        this.cacheTimeout = cacheTimeout;
+    }
+
     @Override
     public void validate() throws Exception
     {
@@ -98,16 +127,17 @@ public class ExecValue extends ValueImpl implements Serializable
     }
 
     @Override
-    public String resolve()
+    public String resolve() throws Exception
     {
         VariableSubstitutor substitutor = new VariableSubstitutorImpl(getInstallData().getVariables());
         return resolve(substitutor);
     }
 
     @Override
-    public String resolve(VariableSubstitutor... substitutors)
+    public String resolve(VariableSubstitutor... substitutors) throws Exception
     {
-        String _dir_ = null, _cmd_[] = new String[cmd.length];
+        String _dir_ = null;
+        final String _cmd_[] = new String[cmd.length];
 
         for (VariableSubstitutor substitutor : substitutors)
         {
@@ -123,8 +153,22 @@ public class ExecValue extends ValueImpl implements Serializable
             }
             _cmd_[i] = _cmdarg_;
         }
+        final String workingDir = _dir_;
+        String key = Arrays.toString(_cmd_) + ":" + workingDir + ":" + useStdErr;
+        return ValueCache.getInstance().getResult(key, cacheTimeout, new Callable<String>()
+        {
+            @Override
+            public String call()
+            {
+                return execute(_cmd_, workingDir);
+            }
+        });
+    }
+
+    private String execute(String[] command, String dir)
+    {
         String[] execOut = new String[2];
-        int ret = new FileExecutor().executeCommand(_cmd_, execOut, _dir_);
+        int ret = new FileExecutor().executeCommand(command, execOut, dir);
         if (ret == 0)
         {
             if (useStdErr)
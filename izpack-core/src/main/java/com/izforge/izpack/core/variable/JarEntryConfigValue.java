@@ -19,6 +19,7 @@
 
 package com.izforge.izpack.core.variable;
 
+import java.io.File;
 import java.io.InputStream;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
@@ -38,7 +39,7 @@ public class JarEntryConfigValue extends ZipEntryConfigFileValue
     @Override
     public String resolve() throws Exception
     {
-        return super.resolve(getJarEntryInputStream(getFilename(), getEntryname()));
+        return resolve(new File(getFilename()), getEntryname());
     }
 
     @Override
@@ -54,25 +55,33 @@ public class JarEntryConfigValue extends ZipEntryConfigFileValue
         {
             _entryname_ = substitutor.substitute(_entryname_);
         }
-        return super.resolve(getJarEntryInputStream(_filename_, _entryname_), substitutors);
+        return resolve(new File(_filename_), _entryname_, substitutors);
     }
 
-    private InputStream getJarEntryInputStream(String filename, String entryname) throws Exception
+    @Override
+    protected InputStream open(File file, String entryname) throws Exception
     {
         JarFile jarfile;
         try
         {
-            jarfile = new JarFile(filename);
+            jarfile = new JarFile(file);
+        }
+        catch (ZipException ze)
+        {
+            throw new Exception("Error opening jar file " + file, ze);
+        }
+        try
+        {
             JarEntry entry = jarfile.getJarEntry(entryname);
             if (entry == null)
             {
                 throw new Exception("Jar file entry " + entryname + " not found in " + jarfile.getName());
             }
-            return jarfile.getInputStream(entry);
+            return read(jarfile.getInputStream(entry));
         }
-        catch (ZipException ze)
+        finally
         {
-            throw new Exception("Error opening jar file " + filename, ze);
+            jarfile.close();
         }
     }
 
@@ -0,0 +1,129 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.core.variable;
+
+import java.io.File;
+import java.io.Serializable;
+
+import com.izforge.izpack.api.substitutor.VariableSubstitutor;
+import com.izforge.izpack.core.os.JavaDiscovery;
+import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
+
+
+/**
+ * A value that is the output of running <em>java -version</em> with a java launcher.
+ * <p/>
+ * The output is obtained from {@link JavaDiscovery}, so each launcher is only run once per installer session, and
+ * the output is shared with the other users of the discovery.
+ *
+ * @author Tim Anderson
+ */
+public class JavaVersionValue extends ValueImpl implements Serializable
+{
+    private static final long serialVersionUID = 4412905471327340182L;
+
+    /**
+     * The java launcher. If it has no directory, it is searched for on the <em>PATH</em>.
+     */
+    private String launcher;
+
+    /**
+     * Determines if the standard error output is used, rather than the standard output.
+     */
+    private boolean useStdErr = true;
+
+    /**
+     * Constructs a {@code JavaVersionValue}.
+     *
+     * @param launcher  the java launcher. If it has no directory, it is searched for on the <em>PATH</em>
+     * @param useStdErr if {@code true}, use the standard error output, else use the standard output
+     */
+    public JavaVersionValue(String launcher, boolean useStdErr)
+    {
+        super();
+        this.launcher = launcher;
+        this.useStdErr = useStdErr;
+    }
+
+    /**
+     * Returns the java launcher.
+     *
+     * @return the java launcher
+     */
+    public String getLauncher()
+    {
+        return launcher;
+    }
+
+    @Override
+    public void validate() throws Exception
+    {
+        if (this.launcher == null || this.launcher.length() <= 0)
+        {
+            throw new IllegalArgumentException("No or empty java launcher");
+        }
+    }
+
+    @Override
+    public String resolve() throws Exception
+    {
+        VariableSubstitutor substitutor = new VariableSubstitutorImpl(getInstallData().getVariables());
+        return resolve(substitutor);
+    }
+
+    @Override
+    public String resolve(VariableSubstitutor... substitutors) throws Exception
+    {
+        String _launcher_ = launcher;
+        for (VariableSubstitutor substitutor : substitutors)
+        {
+            _launcher_ = substitutor.substitute(_launcher_, null);
+        }
+        File java = getLauncher(_launcher_);
+        if (java == null)
+        {
+            return null;
+        }
+        String[] output = JavaDiscovery.getInstance().getVersionOutput(java);
+        if (output == null)
+        {
+            return null;
+        }
+        // java -version writes to stderr
+        return useStdErr ? output[1] : output[0];
+    }
+
+    /**
+     * Locates a java launcher.
+     *
+     * @param path the launcher path. If it has no directory, it is searched for on the <em>PATH</em>
+     * @return the launcher, or {@code null} if it doesn't exist
+     */
+    private File getLauncher(String path)
+    {
+        File file = new File(path);
+        if (file.getParent() == null)
+        {
+            return JavaDiscovery.getInstance().findOnPath(path);
+        }
+        return file.isFile() ? file : null;
+    }
+}
@@ -23,7 +23,7 @@ package com.izforge.izpack.core.variable;
 
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 
-import java.io.FileInputStream;
+import java.io.File;
 import java.io.Serializable;
 
 public class PlainConfigFileValue extends ConfigFileValue implements Serializable
@@ -64,7 +64,7 @@ public class PlainConfigFileValue extends ConfigFileValue implements Serializabl
     @Override
     public String resolve() throws Exception
     {
-        return resolve(new FileInputStream(location));
+        return resolve(new File(location), null);
     }
 
     @Override
@@ -76,6 +76,6 @@ public class PlainConfigFileValue extends ConfigFileValue implements Serializabl
         {
             _location_ = substitutor.substitute(_location_);
         }
-        return resolve(new FileInputStream(_location_), substitutors);
+        return resolve(new File(_location_), null, substitutors);
     }
 }
@@ -0,0 +1,319 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.core.variable;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+
+/**
+ * Caches the data that dynamic variable values are resolved from, so that refreshing dynamic variables doesn't
+ * re-read files or re-run commands unnecessarily.
+ * <p/>
+ * Three kinds of data are cached:
+ * <ul>
+ * <li>parsed configuration documents. These are keyed on the file and the format they are parsed with, and are
+ * shared by all values that read the same file. A document is re-parsed if the modification time or length of
+ * its file changes.</li>
+ * <li>compiled XPath expressions.</li>
+ * <li>command output. This is only cached for the period specified by each value.</li>
+ * </ul>
+ * Cached documents and expressions may be shared between threads, so must only be read. As
+ * {@code XPathExpression} isn't thread safe, callers should synchronize on an expression when evaluating it.
+ *
+ * @author Tim Anderson
+ */
+public class ValueCache
+{
+
+    /**
+     * The shared instance.
+     */
+    private static final ValueCache INSTANCE = new ValueCache();
+
+    /**
+     * The maximum number of documents to cache.
+     */
+    private static final int MAX_DOCUMENTS = 32;
+
+    /**
+     * The maximum number of XPath expressions to cache.
+     */
+    private static final int MAX_EXPRESSIONS = 128;
+
+    /**
+     * The maximum number of command results to cache.
+     */
+    private static final int MAX_RESULTS = 64;
+
+    /**
+     * The cached documents, keyed on file, entry and format.
+     */
+    private final Map<String, Document> documents = new LRUMap<String, Document>(MAX_DOCUMENTS);
+
+    /**
+     * The cached XPath expressions, keyed on expression.
+     */
+    private final Map<String, XPathExpression> expressions = new LRUMap<String, XPathExpression>(MAX_EXPRESSIONS);
+
+    /**
+     * The cached command results, keyed on command.
+     */
+    private final Map<String, Result> results = new LRUMap<String, Result>(MAX_RESULTS);
+
+
+    /**
+     * Returns the shared instance.
+     *
+     * @return the shared instance
+     */
+    public static ValueCache getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns a parsed document, parsing it if it isn't cached, or its file has changed since it was parsed.
+     *
+     * @param file   the file containing the document
+     * @param entry  the entry within the file, for zip and jar files. May be {@code null}
+     * @param format identifies the format the document is parsed with
+     * @param parser parses the document
+     * @return the parsed document
+     * @throws Exception if the document cannot be parsed
+     */
+    public Object getDocument(File file, String entry, String format, Callable<Object> parser) throws Exception
+    {
+        String key = file.getAbsolutePath() + "!" + ((entry != null) ? entry : "") + "!" + format;
+        long modified = file.lastModified();
+        long length = file.length();
+        Document document;
+        synchronized (documents)
+        {
+            document = documents.get(key);
+        }
+        if (document == null || document.modified != modified || document.length != length || modified == 0)
+        {
+            // parse outside the lock. Concurrent parses of the same document produce equivalent results
+            document = new Document(parser.call(), modified, length);
+            synchronized (documents)
+            {
+                documents.put(key, document);
+            }
+        }
+        return document.content;
+    }
+
+    /**
+     * Returns a compiled XPath expression.
+     *
+     * @param expression the expression
+     * @return the compiled expression
+     * @throws XPathExpressionException if the expression cannot be compiled
+     */
+    public XPathExpression getXPath(String expression) throws XPathExpressionException
+    {
+        XPathExpression result;
+        synchronized (expressions)
+        {
+            result = expressions.get(expression);
+        }
+        if (result == null)
+        {
+            result = XPathFactory.newInstance().newXPath().compile(expression);
+            synchronized (expressions)
+            {
+                XPathExpression existing = expressions.get(expression);
+                if (existing != null)
+                {
+                    result = existing;
+                }
+                else
+                {
+                    expressions.put(expression, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the result of a command, running it if it isn't cached, or the cached result has expired.
+     *
+     * @param key     the key identifying the command
+     * @param timeout the period to cache the result for, in milliseconds. If {@code 0}, the command is always run
+     * @param command runs the command
+     * @return the result of the command. May be {@code null}
+     * @throws Exception if the command fails
+     */
+    public String getResult(String key, long timeout, Callable<String> command) throws Exception
+    {
+        if (timeout <= 0)
+        {
+            return command.call();
+        }
+        long now = System.nanoTime();
+        Result result;
+        synchronized (results)
+        {
+            result = results.get(key);
+        }
+        if (result == null || now - result.time >= timeout * 1000000L)
+        {
+            result = new Result(command.call(), now);
+            synchronized (results)
+            {
+                results.put(key, result);
+            }
+        }
+        return result.value;
+    }
+
+    /**
+     * Discards all cached data.
+     */
+    public void clear()
+    {
+        synchronized (documents)
+        {
+            documents.clear();
+        }
+        synchronized (expressions)
+        {
+            expressions.clear();
+        }
+        synchronized (results)
+        {
+            results.clear();
+        }
+    }
+
+    /**
+     * A parsed document, and the state of its file when it was parsed.
+     */
+    private static class Document
+    {
+
+        /**
+         * The parsed document.
+         */
+        private final Object content;
+
+        /**
+         * The modification time of the file.
+         */
+        private final long modified;
+
+        /**
+         * The length of the file.
+         */
+        private final long length;
+
+        /**
+         * Constructs a {@code Document}.
+         *
+         * @param content  the parsed document
+         * @param modified the modification time of the file
+         * @param length   the length of the file
+         */
+        public Document(Object content, long modified, long length)
+        {
+            this.content = content;
+            this.modified = modified;
+            this.length = length;
+        }
+    }
+
+    /**
+     * The result of a command, and the time it was run.
+     */
+    private static class Result
+    {
+
+        /**
+         * The result. May be {@code null}.
+         */
+        private final String value;
+
+        /**
+         * The time the command was run, in nanoseconds.
+         */
+        private final long time;
+
+        /**
+         * Constructs a {@code Result}.
+         *
+         * @param value the result. May be {@code null}
+         * @param time  the time the command was run, in nanoseconds
+         */
+        public Result(String value, long time)
+        {
+            this.value = value;
+            this.time = time;
+        }
+    }
+
+    /**
+     * A map that evicts its least recently used entry when full.
+     */
+    private static class LRUMap<K, V> extends LinkedHashMap<K, V>
+    {
+
+        /**
+         * The serialization version identifier.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The maximum number of entries.
+         */
+        private final int capacity;
+
+        /**
+         * Constructs an {@code LRUMap}.
+         *
+         * @param capacity the maximum number of entries
+         */
+        public LRUMap(int capacity)
+        {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        /**
+         * Determines if the eldest entry should be removed.
+         *
+         * @param eldest the eldest entry
+         * @return {@code true} if the map is full
+         */
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest)
+        {
+            return size() > capacity;
+        }
+    }
+}
@@ -19,6 +19,10 @@
 
 package com.izforge.izpack.core.variable;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
@@ -77,7 +81,7 @@ public class ZipEntryConfigFileValue extends ConfigFileValue
     @Override
     public String resolve() throws Exception
     {
-        return super.resolve(getZipEntryInputStream(getFilename(), getEntryname()));
+        return resolve(new File(getFilename()), getEntryname());
     }
 
     @Override
@@ -93,25 +97,59 @@ public class ZipEntryConfigFileValue extends ConfigFileValue
         {
             _entryname_ = substitutor.substitute(_entryname_);
         }
-        return super.resolve(getZipEntryInputStream(_filename_, _entryname_), substitutors);
+        return resolve(new File(_filename_), _entryname_, substitutors);
     }
 
-    private InputStream getZipEntryInputStream(String filename, String entryname) throws Exception
+    @Override
+    protected InputStream open(File file, String entryname) throws Exception
     {
         ZipFile zipfile;
         try
         {
-            zipfile = new ZipFile(filename);
+            zipfile = new ZipFile(file);
+        }
+        catch (ZipException ze)
+        {
+            throw new Exception("Error opening zip file " + file, ze);
+        }
+        try
+        {
             ZipEntry entry = zipfile.getEntry(entryname);
             if (entry == null)
             {
                 throw new Exception("Zip file entry " + entryname + " not found in " + zipfile.getName());
             }
-            return zipfile.getInputStream(entry);
+            return read(zipfile.getInputStream(entry));
         }
-        catch (ZipException ze)
+        finally
+        {
+            zipfile.close();
+        }
+    }
+
+    /**
+     * Reads an entry into memory, so that its archive may be closed.
+     *
+     * @param in the entry stream
+     * @return a stream containing the entry content
+     * @throws IOException for any I/O error
+     */
+    protected InputStream read(InputStream in) throws IOException
+    {
+        try
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+            {
+                out.write(buffer, 0, read);
+            }
+            return new ByteArrayInputStream(out.toByteArray());
+        }
+        finally
         {
-            throw new Exception("Error opening zip file " + filename, ze);
+            in.close();
         }
     }
 }
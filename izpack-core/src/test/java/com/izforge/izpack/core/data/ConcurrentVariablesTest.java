@@ -0,0 +1,217 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import com.izforge.izpack.api.substitutor.VariableSubstitutor;
+import com.izforge.izpack.core.data.ConcurrentVariables.Listener;
+import com.izforge.izpack.core.data.ConcurrentVariables.Snapshot;
+import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
+
+
+/**
+ * Tests the {@link ConcurrentVariables} class.
+ *
+ * @author Tim Anderson
+ */
+public class ConcurrentVariablesTest
+{
+
+    /**
+     * The variables.
+     */
+    private final ConcurrentVariables variables = new ConcurrentVariables();
+
+    /**
+     * Verifies that variables can be initialised from properties, and that the properties are a copy of them.
+     */
+    @Test
+    public void testProperties()
+    {
+        Properties initial = new Properties();
+        initial.setProperty("var1", "value1");
+        ConcurrentVariables variables = new ConcurrentVariables(initial);
+        initial.setProperty("var1", "changed");
+        assertEquals("value1", variables.get("var1"));
+
+        variables.set("var2", "value2");
+        Properties properties = variables.getProperties();
+        assertEquals("value2", properties.getProperty("var2"));
+        assertEquals(2, properties.size());
+
+        // the copy is independent of the variables
+        properties.setProperty("var3", "value3");
+        assertEquals("${var3} value1", variables.replace("${var3} $var1"));
+        variables.set("var1", null);
+        assertEquals("value1", properties.getProperty("var1"));
+        assertNull(variables.get("var1"));
+        assertNull(variables.getProperties().getProperty("var1"));
+    }
+
+    /**
+     * Verifies that a substitutor constructed from the variables sees subsequent changes to them.
+     */
+    @Test
+    public void testSubstitutor()
+    {
+        VariableSubstitutor substitutor = new VariableSubstitutorImpl(variables);
+        variables.set("var1", "value1");
+        assertEquals("value1", substitutor.substitute("${var1}"));
+        variables.set("var1", "value2");
+        assertEquals("value2", substitutor.substitute("${var1}"));
+    }
+
+    /**
+     * Verifies that the properties serialize as a plain {@code Properties}.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testSerialization() throws Exception
+    {
+        variables.set("var1", "value1");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(variables.getProperties());
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Properties properties = (Properties) in.readObject();
+        assertEquals(Properties.class, properties.getClass());
+        assertEquals("value1", properties.getProperty("var1"));
+    }
+
+    /**
+     * Verifies that listeners are notified of changes to the variables they subscribe to.
+     */
+    @Test
+    public void testListeners()
+    {
+        final List<String> changes = new ArrayList<String>();
+        Listener listener = new Listener()
+        {
+            @Override
+            public void changed(String name, String oldValue, String newValue, long version)
+            {
+                changes.add(name + ":" + oldValue + "->" + newValue);
+            }
+        };
+        variables.addListener("app.home", listener);
+        variables.addPrefixListener("db.", listener);
+
+        variables.set("app.home", "/opt/app");
+        variables.set("app.home", "/opt/app");  // unchanged, so no notification
+        variables.set("app.name", "app");
+        variables.set("db.host", "localhost");
+        variables.set("db.host", null);
+        assertEquals(3, changes.size());
+        assertEquals("app.home:null->/opt/app", changes.get(0));
+        assertEquals("db.host:null->localhost", changes.get(1));
+        assertEquals("db.host:localhost->null", changes.get(2));
+
+        variables.removeListener(listener);
+        variables.set("db.port", "5432");
+        assertEquals(3, changes.size());
+    }
+
+    /**
+     * Verifies that snapshots are immutable, and only copied when variables change.
+     */
+    @Test
+    public void testSnapshot()
+    {
+        variables.set("var1", "value1");
+        Snapshot snapshot1 = variables.getSnapshot();
+        assertEquals("value1", snapshot1.get("var1"));
+        assertEquals(variables.getVersion(), snapshot1.getVersion());
+        assertSame(snapshot1, variables.getSnapshot());
+
+        variables.set("var1", "value2");
+        Snapshot snapshot2 = variables.getSnapshot();
+        assertEquals("value1", snapshot1.get("var1"));
+        assertEquals("value2", snapshot2.get("var1"));
+        assertTrue(snapshot2.getVersion() > snapshot1.getVersion());
+    }
+
+    /**
+     * Verifies that variables may be changed concurrently, and that each change is versioned.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testConcurrentChanges() throws Exception
+    {
+        final int threads = 4;
+        final int count = 1000;
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<Thread>();
+        for (int i = 0; i < threads; ++i)
+        {
+            final String prefix = "thread" + i + ".";
+            Thread thread = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                    }
+                    catch (InterruptedException ignore)
+                    {
+                        return;
+                    }
+                    for (int j = 0; j < count; ++j)
+                    {
+                        variables.set(prefix + j, Integer.toString(j));
+                        variables.set("shared", prefix + j);
+                    }
+                }
+            };
+            workers.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : workers)
+        {
+            thread.join();
+        }
+        assertEquals(threads * count + 1, variables.getSnapshot().getNames().size());
+        assertEquals(Integer.toString(count - 1), variables.get("thread0." + (count - 1)));
+        assertTrue(variables.getVersion() >= threads * count + 1);
+        assertTrue(variables.getVersion("shared") <= variables.getVersion());
+        assertFalse(variables.getVersion("shared") == 0);
+    }
+}
@@ -23,6 +23,7 @@ package com.izforge.izpack.core.data;
 
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -192,6 +193,42 @@ public class DefaultVariablesTest
         assertNull(variables.replace(null));
     }
 
+    /**
+     * Verifies that variable versions are only incremented when a variable changes, and that reads can be tracked.
+     */
+    @Test
+    public void testVersions()
+    {
+        DefaultVariables variables = new DefaultVariables();
+        assertEquals(0, variables.getVersion());
+        assertEquals(0, variables.getVersion("var1"));
+
+        variables.set("var1", "value1");
+        long version = variables.getVersion();
+        assertTrue(version > 0);
+        assertEquals(version, variables.getVersion("var1"));
+
+        // setting the same value, or unsetting a non-existent variable, doesn't change the version
+        variables.set("var1", "value1");
+        variables.set("var2", null);
+        assertEquals(version, variables.getVersion());
+
+        variables.set("var2", "value2");
+        assertTrue(variables.getVersion() > version);
+        assertEquals(version, variables.getVersion("var1"));
+        assertEquals(variables.getVersion(), variables.getVersion("var2"));
+
+        // verify reads are tracked, including those made via replace(), and reported to enclosing levels
+        variables.startTracking();
+        variables.get("var1");
+        variables.startTracking();
+        variables.replace("${var2} $var3");
+        Set<String> inner = variables.stopTracking();
+        Set<String> outer = variables.stopTracking();
+        assertEquals(new HashSet<String>(Arrays.asList("var2", "var3")), inner);
+        assertEquals(new HashSet<String>(Arrays.asList("var1", "var2", "var3")), outer);
+    }
+
     /**
      * Tests simple dynamic variables.
      */
@@ -299,6 +336,41 @@ public class DefaultVariablesTest
         assertEquals("check dependent variable","depValue", variables.get("depVar1"));
    }
 
+    /**
+     * Verifies that dynamic variables are refreshed when the variables they depend on change, regardless of the
+     * order they are declared in.
+     */
+    @Test
+    public void testRefreshDependenciesChanged()
+    {
+        variables.add(createDynamic("depVar1", "${depVar2}/a"));
+        variables.add(createDynamic("depVar2", "${depVar3}/b"));
+        variables.add(createDynamic("other", "${otherVar}"));
+        variables.set("depVar3", "c");
+        variables.set("otherVar", "d");
+        variables.refresh();
+        assertEquals("c/b/a", variables.get("depVar1"));
+        assertEquals("d", variables.get("other"));
+
+        // change the end of the chain, and verify the change propagates
+        variables.set("depVar3", "e");
+        variables.refresh();
+        assertEquals("e/b", variables.get("depVar2"));
+        assertEquals("e/b/a", variables.get("depVar1"));
+
+        // change an unrelated variable, and verify the chain is untouched
+        long version = variables.getVersion("depVar1");
+        variables.set("otherVar", "f");
+        variables.refresh();
+        assertEquals("f", variables.get("other"));
+        assertEquals(version, variables.getVersion("depVar1"));
+
+        // refreshing without changes leaves all variables untouched
+        version = variables.getVersion();
+        variables.refresh();
+        assertEquals(version, variables.getVersion());
+    }
+
    /**
     * Tests dynamic variables with a deeper dependency and checkonce==true
     * @see https://jira.codehaus.org/browse/IZPACK-1182
@@ -519,6 +591,37 @@ public class DefaultVariablesTest
        assertTrue("cyclic dependency must throw an exception", catched);
    }
    
+   /**
+    * Verifies that a check-once dynamic variable that refers to itself is evaluated once, rather than being
+    * treated as a loop.
+    */
+   @Test
+   public void testSelfReference()
+   {
+       variables.set("path", "/usr/bin");
+       variables.add(createDynamicCheckonce("path", "${path}:/opt/bin"));
+       variables.refresh();
+       assertEquals("/usr/bin:/opt/bin", variables.get("path"));
+
+       variables.refresh();
+       assertEquals("/usr/bin:/opt/bin", variables.get("path"));
+   }
+
+   /**
+    * Verifies that a cyclic reference of values is evaluated until it stabilises, rather than being treated as a
+    * loop.
+    */
+   @Test
+   public void testCyclicReferenceStabilises()
+   {
+       variables.set("b", "value");
+       variables.add(createDynamicCheckonce("a", "${b}"));
+       variables.add(createDynamic("b", "${a}"));
+       variables.refresh();
+       assertEquals("value", variables.get("a"));
+       assertEquals("value", variables.get("b"));
+   }
+
    /**
     * Test loop detection with no dynamic variables at all
     * Ensure, that no exception is thrown 
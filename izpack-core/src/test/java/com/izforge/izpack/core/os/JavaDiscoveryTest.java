@@ -0,0 +1,149 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.os;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.izforge.izpack.core.os.JavaDiscovery.JavaInstallation;
+
+/**
+ * Tests {@link JavaDiscovery}.
+ *
+ * @author Tim Anderson
+ */
+public class JavaDiscoveryTest
+{
+
+    /**
+     * Temporary folder to create installations in.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Verifies that installations under a configured root are found, with versions read from their release files.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testConfiguredRoot() throws IOException
+    {
+        File root = folder.newFolder("java");
+        File jdk = createInstallation(root, "jdk1.7.0_80", "1.7.0_80", true);
+        File jre = createInstallation(root, "jre1.6.0_45", "1.6.0_45", false);
+        new File(root, "notjava").mkdir();
+
+        JavaDiscovery discovery = new JavaDiscovery();
+        List<JavaInstallation> installations = discovery.getInstallations(null, root.getPath());
+        JavaInstallation jdkInstallation = find(installations, jdk);
+        JavaInstallation jreInstallation = find(installations, jre);
+        assertEquals("1.7.0_80", jdkInstallation.getVersion());
+        assertTrue(jdkInstallation.isJDK());
+        assertEquals("1.6.0_45", jreInstallation.getVersion());
+        assertFalse(jreInstallation.isJDK());
+        assertNull(find(installations, new File(root, "notjava")));
+
+        // results are cached
+        assertSame(jdkInstallation, discovery.getInstallation(jdk));
+        assertNull(discovery.getInstallation(new File(root, "notjava")));
+    }
+
+    /**
+     * Verifies that a configured root may itself be an installation.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testRootIsInstallation() throws IOException
+    {
+        File jdk = createInstallation(folder.getRoot(), "jdk", "11.0.2", true);
+
+        JavaDiscovery discovery = new JavaDiscovery();
+        JavaInstallation installation = find(discovery.getInstallations(null, jdk.getPath()), jdk);
+        assertNotNull(installation);
+        assertEquals("11.0.2", installation.getVersion());
+    }
+
+    /**
+     * Creates a fake Java installation.
+     *
+     * @param parent  the parent directory
+     * @param name    the installation directory name
+     * @param version the version to write to the release file
+     * @param jdk     if {@code true}, include a compiler
+     * @return the installation directory
+     * @throws IOException for any I/O error
+     */
+    private File createInstallation(File parent, String name, String version, boolean jdk) throws IOException
+    {
+        File home = new File(parent, name);
+        File bin = new File(home, "bin");
+        assertTrue(bin.mkdirs());
+        assertTrue(new File(bin, "java").createNewFile());
+        if (jdk)
+        {
+            assertTrue(new File(bin, "javac").createNewFile());
+        }
+        FileOutputStream release = new FileOutputStream(new File(home, "release"));
+        try
+        {
+            release.write(("JAVA_VERSION=\"" + version + "\"\nOS_NAME=\"Linux\"\n").getBytes("UTF-8"));
+        }
+        finally
+        {
+            release.close();
+        }
+        return home;
+    }
+
+    /**
+     * Finds an installation by directory.
+     *
+     * @param installations the installations
+     * @param home          the installation directory
+     * @return the corresponding installation, or {@code null} if none is found
+     * @throws IOException if the canonical path cannot be determined
+     */
+    private JavaInstallation find(List<JavaInstallation> installations, File home) throws IOException
+    {
+        for (JavaInstallation installation : installations)
+        {
+            if (installation.getHome().equals(home.getCanonicalFile()))
+            {
+                return installation;
+            }
+        }
+        return null;
+    }
+}
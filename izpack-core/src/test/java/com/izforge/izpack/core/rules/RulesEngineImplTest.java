@@ -22,6 +22,9 @@ package com.izforge.izpack.core.rules;
 
 import static junit.framework.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
@@ -505,6 +508,176 @@ public class RulesEngineImplTest
         assertEquals(true ^ true && true ^ true, condition.isTrue());
     }
 
+    /**
+     * Verifies that parentheses may be used to group complex expressions.
+     */
+    @Test
+    @SuppressWarnings({"PointlessBooleanExpression", "ConstantConditions"})
+    public void testComplexParentheses()
+    {
+        Condition condition;
+
+        condition = engine.getCondition("@(true || false) && false");
+        assertEquals((true || false) && false, condition.isTrue());
+
+        condition = engine.getCondition("@true || (false && false)");
+        assertEquals(true || (false && false), condition.isTrue());
+
+        condition = engine.getCondition("@!(true && false)");
+        assertEquals(!(true && false), condition.isTrue());
+
+        condition = engine.getCondition("@!(false || (true ^ true))");
+        assertEquals(!(false || (true ^ true)), condition.isTrue());
+
+        condition = engine.getCondition("@((false)) || !!true");
+        assertEquals(false || !!true, condition.isTrue());
+
+        assertNull(engine.getCondition("@(true && false"));
+        assertNull(engine.getCondition("@true && false)"));
+        assertNull(engine.getCondition("@true && "));
+        assertNull(engine.getCondition("@true && undefined"));
+    }
+
+    /**
+     * Verifies that expressions are compiled once, and recompiled when conditions are added.
+     */
+    @Test
+    public void testExpressionCache()
+    {
+        Condition complex = engine.getCondition("@true && !false");
+        Condition simple = engine.getCondition("true+!false");
+        assertTrue(complex.isTrue());
+        assertTrue(simple.isTrue());
+        assertSame(complex, engine.getCondition("@true && !false"));
+        assertSame(simple, engine.getCondition("true+!false"));
+
+        // expressions referring to undefined conditions should be resolved once the conditions are added
+        assertNull(engine.getCondition("@true && other"));
+        assertNull(engine.getCondition("true+other"));
+        Condition other = new JavaCondition();
+        other.setId("other");
+        engine.addCondition(other);
+
+        Condition complexOther = engine.getCondition("@true && other");
+        Condition simpleOther = engine.getCondition("true+other");
+        assertFalse(complexOther.isTrue());
+        assertFalse(simpleOther.isTrue());
+        assertNotSame(complex, engine.getCondition("@true && !false"));
+    }
+
+    /**
+     * Verifies that the results of cacheable conditions are cached until a variable they read changes.
+     */
+    @Test
+    public void testCachedEvaluation()
+    {
+        DefaultVariables variables = new DefaultVariables();
+        InstallData installData = new AutomatedInstallData(variables, Platforms.LINUX);
+        RulesEngine rules = new RulesEngineImpl(installData, null, Platforms.LINUX);
+        CountingCondition cacheable = new CountingCondition("cacheable", "var1", true);
+        CountingCondition uncacheable = new CountingCondition("uncacheable", "var1", false);
+        cacheable.setInstallData(installData);
+        uncacheable.setInstallData(installData);
+        rules.addCondition(cacheable);
+        rules.addCondition(uncacheable);
+
+        variables.set("var1", "yes");
+        assertTrue(rules.isConditionTrue("cacheable"));
+        assertTrue(rules.isConditionTrue("cacheable"));
+        assertTrue(rules.isConditionTrue("uncacheable"));
+        assertTrue(rules.isConditionTrue("uncacheable"));
+        assertEquals(1, cacheable.count);
+        assertEquals(2, uncacheable.count);
+
+        // changing an unrelated variable shouldn't cause re-evaluation
+        variables.set("var2", "foo");
+        assertTrue(rules.isConditionTrue("cacheable"));
+        assertEquals(1, cacheable.count);
+
+        // changing the variable read should
+        variables.set("var1", "no");
+        assertFalse(rules.isConditionTrue("cacheable"));
+        assertEquals(2, cacheable.count);
+
+        // verify expressions are cached if all their operands are cacheable
+        assertFalse(rules.isConditionTrue("@cacheable || !izpack.linuxinstall"));
+        assertFalse(rules.isConditionTrue("@cacheable || !izpack.linuxinstall"));
+        assertEquals(3, cacheable.count);
+        variables.set("var1", "yes");
+        assertTrue(rules.isConditionTrue("@cacheable || !izpack.linuxinstall"));
+        assertEquals(4, cacheable.count);
+
+        assertTrue(rules.isConditionTrue("@cacheable && uncacheable"));
+        assertTrue(rules.isConditionTrue("@cacheable && uncacheable"));
+        assertEquals(6, cacheable.count);
+    }
+
+    /**
+     * Verifies that conditions that depend only on the platform are replaced with constants, and that constant
+     * operands are removed from logical conditions.
+     */
+    @Test
+    public void testFoldConstantConditions()
+    {
+        DefaultVariables variables = new DefaultVariables();
+        InstallData installData = new AutomatedInstallData(variables, Platforms.LINUX);
+        RulesEngineImpl rules = new RulesEngineImpl(installData, null, Platforms.LINUX);
+        Condition linux = rules.getCondition(LINUX_INSTALL);
+        Condition windows = rules.getCondition(WINDOWS_INSTALL);
+        Condition variable = new VariableCondition("var1", "yes");
+        variable.setId("variable");
+
+        AndCondition and1 = new AndCondition(rules);
+        and1.setId("and1");
+        and1.addOperands(linux, variable);
+        AndCondition and2 = new AndCondition(rules);
+        and2.setId("and2");
+        and2.addOperands(windows, variable);
+        OrCondition or = new OrCondition(rules);
+        or.setId("or");
+        or.addOperands(windows, rules.getCondition(MAC_INSTALL));
+        XorCondition xor = new XorCondition(rules);
+        xor.setId("xor");
+        xor.addOperands(linux, variable);
+        Condition not = NotCondition.createFromCondition(windows, rules);
+        not.setId("not");
+        for (Condition condition : Arrays.asList(variable, and1, and2, or, xor, not))
+        {
+            condition.setInstallData(installData);
+            rules.addCondition(condition);
+        }
+
+        rules.foldConstantConditions();
+
+        // and1 only depends on the variable
+        assertSame(and1, rules.getCondition("and1"));
+        assertEquals(Arrays.asList(variable), and1.getOperands());
+
+        // xor retains its constant operand, as it inverts the result
+        assertSame(xor, rules.getCondition("xor"));
+        assertEquals(2, xor.getOperands().size());
+
+        // and2, or and not are constant
+        assertFalse(rules.getCondition("and2") instanceof AndCondition);
+        assertFalse(rules.getCondition("or") instanceof OrCondition);
+        assertFalse(rules.getCondition("not") instanceof NotCondition);
+        assertFalse(rules.isConditionTrue("and2"));
+        assertFalse(rules.isConditionTrue("or"));
+        assertTrue(rules.isConditionTrue("not"));
+
+        variables.set("var1", "yes");
+        assertTrue(rules.isConditionTrue("and1"));
+        assertFalse(rules.isConditionTrue("xor"));
+        variables.set("var1", "no");
+        assertFalse(rules.isConditionTrue("and1"));
+        assertTrue(rules.isConditionTrue("xor"));
+
+        // expressions are folded when bound
+        Condition expression = rules.getCondition("@" + LINUX_INSTALL + " && !" + WINDOWS_INSTALL);
+        assertFalse(expression instanceof AndCondition);
+        assertTrue(expression.isTrue());
+    }
+
     /**
      * Verifies that conditions read from a <tt>conditions.xml</tt> have the expected type.
      */
@@ -773,6 +946,63 @@ public class RulesEngineImplTest
         return rules;
     }
 
-}
+    /**
+     * A condition that counts the number of times it is evaluated.
+     */
+    private static class CountingCondition extends Condition
+    {
 
+        /**
+         * The variable to read.
+         */
+        private final String name;
+
+        /**
+         * Determines if the result may be cached.
+         */
+        private final boolean cacheable;
+
+        /**
+         * The no. of times the condition has been evaluated.
+         */
+        private int count;
+
+        /**
+         * Constructs a {@code CountingCondition}.
+         *
+         * @param id        the condition identifier
+         * @param name      the variable to read. The condition is true if it is <em>yes</em>
+         * @param cacheable determines if the result may be cached
+         */
+        public CountingCondition(String id, String name, boolean cacheable)
+        {
+            setId(id);
+            this.name = name;
+            this.cacheable = cacheable;
+        }
+
+        @Override
+        public boolean isTrue()
+        {
+            ++count;
+            return "yes".equals(getInstallData().getVariable(name));
+        }
 
+        @Override
+        public boolean isCacheable()
+        {
+            return cacheable;
+        }
+
+        @Override
+        public void readFromXML(IXMLElement xmlcondition)
+        {
+        }
+
+        @Override
+        public void makeXMLData(IXMLElement conditionRoot)
+        {
+        }
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.core.substitutor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Properties;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+
+
+/**
+ * Tests the {@link SubstitutionTemplate} class, and its use by {@link VariableSubstitutorBase}.
+ *
+ * @author Tim Anderson
+ */
+public class SubstitutionTemplateTest
+{
+
+    /**
+     * The variables.
+     */
+    private Properties properties;
+
+    /**
+     * The substitutor.
+     */
+    private VariableSubstitutorImpl substitutor;
+
+    /**
+     * Strings to substitute.
+     */
+    private static final String[] STRINGS = {
+            "", "$", "${", "${}", "${A", "${A}", "$A$B", "$A.B-C_1", "${A}x${UNDEFINED}y$UNDEFINED",
+            "%A %{B}", "@A@B@", "@A@ @B@", "@{A}@", "@A", "a$", "$1", "${ENV[UNDEFINED_ENV]}", "${SYSTEM_A_B}",
+            "${SYSTEM[A.B]}", "$A}", "x${A}{y}"};
+
+
+    /**
+     * Sets up the test case.
+     */
+    @Before
+    public void setUp()
+    {
+        properties = new Properties();
+        properties.setProperty("A", "<a&'\"\\>");
+        properties.setProperty("B", "b\r\n");
+        properties.setProperty("A.B-C_1", "c");
+        substitutor = new VariableSubstitutorImpl(properties);
+    }
+
+    /**
+     * Verifies that strings substituted via compiled templates produce the same output as the stream
+     * substitution, for every substitution type.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testTemplatesMatchStreamSubstitution() throws Exception
+    {
+        for (boolean braces : new boolean[]{false, true})
+        {
+            substitutor.setBracesRequired(braces);
+            for (SubstitutionType type : SubstitutionType.values())
+            {
+                for (String str : STRINGS)
+                {
+                    StringWriter writer = new StringWriter();
+                    substitutor.substitute(new StringReader(str), writer, type);
+                    String expected = writer.toString();
+                    assertEquals(expected, substitutor.substitute(str, type));
+                    assertEquals(expected, substitutor.substitute(str, type)); // via the cached template
+                }
+            }
+        }
+    }
+
+    /**
+     * Verifies that cached templates pick up variable changes.
+     */
+    @Test
+    public void testVariableChange()
+    {
+        assertEquals("x<a&'\"\\>y", substitutor.substitute("x${A}y", SubstitutionType.TYPE_PLAIN));
+        properties.setProperty("A", "z");
+        assertEquals("xzy", substitutor.substitute("x${A}y", SubstitutionType.TYPE_PLAIN));
+        properties.remove("A");
+        assertEquals("x${A}y", substitutor.substitute("x${A}y", SubstitutionType.TYPE_PLAIN));
+    }
+
+    /**
+     * Verifies that strings without variable references are returned unchanged.
+     */
+    @Test
+    public void testNoReferences()
+    {
+        String str = "no references @ here";
+        assertSame(str, substitutor.substitute(str, SubstitutionType.TYPE_PLAIN));
+        assertSame(str, substitutor.substitute(str, SubstitutionType.TYPE_SHELL));
+    }
+
+    /**
+     * Verifies that strings whose parse depends on variable values aren't compiled.
+     */
+    @Test
+    public void testValueDependentParse()
+    {
+        // the terminating @ is only consumed if A is defined, else it starts a new reference
+        assertNull(SubstitutionTemplate.compile("@A@B@", SubstitutionType.TYPE_ANT, false));
+        assertNotNull(SubstitutionTemplate.compile("@A @B", SubstitutionType.TYPE_ANT, false));
+
+        assertEquals("<a&'\"\\>B@", substitutor.substitute("@A@B@", SubstitutionType.TYPE_ANT));
+        properties.remove("A");
+        assertEquals("@Ab\r\n", substitutor.substitute("@A@B@", SubstitutionType.TYPE_ANT));
+    }
+
+    /**
+     * Verifies that stream substitution handles references spanning buffer boundaries.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testLargeStream() throws Exception
+    {
+        StringBuilder input = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 5000; ++i)
+        {
+            input.append("text ${A.B-C_1} $UNDEFINED ");
+            expected.append("text c $UNDEFINED ");
+        }
+        StringWriter writer = new StringWriter();
+        int subs = substitutor.substitute(new StringReader(input.toString()), writer, SubstitutionType.TYPE_PLAIN);
+        assertEquals(expected.toString(), writer.toString());
+        assertEquals(10000, subs);
+    }
+}
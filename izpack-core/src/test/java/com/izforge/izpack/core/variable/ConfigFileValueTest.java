@@ -122,6 +122,23 @@ public class ConfigFileValueTest
         }
     }
 
+    /**
+     * Verifies that parsed files are cached, and re-parsed when they change.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testReparseChangedFile() throws Exception
+    {
+        PlainConfigFileValue value = new PlainConfigFileValue(properties.getPath(), ConfigFileValue.CONFIGFILE_TYPE_OPTIONS, null, "test.path", false);
+        Assert.assertEquals("C:\\mypath\\myfile", value.resolve());
+
+        BufferedWriter out = new BufferedWriter(new FileWriter(properties));
+        out.write("test.path = D:\\otherpath\n");
+        out.close();
+        Assert.assertEquals("D:\\otherpath", value.resolve());
+    }
+
     @After
     public void cleanUp() {
        Assert.assertTrue(properties.exists());
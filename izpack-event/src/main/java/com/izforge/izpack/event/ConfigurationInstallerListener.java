@@ -52,6 +52,7 @@ import com.izforge.izpack.core.variable.ConfigFileValue;
 import com.izforge.izpack.core.variable.EnvironmentValue;
 import com.izforge.izpack.core.variable.ExecValue;
 import com.izforge.izpack.core.variable.JarEntryConfigValue;
+import com.izforge.izpack.core.variable.JavaVersionValue;
 import com.izforge.izpack.core.variable.PlainConfigFileValue;
 import com.izforge.izpack.core.variable.PlainValue;
 import com.izforge.izpack.core.variable.RegistryValue;
@@ -1138,12 +1139,47 @@ public class ConfigurationInstallerListener extends AbstractProgressInstallerLis
                         {
                             parseError("Bad execution type " + exectype + " given for dynamic variable " + name);
                         }
+                        String timeout = var.getAttribute("cachetimeout");
+                        if (timeout != null && dynamicVariable.getValue() instanceof ExecValue)
+                        {
+                            try
+                            {
+                                ((ExecValue) dynamicVariable.getValue()).setCacheTimeout(Long.parseLong(timeout));
+                            }
+                            catch (NumberFormatException exception)
+                            {
+                                parseError("'cachetimeout' is not a long: " + timeout);
+                            }
+                        }
                     }
                     else
                     {
                         parseError("Ambiguous execution output value definition for dynamic variable " + name);
                     }
                 }
+                // Check for the output of java -version
+                value = getAttribute(var, "javaversion");
+                if (value != null)
+                {
+                    if (dynamicVariable.getValue() == null)
+                    {
+                        String boolval = var.getAttribute("stderr");
+                        boolean stderr = true;
+                        if (boolval != null)
+                        {
+                            stderr = Boolean.parseBoolean(boolval);
+                        }
+                        if (value.length() <= 0)
+                        {
+                            parseError("No java launcher given in definition of dynamic variable " + name);
+                        }
+                        dynamicVariable.setValue(new JavaVersionValue(value, stderr));
+                    }
+                    else
+                    {
+                        parseError("Ambiguous java version value definition for dynamic variable " + name);
+                    }
+                }
 
                 if (dynamicVariable.getValue() == null)
                 {
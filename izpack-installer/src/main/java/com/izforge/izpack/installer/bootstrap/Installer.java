@@ -35,6 +35,7 @@ import com.izforge.izpack.installer.automation.AutomatedInstaller;
 import com.izforge.izpack.installer.console.ConsoleInstaller;
 import com.izforge.izpack.installer.container.impl.ConsoleInstallerContainer;
 import com.izforge.izpack.installer.container.impl.InstallerContainer;
+import com.izforge.izpack.installer.unpacker.UnpackerBase;
 import com.izforge.izpack.util.Debug;
 import com.izforge.izpack.util.StringTool;
 
@@ -177,6 +178,25 @@ public class Installer
                     {
                         media = args_it.next().trim();
                     }
+                    else if ("-target".equalsIgnoreCase(arg))
+                    {
+                        // install to the file system (the default), or to a tar or zip archive
+                        System.setProperty(UnpackerBase.SINK, args_it.next().trim());
+                    }
+                    else if ("-verify".equalsIgnoreCase(arg))
+                    {
+                        // verify the existing installation rather than installing
+                        System.setProperty(UnpackerBase.VERIFY, "true");
+                    }
+                    else if ("-repair".equalsIgnoreCase(arg))
+                    {
+                        // verify the existing installation, re-extracting missing and modified files
+                        System.setProperty(UnpackerBase.REPAIR, "true");
+                    }
+                    else if ("-verify-report".equalsIgnoreCase(arg))
+                    {
+                        System.setProperty(UnpackerBase.VERIFY_REPORT, args_it.next().trim());
+                    }
                     else
                     {
                         type = INSTALLER_AUTO;
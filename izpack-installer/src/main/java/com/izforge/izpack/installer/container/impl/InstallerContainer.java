@@ -16,6 +16,7 @@ import com.izforge.izpack.api.resource.Locales;
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.core.container.AbstractContainer;
 import com.izforge.izpack.core.container.PlatformProvider;
+import com.izforge.izpack.core.data.ConcurrentVariables;
 import com.izforge.izpack.core.data.DefaultVariables;
 import com.izforge.izpack.core.factory.DefaultObjectFactory;
 import com.izforge.izpack.core.os.RegistryDefaultHandler;
@@ -106,7 +107,7 @@ public abstract class InstallerContainer extends AbstractContainer
         addComponent(MutablePicoContainer.class, pico);
         addComponent(ConditionContainer.class);
         addComponent(Properties.class);
-        addComponent(DefaultVariables.class);
+        addComponent(DefaultVariables.class, ConcurrentVariables.class);
         addComponent(ResourceManager.class);
         addComponent(UninstallDataWriter.class);
         addComponent(ProgressNotifiersImpl.class);
@@ -67,7 +67,7 @@ public class RulesProvider implements Provider
     public RulesEngine provide(AutomatedInstallData installData, DefaultVariables variables,
                                ConditionContainer conditionContainer, Resources resources)
     {
-        RulesEngine result = new RulesEngineImpl(installData, conditionContainer, installData.getPlatform());
+        RulesEngineImpl result = new RulesEngineImpl(installData, conditionContainer, installData.getPlatform());
         Map<String, Condition> conditions = readConditions(resources);
         if (conditions != null && !conditions.isEmpty())
         {
@@ -81,6 +81,8 @@ public class RulesProvider implements Provider
                 result.analyzeXml(xml);
             }
         }
+        // the platform is now fixed, so conditions that depend only on it can be replaced with constants
+        result.foldConstantConditions();
         installData.setRules(result);
         variables.setRules(result);
         return result;
@@ -39,6 +39,7 @@ import com.izforge.izpack.api.data.InstallData;
 import com.izforge.izpack.api.data.Panel;
 import com.izforge.izpack.api.data.Variables;
 import com.izforge.izpack.installer.data.UninstallData;
+import com.izforge.izpack.util.Tracer;
 
 /**
  * Abstract implementation of the {@link PanelViews} interface.
@@ -480,6 +481,7 @@ public abstract class AbstractPanels<T extends AbstractPanelView<V>, V> implemen
     public boolean switchPanel(int newIndex, boolean validate)
     {
         boolean result;
+        long start = Tracer.start();
 
         T panel = getPanelView();
 
@@ -548,6 +550,11 @@ public abstract class AbstractPanels<T extends AbstractPanelView<V>, V> implemen
         }
 
         variables.refresh();
+        if (Tracer.isEnabled())
+        {
+            Tracer.event("panel", start, "from", (oldPanelView != null) ? oldPanelView.getPanel().getPanelId() : null,
+                         "to", newPanel.getPanelId(), "switched", result);
+        }
         return result;
     }
 
@@ -83,32 +83,72 @@ public class InstallerRequirementChecker implements RequirementChecker
     @Override
     public boolean check()
     {
-        boolean fail = false;
-        Messages messages = installData.getMessages();
+        return check(getUnsatisfied());
+    }
 
+    /**
+     * Returns the first installation requirement that isn't met.
+     * <p/>
+     * This evaluates the requirement conditions without prompting, so it may be invoked in advance on another
+     * thread, and the result passed to {@link #check(InstallerRequirement)}.
+     *
+     * @return the first unsatisfied requirement, or <tt>null</tt> if all requirements are met
+     */
+    protected InstallerRequirement getUnsatisfied()
+    {
         for (InstallerRequirement requirement : installData.getInstallerRequirements())
         {
             String id = requirement.getCondition();
             Condition condition = rules.getCondition(id);
             if (condition == null)
             {
-                fail = true;
                 logger.warning(id + " is not a valid condition.");
-                break;
+                return requirement;
             }
             if (!condition.isTrue())
             {
-                fail = true;
-                String message = requirement.getMessage();
-                if (message != null)
-                {
-                    String localizedMessage = messages.get(message);
-                    prompt.message(Prompt.Type.ERROR, localizedMessage);
-                }
-                break;
+                return requirement;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Determines if installation requirements are met, given the first unsatisfied requirement.
+     * <p/>
+     * If there is an unsatisfied requirement with a valid condition and a message, the message is displayed.
+     *
+     * @param unsatisfied the first unsatisfied requirement, or <tt>null</tt> if all requirements are met
+     * @return <tt>true</tt> if requirements are met, otherwise <tt>false</tt>
+     */
+    protected boolean check(InstallerRequirement unsatisfied)
+    {
+        if (unsatisfied != null)
+        {
+            String message = unsatisfied.getMessage();
+            if (message != null && rules.getCondition(unsatisfied.getCondition()) != null)
+            {
+                Messages messages = installData.getMessages();
+                String localizedMessage = messages.get(message);
+                prompt.message(Prompt.Type.ERROR, localizedMessage);
             }
         }
-        return !fail;
+        return unsatisfied == null;
+    }
+
+    /**
+     * Invoked when the installation requirements couldn't be evaluated within the allotted time.
+     * <p/>
+     * This displays an error, as the requirements can't be assumed to be met.
+     *
+     * @param timeout the time allotted, in milliseconds
+     * @return <tt>false</tt>
+     */
+    protected boolean timedOut(long timeout)
+    {
+        Messages messages = installData.getMessages();
+        prompt.message(Prompt.Type.ERROR, messages.get("installer.requirements.timeout", timeout / 1000));
+        return false;
     }
 
 }
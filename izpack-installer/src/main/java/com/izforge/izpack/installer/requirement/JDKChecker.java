@@ -24,7 +24,8 @@ package com.izforge.izpack.installer.requirement;
 import com.izforge.izpack.api.data.InstallData;
 import com.izforge.izpack.api.handler.Prompt;
 import com.izforge.izpack.api.installer.RequirementChecker;
-import com.izforge.izpack.util.FileExecutor;
+import com.izforge.izpack.core.os.JavaDiscovery;
+import com.izforge.izpack.core.os.RegistryDefaultHandler;
 
 
 /**
@@ -45,6 +46,11 @@ public class JDKChecker implements RequirementChecker
      */
     private final Prompt prompt;
 
+    /**
+     * The registry handler, used to search the registry for JDKs. May be <tt>null</tt>.
+     */
+    private final RegistryDefaultHandler handler;
+
     /**
      * Constructs a <tt>JDKChecker</tt>.
      *
@@ -52,9 +58,22 @@ public class JDKChecker implements RequirementChecker
      * @param prompt      the prompt
      */
     public JDKChecker(InstallData installData, Prompt prompt)
+    {
+        this(installData, prompt, null);
+    }
+
+    /**
+     * Constructs a <tt>JDKChecker</tt>.
+     *
+     * @param installData the installation data
+     * @param prompt      the prompt
+     * @param handler     the registry handler. May be <tt>null</tt>
+     */
+    public JDKChecker(InstallData installData, Prompt prompt, RegistryDefaultHandler handler)
     {
         this.installData = installData;
         this.prompt = prompt;
+        this.handler = handler;
     }
 
     /**
@@ -66,21 +85,42 @@ public class JDKChecker implements RequirementChecker
     public boolean check()
     {
         boolean result;
-        result = !installData.getInfo().isJdkRequired() || exists() || notFound();
+        result = !isRequired() || exists() || notFound();
         return result;
     }
 
     /**
-     * Determines if the JDK is installed, by executing attempting to execute javac.
+     * Determines if the JDK requirements are met, given the result of a prior call to {@link #exists()}.
+     * <p/>
+     * This allows the JDK to be looked for in advance on another thread.
+     *
+     * @param exists determines if the JDK exists
+     * @return <tt>true</tt> if JDK requirements are met, otherwise <tt>false</tt>
+     */
+    protected boolean check(boolean exists)
+    {
+        return !isRequired() || exists || notFound();
+    }
+
+    /**
+     * Determines if the JDK is required.
+     *
+     * @return <tt>true</tt> if the JDK is required
+     */
+    protected boolean isRequired()
+    {
+        return installData.getInfo().isJdkRequired();
+    }
+
+    /**
+     * Determines if the JDK is installed, using the shared {@link JavaDiscovery}.
      *
-     * @return <tt>true</tt> if javac was successfully executed, otherwise <tt>false</tt>
+     * @return <tt>true</tt> if a JDK was found, otherwise <tt>false</tt>
      */
     protected boolean exists()
     {
-        FileExecutor exec = new FileExecutor();
-        String[] output = new String[2];
-        String[] params = {"javac", "-help"};
-        return (exec.executeCommand(params, output) == 0);
+        String roots = installData.getVariable(JavaDiscovery.ROOTS);
+        return JavaDiscovery.getInstance().getJDK(handler, roots) != null;
     }
 
     /**
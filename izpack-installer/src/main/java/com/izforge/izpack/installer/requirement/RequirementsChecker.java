@@ -21,17 +21,49 @@
 
 package com.izforge.izpack.installer.requirement;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Logger;
+
+import com.izforge.izpack.api.data.InstallerRequirement;
 import com.izforge.izpack.api.data.Variables;
+import com.izforge.izpack.api.exception.IzPackException;
+import com.izforge.izpack.api.exception.ResourceInterruptedException;
 import com.izforge.izpack.api.installer.RequirementChecker;
 
 
 /**
  * Verifies all installation requirements are met. This should be used prior to installation commencing.
+ * <p/>
+ * If the {@link #PARALLEL} variable is {@code true}, the checks that don't interact with the user are started
+ * concurrently, each with the timeout given by the {@link #TIMEOUT} variable. Their results are then processed,
+ * and any prompts displayed, in the same order as when the checks are run sequentially.
  *
  * @author Tim Anderson
  */
 public class RequirementsChecker implements RequirementChecker
 {
+    /**
+     * Variable that, if {@code true}, runs the checks that don't interact with the user concurrently.
+     */
+    public static final String PARALLEL = "izpack.requirements.parallel";
+
+    /**
+     * Variable specifying the time allotted to each concurrent check, in milliseconds.
+     */
+    public static final String TIMEOUT = "izpack.requirements.timeout";
+
+    /**
+     * The default time allotted to each concurrent check, in milliseconds.
+     */
+    public static final long DEFAULT_TIMEOUT = 30000;
+
     /**
      * The variables.
      */
@@ -67,6 +99,11 @@ public class RequirementsChecker implements RequirementChecker
      */
     private final InstallerRequirementChecker installerRequirementChecker;
 
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(RequirementsChecker.class.getName());
+
     /**
      * Constructs a <tt>RequirementsChecker</tt>.
      *
@@ -101,8 +138,162 @@ public class RequirementsChecker implements RequirementChecker
     public boolean check()
     {
         variables.refresh();
+        if (variables.getBoolean(PARALLEL, false))
+        {
+            return checkConcurrently();
+        }
         return langChecker.check() && versionChecker.check() && jdkChecker.check() && lockChecker.check() &&
                 expiredChecker.check() && 
                 installerRequirementChecker.check();
     }
+
+    /**
+     * Determines if installation requirements are met, running the language pack check, the search for the JDK
+     * and the evaluation of installer requirement conditions concurrently.
+     * <p/>
+     * A check that doesn't complete within the timeout is treated as having failed.
+     *
+     * @return <tt>true</tt> if requirements are met, otherwise <tt>false</tt>
+     */
+    private boolean checkConcurrently()
+    {
+        long timeout = variables.getLong(TIMEOUT, DEFAULT_TIMEOUT);
+        ExecutorService executor = Executors.newFixedThreadPool(3, new ThreadFactory()
+        {
+            public Thread newThread(Runnable runnable)
+            {
+                // don't prevent the installer from exiting if a check doesn't complete
+                Thread thread = new Thread(runnable, "RequirementsChecker");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try
+        {
+            long start = System.nanoTime();
+            Future<Boolean> langPacks = executor.submit(new Callable<Boolean>()
+            {
+                public Boolean call()
+                {
+                    return langChecker.check();
+                }
+            });
+            Future<Boolean> jdk = null;
+            if (jdkChecker.isRequired())
+            {
+                jdk = executor.submit(new Callable<Boolean>()
+                {
+                    public Boolean call()
+                    {
+                        return jdkChecker.exists();
+                    }
+                });
+            }
+            Future<InstallerRequirement> requirements = executor.submit(new Callable<InstallerRequirement>()
+            {
+                public InstallerRequirement call()
+                {
+                    return installerRequirementChecker.getUnsatisfied();
+                }
+            });
+
+            boolean result = get(langPacks, "language packs", start, timeout, false);
+            result = result && versionChecker.check();
+            result = result && jdkChecker.check(jdk == null || get(jdk, "JDK", start, timeout, false));
+            result = result && lockChecker.check() && expiredChecker.check();
+            if (result)
+            {
+                if (!isDone(requirements, start, timeout))
+                {
+                    logger.warning("Timed out checking installer requirements");
+                    requirements.cancel(true);
+                    result = installerRequirementChecker.timedOut(timeout);
+                }
+                else
+                {
+                    result = installerRequirementChecker.check(get(requirements, "installer requirements", start,
+                                                                   timeout, null));
+                }
+            }
+            return result;
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits for a check to complete, until its timeout expires.
+     *
+     * @param future  the check
+     * @param start   the time when the check was started, in nanoseconds
+     * @param timeout the time allotted to the check, in milliseconds
+     * @return <tt>true</tt> if the check completed, <tt>false</tt> if it timed out
+     * @throws ResourceInterruptedException if the thread is interrupted
+     */
+    private boolean isDone(Future<?> future, long start, long timeout)
+    {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeout) - (System.nanoTime() - start);
+        try
+        {
+            future.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+        }
+        catch (TimeoutException exception)
+        {
+            return false;
+        }
+        catch (ExecutionException ignore)
+        {
+            // propagated by get()
+        }
+        catch (InterruptedException exception)
+        {
+            throw new ResourceInterruptedException("Installation cancelled");
+        }
+        return true;
+    }
+
+    /**
+     * Returns the result of a check, waiting for it to complete until its timeout expires.
+     *
+     * @param future   the check
+     * @param name     the name of the check, for logging purposes
+     * @param start    the time when the check was started, in nanoseconds
+     * @param timeout  the time allotted to the check, in milliseconds
+     * @param timedOut the result to return if the check times out
+     * @return the result of the check, or <tt>timedOut</tt> if it timed out
+     * @throws IzPackException              if the check fails
+     * @throws ResourceInterruptedException if the thread is interrupted
+     */
+    private <T> T get(Future<T> future, String name, long start, long timeout, T timedOut)
+    {
+        if (!isDone(future, start, timeout))
+        {
+            logger.warning("Timed out after " + timeout + "ms checking " + name);
+            future.cancel(true);
+            return timedOut;
+        }
+        try
+        {
+            return future.get();
+        }
+        catch (ExecutionException exception)
+        {
+            Throwable cause = exception.getCause();
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            throw new IzPackException("Failed to check " + name, cause);
+        }
+        catch (InterruptedException exception)
+        {
+            throw new ResourceInterruptedException("Installation cancelled");
+        }
+    }
 }
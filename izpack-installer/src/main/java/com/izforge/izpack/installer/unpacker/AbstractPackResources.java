@@ -22,8 +22,14 @@
 package com.izforge.izpack.installer.unpacker;
 
 import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Constructor;
+import java.net.URI;
+import java.net.URL;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import com.izforge.izpack.api.data.InstallData;
 import com.izforge.izpack.api.exception.ResourceException;
@@ -49,6 +55,16 @@ public abstract class AbstractPackResources implements PackResources
      */
     private final InstallData installData;
 
+    /**
+     * The memory-mapped installer jar. May be {@code null}
+     */
+    private MappedJar mappedJar;
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(AbstractPackResources.class.getName());
+
     /**
      * Constructs an {@code AbstractPackResources}.
      *
@@ -108,6 +124,16 @@ public abstract class AbstractPackResources implements PackResources
         return resources.getInputStream(name);
     }
 
+    /**
+     * Stops any retrieval of packs in progress, and releases any resources used to retrieve them.
+     * <p/>
+     * This implementation is a no-op.
+     */
+    @Override
+    public void shutdown()
+    {
+    }
+
     /**
      * Returns a stream that decodes the supplied stream.
      *
@@ -145,13 +171,73 @@ public abstract class AbstractPackResources implements PackResources
 
     /**
      * Returns a stream to a local pack.
+     * <p/>
+     * If the pack is stored uncompressed in the installer jar, it is read directly from a memory-mapped view of
+     * the jar.
      *
      * @param name the pack name
      * @return the pack stream
      */
     protected InputStream getLocalPackStream(String name)
     {
-        return resources.getInputStream("packs/pack-" + name);
+        String path = "packs/pack-" + name;
+        InputStream result = getMappedStream(path);
+        if (result == null)
+        {
+            result = resources.getInputStream(path);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a stream to a resource from a memory-mapped view of the jar containing it.
+     *
+     * @param name the resource name
+     * @return the resource stream, or {@code null} if the resource isn't a STORED jar entry, or cannot be mapped
+     */
+    protected InputStream getMappedStream(String name)
+    {
+        InputStream result = null;
+        try
+        {
+            URL url = resources.getURL(name);
+            if ("jar".equals(url.getProtocol()))
+            {
+                String path = url.getPath();
+                int index = path.indexOf("!/");
+                if (index != -1)
+                {
+                    File file = new File(new URI(path.substring(0, index)));
+                    String entry = new URI(path.substring(index + 2)).getPath();
+                    result = getMappedJar(file).getInputStream(entry);
+                }
+            }
+        }
+        catch (ResourceNotFoundException exception)
+        {
+            // fall through
+        }
+        catch (Exception exception)
+        {
+            logger.log(Level.FINE, "Cannot map resource: " + name, exception);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the mapped view of a jar, mapping it if required.
+     *
+     * @param file the jar file
+     * @return the mapped jar
+     * @throws IOException if the jar cannot be mapped
+     */
+    private synchronized MappedJar getMappedJar(File file) throws IOException
+    {
+        if (mappedJar == null || !mappedJar.getFile().equals(file))
+        {
+            mappedJar = new MappedJar(file);
+        }
+        return mappedJar;
     }
 
     /**
@@ -0,0 +1,347 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Base class for {@link InstallationSink}s that stream the installation to an archive.
+ * <p/>
+ * Entries are named using the absolute path of the installed file, with any drive letter and leading separator
+ * removed. Entries are written in the order they are created; missing parent directories are written first.
+ *
+ * @author Tim Anderson
+ */
+public abstract class ArchiveSink implements InstallationSink
+{
+
+    /**
+     * The stream to write to.
+     */
+    private final OutputStream out;
+
+    /**
+     * The last modified timestamps of the written entries, keyed on entry name.
+     */
+    private final Map<String, Long> entries = new HashMap<String, Long>();
+
+    /**
+     * The entry being written, or {@code null} if none is being written.
+     */
+    private OutputStream current;
+
+    /**
+     * Determines if the sink has been closed.
+     */
+    private boolean closed;
+
+
+    /**
+     * Constructs an {@code ArchiveSink}.
+     *
+     * @param out the stream to write to
+     */
+    public ArchiveSink(OutputStream out)
+    {
+        this.out = out;
+    }
+
+    /**
+     * Determines if the sink writes directly to the file system.
+     *
+     * @return <tt>false</tt>
+     */
+    @Override
+    public boolean isFileSystem()
+    {
+        return false;
+    }
+
+    /**
+     * Determines if a file or directory has been written to the archive.
+     *
+     * @param file the file or directory
+     * @return <tt>true</tt> if it has been written
+     */
+    @Override
+    public synchronized boolean exists(File file)
+    {
+        String name = getName(file);
+        return entries.containsKey(name) || entries.containsKey(name + "/");
+    }
+
+    /**
+     * Creates a directory, including any missing parent directories.
+     *
+     * @param dir the directory
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public synchronized void createDirectory(File dir) throws IOException
+    {
+        String name = getName(dir);
+        if (name.length() != 0 && !entries.containsKey(name + "/"))
+        {
+            checkWritable();
+            File parent = dir.getAbsoluteFile().getParentFile();
+            if (parent != null)
+            {
+                createDirectory(parent);
+            }
+            long lastModified = System.currentTimeMillis();
+            writeDirectory(name + "/", lastModified);
+            entries.put(name + "/", lastModified);
+        }
+    }
+
+    /**
+     * Creates a file, returning a stream to write its content.
+     * <p/>
+     * Missing parent directories are written to the archive first.
+     *
+     * @param file         the file
+     * @param length       the length of the file, or {@code -1} if it is not known
+     * @param lastModified the last modified timestamp of the file, or {@code -1} if it is not known
+     * @param mode         the POSIX mode bits of the file, or {@code -1} to use the default
+     * @return a stream to write the file content
+     * @throws IOException if the file is already in the archive, or for any I/O error
+     */
+    @Override
+    public synchronized OutputStream createFile(File file, long length, long lastModified, int mode)
+            throws IOException
+    {
+        checkWritable();
+        String name = getName(file);
+        if (entries.containsKey(name))
+        {
+            throw new IOException("Duplicate archive entry: " + name);
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null)
+        {
+            createDirectory(parent);
+        }
+        if (lastModified < 0)
+        {
+            lastModified = System.currentTimeMillis();
+        }
+        entries.put(name, lastModified);
+        current = new EntryOutputStream(writeFile(name, length, lastModified, mode));
+        return current;
+    }
+
+    /**
+     * Sets the last modified timestamp of a file.
+     * <p/>
+     * Entries cannot be changed once written, so this only succeeds if the timestamp matches that of the entry.
+     *
+     * @param file         the file
+     * @param lastModified the last modified timestamp
+     * @return <tt>true</tt> if the entry has the timestamp
+     */
+    @Override
+    public synchronized boolean setLastModified(File file, long lastModified)
+    {
+        Long existing = entries.get(getName(file));
+        return existing != null && existing == lastModified;
+    }
+
+    /**
+     * Flushes the archive stream.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public synchronized void flush() throws IOException
+    {
+        if (!closed)
+        {
+            out.flush();
+        }
+    }
+
+    /**
+     * Closes the sink, completing the archive.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if (!closed)
+        {
+            closed = true;
+            if (current != null)
+            {
+                throw new IOException("Archive entry not closed");
+            }
+            try
+            {
+                finish();
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the stream to write to.
+     *
+     * @return the stream
+     */
+    protected OutputStream getOutputStream()
+    {
+        return out;
+    }
+
+    /**
+     * Writes a directory entry.
+     *
+     * @param name         the entry name. This ends in '/'
+     * @param lastModified the last modified timestamp
+     * @throws IOException for any I/O error
+     */
+    protected abstract void writeDirectory(String name, long lastModified) throws IOException;
+
+    /**
+     * Writes a file entry.
+     *
+     * @param name         the entry name
+     * @param length       the length of the file, or {@code -1} if it is not known
+     * @param lastModified the last modified timestamp
+     * @param mode         the POSIX mode bits, or {@code -1} to use the default
+     * @return a stream to write the file content. Closing the stream completes the entry
+     * @throws IOException for any I/O error
+     */
+    protected abstract OutputStream writeFile(String name, long length, long lastModified, int mode)
+            throws IOException;
+
+    /**
+     * Completes the archive, prior to the stream being closed.
+     *
+     * @throws IOException for any I/O error
+     */
+    protected abstract void finish() throws IOException;
+
+    /**
+     * Returns the archive entry name for a file.
+     *
+     * @param file the file
+     * @return the entry name
+     */
+    protected String getName(File file)
+    {
+        String name = file.getAbsolutePath().replace(File.separatorChar, '/');
+        if (name.length() > 1 && name.charAt(1) == ':')
+        {
+            name = name.substring(2);
+        }
+        while (name.startsWith("/"))
+        {
+            name = name.substring(1);
+        }
+        while (name.endsWith("/"))
+        {
+            name = name.substring(0, name.length() - 1);
+        }
+        return name;
+    }
+
+    /**
+     * Verifies that the archive can be written to.
+     *
+     * @throws IOException if the sink is closed or an entry is being written
+     */
+    private void checkWritable() throws IOException
+    {
+        if (closed)
+        {
+            throw new IOException("Archive closed");
+        }
+        if (current != null)
+        {
+            throw new IOException("Archive entry not closed");
+        }
+    }
+
+    /**
+     * Stream for an entry, that permits a new entry to be written once it is closed.
+     */
+    private class EntryOutputStream extends FilterOutputStream
+    {
+
+        /**
+         * Determines if the stream has been closed.
+         */
+        private boolean closed;
+
+        /**
+         * Constructs an {@code EntryOutputStream}.
+         *
+         * @param out the stream to delegate to
+         */
+        public EntryOutputStream(OutputStream out)
+        {
+            super(out);
+        }
+
+        /**
+         * Writes bytes.
+         *
+         * @param b   the bytes
+         * @param off the start offset
+         * @param len the number of bytes to write
+         * @throws IOException for any I/O error
+         */
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            out.write(b, off, len);
+        }
+
+        /**
+         * Closes the entry. Subsequent invocations are ignored.
+         *
+         * @throws IOException for any I/O error
+         */
+        @Override
+        public void close() throws IOException
+        {
+            if (!closed)
+            {
+                closed = true;
+                synchronized (ArchiveSink.this)
+                {
+                    current = null;
+                    out.close();
+                }
+            }
+        }
+    }
+}
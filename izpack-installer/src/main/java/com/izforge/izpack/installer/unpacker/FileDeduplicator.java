@@ -0,0 +1,313 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.util.FilePermissions;
+import com.izforge.izpack.util.IoHelper;
+
+
+/**
+ * Installs files whose content is identical to that of an already installed file as hard links to it.
+ * <p/>
+ * Files are identified using the {@link PackFile#getDigest() digest} calculated at compile time, along with their
+ * length and mode. Hard links are created using {@code java.nio.file.Files.createLink}, accessed reflectively as
+ * the installer targets Java 6. Where a link cannot be created, e.g. because the files are on different file
+ * systems, the file is unpacked as normal.
+ * <p/>
+ * As linked files share their content, a linked file must be {@link #unlink unlinked} before it is modified in
+ * place, and {@link #prepare prepared} before it is overwritten.
+ *
+ * @author Tim Anderson
+ */
+public class FileDeduplicator
+{
+
+    /**
+     * The installed files, keyed on content key.
+     */
+    private final Map<String, File> files = new HashMap<String, File>();
+
+    /**
+     * The content keys of the installed files, keyed on file.
+     */
+    private final Map<File, String> keys = new HashMap<File, String>();
+
+    /**
+     * The files that share content with another file.
+     */
+    private final Set<File> linked = new HashSet<File>();
+
+    /**
+     * The number of files linked.
+     */
+    private int links;
+
+    /**
+     * The number of bytes not written, due to linking.
+     */
+    private long saved;
+
+    /**
+     * {@code File.toPath()}, or {@code null} if hard links aren't supported.
+     */
+    private static final Method TO_PATH;
+
+    /**
+     * {@code Files.createLink(Path, Path)}, or {@code null} if hard links aren't supported.
+     */
+    private static final Method CREATE_LINK;
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(FileDeduplicator.class.getName());
+
+    static
+    {
+        Method toPath = null;
+        Method createLink = null;
+        try
+        {
+            Class<?> path = Class.forName("java.nio.file.Path");
+            toPath = File.class.getMethod("toPath");
+            createLink = Class.forName("java.nio.file.Files").getMethod("createLink", path, path);
+        }
+        catch (Exception exception)
+        {
+            logger.fine("Hard links not supported: " + exception);
+            toPath = null;
+        }
+        TO_PATH = toPath;
+        CREATE_LINK = createLink;
+    }
+
+    /**
+     * Determines if hard links are supported by the JVM.
+     *
+     * @return <tt>true</tt> if hard links are supported
+     */
+    public static boolean isSupported()
+    {
+        return TO_PATH != null;
+    }
+
+    /**
+     * Determines if a pack file may be linked to, or from, another file.
+     * <p/>
+     * Files whose content is transformed when unpacked, or that are queued, are excluded.
+     *
+     * @param file the pack file
+     * @return <tt>true</tt> if the file may be linked
+     */
+    public boolean isLinkable(PackFile file)
+    {
+        return file.getDigest() != null && !file.isDirectory() && file.length() > 0 && !file.isPack200Jar()
+                && !file.isParsable() && file.blockable() == Blockable.BLOCKABLE_NONE;
+    }
+
+    /**
+     * Attempts to install a pack file as a hard link to a previously installed file with the same content.
+     * <p/>
+     * Any existing target is replaced.
+     *
+     * @param file   the pack file
+     * @param target the target file
+     * @return <tt>true</tt> if the target was linked, <tt>false</tt> if it must be unpacked
+     */
+    public boolean link(PackFile file, File target)
+    {
+        if (!isLinkable(file))
+        {
+            return false;
+        }
+        File existing = files.get(getKey(file));
+        if (existing == null || existing.equals(target) || !existing.isFile())
+        {
+            return false;
+        }
+        if (target.exists() && !target.delete())
+        {
+            return false;
+        }
+        try
+        {
+            CREATE_LINK.invoke(null, TO_PATH.invoke(target), TO_PATH.invoke(existing));
+        }
+        catch (InvocationTargetException exception)
+        {
+            // e.g. the files are on different file systems, or the file system doesn't support links
+            logger.log(Level.FINE, "Failed to link " + target + " to " + existing, exception.getCause());
+            return false;
+        }
+        catch (IllegalAccessException exception)
+        {
+            logger.log(Level.FINE, "Failed to link " + target + " to " + existing, exception);
+            return false;
+        }
+        linked.add(target);
+        linked.add(existing);
+        ++links;
+        saved += file.length();
+        if (logger.isLoggable(Level.FINE))
+        {
+            logger.fine("Linked " + target + " to " + existing);
+        }
+        return true;
+    }
+
+    /**
+     * Prepares to overwrite a target file.
+     * <p/>
+     * If the target shares its content with other files, it is deleted so that they are unaffected.
+     *
+     * @param target the target file
+     * @throws IOException if a linked target cannot be deleted
+     */
+    public void prepare(File target) throws IOException
+    {
+        remove(target);
+        if (linked.remove(target) && target.exists() && !target.delete())
+        {
+            throw new IOException("Failed to delete linked file: " + target);
+        }
+    }
+
+    /**
+     * Registers an installed file, so that subsequent files with the same content may link to it.
+     *
+     * @param file   the pack file
+     * @param target the installed file
+     */
+    public void add(PackFile file, File target)
+    {
+        if (isLinkable(file))
+        {
+            String key = getKey(file);
+            if (!files.containsKey(key))
+            {
+                files.put(key, target);
+                keys.put(target, key);
+            }
+        }
+    }
+
+    /**
+     * Prepares to modify a file in place.
+     * <p/>
+     * The file will no longer be linked to. If it shares its content with other files, it is replaced by a copy so
+     * that they are unaffected.
+     *
+     * @param target the file to modify
+     * @throws IOException if the file cannot be copied
+     */
+    public void unlink(File target) throws IOException
+    {
+        remove(target);
+        if (linked.remove(target) && target.isFile())
+        {
+            File copy = File.createTempFile("__DD__", null, target.getParentFile());
+            try
+            {
+                IoHelper.copyFile(target, copy);
+                int mode = FilePermissions.getMode(target);
+                if (mode != -1)
+                {
+                    FilePermissions.setMode(copy, mode);
+                }
+                if (!copy.setLastModified(target.lastModified()) || !target.delete() || !copy.renameTo(target))
+                {
+                    throw new IOException("Failed to unlink file: " + target);
+                }
+            }
+            finally
+            {
+                if (copy.exists() && !copy.delete())
+                {
+                    logger.warning("Failed to delete: " + copy);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of files that were linked.
+     *
+     * @return the number of links
+     */
+    public int getLinks()
+    {
+        return links;
+    }
+
+    /**
+     * Returns the number of bytes that weren't written, due to linking.
+     *
+     * @return the bytes saved
+     */
+    public long getSaved()
+    {
+        return saved;
+    }
+
+    /**
+     * Removes a file from those that may be linked to.
+     *
+     * @param target the file
+     */
+    private void remove(File target)
+    {
+        String key = keys.remove(target);
+        if (key != null)
+        {
+            files.remove(key);
+        }
+    }
+
+    /**
+     * Returns the key identifying the content of a pack file.
+     *
+     * @param file the pack file
+     * @return the content key
+     */
+    private String getKey(PackFile file)
+    {
+        StringBuilder result = new StringBuilder();
+        for (byte b : file.getDigest())
+        {
+            result.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        result.append(':').append(file.length()).append(':').append(file.getMode());
+        return result.toString();
+    }
+}
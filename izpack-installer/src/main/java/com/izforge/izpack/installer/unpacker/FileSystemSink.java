@@ -0,0 +1,139 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.izforge.izpack.util.FilePermissions;
+
+
+/**
+ * An {@link InstallationSink} that installs files to the file system.
+ *
+ * @author Tim Anderson
+ */
+public class FileSystemSink implements InstallationSink
+{
+
+    /**
+     * The permissions to apply to files, when the sink is flushed.
+     */
+    private final FilePermissions permissions = new FilePermissions();
+
+    /**
+     * Determines if the sink writes directly to the file system.
+     *
+     * @return <tt>true</tt>
+     */
+    @Override
+    public boolean isFileSystem()
+    {
+        return true;
+    }
+
+    /**
+     * Determines if a file or directory exists.
+     *
+     * @param file the file or directory
+     * @return <tt>true</tt> if it exists
+     */
+    @Override
+    public boolean exists(File file)
+    {
+        return file.exists();
+    }
+
+    /**
+     * Creates a directory, including any missing parent directories.
+     *
+     * @param dir the directory
+     * @throws IOException if the directory cannot be created
+     */
+    @Override
+    public void createDirectory(File dir) throws IOException
+    {
+        if (!dir.mkdirs() && !dir.isDirectory())
+        {
+            throw new IOException("Could not create directory: " + dir.getPath());
+        }
+    }
+
+    /**
+     * Creates a file, returning a stream to write its content.
+     * <p/>
+     * Any mode is applied when the sink is {@link #flush() flushed}, so that permissions are set in batches.
+     *
+     * @param file         the file
+     * @param length       the length of the file, or {@code -1} if it is not known
+     * @param lastModified the last modified timestamp of the file, or {@code -1} if it is not known
+     * @param mode         the POSIX mode bits of the file, or {@code -1} to use the default
+     * @return a stream to write the file content
+     * @throws IOException if the file cannot be created
+     */
+    @Override
+    public OutputStream createFile(File file, long length, long lastModified, int mode) throws IOException
+    {
+        OutputStream result = new FileOutputStream(file);
+        if (mode != -1)
+        {
+            permissions.add(file, mode);
+        }
+        return result;
+    }
+
+    /**
+     * Sets the last modified timestamp of a file.
+     *
+     * @param file         the file
+     * @param lastModified the last modified timestamp
+     * @return <tt>true</tt> if the timestamp was set
+     */
+    @Override
+    public boolean setLastModified(File file, long lastModified)
+    {
+        return file.setLastModified(lastModified);
+    }
+
+    /**
+     * Sets the permissions of the files written since the last flush.
+     *
+     * @throws IOException if permissions cannot be set
+     */
+    @Override
+    public void flush() throws IOException
+    {
+        permissions.apply();
+    }
+
+    /**
+     * Closes the sink, setting the permissions of any files written since the last flush.
+     *
+     * @throws IOException if permissions cannot be set
+     */
+    @Override
+    public void close() throws IOException
+    {
+        flush();
+    }
+}
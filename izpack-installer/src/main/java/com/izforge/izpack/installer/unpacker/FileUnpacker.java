@@ -29,6 +29,7 @@ import java.io.InterruptedIOException;
 import java.io.ObjectInputStream;
 import java.io.OutputStream;
 import java.util.logging.Logger;
+import java.util.zip.CRC32;
 
 import com.izforge.izpack.api.data.Blockable;
 import com.izforge.izpack.api.data.PackFile;
@@ -73,6 +74,16 @@ public abstract class FileUnpacker
      */
     private boolean queued;
 
+    /**
+     * The checksum of the bytes copied, used to verify the file against that calculated at compile time.
+     */
+    private final CRC32 checksum = new CRC32();
+
+    /**
+     * The sink to write files to.
+     */
+    private InstallationSink sink = new FileSystemSink();
+
     /**
      * The logger.
      */
@@ -91,6 +102,18 @@ public abstract class FileUnpacker
         this.queue = queue;
     }
 
+    /**
+     * Registers the sink to write files to.
+     * <p/>
+     * By default, files are written to the file system.
+     *
+     * @param sink the sink
+     */
+    public void setSink(InstallationSink sink)
+    {
+        this.sink = sink;
+    }
+
     /**
      * Unpacks a pack file.
      *
@@ -127,6 +150,7 @@ public abstract class FileUnpacker
     protected void copy(PackFile file, InputStream in, File target) throws IOException
     {
         OutputStream out = getTarget(file, target);
+        resetChecksum();
         try
         {
             byte[] buffer = new byte[5120];
@@ -145,9 +169,47 @@ public abstract class FileUnpacker
         {
             FileUtils.close(out);
         }
+        verifyChecksum(file, target);
         postCopy(file);
     }
 
+    /**
+     * Resets the checksum prior to reading a file from the pack.
+     */
+    protected void resetChecksum()
+    {
+        checksum.reset();
+    }
+
+    /**
+     * Updates the checksum with bytes read from the pack.
+     *
+     * @param buffer the bytes
+     * @param offset the start offset in the buffer
+     * @param length the no. of bytes
+     */
+    protected void updateChecksum(byte[] buffer, int offset, int length)
+    {
+        checksum.update(buffer, offset, length);
+    }
+
+    /**
+     * Verifies that the checksum of the bytes read from the pack matches that calculated at compile time.
+     * <p/>
+     * This is a no-op if the pack file has no checksum.
+     *
+     * @param file   the pack file meta-data
+     * @param target the target file
+     * @throws IOException if the checksums don't match
+     */
+    protected void verifyChecksum(PackFile file, File target) throws IOException
+    {
+        if (file.getChecksum() != -1 && file.getChecksum() != checksum.getValue())
+        {
+            throw new IOException("Checksum mismatch for " + target + " (installer corrupted?)");
+        }
+    }
+
     /**
      * Invoked after copying is complete to set the last modified timestamp, and queue blockable files.
      *
@@ -185,6 +247,7 @@ public abstract class FileUnpacker
             throw new IOException("Unexpected end of stream (installer corrupted?)");
         }
         out.write(buffer, 0, read);
+        updateChecksum(buffer, 0, read);
         bytesCopied += read;
 
         return bytesCopied;
@@ -227,11 +290,22 @@ public abstract class FileUnpacker
         }
         else
         {
-            result = new FileOutputStream(target);
+            result = sink.createFile(target, getLength(file), file.lastModified(), file.getMode());
         }
         return result;
     }
 
+    /**
+     * Returns the length of the file that will be written to the target.
+     *
+     * @param file the pack file meta-data
+     * @return the length of the target file, or {@code -1} if it is not known until the file is written
+     */
+    protected long getLength(PackFile file)
+    {
+        return file.length();
+    }
+
     /**
      * Sets the last-modified timestamp of a file from the pack-file meta-data.
      *
@@ -242,8 +316,9 @@ public abstract class FileUnpacker
         // Set file modification time if specified
         if (file.lastModified() >= 0)
         {
-            File f = (tmpTarget != null) ? tmpTarget : target;
-            if (!f.setLastModified(file.lastModified()))
+            boolean set = (tmpTarget != null) ? tmpTarget.setLastModified(file.lastModified())
+                                               : sink.setLastModified(target, file.lastModified());
+            if (!set)
             {
                 logger.warning("Failed to set last modified timestamp for: " + target);
             }
@@ -1,18 +1,25 @@
 package com.izforge.izpack.installer.unpacker;
 
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import com.izforge.izpack.api.data.InstallData;
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.api.data.Variables;
 import com.izforge.izpack.api.exception.ResourceException;
 import com.izforge.izpack.api.exception.ResourceInterruptedException;
 import com.izforge.izpack.api.exception.ResourceNotFoundException;
 import com.izforge.izpack.api.resource.Resources;
-import com.izforge.izpack.installer.web.WebRepositoryAccessor;
+import com.izforge.izpack.installer.web.PackDownloader;
 import com.izforge.izpack.util.IoHelper;
+import com.izforge.izpack.util.file.FileUtils;
 
 
 /**
@@ -28,6 +35,21 @@ public class GUIPackResources extends AbstractPackResources
      */
     private static final String tempSubPath = "/IzpackWebTemp";
 
+    /**
+     * The delay before retrying a failed download, in milliseconds.
+     */
+    private static final long RETRY_DELAY = 1000;
+
+    /**
+     * The size of the buffer used when streaming packs, in bytes.
+     */
+    private static final int STREAM_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * The pack downloader, created on first use.
+     */
+    private PackDownloader downloader;
+
     /**
      * Constructs a {@code GUIPackResources}.
      *
@@ -41,6 +63,10 @@ public class GUIPackResources extends AbstractPackResources
 
     /**
      * Returns the stream to a web-based pack resource.
+     * <p/>
+     * On first use, all of the selected packs are downloaded in the background, so that subsequent packs are
+     * available by the time they are unpacked. If {@link PackDownloader#STREAM} is set, packs are instead unpacked
+     * as they are downloaded.
      *
      * @param name      the resource name
      * @param webDirURL the web URL to load the resource from
@@ -54,19 +80,17 @@ public class GUIPackResources extends AbstractPackResources
 
         // TODO: Look first in same directory as primary jar
         // This may include prompting for changing of media
-        // TODO: download and cache them all before starting copy process
-
-        // See compiler.Packager#getJarOutputStream for the counterpart
-        InstallData installData = getInstallData();
-        String baseName = installData.getInfo().getInstallerBase();
-        String packURL = webDirURL + "/" + baseName + ".pack-" + name + ".jar";
-        String tempFolder = IoHelper.translatePath(
-                installData.getInfo().getUninstallerPath() + GUIPackResources.tempSubPath,
-                installData.getVariables());
-        String tempFile;
+
+        if (getInstallData().getVariables().getBoolean(PackDownloader.STREAM, false))
+        {
+            return getStreamingPackStream(name, webDirURL);
+        }
+
+        File file;
         try
         {
-            tempFile = WebRepositoryAccessor.getCachedUrl(packURL, tempFolder);
+            PackDownloader downloader = getDownloader(webDirURL);
+            file = downloader.get(getPackURL(name, webDirURL));
         }
         catch (InterruptedIOException exception)
         {
@@ -78,7 +102,7 @@ public class GUIPackResources extends AbstractPackResources
         }
         try
         {
-            URL url = new URL("jar:" + tempFile + "!/packs/pack-" + name);
+            URL url = new URL("jar:" + file.toURI().toURL() + "!/packs/pack-" + name);
             result = url.openStream();
         }
         catch (IOException exception)
@@ -88,5 +112,106 @@ public class GUIPackResources extends AbstractPackResources
         return result;
     }
 
+    /**
+     * Stops any downloads in progress, including prefetches of packs yet to be unpacked.
+     * <p/>
+     * A new downloader is created if packs are subsequently retrieved. Partially downloaded packs are resumed.
+     */
+    @Override
+    public synchronized void shutdown()
+    {
+        if (downloader != null)
+        {
+            downloader.shutdown();
+            downloader = null;
+        }
+    }
+
+    /**
+     * Returns the stream to a web-based pack resource, reading it as it is downloaded.
+     *
+     * @param name      the resource name
+     * @param webDirURL the web URL to load the resource from
+     * @return a stream to the resource
+     * @throws ResourceNotFoundException    if the resource cannot be found
+     * @throws ResourceInterruptedException if resource retrieval is interrupted
+     */
+    private InputStream getStreamingPackStream(String name, String webDirURL)
+    {
+        String entryName = "packs/pack-" + name;
+        ZipInputStream result = null;
+        try
+        {
+            PackDownloader downloader = getDownloader(webDirURL);
+            result = new ZipInputStream(downloader.open(getPackURL(name, webDirURL), STREAM_BUFFER_SIZE));
+            ZipEntry entry;
+            while ((entry = result.getNextEntry()) != null)
+            {
+                if (entry.getName().equals(entryName))
+                {
+                    return result;
+                }
+            }
+        }
+        catch (InterruptedIOException exception)
+        {
+            FileUtils.close(result);
+            throw new ResourceInterruptedException("Retrieval of " + webDirURL + " interrupted", exception);
+        }
+        catch (IOException exception)
+        {
+            FileUtils.close(result);
+            throw new ResourceException("Failed to read " + webDirURL, exception);
+        }
+        FileUtils.close(result);
+        throw new ResourceNotFoundException("Pack not found: " + entryName);
+    }
+
+    /**
+     * Returns the downloader, creating it on first use.
+     * <p/>
+     * Unless packs are being streamed, this prefetches the selected packs.
+     *
+     * @param webDirURL the web URL to load packs from
+     * @return the downloader
+     * @throws IOException if a pack URL is invalid
+     */
+    private synchronized PackDownloader getDownloader(String webDirURL) throws IOException
+    {
+        if (downloader == null)
+        {
+            InstallData installData = getInstallData();
+            Variables variables = installData.getVariables();
+            String tempFolder = IoHelper.translatePath(
+                    installData.getInfo().getUninstallerPath() + GUIPackResources.tempSubPath, variables);
+            int connections = variables.getInt(PackDownloader.CONNECTIONS, PackDownloader.DEFAULT_CONNECTIONS);
+            int retries = variables.getInt(PackDownloader.RETRIES, PackDownloader.DEFAULT_RETRIES);
+            downloader = new PackDownloader(new File(tempFolder), connections, retries, RETRY_DELAY);
+            if (!variables.getBoolean(PackDownloader.STREAM, false))
+            {
+                for (Pack pack : installData.getSelectedPacks())
+                {
+                    downloader.prefetch(getPackURL(pack.getName(), webDirURL));
+                }
+            }
+        }
+        return downloader;
+    }
+
+    /**
+     * Returns the URL of a pack jar.
+     * <p/>
+     * See compiler.Packager#getJarOutputStream for the counterpart.
+     *
+     * @param name      the pack name
+     * @param webDirURL the web URL to load the pack from
+     * @return the pack jar URL
+     * @throws MalformedURLException if the URL is invalid
+     */
+    private URL getPackURL(String name, String webDirURL) throws MalformedURLException
+    {
+        String baseName = getInstallData().getInfo().getInstallerBase();
+        return new URL(webDirURL + "/" + baseName + ".pack-" + name + ".jar");
+    }
 
 }
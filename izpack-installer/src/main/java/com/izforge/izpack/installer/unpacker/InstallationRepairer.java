@@ -0,0 +1,439 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+import com.izforge.izpack.api.data.InstallData;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.event.ProgressListener;
+import com.izforge.izpack.api.exception.InstallerException;
+import com.izforge.izpack.api.exception.IzPackException;
+import com.izforge.izpack.api.exception.ResourceInterruptedException;
+import com.izforge.izpack.api.handler.Prompt;
+import com.izforge.izpack.api.handler.Prompt.Type;
+import com.izforge.izpack.data.ExecutableFile;
+import com.izforge.izpack.data.ParsableFile;
+import com.izforge.izpack.installer.data.UninstallData;
+import com.izforge.izpack.util.file.FileUtils;
+
+
+/**
+ * Verifies an existing installation against the packs that were installed, optionally repairing it by
+ * re-extracting missing and modified files.
+ * <p/>
+ * Files that aren't always overwritten, i.e. whose override policy isn't {@link OverrideType#OVERRIDE_TRUE}, and
+ * parsable files are only checked for existence.
+ *
+ * @author Tim Anderson
+ * @see UnpackerBase#VERIFY
+ * @see UnpackerBase#REPAIR
+ */
+class InstallationRepairer
+{
+
+    /**
+     * The unpacker, used to read and extract pack files.
+     */
+    private final UnpackerBase unpacker;
+
+    /**
+     * The installation data.
+     */
+    private final InstallData installData;
+
+    /**
+     * The uninstallation data.
+     */
+    private final UninstallData uninstallData;
+
+    /**
+     * The pack resources.
+     */
+    private final PackResources resources;
+
+    /**
+     * The progress listener.
+     */
+    private final ProgressListener listener;
+
+    /**
+     * The prompt.
+     */
+    private final Prompt prompt;
+
+    /**
+     * The installation sink.
+     */
+    private final InstallationSink sink;
+
+    /**
+     * Determines if verification should be cancelled.
+     */
+    private final Cancellable cancellable;
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(InstallationRepairer.class.getName());
+
+
+    /**
+     * Constructs an <tt>InstallationRepairer</tt>.
+     *
+     * @param unpacker    the unpacker
+     * @param sink        the installation sink
+     * @param cancellable determines if verification should be cancelled
+     */
+    public InstallationRepairer(UnpackerBase unpacker, InstallationSink sink, Cancellable cancellable)
+    {
+        this.unpacker = unpacker;
+        this.installData = unpacker.getInstallData();
+        this.uninstallData = unpacker.getUninstallData();
+        this.resources = unpacker.getResources();
+        this.listener = unpacker.getProgressListener();
+        this.prompt = unpacker.getPrompt();
+        this.sink = sink;
+        this.cancellable = cancellable;
+    }
+
+    /**
+     * Verifies the existing installation against the packs listed in its installation information, optionally
+     * re-extracting missing and modified files.
+     * <p/>
+     * The uninstallation data is populated with the files of each verified pack, so that the uninstaller may be
+     * rewritten.
+     *
+     * @param repair if {@code true}, re-extract missing and modified files
+     * @throws IOException                  for any I/O error
+     * @throws InstallerException           if the installation cannot be verified
+     * @throws ResourceInterruptedException if verification is cancelled
+     */
+    public void verify(boolean repair) throws IOException
+    {
+        if (!sink.isFileSystem())
+        {
+            throw new InstallerException("Installations can only be verified on the file system");
+        }
+        File installDir = new File(installData.getInstallPath());
+        List<Pack> packs = getInstalledPacks(installDir);
+        listener.startAction(repair ? "Repairing" : "Verifying", packs.size());
+
+        InstallationVerifier verifier = new InstallationVerifier(installDir, cancellable);
+        File installationInfo = new File(installDir, InstallData.INSTALLATION_INFORMATION);
+        verifier.exclude(installationInfo);
+        uninstallData.addFile(installationInfo.getAbsolutePath(), true);
+        String uninstaller = installData.getInfo().getUninstallerPath();
+        if (uninstaller != null)
+        {
+            verifier.exclude(new File(unpacker.getTargetPath(uninstaller)));
+        }
+        for (int i = 0; i < packs.size(); ++i)
+        {
+            readInstalledFiles(packs.get(i), i, verifier);
+            unpacker.checkInterrupt();
+        }
+
+        int threads = unpacker.getThreads();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            verifier.verify(executor, threads);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        unpacker.checkInterrupt();
+
+        Set<File> missing = new HashSet<File>(verifier.getMissing());
+        Set<File> modified = new HashSet<File>(verifier.getModified());
+        int repaired = 0;
+        if (repair && (!missing.isEmpty() || !modified.isEmpty()))
+        {
+            for (Pack pack : packs)
+            {
+                repaired += repair(pack, missing, modified);
+                unpacker.checkInterrupt();
+            }
+            sink.flush();
+        }
+        writeVerificationReport(verifier);
+        listener.stopAction();
+
+        String summary = verifier.getMissing().size() + " missing, " + verifier.getModified().size()
+                + " modified and " + verifier.getExtra().size() + " extra files";
+        if (repair)
+        {
+            logger.info("Repaired " + repaired + " files");
+            prompt.message(Type.INFORMATION, "Verification found " + summary + ". Repaired " + repaired + " files");
+        }
+        else if (!verifier.isValid())
+        {
+            unpacker.setResult(false);
+            prompt.message(Type.WARNING, "Verification found " + summary);
+        }
+        else
+        {
+            prompt.message(Type.INFORMATION, "Verification found " + summary);
+        }
+    }
+
+    /**
+     * Returns the available packs that are listed as installed in the installation information.
+     *
+     * @param installDir the installation directory
+     * @return the installed packs
+     * @throws InstallerException if the installation information cannot be read
+     */
+    @SuppressWarnings("unchecked")
+    private List<Pack> getInstalledPacks(File installDir)
+    {
+        File file = new File(installDir, InstallData.INSTALLATION_INFORMATION);
+        if (!file.isFile())
+        {
+            throw new InstallerException("No installation information found in " + installDir);
+        }
+        Set<String> names = new HashSet<String>();
+        FileInputStream fin = null;
+        ObjectInputStream oin = null;
+        try
+        {
+            fin = new FileInputStream(file);
+            oin = new ObjectInputStream(fin);
+            for (Pack pack : (List<Pack>) oin.readObject())
+            {
+                names.add(pack.getName());
+            }
+        }
+        catch (Exception exception)
+        {
+            throw new InstallerException("Failed to read installation information: " + file, exception);
+        }
+        finally
+        {
+            FileUtils.close(oin);
+            FileUtils.close(fin);
+        }
+        List<Pack> result = new ArrayList<Pack>();
+        for (Pack pack : installData.getAvailablePacks())
+        {
+            if (names.remove(pack.getName()))
+            {
+                result.add(pack);
+            }
+        }
+        if (!names.isEmpty())
+        {
+            logger.warning("Cannot verify packs not provided by this installer: " + names);
+        }
+        return result;
+    }
+
+    /**
+     * Reads the files of an installed pack, adding them to the verifier.
+     * <p/>
+     * File content is skipped rather than read.
+     *
+     * @param pack     the pack
+     * @param packNo   the pack number
+     * @param verifier the verifier
+     * @throws IzPackException for any error
+     */
+    private void readInstalledFiles(Pack pack, int packNo, InstallationVerifier verifier)
+    {
+        InputStream in = null;
+        ObjectInputStream packInputStream = null;
+        try
+        {
+            in = resources.getPackStream(pack.getName());
+            packInputStream = new ObjectInputStream(in);
+            int fileCount = packInputStream.readInt();
+            listener.nextStep(unpacker.getStepName(pack), packNo + 1, fileCount);
+            for (int i = 0; i < fileCount; ++i)
+            {
+                PackFile file = (PackFile) packInputStream.readObject();
+                if (unpacker.shouldUnpack(file))
+                {
+                    String path = unpacker.getTargetPath(file.getTargetPath());
+                    uninstallData.addFile(path, pack.isUninstall());
+                    if (file.isDirectory())
+                    {
+                        verifier.addDirectory(new File(path));
+                    }
+                    else
+                    {
+                        // files that aren't always overwritten may legitimately differ from the pack
+                        verifier.addFile(file, new File(path), file.override() != OverrideType.OVERRIDE_TRUE);
+                        listener.progress(i, path);
+                    }
+                }
+                unpacker.skip(file, pack, packInputStream);
+            }
+            List<ParsableFile> parsables = new ArrayList<ParsableFile>();
+            unpacker.readParsableFiles(packInputStream, parsables);
+            for (ParsableFile parsable : parsables)
+            {
+                verifier.setExistenceOnly(new File(parsable.getPath()));
+            }
+            // registers uninstall executables with the uninstallation data
+            unpacker.readExecutableFiles(packInputStream, new ArrayList<ExecutableFile>());
+        }
+        catch (IzPackException exception)
+        {
+            throw exception;
+        }
+        catch (Exception exception)
+        {
+            throw new InstallerException("Failed to read pack: " + pack.getName(), exception);
+        }
+        finally
+        {
+            FileUtils.close(packInputStream);
+            FileUtils.close(in);
+        }
+    }
+
+    /**
+     * Re-extracts the invalid files of a pack.
+     * <p/>
+     * Missing files are always re-extracted, but modified files only if their override policy is
+     * {@link OverrideType#OVERRIDE_TRUE}, as other files may have been changed deliberately.
+     * <p/>
+     * The content of valid files is skipped; for packs stored uncompressed, this seeks rather than reads.
+     * Parsable files are parsed after being re-extracted.
+     *
+     * @param pack     the pack
+     * @param missing  the missing files
+     * @param modified the modified files
+     * @return the no. of files re-extracted
+     * @throws IzPackException for any error
+     */
+    private int repair(Pack pack, Set<File> missing, Set<File> modified)
+    {
+        int result = 0;
+        Set<String> repaired = new HashSet<String>();
+        InputStream in = null;
+        ObjectInputStream packInputStream = null;
+        try
+        {
+            in = resources.getPackStream(pack.getName());
+            packInputStream = new ObjectInputStream(in);
+            int fileCount = packInputStream.readInt();
+            for (int i = 0; i < fileCount; ++i)
+            {
+                PackFile file = (PackFile) packInputStream.readObject();
+                File target = null;
+                if (!file.isDirectory() && unpacker.shouldUnpack(file))
+                {
+                    target = new File(unpacker.getTargetPath(file.getTargetPath())).getAbsoluteFile();
+                }
+                if (target != null && (missing.contains(target)
+                        || (modified.contains(target) && file.override() == OverrideType.OVERRIDE_TRUE)))
+                {
+                    logger.info("Repairing " + target);
+                    unpacker.createDirectory(target.getParentFile(), file, pack);
+                    unpacker.extract(file, target, packInputStream, pack, null);
+                    repaired.add(target.getPath());
+                    ++result;
+                }
+                else
+                {
+                    unpacker.skip(file, pack, packInputStream);
+                }
+            }
+            List<ParsableFile> parsables = new ArrayList<ParsableFile>();
+            unpacker.readParsableFiles(packInputStream, parsables);
+            Iterator<ParsableFile> iterator = parsables.iterator();
+            while (iterator.hasNext())
+            {
+                if (!repaired.contains(new File(iterator.next().getPath()).getAbsolutePath()))
+                {
+                    iterator.remove();
+                }
+            }
+            sink.flush();
+            unpacker.parseFiles(parsables);
+        }
+        catch (IzPackException exception)
+        {
+            throw exception;
+        }
+        catch (Exception exception)
+        {
+            throw new InstallerException("Failed to repair pack: " + pack.getName(), exception);
+        }
+        finally
+        {
+            FileUtils.close(packInputStream);
+            FileUtils.close(in);
+        }
+        return result;
+    }
+
+    /**
+     * Writes the verification report, if a report file has been specified.
+     *
+     * @param verifier the verifier
+     * @throws IOException if the report cannot be written
+     */
+    private void writeVerificationReport(InstallationVerifier verifier) throws IOException
+    {
+        String path = installData.getVariable(UnpackerBase.VERIFY_REPORT);
+        if (path == null)
+        {
+            path = System.getProperty(UnpackerBase.VERIFY_REPORT);
+        }
+        if (path != null)
+        {
+            PrintWriter writer = new PrintWriter(new FileWriter(path));
+            try
+            {
+                verifier.write(writer);
+            }
+            finally
+            {
+                FileUtils.close(writer);
+            }
+            if (writer.checkError())
+            {
+                throw new IOException("Failed to write verification report: " + path);
+            }
+        }
+    }
+}
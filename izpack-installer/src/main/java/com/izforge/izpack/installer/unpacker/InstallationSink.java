@@ -0,0 +1,104 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+
+/**
+ * The destination of unpacked files.
+ * <p/>
+ * By default, files are installed to the {@link FileSystemSink file system}. Other implementations write the
+ * installation to an archive, or to memory.
+ * <p/>
+ * Operations that inspect or modify installed files after they have been unpacked, such as substituting variables
+ * in parsable files after unpacking, executing files, update checks and journaling, are only supported if
+ * {@link #isFileSystem()} is {@code true}.
+ *
+ * @author Tim Anderson
+ */
+public interface InstallationSink extends Closeable
+{
+
+    /**
+     * Determines if the sink writes directly to the file system.
+     *
+     * @return <tt>true</tt> if the sink writes to the file system
+     */
+    boolean isFileSystem();
+
+    /**
+     * Determines if a file or directory exists in the sink.
+     *
+     * @param file the file or directory
+     * @return <tt>true</tt> if it exists
+     */
+    boolean exists(File file);
+
+    /**
+     * Creates a directory, including any missing parent directories.
+     *
+     * @param dir the directory
+     * @throws IOException if the directory cannot be created
+     */
+    void createDirectory(File dir) throws IOException;
+
+    /**
+     * Creates a file, returning a stream to write its content.
+     * <p/>
+     * The parent directory must exist. Only one file may be written at a time; the stream must be closed before
+     * the next file is created.
+     *
+     * @param file         the file
+     * @param length       the length of the file, or {@code -1} if it is not known
+     * @param lastModified the last modified timestamp of the file, or {@code -1} if it is not known
+     * @param mode         the POSIX mode bits of the file, or {@code -1} to use the default
+     * @return a stream to write the file content
+     * @throws IOException if the file cannot be created
+     */
+    OutputStream createFile(File file, long length, long lastModified, int mode) throws IOException;
+
+    /**
+     * Sets the last modified timestamp of a file, after it has been written.
+     *
+     * @param file         the file
+     * @param lastModified the last modified timestamp
+     * @return <tt>true</tt> if the timestamp was set
+     */
+    boolean setLastModified(File file, long lastModified);
+
+    /**
+     * Completes any deferred operations on the files written so far, such as setting their permissions.
+     *
+     * @throws IOException for any I/O error
+     */
+    void flush() throws IOException;
+
+    /**
+     * Closes the sink, completing the installation.
+     *
+     * @throws IOException for any I/O error
+     */
+    void close() throws IOException;
+}
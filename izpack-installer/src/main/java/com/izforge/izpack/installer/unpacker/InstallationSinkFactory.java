@@ -0,0 +1,123 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+
+/**
+ * Creates {@link InstallationSink}s from a specification.
+ * <p/>
+ * The specification takes one of the forms:
+ * <ul>
+ * <li><em>filesystem</em> - install to the file system. This is the default</li>
+ * <li><em>tar:&lt;path&gt;</em> - write the installation to a tar archive</li>
+ * <li><em>zip:&lt;path&gt;</em> - write the installation to a zip archive</li>
+ * </ul>
+ * An archive path of <em>-</em> writes the archive to standard output. In this case, {@code System.out} is
+ * redirected to standard error, so that console output doesn't corrupt the archive.
+ *
+ * @author Tim Anderson
+ */
+public class InstallationSinkFactory
+{
+
+    /**
+     * File system sink specification.
+     */
+    public static final String FILESYSTEM = "filesystem";
+
+    /**
+     * Tar archive sink specification prefix.
+     */
+    public static final String TAR = "tar:";
+
+    /**
+     * Zip archive sink specification prefix.
+     */
+    public static final String ZIP = "zip:";
+
+    /**
+     * The path denoting standard output.
+     */
+    private static final String STDOUT = "-";
+
+
+    /**
+     * Creates a sink.
+     *
+     * @param spec the sink specification. May be {@code null}
+     * @return a new sink
+     * @throws IOException if the archive cannot be created
+     * @throws IllegalArgumentException if the specification is invalid
+     */
+    public static InstallationSink create(String spec) throws IOException
+    {
+        InstallationSink result;
+        if (spec == null || spec.trim().length() == 0 || FILESYSTEM.equals(spec.trim()))
+        {
+            result = new FileSystemSink();
+        }
+        else if (spec.startsWith(TAR))
+        {
+            result = new TarSink(open(spec.substring(TAR.length())));
+        }
+        else if (spec.startsWith(ZIP))
+        {
+            result = new ZipSink(open(spec.substring(ZIP.length())));
+        }
+        else
+        {
+            throw new IllegalArgumentException("Invalid installation target: " + spec);
+        }
+        return result;
+    }
+
+    /**
+     * Opens the archive output stream.
+     *
+     * @param path the archive path, or <em>-</em> for standard output
+     * @return the output stream
+     * @throws IOException if the archive cannot be created
+     */
+    private static OutputStream open(String path) throws IOException
+    {
+        if (path.length() == 0)
+        {
+            throw new IllegalArgumentException("Installation target archive path not specified");
+        }
+        OutputStream result;
+        if (STDOUT.equals(path))
+        {
+            System.out.flush();
+            result = new FileOutputStream(FileDescriptor.out);
+            System.setOut(System.err);
+        }
+        else
+        {
+            result = new FileOutputStream(path);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,401 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.exception.InstallerException;
+import com.izforge.izpack.api.exception.IzPackException;
+import com.izforge.izpack.api.exception.ResourceInterruptedException;
+import com.izforge.izpack.util.FileUtil;
+
+
+/**
+ * Verifies an existing installation against the pack files that the installer would write.
+ * <p/>
+ * Each expected file is checked for existence, then for its length and content digest, where these are known.
+ * Files whose content is changed during installation, such as parsable files and pack200 jars, are only checked
+ * for existence. Files in the installed directories that aren't expected are reported as extra.
+ * <p/>
+ * The files are divided between workers, so that files on different devices may be read concurrently.
+ *
+ * @author Tim Anderson
+ */
+public class InstallationVerifier
+{
+
+    /**
+     * The installation directory. Only directories within this are examined for extra files.
+     */
+    private final File root;
+
+    /**
+     * The expected files, keyed on target.
+     */
+    private final Map<File, PackFile> files = new LinkedHashMap<File, PackFile>();
+
+    /**
+     * Expected files that should only be checked for existence.
+     */
+    private final Set<File> existenceOnly = new HashSet<File>();
+
+    /**
+     * The expected directories.
+     */
+    private final Set<File> directories = new LinkedHashSet<File>();
+
+    /**
+     * Files written by the installer that aren't in packs.
+     */
+    private final Set<File> excluded = new HashSet<File>();
+
+    /**
+     * The missing files.
+     */
+    private final List<File> missing = new ArrayList<File>();
+
+    /**
+     * The modified files.
+     */
+    private final List<File> modified = new ArrayList<File>();
+
+    /**
+     * The extra files.
+     */
+    private final List<File> extra = new ArrayList<File>();
+
+    /**
+     * Determines if verification should be cancelled.
+     */
+    private final Cancellable cancellable;
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(InstallationVerifier.class.getName());
+
+
+    /**
+     * Constructs an <tt>InstallationVerifier</tt>.
+     *
+     * @param root        the installation directory
+     * @param cancellable determines if verification should be cancelled
+     */
+    public InstallationVerifier(File root, Cancellable cancellable)
+    {
+        this.root = root.getAbsoluteFile();
+        this.cancellable = cancellable;
+    }
+
+    /**
+     * Adds a file that the installation should contain.
+     *
+     * @param file          the pack file
+     * @param target        the installed file
+     * @param existenceOnly if {@code true}, only check that the file exists, as its content is changed during
+     *                      installation
+     */
+    public void addFile(PackFile file, File target, boolean existenceOnly)
+    {
+        target = target.getAbsoluteFile();
+        files.put(target, file);
+        if (existenceOnly || file.isPack200Jar())
+        {
+            this.existenceOnly.add(target);
+        }
+        directories.add(target.getParentFile());
+    }
+
+    /**
+     * Adds a directory that the installation should contain.
+     *
+     * @param dir the directory
+     */
+    public void addDirectory(File dir)
+    {
+        directories.add(dir.getAbsoluteFile());
+    }
+
+    /**
+     * Excludes a file from being reported as extra, as it is written by the installer rather than unpacked from a
+     * pack.
+     *
+     * @param file the file to exclude
+     */
+    public void exclude(File file)
+    {
+        excluded.add(file.getAbsoluteFile());
+    }
+
+    /**
+     * Marks an expected file as only requiring an existence check.
+     *
+     * @param target the installed file
+     */
+    public void setExistenceOnly(File target)
+    {
+        target = target.getAbsoluteFile();
+        if (files.containsKey(target))
+        {
+            existenceOnly.add(target);
+        }
+    }
+
+    /**
+     * Verifies the installation.
+     *
+     * @param executor the executor to run the workers
+     * @param workers  the no. of workers to divide the files between
+     * @throws InstallerException           if a file cannot be read
+     * @throws ResourceInterruptedException if verification is cancelled
+     */
+    public void verify(ExecutorService executor, int workers)
+    {
+        missing.clear();
+        modified.clear();
+        extra.clear();
+        List<File> targets = new ArrayList<File>(files.keySet());
+        if (!targets.isEmpty())
+        {
+            workers = Math.max(1, Math.min(workers, targets.size()));
+            List<Callable<Result>> tasks = new ArrayList<Callable<Result>>();
+            int size = (targets.size() + workers - 1) / workers;
+            for (int i = 0; i < targets.size(); i += size)
+            {
+                final List<File> chunk = targets.subList(i, Math.min(i + size, targets.size()));
+                tasks.add(new Callable<Result>()
+                {
+                    public Result call() throws Exception
+                    {
+                        return verify(chunk);
+                    }
+                });
+            }
+            try
+            {
+                for (Future<Result> future : executor.invokeAll(tasks))
+                {
+                    Result result = future.get();
+                    missing.addAll(result.missing);
+                    modified.addAll(result.modified);
+                }
+            }
+            catch (ExecutionException exception)
+            {
+                Throwable cause = exception.getCause();
+                if (cause instanceof IzPackException)
+                {
+                    throw (IzPackException) cause;
+                }
+                throw new InstallerException("Failed to verify installation", cause);
+            }
+            catch (InterruptedException exception)
+            {
+                throw new ResourceInterruptedException("Installation cancelled");
+            }
+        }
+        findExtra();
+        logger.info("Verified " + targets.size() + " files: " + missing.size() + " missing, " + modified.size()
+                            + " modified, " + extra.size() + " extra");
+    }
+
+    /**
+     * Returns the files that are missing from the installation.
+     *
+     * @return the missing files
+     */
+    public List<File> getMissing()
+    {
+        return Collections.unmodifiableList(missing);
+    }
+
+    /**
+     * Returns the files whose length or content differs from that in the packs.
+     *
+     * @return the modified files
+     */
+    public List<File> getModified()
+    {
+        return Collections.unmodifiableList(modified);
+    }
+
+    /**
+     * Returns the files and directories in the installed directories that aren't in the packs.
+     *
+     * @return the extra files
+     */
+    public List<File> getExtra()
+    {
+        return Collections.unmodifiableList(extra);
+    }
+
+    /**
+     * Determines if the installation is valid, i.e. no files are missing or modified.
+     *
+     * @return {@code true} if the installation is valid
+     */
+    public boolean isValid()
+    {
+        return missing.isEmpty() && modified.isEmpty();
+    }
+
+    /**
+     * Writes a report of the verification.
+     * <p/>
+     * Each line contains one of <em>MISSING</em>, <em>MODIFIED</em> or <em>EXTRA</em>, followed by the path.
+     *
+     * @param writer the writer to write to
+     */
+    public void write(PrintWriter writer)
+    {
+        write("MISSING", missing, writer);
+        write("MODIFIED", modified, writer);
+        write("EXTRA", extra, writer);
+        writer.flush();
+    }
+
+    /**
+     * Verifies a set of files.
+     *
+     * @param targets the files to verify
+     * @return the missing and modified files
+     * @throws IOException                  for any I/O error
+     * @throws ResourceInterruptedException if verification is cancelled
+     */
+    private Result verify(List<File> targets) throws IOException
+    {
+        Result result = new Result();
+        for (File target : targets)
+        {
+            if (cancellable.isCancelled())
+            {
+                throw new ResourceInterruptedException("Installation cancelled");
+            }
+            PackFile file = files.get(target);
+            if (!target.isFile())
+            {
+                result.missing.add(target);
+            }
+            else if (!existenceOnly.contains(target) && isModified(file, target))
+            {
+                result.modified.add(target);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Determines if an installed file differs from its pack file.
+     *
+     * @param file   the pack file
+     * @param target the installed file
+     * @return {@code true} if the file differs
+     * @throws IOException if the file cannot be read
+     */
+    private boolean isModified(PackFile file, File target) throws IOException
+    {
+        if (target.length() != file.length())
+        {
+            return true;
+        }
+        byte[] digest = file.getDigest();
+        return digest != null
+                && !MessageDigest.isEqual(digest, FileUtil.getDigest(target, PackFile.DIGEST_ALGORITHM));
+    }
+
+    /**
+     * Finds the files in the installed directories that aren't in the packs.
+     * <p/>
+     * Only the immediate children of each directory within the installation directory are examined. Unexpected
+     * sub-directories are reported, but not their content.
+     */
+    private void findExtra()
+    {
+        String prefix = root.getPath() + File.separator;
+        for (File dir : directories)
+        {
+            if (!dir.equals(root) && !dir.getPath().startsWith(prefix))
+            {
+                // don't report the content of shared directories
+                continue;
+            }
+            File[] children = dir.listFiles();
+            if (children != null)
+            {
+                for (File child : children)
+                {
+                    if (!files.containsKey(child) && !directories.contains(child) && !excluded.contains(child))
+                    {
+                        extra.add(child);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a list of files to a report.
+     *
+     * @param status the status of the files
+     * @param list   the files
+     * @param writer the writer to write to
+     */
+    private void write(String status, List<File> list, PrintWriter writer)
+    {
+        for (File file : list)
+        {
+            writer.println(status + " " + file.getPath());
+        }
+    }
+
+    /**
+     * The missing and modified files found by a verification worker.
+     */
+    private static class Result
+    {
+
+        /**
+         * The missing files.
+         */
+        private final List<File> missing = new ArrayList<File>();
+
+        /**
+         * The modified files.
+         */
+        private final List<File> modified = new ArrayList<File>();
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.izforge.izpack.api.exception.InstallerException;
+import com.izforge.izpack.api.exception.IzPackException;
+import com.izforge.izpack.api.exception.ResourceInterruptedException;
+import com.izforge.izpack.util.file.FileUtils;
+
+
+/**
+ * Verifies the integrity of an installer jar prior to unpacking, by recalculating the CRC-32 checksum of each entry
+ * and comparing it with that recorded in the jar.
+ * <p/>
+ * The entries are divided between workers, each of which reads the jar via its own {@link ZipFile}.
+ *
+ * @author Tim Anderson
+ */
+public class InstallerVerifier
+{
+
+    /**
+     * The installer jar.
+     */
+    private final File jar;
+
+    /**
+     * Determines if verification should be cancelled.
+     */
+    private final Cancellable cancellable;
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(InstallerVerifier.class.getName());
+
+
+    /**
+     * Constructs an <tt>InstallerVerifier</tt>.
+     *
+     * @param jar         the installer jar
+     * @param cancellable determines if verification should be cancelled
+     */
+    public InstallerVerifier(File jar, Cancellable cancellable)
+    {
+        this.jar = jar;
+        this.cancellable = cancellable;
+    }
+
+    /**
+     * Verifies the installer jar.
+     *
+     * @param executor the executor to run the workers
+     * @param workers  the no. of workers to divide the entries between
+     * @throws InstallerException           if an entry is corrupt, or the jar cannot be read
+     * @throws ResourceInterruptedException if verification is cancelled
+     */
+    public void verify(ExecutorService executor, int workers)
+    {
+        List<String> names = getEntries();
+        workers = Math.max(1, Math.min(workers, names.size()));
+        List<Callable<Long>> tasks = new ArrayList<Callable<Long>>();
+        int size = (names.size() + workers - 1) / workers;
+        for (int i = 0; i < names.size(); i += size)
+        {
+            final List<String> chunk = names.subList(i, Math.min(i + size, names.size()));
+            tasks.add(new Callable<Long>()
+            {
+                public Long call() throws Exception
+                {
+                    return verify(chunk);
+                }
+            });
+        }
+
+        long bytes = 0;
+        try
+        {
+            for (Future<Long> future : executor.invokeAll(tasks))
+            {
+                bytes += future.get();
+            }
+        }
+        catch (ExecutionException exception)
+        {
+            Throwable cause = exception.getCause();
+            if (cause instanceof IzPackException)
+            {
+                throw (IzPackException) cause;
+            }
+            throw new InstallerException("Failed to verify " + jar, cause);
+        }
+        catch (InterruptedException exception)
+        {
+            throw new ResourceInterruptedException("Installation cancelled");
+        }
+        logger.fine("Verified " + names.size() + " entries (" + bytes + " bytes) in " + jar);
+    }
+
+    /**
+     * Returns the names of the entries to verify.
+     *
+     * @return the entry names
+     * @throws InstallerException if the jar cannot be read
+     */
+    private List<String> getEntries()
+    {
+        List<String> result = new ArrayList<String>();
+        ZipFile zip = null;
+        try
+        {
+            zip = new ZipFile(jar);
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements())
+            {
+                ZipEntry entry = entries.nextElement();
+                if (!entry.isDirectory())
+                {
+                    result.add(entry.getName());
+                }
+            }
+        }
+        catch (IOException exception)
+        {
+            throw new InstallerException("Failed to read " + jar, exception);
+        }
+        finally
+        {
+            close(zip);
+        }
+        return result;
+    }
+
+    /**
+     * Verifies a set of entries.
+     *
+     * @param names the entry names
+     * @return the no. of bytes verified
+     * @throws IOException                  for any I/O error
+     * @throws InstallerException           if an entry is corrupt
+     * @throws ResourceInterruptedException if verification is cancelled
+     */
+    private long verify(List<String> names) throws IOException
+    {
+        long result = 0;
+        byte[] buffer = new byte[64 * 1024];
+        CRC32 checksum = new CRC32();
+        ZipFile zip = new ZipFile(jar);
+        try
+        {
+            for (String name : names)
+            {
+                if (cancellable.isCancelled())
+                {
+                    throw new ResourceInterruptedException("Installation cancelled");
+                }
+                ZipEntry entry = zip.getEntry(name);
+                checksum.reset();
+                long size = 0;
+                InputStream in = zip.getInputStream(entry);
+                try
+                {
+                    int read;
+                    while ((read = in.read(buffer)) != -1)
+                    {
+                        checksum.update(buffer, 0, read);
+                        size += read;
+                    }
+                }
+                finally
+                {
+                    FileUtils.close(in);
+                }
+                if ((entry.getSize() != -1 && entry.getSize() != size)
+                        || (entry.getCrc() != -1 && entry.getCrc() != checksum.getValue()))
+                {
+                    throw new InstallerException("Checksum mismatch for " + name + " in " + jar
+                                                         + " (installer corrupted?)");
+                }
+                result += size;
+            }
+        }
+        finally
+        {
+            close(zip);
+        }
+        return result;
+    }
+
+    /**
+     * Closes a zip file, logging any exception.
+     *
+     * @param zip the zip file. May be {@code null}
+     */
+    private void close(ZipFile zip)
+    {
+        if (zip != null)
+        {
+            try
+            {
+                zip.close();
+            }
+            catch (IOException exception)
+            {
+                logger.fine("Failed to close " + jar + ": " + exception.getMessage());
+            }
+        }
+    }
+}
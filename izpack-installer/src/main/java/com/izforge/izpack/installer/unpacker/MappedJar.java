@@ -0,0 +1,376 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+
+/**
+ * A read-only, memory-mapped view of a jar.
+ * <p/>
+ * The contents of {@link ZipEntry#STORED STORED} entries are returned as slices of the mapped jar, avoiding the
+ * inflater and intermediate buffer copies of {@link ClassLoader#getResourceAsStream(String)}, and allowing random
+ * access by offset. Compressed entries are not supported.
+ * <p/>
+ * Jars larger than 2GB, and ZIP64 jars, cannot be mapped.
+ *
+ * @author Tim Anderson
+ */
+public class MappedJar
+{
+
+    /**
+     * The jar file.
+     */
+    private final File file;
+
+    /**
+     * The mapped jar.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * The entries, keyed on name.
+     */
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    /**
+     * End of central directory record signature.
+     */
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    /**
+     * Central directory file header signature.
+     */
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+
+    /**
+     * Local file header signature.
+     */
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+
+    /**
+     * The size of the end of central directory record, excluding the comment.
+     */
+    private static final int END_SIZE = 22;
+
+    /**
+     * The size of the fixed part of the central directory file header.
+     */
+    private static final int CENTRAL_SIZE = 46;
+
+    /**
+     * The size of the fixed part of the local file header.
+     */
+    private static final int LOCAL_SIZE = 30;
+
+
+    /**
+     * Constructs a <tt>MappedJar</tt>.
+     *
+     * @param file the jar file
+     * @throws IOException if the jar cannot be mapped or is invalid
+     */
+    public MappedJar(File file) throws IOException
+    {
+        this.file = file;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try
+        {
+            // the mapping remains valid after the channel is closed
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+            {
+                throw new IOException("Cannot map " + file + ": too large");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        finally
+        {
+            raf.close();
+        }
+        readCentralDirectory();
+    }
+
+    /**
+     * Returns the jar file.
+     *
+     * @return the jar file
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Returns the content of a {@link ZipEntry#STORED STORED} entry.
+     *
+     * @param name the entry name
+     * @return a read-only buffer over the entry content, or {@code null} if the entry doesn't exist or is compressed
+     * @throws ZipException if the entry's local header is invalid
+     */
+    public ByteBuffer getEntry(String name) throws ZipException
+    {
+        Entry entry = entries.get(name);
+        if (entry == null || entry.method != ZipEntry.STORED)
+        {
+            return null;
+        }
+        int offset = entry.offset;
+        if (buffer.getInt(offset) != LOCAL_SIGNATURE)
+        {
+            throw new ZipException("Invalid local header for " + name + " in " + file);
+        }
+        int start = offset + LOCAL_SIZE + getShort(offset + 26) + getShort(offset + 28);
+        if (start + entry.size > buffer.limit())
+        {
+            throw new ZipException("Invalid entry size for " + name + " in " + file);
+        }
+        ByteBuffer result = buffer.duplicate();
+        result.limit(start + entry.size);
+        result.position(start);
+        return result.slice();
+    }
+
+    /**
+     * Returns a stream to the content of a {@link ZipEntry#STORED STORED} entry.
+     * <p/>
+     * The stream supports skipping and mark/reset without reading the skipped bytes.
+     *
+     * @param name the entry name
+     * @return a stream to the entry content, or {@code null} if the entry doesn't exist or is compressed
+     * @throws ZipException if the entry's local header is invalid
+     */
+    public InputStream getInputStream(String name) throws ZipException
+    {
+        ByteBuffer entry = getEntry(name);
+        return (entry != null) ? new ByteBufferInputStream(entry) : null;
+    }
+
+    /**
+     * Reads the central directory.
+     *
+     * @throws ZipException if the central directory cannot be found or is invalid
+     */
+    private void readCentralDirectory() throws ZipException
+    {
+        int end = -1;
+        int min = Math.max(0, buffer.limit() - END_SIZE - 0xFFFF);
+        for (int i = buffer.limit() - END_SIZE; i >= min; --i)
+        {
+            if (buffer.getInt(i) == END_SIGNATURE)
+            {
+                end = i;
+                break;
+            }
+        }
+        if (end == -1)
+        {
+            throw new ZipException("Cannot locate central directory of " + file);
+        }
+        int count = getShort(end + 10);
+        long offset = buffer.getInt(end + 16) & 0xFFFFFFFFL;
+        if (count == 0xFFFF || offset == 0xFFFFFFFFL)
+        {
+            throw new ZipException("Cannot map ZIP64 jar " + file);
+        }
+        int position = (int) offset;
+        for (int i = 0; i < count; ++i)
+        {
+            if (position + CENTRAL_SIZE > end || buffer.getInt(position) != CENTRAL_SIGNATURE)
+            {
+                throw new ZipException("Invalid central directory in " + file);
+            }
+            int method = getShort(position + 10);
+            long size = buffer.getInt(position + 24) & 0xFFFFFFFFL;
+            int nameLength = getShort(position + 28);
+            int extraLength = getShort(position + 30);
+            int commentLength = getShort(position + 32);
+            long local = buffer.getInt(position + 42) & 0xFFFFFFFFL;
+            if (local >= buffer.limit() || size > Integer.MAX_VALUE)
+            {
+                throw new ZipException("Invalid central directory in " + file);
+            }
+            byte[] name = new byte[nameLength];
+            ByteBuffer names = buffer.duplicate();
+            names.position(position + CENTRAL_SIZE);
+            names.get(name);
+            entries.put(decode(name), new Entry(method, (int) local, (int) size));
+            position += CENTRAL_SIZE + nameLength + extraLength + commentLength;
+        }
+    }
+
+    /**
+     * Returns an unsigned short at the specified offset.
+     *
+     * @param offset the offset
+     * @return the unsigned short
+     */
+    private int getShort(int offset)
+    {
+        return buffer.getShort(offset) & 0xFFFF;
+    }
+
+    /**
+     * Decodes an entry name.
+     * <p/>
+     * IzPack writes entry names as UTF-8.
+     *
+     * @param name the encoded name
+     * @return the decoded name
+     */
+    private static String decode(byte[] name)
+    {
+        try
+        {
+            return new String(name, "UTF-8");
+        }
+        catch (UnsupportedEncodingException exception)
+        {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    /**
+     * Central directory entry details.
+     */
+    private static class Entry
+    {
+
+        /**
+         * The compression method.
+         */
+        private final int method;
+
+        /**
+         * The offset of the local file header.
+         */
+        private final int offset;
+
+        /**
+         * The uncompressed size.
+         */
+        private final int size;
+
+        /**
+         * Constructs an <tt>Entry</tt>.
+         *
+         * @param method the compression method
+         * @param offset the offset of the local file header
+         * @param size   the uncompressed size
+         */
+        public Entry(int method, int offset, int size)
+        {
+            this.method = method;
+            this.offset = offset;
+            this.size = size;
+        }
+    }
+
+    /**
+     * An input stream over a byte buffer.
+     */
+    private static class ByteBufferInputStream extends InputStream
+    {
+
+        /**
+         * The buffer.
+         */
+        private final ByteBuffer buffer;
+
+        /**
+         * Constructs a <tt>ByteBufferInputStream</tt>.
+         *
+         * @param buffer the buffer
+         */
+        public ByteBufferInputStream(ByteBuffer buffer)
+        {
+            this.buffer = buffer;
+            buffer.mark();
+        }
+
+        @Override
+        public int read()
+        {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length)
+        {
+            if (length == 0)
+            {
+                return 0;
+            }
+            if (!buffer.hasRemaining())
+            {
+                return -1;
+            }
+            int n = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n)
+        {
+            int skip = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skip);
+            return skip;
+        }
+
+        @Override
+        public int available()
+        {
+            return buffer.remaining();
+        }
+
+        @Override
+        public boolean markSupported()
+        {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark(int readLimit)
+        {
+            buffer.mark();
+        }
+
+        @Override
+        public synchronized void reset()
+        {
+            buffer.reset();
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * An {@link InstallationSink} that collects the installation in memory.
+ * <p/>
+ * This is intended for testing.
+ *
+ * @author Tim Anderson
+ */
+public class MemorySink implements InstallationSink
+{
+
+    /**
+     * The directories, in the order they were created.
+     */
+    private final Set<File> directories = new LinkedHashSet<File>();
+
+    /**
+     * The file contents, keyed on file, in the order they were created.
+     */
+    private final Map<File, byte[]> files = new LinkedHashMap<File, byte[]>();
+
+    /**
+     * The last modified timestamps, keyed on file.
+     */
+    private final Map<File, Long> timestamps = new LinkedHashMap<File, Long>();
+
+    /**
+     * The file modes, keyed on file.
+     */
+    private final Map<File, Integer> modes = new LinkedHashMap<File, Integer>();
+
+    /**
+     * Determines if the sink has been closed.
+     */
+    private boolean closed;
+
+
+    /**
+     * Determines if the sink writes directly to the file system.
+     *
+     * @return <tt>false</tt>
+     */
+    @Override
+    public synchronized boolean isFileSystem()
+    {
+        return false;
+    }
+
+    /**
+     * Determines if a file or directory has been written to the sink.
+     *
+     * @param file the file or directory
+     * @return <tt>true</tt> if it exists
+     */
+    @Override
+    public synchronized boolean exists(File file)
+    {
+        file = file.getAbsoluteFile();
+        return directories.contains(file) || files.containsKey(file);
+    }
+
+    /**
+     * Creates a directory, including any missing parent directories.
+     *
+     * @param dir the directory
+     */
+    @Override
+    public synchronized void createDirectory(File dir)
+    {
+        dir = dir.getAbsoluteFile();
+        if (!directories.contains(dir))
+        {
+            File parent = dir.getParentFile();
+            if (parent != null)
+            {
+                createDirectory(parent);
+            }
+            directories.add(dir);
+        }
+    }
+
+    /**
+     * Creates a file, returning a stream to write its content.
+     *
+     * @param file         the file
+     * @param length       the length of the file, or {@code -1} if it is not known
+     * @param lastModified the last modified timestamp of the file, or {@code -1} if it is not known
+     * @param mode         the POSIX mode bits of the file, or {@code -1} to use the default
+     * @return a stream to write the file content
+     * @throws IOException if the sink is closed, or the parent directory doesn't exist
+     */
+    @Override
+    public synchronized OutputStream createFile(final File file, long length, long lastModified, int mode)
+            throws IOException
+    {
+        if (closed)
+        {
+            throw new IOException("Sink closed");
+        }
+        final File path = file.getAbsoluteFile();
+        if (path.getParentFile() != null && !directories.contains(path.getParentFile()))
+        {
+            throw new IOException("Directory does not exist: " + path.getParentFile());
+        }
+        files.put(path, new byte[0]);
+        timestamps.put(path, lastModified);
+        modes.put(path, mode);
+        return new ByteArrayOutputStream()
+        {
+            @Override
+            public void close()
+            {
+                synchronized (MemorySink.this)
+                {
+                    files.put(path, toByteArray());
+                }
+            }
+        };
+    }
+
+    /**
+     * Sets the last modified timestamp of a file.
+     *
+     * @param file         the file
+     * @param lastModified the last modified timestamp
+     * @return <tt>true</tt> if the file exists
+     */
+    @Override
+    public synchronized boolean setLastModified(File file, long lastModified)
+    {
+        file = file.getAbsoluteFile();
+        if (files.containsKey(file))
+        {
+            timestamps.put(file, lastModified);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Flushes the sink.
+     * <p/>
+     * This implementation is a no-op.
+     */
+    @Override
+    public void flush()
+    {
+    }
+
+    /**
+     * Closes the sink.
+     */
+    @Override
+    public synchronized void close()
+    {
+        closed = true;
+    }
+
+    /**
+     * Returns the directories written to the sink.
+     *
+     * @return the directories, in the order they were created
+     */
+    public synchronized Set<File> getDirectories()
+    {
+        return new LinkedHashSet<File>(directories);
+    }
+
+    /**
+     * Returns the files written to the sink.
+     *
+     * @return the files, in the order they were created
+     */
+    public synchronized Set<File> getFiles()
+    {
+        return new LinkedHashSet<File>(files.keySet());
+    }
+
+    /**
+     * Returns the content of a file.
+     *
+     * @param file the file
+     * @return the file content, or {@code null} if the file doesn't exist
+     */
+    public synchronized byte[] getContent(File file)
+    {
+        return files.get(file.getAbsoluteFile());
+    }
+
+    /**
+     * Returns the last modified timestamp of a file.
+     *
+     * @param file the file
+     * @return the last modified timestamp, or {@code -1} if the file doesn't exist or has no timestamp
+     */
+    public synchronized long getLastModified(File file)
+    {
+        Long result = timestamps.get(file.getAbsoluteFile());
+        return (result != null) ? result : -1;
+    }
+
+    /**
+     * Returns the mode of a file.
+     *
+     * @param file the file
+     * @return the mode bits, or {@code -1} if the file doesn't exist or has no mode
+     */
+    public synchronized int getMode(File file)
+    {
+        Integer result = modes.get(file.getAbsoluteFile());
+        return (result != null) ? result : -1;
+    }
+
+    /**
+     * Determines if the sink has been closed.
+     *
+     * @return <tt>true</tt> if the sink has been closed
+     */
+    public synchronized boolean isClosed()
+    {
+        return closed;
+    }
+}
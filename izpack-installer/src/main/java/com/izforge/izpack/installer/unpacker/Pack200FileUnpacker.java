@@ -104,4 +104,18 @@ class Pack200FileUnpacker extends FileUnpacker
         postCopy(file);
     }
 
+    /**
+     * Returns the length of the file that will be written to the target.
+     * <p/>
+     * The length of the unpacked jar is not known until it has been written.
+     *
+     * @param file the pack file meta-data
+     * @return {@code -1}
+     */
+    @Override
+    protected long getLength(PackFile file)
+    {
+        return -1;
+    }
+
 }
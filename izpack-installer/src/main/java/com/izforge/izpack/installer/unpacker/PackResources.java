@@ -57,4 +57,11 @@ public interface PackResources
      * @throws ResourceException            for any other resource error
      */
     InputStream getInputStream(String name);
-}
\ No newline at end of file
+
+    /**
+     * Stops any retrieval of packs in progress, and releases any resources used to retrieve them.
+     * <p/>
+     * This is invoked when unpacking completes or is interrupted. Packs may still be retrieved afterwards.
+     */
+    void shutdown();
+}
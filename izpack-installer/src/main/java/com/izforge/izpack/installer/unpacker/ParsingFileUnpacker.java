@@ -0,0 +1,191 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.exception.InstallerException;
+import com.izforge.izpack.api.substitutor.VariableSubstitutor;
+import com.izforge.izpack.util.file.FileUtils;
+import com.izforge.izpack.util.os.FileQueue;
+
+
+/**
+ * A file unpacker that substitutes variables in a {@link PackFile#isParsable() parsable} file as it is unpacked.
+ * <p/>
+ * This avoids writing the file, and then reading and writing it again to substitute variables.
+ *
+ * @author Tim Anderson
+ */
+public class ParsingFileUnpacker extends FileUnpacker
+{
+
+    /**
+     * Determines if unpacking should be cancelled.
+     */
+    private final Cancellable cancellable;
+
+    /**
+     * The variable replacer.
+     */
+    private final VariableSubstitutor replacer;
+
+    /**
+     * Constructs a <tt>ParsingFileUnpacker</tt>.
+     *
+     * @param cancellable determines if unpacking should be cancelled
+     * @param queue       the file queue. May be {@code null}
+     * @param replacer    the variable replacer
+     */
+    public ParsingFileUnpacker(Cancellable cancellable, FileQueue queue, VariableSubstitutor replacer)
+    {
+        super(cancellable, queue);
+        this.cancellable = cancellable;
+        this.replacer = replacer;
+    }
+
+    /**
+     * Unpacks a pack file, substituting variables.
+     *
+     * @param file            the pack file meta-data
+     * @param packInputStream the pack input stream
+     * @param target          the target
+     * @throws IOException        for any I/O error
+     * @throws InstallerException for any installer exception
+     */
+    @Override
+    public void unpack(PackFile file, ObjectInputStream packInputStream, File target)
+            throws IOException, InstallerException
+    {
+        InputStream in = new PackFileInputStream(packInputStream, file.length());
+        resetChecksum();
+        OutputStream out = new BufferedOutputStream(getTarget(file, target), 5120);
+        try
+        {
+            replacer.substitute(in, out, file.getParseType(), file.getParseEncoding());
+            if (in.read() != -1)
+            {
+                // the substitutor must consume the entire file, else the pack stream will be out of sync
+                throw new IOException("Failed to read " + file.getTargetPath());
+            }
+        }
+        catch (IOException exception)
+        {
+            throw exception;
+        }
+        catch (Exception exception)
+        {
+            throw new InstallerException("Failed to parse: " + target, exception);
+        }
+        finally
+        {
+            FileUtils.close(out);
+        }
+        verifyChecksum(file, target);
+        postCopy(file);
+    }
+
+    /**
+     * Returns the length of the file that will be written to the target.
+     * <p/>
+     * Variable substitution may change the length of the file, so it is not known until it has been written.
+     *
+     * @param file the pack file meta-data
+     * @return {@code -1}
+     */
+    @Override
+    protected long getLength(PackFile file)
+    {
+        return -1;
+    }
+
+    /**
+     * Restricts reading of the pack stream to the bytes of a single file.
+     * <p/>
+     * This does not close the underlying stream.
+     */
+    private class PackFileInputStream extends InputStream
+    {
+
+        /**
+         * The pack stream.
+         */
+        private final InputStream in;
+
+        /**
+         * The remaining no. of bytes to read.
+         */
+        private long remaining;
+
+        /**
+         * Constructs a <tt>PackFileInputStream</tt>.
+         *
+         * @param in     the pack stream
+         * @param length the no. of bytes in the file
+         */
+        public PackFileInputStream(InputStream in, long length)
+        {
+            this.in = in;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            byte[] buffer = new byte[1];
+            int read = read(buffer, 0, 1);
+            return (read == -1) ? -1 : buffer[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException
+        {
+            if (remaining <= 0)
+            {
+                return -1;
+            }
+            if (cancellable.isCancelled())
+            {
+                throw new InterruptedIOException("Copy operation cancelled");
+            }
+            int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read == -1)
+            {
+                throw new IOException("Unexpected end of stream (installer corrupted?)");
+            }
+            updateChecksum(buffer, offset, read);
+            remaining -= read;
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException
+        {
+            return (int) Math.min(in.available(), remaining);
+        }
+    }
+}
@@ -0,0 +1,515 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+
+import com.izforge.izpack.util.file.FileUtils;
+
+
+/**
+ * An {@link InstallationSink} that streams the installation as a POSIX (ustar) tar archive.
+ * <p/>
+ * Names too long for the ustar header are written using GNU long name entries. Files larger than 8GB have their
+ * size encoded in base-256, as per GNU tar.
+ * <p/>
+ * The length of each entry must be known before its content is written, so files of unknown length are spooled
+ * to a temporary file first.
+ *
+ * @author Tim Anderson
+ */
+public class TarSink extends ArchiveSink
+{
+
+    /**
+     * The tar block size.
+     */
+    private static final int BLOCK_SIZE = 512;
+
+    /**
+     * The maximum length of the name field.
+     */
+    private static final int NAME_LENGTH = 100;
+
+    /**
+     * The maximum length of the prefix field.
+     */
+    private static final int PREFIX_LENGTH = 155;
+
+    /**
+     * The largest size that can be represented in the octal size field.
+     */
+    private static final long MAX_OCTAL_SIZE = 077777777777L;
+
+    /**
+     * The default file mode.
+     */
+    private static final int FILE_MODE = 0644;
+
+    /**
+     * The directory mode.
+     */
+    private static final int DIRECTORY_MODE = 0755;
+
+    /**
+     * Regular file type flag.
+     */
+    private static final byte FILE = '0';
+
+    /**
+     * Directory type flag.
+     */
+    private static final byte DIRECTORY = '5';
+
+    /**
+     * GNU long name type flag.
+     */
+    private static final byte LONG_NAME = 'L';
+
+    /**
+     * The name of GNU long name entries.
+     */
+    private static final String LONG_LINK = "././@LongLink";
+
+
+    /**
+     * Constructs a {@code TarSink}.
+     *
+     * @param out the stream to write to
+     */
+    public TarSink(OutputStream out)
+    {
+        super(new BufferedOutputStream(out, 64 * 1024));
+    }
+
+    /**
+     * Writes a directory entry.
+     *
+     * @param name         the entry name. This ends in '/'
+     * @param lastModified the last modified timestamp
+     * @throws IOException for any I/O error
+     */
+    @Override
+    protected void writeDirectory(String name, long lastModified) throws IOException
+    {
+        writeHeader(name, DIRECTORY, DIRECTORY_MODE, 0, lastModified);
+    }
+
+    /**
+     * Writes a file entry.
+     *
+     * @param name         the entry name
+     * @param length       the length of the file, or {@code -1} if it is not known
+     * @param lastModified the last modified timestamp
+     * @param mode         the POSIX mode bits, or {@code -1} to use the default
+     * @return a stream to write the file content. Closing the stream completes the entry
+     * @throws IOException for any I/O error
+     */
+    @Override
+    protected OutputStream writeFile(String name, long length, long lastModified, int mode) throws IOException
+    {
+        mode = (mode != -1) ? mode & 07777 : FILE_MODE;
+        if (length < 0)
+        {
+            return new SpoolingOutputStream(name, lastModified, mode);
+        }
+        writeHeader(name, FILE, mode, length, lastModified);
+        return new EntryOutputStream(name, length);
+    }
+
+    /**
+     * Completes the archive by writing two empty blocks.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Override
+    protected void finish() throws IOException
+    {
+        OutputStream out = getOutputStream();
+        out.write(new byte[BLOCK_SIZE * 2]);
+        out.flush();
+    }
+
+    /**
+     * Writes an entry header, preceded by a GNU long name entry if the name doesn't fit the ustar header.
+     *
+     * @param name         the entry name
+     * @param type         the entry type
+     * @param mode         the entry mode
+     * @param size         the entry size
+     * @param lastModified the last modified timestamp
+     * @throws IOException for any I/O error
+     */
+    private void writeHeader(String name, byte type, int mode, long size, long lastModified) throws IOException
+    {
+        byte[] bytes = getBytes(name);
+        byte[] header = new byte[BLOCK_SIZE];
+        if (bytes.length <= NAME_LENGTH)
+        {
+            System.arraycopy(bytes, 0, header, 0, bytes.length);
+        }
+        else
+        {
+            int split = getSplit(bytes);
+            if (split != -1)
+            {
+                System.arraycopy(bytes, split + 1, header, 0, bytes.length - split - 1);
+                System.arraycopy(bytes, 0, header, 345, split);
+            }
+            else
+            {
+                byte[] longName = new byte[bytes.length + 1];
+                System.arraycopy(bytes, 0, longName, 0, bytes.length);
+                writeHeader(getBytes(LONG_LINK), LONG_NAME, 0, longName.length, 0);
+                writeData(longName);
+                System.arraycopy(bytes, 0, header, 0, NAME_LENGTH);
+            }
+        }
+        writeHeader(header, type, mode, size, lastModified);
+    }
+
+    /**
+     * Writes an entry header, whose name and prefix fields have been populated.
+     *
+     * @param header       the header, or the name bytes, if the header is not yet populated
+     * @param type         the entry type
+     * @param mode         the entry mode
+     * @param size         the entry size
+     * @param lastModified the last modified timestamp
+     * @throws IOException for any I/O error
+     */
+    private void writeHeader(byte[] header, byte type, int mode, long size, long lastModified) throws IOException
+    {
+        if (header.length != BLOCK_SIZE)
+        {
+            byte[] block = new byte[BLOCK_SIZE];
+            System.arraycopy(header, 0, block, 0, header.length);
+            header = block;
+        }
+        writeOctal(header, 100, 8, mode);
+        writeOctal(header, 108, 8, 0);
+        writeOctal(header, 116, 8, 0);
+        if (size <= MAX_OCTAL_SIZE)
+        {
+            writeOctal(header, 124, 12, size);
+        }
+        else
+        {
+            header[124] = (byte) 0x80;
+            for (int i = 135; i > 124; --i)
+            {
+                header[i] = (byte) size;
+                size >>>= 8;
+            }
+        }
+        writeOctal(header, 136, 12, lastModified / 1000);
+        header[156] = type;
+        System.arraycopy(getBytes("ustar"), 0, header, 257, 5);
+        header[263] = '0';
+        header[264] = '0';
+        for (int i = 148; i < 156; ++i)
+        {
+            header[i] = ' ';
+        }
+        long checksum = 0;
+        for (byte b : header)
+        {
+            checksum += b & 0xFF;
+        }
+        writeOctal(header, 148, 7, checksum);
+        getOutputStream().write(header);
+    }
+
+    /**
+     * Writes data, padded to the block size.
+     *
+     * @param data the data
+     * @throws IOException for any I/O error
+     */
+    private void writeData(byte[] data) throws IOException
+    {
+        getOutputStream().write(data);
+        pad(data.length);
+    }
+
+    /**
+     * Pads an entry to the block size.
+     *
+     * @param length the length of the entry
+     * @throws IOException for any I/O error
+     */
+    private void pad(long length) throws IOException
+    {
+        int remainder = (int) (length % BLOCK_SIZE);
+        if (remainder != 0)
+        {
+            getOutputStream().write(new byte[BLOCK_SIZE - remainder]);
+        }
+    }
+
+    /**
+     * Returns the index at which to split a name into the prefix and name fields.
+     *
+     * @param name the name bytes
+     * @return the index of the '/' to split on, or {@code -1} if the name cannot be split
+     */
+    private int getSplit(byte[] name)
+    {
+        for (int i = Math.min(name.length - 1, PREFIX_LENGTH); i > 0; --i)
+        {
+            if (name[i] == '/' && name.length - i - 1 <= NAME_LENGTH && name.length - i - 1 > 0)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes a NUL terminated octal number to a header field.
+     *
+     * @param header the header
+     * @param offset the field offset
+     * @param length the field length, including the terminator
+     * @param value  the value
+     */
+    private void writeOctal(byte[] header, int offset, int length, long value)
+    {
+        String octal = Long.toOctalString(value);
+        int pad = length - 1 - octal.length();
+        for (int i = 0; i < length - 1; ++i)
+        {
+            header[offset + i] = (byte) ((i < pad) ? '0' : octal.charAt(i - pad));
+        }
+        header[offset + length - 1] = 0;
+    }
+
+    /**
+     * Returns the UTF-8 encoding of a string.
+     *
+     * @param value the string
+     * @return the encoded string
+     */
+    private static byte[] getBytes(String value)
+    {
+        try
+        {
+            return value.getBytes("UTF-8");
+        }
+        catch (UnsupportedEncodingException exception)
+        {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    /**
+     * Stream for an entry of known length, that pads the entry when closed.
+     */
+    private class EntryOutputStream extends OutputStream
+    {
+
+        /**
+         * The entry name.
+         */
+        private final String name;
+
+        /**
+         * The expected length.
+         */
+        private final long length;
+
+        /**
+         * The no. of bytes written.
+         */
+        private long written;
+
+        /**
+         * Constructs an {@code EntryOutputStream}.
+         *
+         * @param name   the entry name
+         * @param length the expected length
+         */
+        public EntryOutputStream(String name, long length)
+        {
+            this.name = name;
+            this.length = length;
+        }
+
+        /**
+         * Writes a byte.
+         *
+         * @param b the byte
+         * @throws IOException for any I/O error
+         */
+        @Override
+        public void write(int b) throws IOException
+        {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        /**
+         * Writes bytes.
+         *
+         * @param b   the bytes
+         * @param off the start offset
+         * @param len the number of bytes to write
+         * @throws IOException if more bytes are written than declared, or for any I/O error
+         */
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            if (written + len > length)
+            {
+                throw new IOException("Entry " + name + " exceeds its length of " + length + " bytes");
+            }
+            getOutputStream().write(b, off, len);
+            written += len;
+        }
+
+        /**
+         * Completes the entry.
+         *
+         * @throws IOException if fewer bytes were written than declared, or for any I/O error
+         */
+        @Override
+        public void close() throws IOException
+        {
+            if (written != length)
+            {
+                throw new IOException("Entry " + name + " has length " + written + ", expected " + length);
+            }
+            pad(length);
+        }
+    }
+
+    /**
+     * Stream for an entry of unknown length, that spools the entry to a temporary file, and writes it to the
+     * archive when closed.
+     */
+    private class SpoolingOutputStream extends OutputStream
+    {
+
+        /**
+         * The entry name.
+         */
+        private final String name;
+
+        /**
+         * The last modified timestamp.
+         */
+        private final long lastModified;
+
+        /**
+         * The file mode.
+         */
+        private final int mode;
+
+        /**
+         * The temporary file.
+         */
+        private final File file;
+
+        /**
+         * The temporary file stream.
+         */
+        private final OutputStream out;
+
+        /**
+         * Constructs a {@code SpoolingOutputStream}.
+         *
+         * @param name         the entry name
+         * @param lastModified the last modified timestamp
+         * @param mode         the file mode
+         * @throws IOException if the temporary file cannot be created
+         */
+        public SpoolingOutputStream(String name, long lastModified, int mode) throws IOException
+        {
+            this.name = name;
+            this.lastModified = lastModified;
+            this.mode = mode;
+            file = File.createTempFile("izpack", ".tar");
+            out = new BufferedOutputStream(new FileOutputStream(file));
+        }
+
+        /**
+         * Writes a byte.
+         *
+         * @param b the byte
+         * @throws IOException for any I/O error
+         */
+        @Override
+        public void write(int b) throws IOException
+        {
+            out.write(b);
+        }
+
+        /**
+         * Writes bytes.
+         *
+         * @param b   the bytes
+         * @param off the start offset
+         * @param len the number of bytes to write
+         * @throws IOException for any I/O error
+         */
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            out.write(b, off, len);
+        }
+
+        /**
+         * Writes the spooled entry to the archive, and deletes the temporary file.
+         *
+         * @throws IOException for any I/O error
+         */
+        @Override
+        public void close() throws IOException
+        {
+            InputStream in = null;
+            try
+            {
+                out.close();
+                long length = file.length();
+                writeHeader(name, FILE, mode, length, lastModified);
+                in = new FileInputStream(file);
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1)
+                {
+                    getOutputStream().write(buffer, 0, read);
+                }
+                pad(length);
+            }
+            finally
+            {
+                FileUtils.close(in);
+                FileUtils.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.izforge.izpack.api.data.Variables;
+import com.izforge.izpack.api.exception.IzPackException;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+import com.izforge.izpack.core.substitutor.SubstitutionTemplate;
+import com.izforge.izpack.core.substitutor.VariableSubstitutorBase;
+import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
+import com.izforge.izpack.util.IoHelper;
+
+
+/**
+ * Resolves pack file target paths.
+ * <p/>
+ * The target paths of a pack typically share a few variable prefixes such as <em>$INSTALL_PATH</em>, each
+ * followed by a literal suffix. Each distinct prefix is compiled once into a {@link SubstitutionTemplate}. The
+ * expanded prefix is reused for as long as the variables it references are unchanged.
+ * <p/>
+ * Resolution produces the same result as {@link IoHelper#translatePath(String, Variables)}.
+ *
+ * @author Tim Anderson
+ */
+public class TargetPathResolver
+{
+
+    /**
+     * The substitutor used to resolve variable references.
+     */
+    private final VariableSubstitutorBase substitutor;
+
+    /**
+     * The compiled templates, keyed on prefix.
+     */
+    private final Map<String, Template> templates = new HashMap<String, Template>();
+
+    /**
+     * The most recently used template. Consecutive pack files usually share the same prefix.
+     */
+    private Template last;
+
+
+    /**
+     * Constructs a <tt>TargetPathResolver</tt>.
+     *
+     * @param variables the variables to resolve paths against
+     */
+    public TargetPathResolver(Variables variables)
+    {
+        substitutor = new VariableSubstitutorImpl(variables);
+    }
+
+    /**
+     * Resolves a target path.
+     *
+     * @param path the path to resolve
+     * @return the translated path
+     */
+    public String resolve(String path)
+    {
+        String result = path;
+        int end = getPrefixEnd(path);
+        if (end != 0)
+        {
+            Template template = last;
+            if (template == null || template.prefix.length() != end || !path.startsWith(template.prefix))
+            {
+                String prefix = path.substring(0, end);
+                template = templates.get(prefix);
+                if (template == null)
+                {
+                    template = new Template(prefix);
+                    templates.put(prefix, template);
+                }
+                last = template;
+            }
+            String expanded = template.expand(substitutor);
+            result = (end == path.length()) ? expanded : expanded + path.substring(end);
+        }
+        return IoHelper.translatePath(result);
+    }
+
+    /**
+     * Returns the index following the last variable reference in a path.
+     *
+     * @param path the path
+     * @return the index following the last variable reference, or {@code 0} if there are no references
+     */
+    private static int getPrefixEnd(String path)
+    {
+        int result = 0;
+        int index = path.indexOf('$');
+        while (index != -1)
+        {
+            result = getReferenceEnd(path, index);
+            index = path.indexOf('$', result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the index following a variable reference.
+     * <p/>
+     * For references enclosed in braces, this includes the closing brace, if present.
+     *
+     * @param path  the path
+     * @param start the index of the <em>$</em> starting the reference
+     * @return the index following the reference
+     */
+    private static int getReferenceEnd(String path, int start)
+    {
+        int length = path.length();
+        int i = start + 1;
+        if (i < length && path.charAt(i) == '{')
+        {
+            ++i;
+            while (i < length && path.charAt(i) != '}')
+            {
+                ++i;
+            }
+            if (i < length)
+            {
+                ++i;
+            }
+        }
+        else
+        {
+            int nameStart = i;
+            while (i < length && isNameChar(path.charAt(i), i == nameStart))
+            {
+                ++i;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Determines if a character may be part of an unbraced variable name.
+     *
+     * @param c     the character
+     * @param first if {@code true}, the character is the first in the name
+     * @return {@code true} if the character may be part of the name
+     */
+    private static boolean isNameChar(char c, boolean first)
+    {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+                || (!first && ((c >= '0' && c <= '9') || c == '_' || c == '.' || c == '-'));
+    }
+
+    /**
+     * A compiled path prefix, caching its last expansion.
+     */
+    private static class Template
+    {
+
+        /**
+         * The prefix that the template was compiled from.
+         */
+        private final String prefix;
+
+        /**
+         * The compiled prefix.
+         */
+        private final SubstitutionTemplate template;
+
+        /**
+         * The reference values used to produce {@link #expanded}.
+         */
+        private final String[] values;
+
+        /**
+         * The last expansion, or {@code null} if the template has not been expanded.
+         */
+        private String expanded;
+
+        /**
+         * Compiles a template.
+         *
+         * @param prefix the prefix to compile
+         */
+        public Template(String prefix)
+        {
+            this.prefix = prefix;
+            // plain substitution has no end character, so the parse never depends on variable values
+            template = SubstitutionTemplate.compile(prefix, SubstitutionType.TYPE_PLAIN, false);
+            values = new String[template.getReferences()];
+        }
+
+        /**
+         * Expands the template.
+         *
+         * @param substitutor the substitutor used to resolve variable references
+         * @return the expanded template
+         */
+        public String expand(VariableSubstitutorBase substitutor)
+        {
+            boolean changed = (expanded == null);
+            try
+            {
+                for (int i = 0; i < values.length; ++i)
+                {
+                    String value = template.getValue(i, substitutor);
+                    if (!changed && (value == null ? values[i] != null : !value.equals(values[i])))
+                    {
+                        changed = true;
+                    }
+                    values[i] = value;
+                }
+            }
+            catch (Exception exception)
+            {
+                throw new IzPackException("Failed to resolve path: " + prefix, exception);
+            }
+            if (changed)
+            {
+                expanded = template.substitute(values, substitutor, SubstitutionType.TYPE_PLAIN);
+            }
+            return expanded;
+        }
+    }
+
+}
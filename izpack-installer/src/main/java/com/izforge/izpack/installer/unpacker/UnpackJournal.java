@@ -0,0 +1,451 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.util.FileUtil;
+import com.izforge.izpack.util.file.FileUtils;
+
+
+/**
+ * An append-only journal of unpacked packs and files, used to resume interrupted installations.
+ * <p/>
+ * Each line of the journal is a record. The first line identifies the installation. Subsequent lines record
+ * either:
+ * <ul>
+ * <li>a file: <em>F&lt;tab&gt;size&lt;tab&gt;digest&lt;tab&gt;flags&lt;tab&gt;path</em>; or</li>
+ * <li>a completed pack: <em>P&lt;tab&gt;name</em></li>
+ * </ul>
+ * Later file records replace earlier ones for the same path. Records are flushed in batches, and synced to disk
+ * when a pack completes. Incomplete or malformed records, such as those written when the machine fails, are
+ * ignored.
+ * <p/>
+ * The installed files themselves aren't synced, so a recorded file may not have reached the disk before a failure.
+ * When resuming, a file is therefore only considered complete if both its size and its {@link
+ * PackFile#DIGEST_ALGORITHM digest} match those recorded.
+ * <p/>
+ * This class is not thread safe.
+ *
+ * @author Tim Anderson
+ */
+public class UnpackJournal
+{
+
+    /**
+     * The journal file name, relative to the installation directory.
+     */
+    public static final String NAME = ".installationjournal";
+
+    /**
+     * The journal file.
+     */
+    private final File file;
+
+    /**
+     * The installation identifier. Journals with a different identifier aren't resumed.
+     */
+    private final String id;
+
+    /**
+     * The recorded files, keyed on path.
+     */
+    private final Map<String, Record> files = new HashMap<String, Record>();
+
+    /**
+     * The names of the completed packs.
+     */
+    private final Set<String> packs = new HashSet<String>();
+
+    /**
+     * The stream to write to.
+     */
+    private FileOutputStream stream;
+
+    /**
+     * The writer.
+     */
+    private Writer writer;
+
+    /**
+     * The number of records written since the last flush.
+     */
+    private int pending;
+
+    /**
+     * The number of records to write before flushing.
+     */
+    private static final int BATCH_SIZE = 64;
+
+    /**
+     * The file record type.
+     */
+    private static final String FILE = "F";
+
+    /**
+     * The pack record type.
+     */
+    private static final String PACK = "P";
+
+    /**
+     * The flag indicating a file has had its variables substituted.
+     */
+    private static final String PARSED = "p";
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(UnpackJournal.class.getName());
+
+
+    /**
+     * Constructs an <tt>UnpackJournal</tt>.
+     *
+     * @param file the journal file
+     * @param id   the installation identifier
+     */
+    public UnpackJournal(File file, String id)
+    {
+        this.file = file;
+        this.id = id;
+    }
+
+    /**
+     * Returns the journal file.
+     *
+     * @return the journal file
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Opens the journal for writing.
+     *
+     * @param resume if {@code true}, read the existing journal, if any, and append to it. If {@code false}, or
+     *               the existing journal is for a different installation, a new journal is started
+     * @throws IOException for any I/O error
+     */
+    public void open(boolean resume) throws IOException
+    {
+        files.clear();
+        packs.clear();
+        boolean append = resume && file.exists() && read();
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs())
+        {
+            throw new IOException("Failed to create directory: " + parent);
+        }
+        stream = new FileOutputStream(file, append);
+        writer = new BufferedWriter(new OutputStreamWriter(stream, "UTF-8"));
+        if (!append)
+        {
+            writer.write("# " + id + "\n");
+        }
+        else
+        {
+            // terminate any partially written record
+            writer.write("\n");
+        }
+        flush(false);
+    }
+
+    /**
+     * Determines if a pack was completed.
+     *
+     * @param name the pack name
+     * @return {@code true} if the pack was completed
+     */
+    public boolean isComplete(String name)
+    {
+        return packs.contains(name);
+    }
+
+    /**
+     * Determines if a file was completed, and is unchanged since.
+     * <p/>
+     * This reads the file to calculate its digest, if it has the recorded size.
+     *
+     * @param target the file
+     * @return {@code true} if the file has the recorded size and digest
+     * @throws IOException if the file cannot be read
+     */
+    public boolean isComplete(File target) throws IOException
+    {
+        Record record = files.get(target.getPath());
+        return record != null && target.isFile() && target.length() == record.size
+                && Arrays.equals(record.digest, FileUtil.getDigest(target, PackFile.DIGEST_ALGORITHM));
+    }
+
+    /**
+     * Determines if a file was recorded as having its variables substituted.
+     *
+     * @param target the file
+     * @return {@code true} if the file has had its variables substituted
+     */
+    public boolean isParsed(File target)
+    {
+        Record record = files.get(target.getPath());
+        return record != null && record.parsed;
+    }
+
+    /**
+     * Records a completed file.
+     *
+     * @param target the file
+     * @param digest the digest of the file content, or {@code null} if it is not known, in which case it is
+     *               calculated from the file
+     * @param parsed determines if the file has had its variables substituted
+     * @throws IOException for any I/O error
+     */
+    public void file(File target, byte[] digest, boolean parsed) throws IOException
+    {
+        if (digest == null)
+        {
+            digest = FileUtil.getDigest(target, PackFile.DIGEST_ALGORITHM);
+        }
+        Record record = new Record(target.length(), digest, parsed);
+        files.put(target.getPath(), record);
+        write(FILE + "\t" + record.size + "\t" + toHex(digest) + "\t" + (parsed ? PARSED : "") + "\t"
+                      + target.getPath());
+        if (++pending >= BATCH_SIZE)
+        {
+            flush(false);
+        }
+    }
+
+    /**
+     * Records a completed pack.
+     * <p/>
+     * This syncs the journal to disk.
+     *
+     * @param name the pack name
+     * @throws IOException for any I/O error
+     */
+    public void pack(String name) throws IOException
+    {
+        packs.add(name);
+        write(PACK + "\t" + name);
+        flush(true);
+    }
+
+    /**
+     * Closes the journal, flushing any pending records.
+     */
+    public void close()
+    {
+        if (writer != null)
+        {
+            try
+            {
+                flush(true);
+            }
+            catch (IOException exception)
+            {
+                logger.warning("Failed to flush " + file + ": " + exception.getMessage());
+            }
+            FileUtils.close(writer);
+            writer = null;
+            stream = null;
+        }
+    }
+
+    /**
+     * Closes and deletes the journal.
+     */
+    public void delete()
+    {
+        close();
+        if (file.exists() && !file.delete())
+        {
+            logger.warning("Failed to delete " + file);
+        }
+    }
+
+    /**
+     * Reads the existing journal.
+     *
+     * @return {@code true} if the journal is for the same installation, otherwise {@code false}
+     * @throws IOException for any I/O error
+     */
+    private boolean read() throws IOException
+    {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try
+        {
+            String line = reader.readLine();
+            if (line == null || !line.equals("# " + id))
+            {
+                logger.info("Ignoring journal for a different installation: " + file);
+                return false;
+            }
+            while ((line = reader.readLine()) != null)
+            {
+                String[] fields = line.split("\t", 5);
+                try
+                {
+                    if (fields.length == 5 && FILE.equals(fields[0]))
+                    {
+                        files.put(fields[4], new Record(Long.parseLong(fields[1]), fromHex(fields[2]),
+                                                        PARSED.equals(fields[3])));
+                    }
+                    else if (fields.length == 2 && PACK.equals(fields[0]))
+                    {
+                        packs.add(fields[1]);
+                    }
+                }
+                catch (NumberFormatException exception)
+                {
+                    logger.fine("Ignoring malformed journal record: " + line);
+                }
+            }
+        }
+        finally
+        {
+            FileUtils.close(reader);
+        }
+        logger.info("Resuming from journal " + file + ": " + packs.size() + " packs and " + files.size()
+                            + " files completed");
+        return true;
+    }
+
+    /**
+     * Writes a record.
+     *
+     * @param record the record
+     * @throws IOException for any I/O error
+     */
+    private void write(String record) throws IOException
+    {
+        if (writer == null)
+        {
+            throw new IOException("Journal is not open: " + file);
+        }
+        writer.write(record);
+        writer.write('\n');
+    }
+
+    /**
+     * Flushes pending records.
+     *
+     * @param sync if {@code true}, sync the journal to disk
+     * @throws IOException for any I/O error
+     */
+    private void flush(boolean sync) throws IOException
+    {
+        writer.flush();
+        if (sync)
+        {
+            stream.getFD().sync();
+        }
+        pending = 0;
+    }
+
+    /**
+     * Converts a digest to hexadecimal.
+     *
+     * @param digest the digest
+     * @return the hexadecimal form of the digest
+     */
+    private static String toHex(byte[] digest)
+    {
+        StringBuilder result = new StringBuilder(digest.length * 2);
+        for (byte b : digest)
+        {
+            result.append(Character.forDigit((b >> 4) & 0xf, 16));
+            result.append(Character.forDigit(b & 0xf, 16));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Converts a hexadecimal digest to bytes.
+     *
+     * @param hex the hexadecimal form of the digest
+     * @return the digest
+     * @throws NumberFormatException if the digest is malformed
+     */
+    private static byte[] fromHex(String hex)
+    {
+        if (hex.length() % 2 != 0)
+        {
+            throw new NumberFormatException("Invalid digest: " + hex);
+        }
+        byte[] result = new byte[hex.length() / 2];
+        for (int i = 0; i < result.length; ++i)
+        {
+            result[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return result;
+    }
+
+    /**
+     * A recorded file.
+     */
+    private static class Record
+    {
+
+        /**
+         * The file size.
+         */
+        private final long size;
+
+        /**
+         * The digest of the file content.
+         */
+        private final byte[] digest;
+
+        /**
+         * Determines if the file has had its variables substituted.
+         */
+        private final boolean parsed;
+
+        /**
+         * Constructs a <tt>Record</tt>.
+         *
+         * @param size   the file size
+         * @param digest the digest of the file content
+         * @param parsed determines if the file has had its variables substituted
+         */
+        public Record(long size, byte[] digest, boolean parsed)
+        {
+            this.size = size;
+            this.digest = digest;
+            this.parsed = parsed;
+        }
+    }
+}
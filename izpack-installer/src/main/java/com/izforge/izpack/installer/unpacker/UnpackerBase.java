@@ -42,9 +42,11 @@ import com.izforge.izpack.installer.data.UninstallData;
 import com.izforge.izpack.installer.event.InstallerListeners;
 import com.izforge.izpack.installer.util.PackHelper;
 import com.izforge.izpack.util.FileExecutor;
+import com.izforge.izpack.util.FileUtil;
 import com.izforge.izpack.util.Housekeeper;
 import com.izforge.izpack.util.IoHelper;
 import com.izforge.izpack.util.PlatformModelMatcher;
+import com.izforge.izpack.util.Tracer;
 import com.izforge.izpack.util.file.DirectoryScanner;
 import com.izforge.izpack.util.file.FileUtils;
 import com.izforge.izpack.util.file.GlobPatternMapper;
@@ -54,7 +56,13 @@ import com.izforge.izpack.util.os.FileQueue;
 import java.io.*;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.security.MessageDigest;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.Pack200;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -72,6 +80,83 @@ import static com.izforge.izpack.installer.bootstrap.Installer.INSTALLER_AUTO;
 public abstract class UnpackerBase implements IUnpacker
 {
 
+    /**
+     * Variable that, if {@code true}, substitutes variables in {@link PackFile#isParsable() parsable} pack files as
+     * they are unpacked, and parses any other parsable files in parallel.
+     */
+    public static final String PARSE_WHILE_UNPACKING = "izpack.unpacker.parseWhileUnpacking";
+
+    /**
+     * Variable specifying the number of worker threads to use for parallel unpacking operations.
+     * Defaults to the number of available processors.
+     */
+    public static final String THREADS = "izpack.unpacker.threads";
+
+    /**
+     * Variable that, if {@code true}, performs the update checks of all packs in a single parallel sweep of the
+     * installation directory once every pack has been unpacked, rather than after each pack.
+     */
+    public static final String SWEEP_UPDATE_CHECKS = "izpack.unpacker.sweepUpdateChecks";
+
+    /**
+     * Variable that, if {@code true}, doesn't rewrite existing files whose content is identical to that of the
+     * pack file, determined using the {@link PackFile#getDigest() digest} calculated at compile time.
+     */
+    public static final String SKIP_UNCHANGED = "izpack.unpacker.skipUnchanged";
+
+    /**
+     * Variable that, if {@code true}, records unpacked packs and files in an {@link UnpackJournal} in the
+     * installation directory, so that an interrupted installation can be resumed.
+     */
+    public static final String JOURNAL = "izpack.unpacker.journal";
+
+    /**
+     * Variable that, if {@code true}, resumes an interrupted installation using its {@link UnpackJournal}.
+     * Files recorded in the journal that are unchanged since are not rewritten. This implies {@link #JOURNAL}.
+     */
+    public static final String RESUME = "izpack.unpacker.resume";
+
+    /**
+     * Variable that, if {@code true}, verifies the checksums of every entry in the installer jar in parallel, prior
+     * to unpacking.
+     */
+    public static final String VERIFY_INSTALLER = "izpack.unpacker.verifyInstaller";
+
+    /**
+     * Variable that, if {@code true}, installs files with the same content as a previously installed file as hard
+     * links to it, where the file system supports them. See {@link FileDeduplicator}.
+     */
+    public static final String DEDUPLICATE = "izpack.unpacker.deduplicate";
+
+    /**
+     * Variable or system property specifying where to install to. This is the file system by default. See
+     * {@link InstallationSinkFactory} for the supported values.
+     * <p/>
+     * When installing to an archive, parsable files are always parsed as they are unpacked, and executables and
+     * update checks, which require the installed files on disk, are skipped. Archive entries can't be replaced, so
+     * where more than one pack installs the same file, the first is kept.
+     */
+    public static final String SINK = "izpack.unpacker.sink";
+
+    /**
+     * Variable or system property that, if {@code true}, verifies the existing installation rather than installing.
+     * <p/>
+     * The packs listed in the installation information are read, and their files checked against those installed.
+     * Missing, modified and extra files are reported. See {@link InstallationVerifier}.
+     */
+    public static final String VERIFY = "izpack.unpacker.verify";
+
+    /**
+     * Variable or system property that, if {@code true}, verifies the existing installation as per {@link #VERIFY},
+     * and re-extracts any missing or modified files.
+     */
+    public static final String REPAIR = "izpack.unpacker.repair";
+
+    /**
+     * Variable or system property naming a file to write the verification report to.
+     */
+    public static final String VERIFY_REPORT = "izpack.unpacker.verifyReport";
+
     /**
      * The installation data.
      */
@@ -170,6 +255,41 @@ public abstract class UnpackerBase implements IUnpacker
      */
     private Messages packMessages;
 
+    /**
+     * Resolves the target paths of the pack being unpacked.
+     */
+    private TargetPathResolver targetPaths;
+
+    /**
+     * Directories known to exist, used to avoid repeated file system checks when creating directories.
+     */
+    private final Set<File> directories = new HashSet<File>();
+
+    /**
+     * The paths of files whose variables were substituted as they were unpacked.
+     */
+    private final Set<String> parsed = new HashSet<String>();
+
+    /**
+     * The paths of files declared parsable by the packs unpacked so far.
+     */
+    private final Set<String> parsableTargets = new HashSet<String>();
+
+    /**
+     * The unpack journal, or {@code null} if journaling is disabled.
+     */
+    private UnpackJournal journal;
+
+    /**
+     * The sink to install files to.
+     */
+    private InstallationSink sink = new FileSystemSink();
+
+    /**
+     * The deduplicator, or {@code null} if deduplication is disabled.
+     */
+    private FileDeduplicator deduplicator;
+
     /**
      * The logger.
      */
@@ -239,17 +359,45 @@ public abstract class UnpackerBase implements IUnpacker
     public void unpack()
     {
         state = State.UNPACKING;
+        directories.clear();
+        parsed.clear();
+        parsableTargets.clear();
         try
         {
             List<ParsableFile> parsables = new ArrayList<ParsableFile>();
             List<ExecutableFile> executables = new ArrayList<ExecutableFile>();
             List<UpdateCheck> updateChecks = new ArrayList<UpdateCheck>();
-            FileQueue queue = queueFactory.isSupported() ? queueFactory.create() : null;
+            sink = createSink();
+            if (isOptionEnabled(VERIFY) || isOptionEnabled(REPAIR))
+            {
+                targetPaths = new TargetPathResolver(installData.getVariables());
+                new InstallationRepairer(this, sink, cancellable).verify(isOptionEnabled(REPAIR));
+                sink.close();
+                return;
+            }
+            FileQueue queue = (sink.isFileSystem() && queueFactory.isSupported()) ? queueFactory.create() : null;
 
             List<Pack> packs = installData.getSelectedPacks();
             preUnpack(packs);
+            verifyInstaller();
+            openJournal();
+            if (isEnabled(DEDUPLICATE) && sink.isFileSystem() && FileDeduplicator.isSupported())
+            {
+                deduplicator = new FileDeduplicator();
+            }
             unpack(packs, queue, parsables, executables, updateChecks);
+            if (deduplicator != null)
+            {
+                logger.info("Linked " + deduplicator.getLinks() + " duplicate files, saving "
+                                    + deduplicator.getSaved() + " bytes");
+            }
             postUnpack(packs, queue, updateChecks);
+            sink.close();
+            if (journal != null)
+            {
+                // installation complete, so there is nothing to resume
+                journal.delete();
+            }
         }
         catch (Exception exception)
         {
@@ -276,6 +424,14 @@ public abstract class UnpackerBase implements IUnpacker
         }
         finally
         {
+            if (journal != null)
+            {
+                journal.close();
+                journal = null;
+            }
+            FileUtils.close(sink);
+            deduplicator = null;
+            resources.shutdown();
             cleanup();
         }
     }
@@ -314,6 +470,8 @@ public abstract class UnpackerBase implements IUnpacker
                 if (state != State.READY && state != State.INTERRUPTED)
                 {
                     state = State.INTERRUPT;
+                    // stop downloads, as the unpacker may be blocked waiting on them
+                    resources.shutdown();
                     try
                     {
                         wait(timeout);
@@ -388,30 +546,63 @@ public abstract class UnpackerBase implements IUnpacker
                           List<ExecutableFile> executables, List<UpdateCheck> updateChecks)
     {
         int count = packs.size();
+        boolean sweep = isEnabled(SWEEP_UPDATE_CHECKS);
+        boolean fileSystem = sink.isFileSystem();
         for (int i = 0; i < count; i++)
         {
             Pack pack = packs.get(i);
             if (shouldUnpack(pack))
             {
                 listeners.beforePack(pack, i, listener);
-                unpack(pack, i, queue, parsables, executables, updateChecks);
-                checkInterrupt();
+                boolean complete = journal != null && journal.isComplete(pack.getName());
+                if (complete)
+                {
+                    // the pack's files were parsed and executed when it was completed
+                    logger.info("Resuming completed pack: " + pack.getName());
+                    unpack(pack, i, queue, new ArrayList<ParsableFile>(), new ArrayList<ExecutableFile>(),
+                           updateChecks);
+                    checkInterrupt();
+                }
+                else
+                {
+                    unpack(pack, i, queue, parsables, executables, updateChecks);
+                    checkInterrupt();
 
-                logger.fine("Found " + parsables.size() + " parsable files");
-                parseFiles(parsables);
-                checkInterrupt();
+                    if (!fileSystem)
+                    {
+                        discard(pack, parsables, executables, updateChecks);
+                    }
+
+                    logger.fine("Found " + parsables.size() + " parsable files");
+                    unlink(parsables);
+                    parseFiles(parsables);
+                    checkInterrupt();
 
-                logger.fine("Found " + executables.size() + " executable files");
-                executeFiles(executables);
-                checkInterrupt();
+                    logger.fine("Found " + executables.size() + " executable files");
+                    executeFiles(executables);
+                    checkInterrupt();
+                }
 
-                // update checks should be done _after_ uninstaller was put, so we don't delete it. TODO
-                performUpdateChecks(updateChecks);
-                checkInterrupt();
+                if (!sweep)
+                {
+                    // update checks should be done _after_ uninstaller was put, so we don't delete it. TODO
+                    performUpdateChecks(updateChecks);
+                    checkInterrupt();
+                }
 
                 listeners.afterPack(pack, i, listener);
+
+                if (journal != null && !complete)
+                {
+                    journalPack(pack, parsables);
+                }
             }
         }
+        if (sweep)
+        {
+            sweepUpdateChecks(updateChecks);
+            checkInterrupt();
+        }
     }
 
     /**
@@ -430,12 +621,15 @@ public abstract class UnpackerBase implements IUnpacker
     {
         InputStream in = null;
         ObjectInputStream packInputStream = null;
+        targetPaths = new TargetPathResolver(installData.getVariables());
+        long start = Tracer.start();
+        int fileCount = 0;
         try
         {
             in = resources.getPackStream(pack.getName());
             packInputStream = new ObjectInputStream(in);
 
-            int fileCount = packInputStream.readInt();
+            fileCount = packInputStream.readInt();
 
             String stepName = getStepName(pack);
             listener.nextStep(stepName, packNo + 1, fileCount);
@@ -458,6 +652,9 @@ public abstract class UnpackerBase implements IUnpacker
             readParsableFiles(packInputStream, parsables);
             readExecutableFiles(packInputStream, executables);
             readUpdateChecks(packInputStream, updateChecks);
+
+            // apply deferred operations such as setting permissions, before files are parsed or executed
+            sink.flush();
         }
         catch (IzPackException exception)
         {
@@ -471,6 +668,10 @@ public abstract class UnpackerBase implements IUnpacker
         {
             FileUtils.close(packInputStream);
             FileUtils.close(in);
+            if (Tracer.isEnabled())
+            {
+                Tracer.event("pack", start, "name", pack.getName(), "files", fileCount);
+            }
         }
     }
 
@@ -480,7 +681,7 @@ public abstract class UnpackerBase implements IUnpacker
      * @param file the file to check
      * @return {@code true} if the file should be unpacked; {@code false} if it should be skipped
      */
-    private boolean shouldUnpack(PackFile file)
+    boolean shouldUnpack(PackFile file)
     {
         boolean result = true;
         if (file.hasCondition())
@@ -514,8 +715,7 @@ public abstract class UnpackerBase implements IUnpacker
         }
 
         // translate & build the path
-        Variables variables = getInstallData().getVariables();
-        String path = IoHelper.translatePath(file.getTargetPath(), variables);
+        String path = getTargetPath(file.getTargetPath());
         File target = new File(path);
         File dir = target;
         if (!file.isDirectory())
@@ -537,8 +737,30 @@ public abstract class UnpackerBase implements IUnpacker
 
         listener.progress(fileNo, path);
 
+        if (journal != null && journal.isComplete(target))
+        {
+            // unpacked by an interrupted installation, and unchanged since
+            if (logger.isLoggable(Level.FINE))
+            {
+                logger.fine("Resumed " + path);
+            }
+            if (journal.isParsed(target))
+            {
+                parsed.add(target.getPath());
+            }
+            skip(file, pack, packInputStream);
+            listeners.afterFile(target, file, pack);
+        }
+        else if (!sink.isFileSystem() && sink.exists(target))
+        {
+            // archive entries can't be replaced once written, so the file installed by the first pack is kept
+            logger.warning("Skipping " + path + " in pack " + pack.getName()
+                                   + " as it has already been written to the archive");
+            skip(file, pack, packInputStream);
+        }
         // if this file exists and should not be overwritten, check what to do
-        if (target.exists() && (file.override() != OverrideType.OVERRIDE_TRUE) && !isOverwriteFile(file, target))
+        else if (sink.exists(target) && (file.override() != OverrideType.OVERRIDE_TRUE)
+                && !isOverwriteFile(file, target))
         {
             if (!file.isBackReference() && !pack.isLoose())
             {
@@ -552,13 +774,91 @@ public abstract class UnpackerBase implements IUnpacker
                 }
             }
         }
+        else if (file.overrideRenameTo() == null && !pack.isLoose() && sink.isFileSystem() && isEnabled(SKIP_UNCHANGED)
+                && isUnchanged(file, target))
+        {
+            if (logger.isLoggable(Level.FINE))
+            {
+                logger.fine("Unchanged " + path);
+            }
+            skip(file, pack, packInputStream);
+            listeners.afterFile(target, file, pack);
+            journalFile(target, file.getDigest(), false);
+            if (deduplicator != null)
+            {
+                deduplicator.add(file, target);
+            }
+        }
         else
         {
             handleOverrideRename(file, target);
-            extract(file, target, packInputStream, pack, queue);
+            if (deduplicator != null && !pack.isLoose() && deduplicator.link(file, target))
+            {
+                skip(file, pack, packInputStream);
+                listeners.afterFile(target, file, pack);
+                journalFile(target, file.getDigest(), false);
+            }
+            else
+            {
+                if (deduplicator != null)
+                {
+                    deduplicator.prepare(target);
+                }
+                long start = Tracer.start();
+                extract(file, target, packInputStream, pack, queue);
+                if (Tracer.isEnabled())
+                {
+                    Tracer.event("file", start, "path", path, "bytes", file.length());
+                }
+                if (deduplicator != null && !pack.isLoose())
+                {
+                    deduplicator.add(file, target);
+                }
+            }
         }
     }
 
+    /**
+     * Determines if an existing file has the same content as a pack file.
+     * <p/>
+     * Files whose size differs from the pack file are changed. Files with the same size and modification time as
+     * the pack file are deemed unchanged, without reading them. Otherwise, the file content digest is compared
+     * with that of the pack file.
+     * <p/>
+     * Parsable files are always deemed changed, as the installed file holds the substituted content, stamped with
+     * the pack file's modification time, and the variables may have changed since it was installed. These are the
+     * files targeted by parsable declarations of their own pack, which are only read once its files are unpacked,
+     * and those parsed or declared parsable by the packs unpacked before it.
+     *
+     * @param file   the pack file
+     * @param target the existing file
+     * @return {@code true} if the file content is the same as that of the pack file
+     * @throws IOException if the file cannot be read
+     */
+    protected boolean isUnchanged(PackFile file, File target) throws IOException
+    {
+        byte[] digest = file.getDigest();
+        if (digest == null || file.isBackReference() || file.isParsableTarget() || file.isParsable()
+                || isParsable(target) || !target.isFile() || target.length() != file.length())
+        {
+            return false;
+        }
+        return (file.lastModified() > 0 && target.lastModified() == file.lastModified())
+                || MessageDigest.isEqual(digest, FileUtil.getDigest(target, PackFile.DIGEST_ALGORITHM));
+    }
+
+    /**
+     * Determines if a file has been parsed or declared parsable by the packs unpacked so far.
+     *
+     * @param target the file
+     * @return {@code true} if the file is parsable
+     */
+    private boolean isParsable(File target)
+    {
+        String path = target.getPath();
+        return parsed.contains(path) || parsableTargets.contains(path);
+    }
+
     /**
      * Extracts a pack file.
      *
@@ -591,12 +891,21 @@ public abstract class UnpackerBase implements IUnpacker
             }
 
             unpacker = createFileUnpacker(file, pack, queue, cancellable);
+            unpacker.setSink(sink);
             unpacker.unpack(file, packStream, target);
             checkInterrupt();
 
+            boolean parsing = unpacker instanceof ParsingFileUnpacker;
+            if (parsing)
+            {
+                parsed.add(target.getPath());
+            }
+
             if (!unpacker.isQueued())
             {
                 listeners.afterFile(target, file, pack);
+                // parsed content differs from that of the pack file, so its digest is calculated by the journal
+                journalFile(target, parsing ? null : file.getDigest(), parsing);
             }
         }
         finally
@@ -626,7 +935,8 @@ public abstract class UnpackerBase implements IUnpacker
 
         if (!pack.isLoose() && !file.isBackReference())
         {
-            skip(packInputStream, file.length());
+            // pack200 jars are stored separately, and referred to by key
+            skip(packInputStream, file.isPack200Jar() ? Integer.SIZE / 8 : file.length());
         }
     }
 
@@ -653,6 +963,10 @@ public abstract class UnpackerBase implements IUnpacker
         {
             unpacker = new Pack200FileUnpacker(cancellable, resources, getPack200Unpacker(), queue);
         }
+        else if (file.isParsable() && (isEnabled(PARSE_WHILE_UNPACKING) || !sink.isFileSystem()))
+        {
+            unpacker = new ParsingFileUnpacker(cancellable, queue, variableSubstitutor);
+        }
         else
         {
             unpacker = new DefaultFileUnpacker(cancellable, queue);
@@ -761,6 +1075,21 @@ public abstract class UnpackerBase implements IUnpacker
         return prompt;
     }
 
+    /**
+     * Translates a target path, replacing any variables.
+     *
+     * @param path the path to translate
+     * @return the translated path
+     */
+    protected String getTargetPath(String path)
+    {
+        if (targetPaths == null)
+        {
+            targetPaths = new TargetPathResolver(installData.getVariables());
+        }
+        return targetPaths.resolve(path);
+    }
+
     /**
      * Determines if a pack should be unpacked.
      *
@@ -792,6 +1121,28 @@ public abstract class UnpackerBase implements IUnpacker
         return rules.isConditionTrue(id);
     }
 
+    /**
+     * Determines if an unpacking option is enabled.
+     *
+     * @param name the option variable name
+     * @return {@code true} if the variable is set to {@code true}
+     */
+    protected boolean isEnabled(String name)
+    {
+        return installData.getVariables().getBoolean(name, false);
+    }
+
+    /**
+     * Returns the number of worker threads to use for parallel unpacking operations.
+     *
+     * @return the number of threads
+     */
+    protected int getThreads()
+    {
+        int threads = installData.getVariables().getInt(THREADS, -1);
+        return (threads > 0) ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
     /**
      * Returns the step name for a pack, for reporting purposes.
      *
@@ -821,6 +1172,9 @@ public abstract class UnpackerBase implements IUnpacker
      * Creates a directory including any necessary but nonexistent parent directories, associated with a pack file.
      * <p/>
      * If {@link InstallerListener}s are registered, these will be notified for each directory created.
+     * <p/>
+     * Directories that have already been created or found to exist are remembered, so that the file system is
+     * only checked once per directory.
      *
      * @param dir  the directory to create
      * @param file the pack file
@@ -829,15 +1183,16 @@ public abstract class UnpackerBase implements IUnpacker
      */
     protected void createDirectory(File dir, PackFile file, Pack pack)
     {
-        if (!dir.exists())
+        if (directories.contains(dir))
+        {
+            return;
+        }
+        if (!sink.exists(dir))
         {
             if (!listeners.isFileListener())
             {
                 // Create it in one step.
-                if (!dir.mkdirs())
-                {
-                    throw new IzPackException("Could not create directory: " + dir.getPath());
-                }
+                createDirectory(dir);
             }
             else
             {
@@ -847,13 +1202,106 @@ public abstract class UnpackerBase implements IUnpacker
                     createDirectory(parent, file, pack);
                 }
                 listeners.beforeDir(dir, file, pack);
-                if (!dir.mkdir())
-                {
-                    throw new IzPackException("Could not create directory: " + dir.getPath());
-                }
+                createDirectory(dir);
                 listeners.afterDir(dir, file, pack);
             }
         }
+        directories.add(dir);
+    }
+
+    /**
+     * Creates a directory in the sink, including any necessary but nonexistent parent directories.
+     *
+     * @param dir the directory to create
+     * @throws IzPackException if the directory cannot be created
+     */
+    private void createDirectory(File dir)
+    {
+        try
+        {
+            sink.createDirectory(dir);
+        }
+        catch (IOException exception)
+        {
+            throw new IzPackException("Could not create directory: " + dir.getPath(), exception);
+        }
+    }
+
+    /**
+     * Creates the sink to install files to.
+     * <p/>
+     * This is determined by the {@link #SINK} variable, or if it is not set, the system property of the same name.
+     *
+     * @return the sink
+     * @throws IOException        if the sink cannot be created
+     * @throws InstallerException if the sink specification is invalid
+     */
+    protected InstallationSink createSink() throws IOException
+    {
+        String spec = installData.getVariable(SINK);
+        if (spec == null)
+        {
+            spec = System.getProperty(SINK);
+        }
+        try
+        {
+            return InstallationSinkFactory.create(spec);
+        }
+        catch (IllegalArgumentException exception)
+        {
+            throw new InstallerException(exception.getMessage(), exception);
+        }
+    }
+
+    /**
+     * Determines if an option is enabled, via a variable or system property.
+     *
+     * @param name the option name
+     * @return {@code true} if the variable, or if it isn't set, the system property, is {@code true}
+     */
+    private boolean isOptionEnabled(String name)
+    {
+        String value = installData.getVariable(name);
+        if (value == null)
+        {
+            value = System.getProperty(name);
+        }
+        return Boolean.valueOf(value);
+    }
+
+    /**
+     * Discards the parsable files, executables and update checks of a pack, when the sink doesn't install to the
+     * file system.
+     * <p/>
+     * These operate on the installed files, so cannot be performed. Parsable files are parsed as they are unpacked,
+     * so only those that couldn't be, such as loose files, are discarded.
+     *
+     * @param pack         the pack
+     * @param parsables    the parsable files
+     * @param executables  the executable files
+     * @param updateChecks the update checks
+     */
+    private void discard(Pack pack, List<ParsableFile> parsables, List<ExecutableFile> executables,
+                         List<UpdateCheck> updateChecks)
+    {
+        if (!parsables.isEmpty())
+        {
+            logger.warning("Skipping " + parsables.size() + " parsable files in pack " + pack.getName()
+                                   + ": not installing to the file system");
+            parsables.clear();
+        }
+        if (!executables.isEmpty())
+        {
+            logger.warning("Skipping " + executables.size() + " executable files in pack " + pack.getName()
+                                   + ": not installing to the file system");
+            executables.clear();
+        }
+        if (!updateChecks.isEmpty())
+        {
+            logger.warning("Skipping " + updateChecks.size() + " update checks in pack " + pack.getName()
+                                   + ": not installing to the file system");
+            updateChecks.clear();
+        }
     }
 
     /**
@@ -863,26 +1311,143 @@ public abstract class UnpackerBase implements IUnpacker
      * @throws InstallerException           if parsing fails
      * @throws ResourceInterruptedException if installation is interrupted
      */
-    private void parseFiles(List<ParsableFile> files)
+    void parseFiles(List<ParsableFile> files)
     {
         if (!files.isEmpty())
         {
             ScriptParser parser = new ScriptParser(getVariableSubstitutor(), matcher);
+            int threads = getThreads();
+            if (files.size() > 1 && threads > 1 && isEnabled(PARSE_WHILE_UNPACKING))
+            {
+                parseFiles(files, parser, threads);
+            }
+            else
+            {
+                for (ParsableFile file : files)
+                {
+                    parse(file, parser);
+                    checkInterrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces any hard linked {@link ParsableFile}s with copies, so that parsing them doesn't affect the files
+     * they are linked to.
+     *
+     * @param files the files to be parsed
+     * @throws InstallerException if a file cannot be copied
+     */
+    private void unlink(List<ParsableFile> files)
+    {
+        if (deduplicator != null)
+        {
             for (ParsableFile file : files)
             {
                 try
                 {
-                    parser.parse(file);
+                    deduplicator.unlink(new File(file.getPath()));
                 }
-                catch (Exception exception)
+                catch (IOException exception)
                 {
-                    throw new InstallerException("Failed to parse: " + file.getPath(), exception);
+                    throw new InstallerException(exception.getMessage(), exception);
                 }
-                checkInterrupt();
             }
         }
     }
 
+    /**
+     * Parses {@link ParsableFile} instances in parallel.
+     * <p/>
+     * Declarations that refer to the same file are parsed in order, by the same worker.
+     *
+     * @param files   the files to parse
+     * @param parser  the parser
+     * @param threads the maximum number of threads to use
+     * @throws InstallerException           if parsing fails
+     * @throws ResourceInterruptedException if installation is interrupted
+     */
+    private void parseFiles(List<ParsableFile> files, final ScriptParser parser, int threads)
+    {
+        Map<String, List<ParsableFile>> byPath = new LinkedHashMap<String, List<ParsableFile>>();
+        for (ParsableFile file : files)
+        {
+            List<ParsableFile> list = byPath.get(file.getPath());
+            if (list == null)
+            {
+                list = new ArrayList<ParsableFile>();
+                byPath.put(file.getPath(), list);
+            }
+            list.add(file);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, byPath.size()));
+        try
+        {
+            List<Future<Void>> results = new ArrayList<Future<Void>>();
+            for (final List<ParsableFile> list : byPath.values())
+            {
+                results.add(executor.submit(new Callable<Void>()
+                {
+                    @Override
+                    public Void call()
+                    {
+                        for (ParsableFile file : list)
+                        {
+                            if (!isInterrupted())
+                            {
+                                parse(file, parser);
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> result : results)
+            {
+                result.get();
+            }
+        }
+        catch (ExecutionException exception)
+        {
+            Throwable cause = exception.getCause();
+            if (cause instanceof IzPackException)
+            {
+                throw (IzPackException) cause;
+            }
+            throw new InstallerException(cause);
+        }
+        catch (InterruptedException exception)
+        {
+            throw new ResourceInterruptedException("Installation cancelled");
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        checkInterrupt();
+    }
+
+    /**
+     * Parses a {@link ParsableFile}.
+     *
+     * @param file   the file to parse
+     * @param parser the parser
+     * @throws InstallerException if parsing fails
+     */
+    private void parse(ParsableFile file, ScriptParser parser)
+    {
+        try
+        {
+            parser.parse(file);
+        }
+        catch (Exception exception)
+        {
+            throw new InstallerException("Failed to parse: " + file.getPath(), exception);
+        }
+    }
+
     /**
      * Runs {@link ExecutableFile} instances collected during unpacking.
      *
@@ -997,6 +1562,10 @@ public abstract class UnpackerBase implements IUnpacker
 
                     installedFiles.add(file);
                 }
+                if (journal != null)
+                {
+                    installedFiles.add(journal.getFile());
+                }
                 for (String srcFile : srcFiles)
                 {
                     File newFile = new File(scanner.getBasedir(), srcFile);
@@ -1043,6 +1612,9 @@ public abstract class UnpackerBase implements IUnpacker
                 }
             }
 
+            // directories may be removed below, so they must be checked again when next created
+            directories.clear();
+
             // Sort directories, deepest path first to be able to
             // delete recursively
             Collections.sort(dirsToDelete);
@@ -1077,6 +1649,156 @@ public abstract class UnpackerBase implements IUnpacker
         }
     }
 
+    /**
+     * Verifies the integrity of the installer jar, if verification is enabled.
+     *
+     * @throws IOException                  for any I/O error
+     * @throws InstallerException           if the installer is corrupt
+     * @throws ResourceInterruptedException if verification is cancelled
+     */
+    private void verifyInstaller() throws IOException
+    {
+        if (isEnabled(VERIFY_INSTALLER))
+        {
+            File jar = getInstallerLocation();
+            if (jar.isFile() && jar.getName().endsWith(".jar"))
+            {
+                InstallerVerifier verifier = new InstallerVerifier(jar, cancellable);
+                int threads = getThreads();
+                ExecutorService executor = Executors.newFixedThreadPool(threads);
+                try
+                {
+                    verifier.verify(executor, threads);
+                }
+                finally
+                {
+                    executor.shutdownNow();
+                }
+            }
+            else
+            {
+                logger.fine("Skipping installer verification: " + jar + " is not a jar");
+            }
+        }
+    }
+
+    /**
+     * Opens the unpack journal, if journaling or resumption is enabled and files are installed to the file system.
+     *
+     * @throws IOException if the journal cannot be opened
+     */
+    private void openJournal() throws IOException
+    {
+        boolean resume = isEnabled(RESUME);
+        if ((resume || isEnabled(JOURNAL)) && sink.isFileSystem())
+        {
+            Info info = installData.getInfo();
+            File file = new File(installData.getInstallPath(), UnpackJournal.NAME).getAbsoluteFile();
+            journal = new UnpackJournal(file, info.getAppName() + " " + info.getAppVersion());
+            journal.open(resume);
+        }
+    }
+
+    /**
+     * Records a completed file in the unpack journal, if journaling is enabled.
+     *
+     * @param target the file
+     * @param digest the digest of the file content, or {@code null} if it must be calculated from the file
+     * @param parsed determines if the file has had its variables substituted
+     * @throws IOException if the journal cannot be written
+     */
+    private void journalFile(File target, byte[] digest, boolean parsed) throws IOException
+    {
+        if (journal != null)
+        {
+            journal.file(target, digest, parsed);
+        }
+    }
+
+    /**
+     * Records a completed pack in the unpack journal.
+     * <p/>
+     * The parsable files are recorded again, as parsing changes them.
+     *
+     * @param pack      the pack
+     * @param parsables the parsable files
+     * @throws InstallerException if the journal cannot be written
+     */
+    private void journalPack(Pack pack, List<ParsableFile> parsables)
+    {
+        try
+        {
+            for (ParsableFile parsable : parsables)
+            {
+                File file = new File(parsable.getPath());
+                if (file.isFile())
+                {
+                    journal.file(file, null, true);
+                }
+            }
+            journal.pack(pack.getName());
+        }
+        catch (IOException exception)
+        {
+            throw new InstallerException("Failed to write journal: " + journal.getFile(), exception);
+        }
+    }
+
+    /**
+     * Performs the update checks of all packs in a single parallel sweep of the installation directory.
+     *
+     * @param checks the update checks. May be {@code null}
+     * @throws ResourceInterruptedException if installation is interrupted
+     * @throws IzPackException              for any error
+     */
+    protected void sweepUpdateChecks(List<UpdateCheck> checks)
+    {
+        if (checks != null && !checks.isEmpty())
+        {
+            logger.info("Cleaning up the target folder ...");
+
+            List<String> includes = new ArrayList<String>();
+            List<String> excludes = new ArrayList<String>();
+            for (UpdateCheck check : checks)
+            {
+                if (check.includesList != null)
+                {
+                    for (String include : check.includesList)
+                    {
+                        includes.add(variableSubstitutor.substitute(include));
+                    }
+                }
+                if (check.excludesList != null)
+                {
+                    for (String exclude : check.excludesList)
+                    {
+                        excludes.add(variableSubstitutor.substitute(exclude));
+                    }
+                }
+            }
+            File installPath = new File(installData.getInstallPath());
+            List<String> installed = new ArrayList<String>(uninstallData.getInstalledFilesList());
+            if (journal != null)
+            {
+                installed.add(journal.getFile().getPath());
+            }
+            UpdateCheckSweep sweep = new UpdateCheckSweep(installPath, includes, excludes, installed, cancellable);
+
+            // directories may be removed, so they must be checked again when next created
+            directories.clear();
+
+            ExecutorService executor = Executors.newFixedThreadPool(getThreads());
+            try
+            {
+                sweep.run(executor);
+            }
+            finally
+            {
+                executor.shutdownNow();
+            }
+        }
+    }
+
     /**
      * Writes information about the installed packs and the variables at installation time.
      *
@@ -1096,21 +1818,21 @@ public abstract class UnpackerBase implements IUnpacker
         List<Pack> installedPacks = new ArrayList<Pack>(installData.getSelectedPacks());
 
         File installationInfo = new File(installDir + File.separator + InstallData.INSTALLATION_INFORMATION);
-        if (!installationInfo.exists())
+        if (!sink.exists(installationInfo))
         {
             logger.fine("Creating info file " + installationInfo.getAbsolutePath());
             File dir = new File(installData.getInstallPath());
-            if (!dir.exists())
+            if (!sink.exists(dir))
             {
                 // if no packs have been installed, then the installation directory won't exist
-                if (!dir.mkdirs())
+                try
                 {
-                    throw new InstallerException("Failed to create directory: " + dir);
+                    sink.createDirectory(dir);
+                }
+                catch (IOException exception)
+                {
+                    throw new InstallerException("Failed to create directory: " + dir, exception);
                 }
-            }
-            if (!installationInfo.createNewFile())
-            {
-                throw new InstallerException("Failed to create file: " + installationInfo);
             }
         }
         else
@@ -1140,7 +1862,7 @@ public abstract class UnpackerBase implements IUnpacker
             }
         }
 
-        FileOutputStream fout = new FileOutputStream(installationInfo);
+        OutputStream fout = sink.createFile(installationInfo, -1, -1, -1);
         ObjectOutputStream oout = new ObjectOutputStream(fout);
         oout.writeObject(installedPacks);
         oout.writeObject(installData.getVariables().getProperties());
@@ -1156,20 +1878,7 @@ public abstract class UnpackerBase implements IUnpacker
     {
         if (absoluteInstallSource == null)
         {
-            URI uri;
-            try
-            {
-                uri = getClass().getProtectionDomain().getCodeSource().getLocation().toURI();
-            }
-            catch (URISyntaxException exception)
-            {
-                throw new InstallerException(exception);
-            }
-            if (!"file".equals(uri.getScheme()))
-            {
-                throw new InstallerException("Unexpected scheme in JAR file URI: " + uri);
-            }
-            absoluteInstallSource = new File(uri.getSchemeSpecificPart()).getAbsoluteFile();
+            absoluteInstallSource = getInstallerLocation();
             if (absoluteInstallSource.getName().endsWith(".jar"))
             {
                 absoluteInstallSource = absoluteInstallSource.getParentFile();
@@ -1178,6 +1887,30 @@ public abstract class UnpackerBase implements IUnpacker
         return absoluteInstallSource;
     }
 
+    /**
+     * Returns the location the installer classes were loaded from.
+     *
+     * @return the installer jar, or directory if the installer isn't packaged in a jar
+     * @throws InstallerException if the location isn't a file
+     */
+    private File getInstallerLocation()
+    {
+        URI uri;
+        try
+        {
+            uri = getClass().getProtectionDomain().getCodeSource().getLocation().toURI();
+        }
+        catch (URISyntaxException exception)
+        {
+            throw new InstallerException(exception);
+        }
+        if (!"file".equals(uri.getScheme()))
+        {
+            throw new InstallerException("Unexpected scheme in JAR file URI: " + uri);
+        }
+        return new File(uri.getSchemeSpecificPart()).getAbsoluteFile();
+    }
+
     /**
      * Skips bytes in a stream.
      *
@@ -1269,7 +2002,7 @@ public abstract class UnpackerBase implements IUnpacker
      */
     protected void handleOverrideRename(PackFile pf, File file)
     {
-        if (file.exists() && pf.overrideRenameTo() != null)
+        if (sink.isFileSystem() && file.exists() && pf.overrideRenameTo() != null)
         {
             GlobPatternMapper mapper = new GlobPatternMapper();
             mapper.setFrom("*");
@@ -1319,9 +2052,17 @@ public abstract class UnpackerBase implements IUnpacker
             logger.fine("Unpacked parsable: " + file.toString());
             if (!file.hasCondition() || isConditionTrue(file.getCondition()))
             {
-                String path = IoHelper.translatePath(file.getPath(), installData.getVariables());
-                file.setPath(path);
-                parsables.add(file);
+                String path = getTargetPath(file.getPath());
+                parsableTargets.add(path);
+                if (parsed.remove(path))
+                {
+                    logger.fine("Skipping " + path + ": variables substituted during unpacking");
+                }
+                else
+                {
+                    file.setPath(path);
+                    parsables.add(file);
+                }
             }
         }
     }
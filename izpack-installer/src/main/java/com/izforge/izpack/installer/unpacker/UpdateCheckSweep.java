@@ -0,0 +1,547 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import com.izforge.izpack.api.exception.InstallerException;
+import com.izforge.izpack.api.exception.IzPackException;
+import com.izforge.izpack.api.exception.ResourceInterruptedException;
+import com.izforge.izpack.util.file.DirectoryScanner;
+import com.izforge.izpack.util.file.types.selectors.SelectorUtils;
+
+
+/**
+ * Removes files and directories matching update check patterns from an installation directory, excluding those
+ * that have been installed.
+ * <p/>
+ * The patterns follow the same rules as a {@link com.izforge.izpack.util.file.types.FileSet FileSet}, including
+ * the default excludes. The directory tree is scanned one level at a time, with the directories of each level
+ * scanned in parallel. Files are then deleted in parallel, followed by empty directories, deepest level first.
+ *
+ * @author Tim Anderson
+ */
+public class UpdateCheckSweep
+{
+
+    /**
+     * The installation directory.
+     */
+    private final File basedir;
+
+    /**
+     * The include patterns.
+     */
+    private final List<String> includes = new ArrayList<String>();
+
+    /**
+     * The exclude patterns.
+     */
+    private final List<String> excludes = new ArrayList<String>();
+
+    /**
+     * The installed files, which must not be deleted.
+     */
+    private final Set<File> installed = new HashSet<File>();
+
+    /**
+     * Determines if the sweep has been cancelled.
+     */
+    private final Cancellable cancellable;
+
+    /**
+     * The matching files found by the last scan.
+     */
+    private final Collection<File> files = new ConcurrentLinkedQueue<File>();
+
+    /**
+     * The matching directories found by the last scan, keyed on depth.
+     */
+    private final Map<Integer, Collection<File>> directories = new ConcurrentHashMap<Integer, Collection<File>>();
+
+    /**
+     * The canonical paths of scanned directories, to avoid following symbolic link cycles.
+     */
+    private final Set<String> scanned = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(UpdateCheckSweep.class.getName());
+
+
+    /**
+     * Constructs an <tt>UpdateCheckSweep</tt>.
+     *
+     * @param basedir        the installation directory
+     * @param includes       the include patterns. If empty, all files and directories are included
+     * @param excludes       the exclude patterns
+     * @param installedFiles the paths of the installed files and directories. Relative paths are relative to
+     *                       {@code basedir}
+     * @param cancellable    determines if the sweep has been cancelled
+     */
+    public UpdateCheckSweep(File basedir, List<String> includes, List<String> excludes,
+                            Collection<String> installedFiles, Cancellable cancellable)
+    {
+        this.basedir = basedir.getAbsoluteFile();
+        this.cancellable = cancellable;
+        if (includes.isEmpty())
+        {
+            this.includes.add("**");
+        }
+        for (String include : includes)
+        {
+            this.includes.add(normalise(include));
+        }
+        for (String exclude : excludes)
+        {
+            this.excludes.add(normalise(exclude));
+        }
+        for (String exclude : DirectoryScanner.getDefaultExcludes())
+        {
+            this.excludes.add(normalise(exclude));
+        }
+        for (String name : installedFiles)
+        {
+            File file = new File(name);
+            if (!file.isAbsolute())
+            {
+                file = new File(this.basedir, name);
+            }
+            installed.add(file);
+        }
+    }
+
+    /**
+     * Scans the installation directory, and deletes the matching files and empty directories.
+     *
+     * @param executor the executor to perform the scan and deletion with
+     * @throws ResourceInterruptedException if the sweep is cancelled
+     * @throws IzPackException              for any error
+     */
+    public void run(ExecutorService executor)
+    {
+        scan(executor);
+        deleteFiles(executor);
+        deleteDirectories(executor);
+    }
+
+    /**
+     * Scans the installation directory for files and directories to delete.
+     *
+     * @param executor the executor to perform the scan with
+     * @throws ResourceInterruptedException if the sweep is cancelled
+     * @throws IzPackException              for any error
+     */
+    public void scan(ExecutorService executor)
+    {
+        files.clear();
+        directories.clear();
+        scanned.clear();
+
+        List<String> level = Collections.singletonList("");
+        while (!level.isEmpty())
+        {
+            List<Callable<List<String>>> tasks = new ArrayList<Callable<List<String>>>();
+            for (final String dir : level)
+            {
+                tasks.add(new Callable<List<String>>()
+                {
+                    @Override
+                    public List<String> call() throws IOException
+                    {
+                        return scan(dir);
+                    }
+                });
+            }
+            List<String> next = new ArrayList<String>();
+            for (List<String> result : invokeAll(executor, tasks))
+            {
+                next.addAll(result);
+            }
+            level = next;
+        }
+    }
+
+    /**
+     * Returns the files found by the last scan.
+     *
+     * @return the files to delete
+     */
+    public List<File> getFiles()
+    {
+        return new ArrayList<File>(files);
+    }
+
+    /**
+     * Returns the directories found by the last scan.
+     *
+     * @return the directories to delete, if empty
+     */
+    public List<File> getDirectories()
+    {
+        List<File> result = new ArrayList<File>();
+        for (Collection<File> list : directories.values())
+        {
+            result.addAll(list);
+        }
+        return result;
+    }
+
+    /**
+     * Scans a directory.
+     *
+     * @param dir the directory name, relative to the installation directory
+     * @return the sub-directories to scan
+     * @throws IOException if the directory's canonical path cannot be determined
+     */
+    private List<String> scan(String dir) throws IOException
+    {
+        List<String> result = new ArrayList<String>();
+        File directory = (dir.length() == 0) ? basedir : new File(basedir, dir);
+        String[] names = directory.list();
+        if (cancellable.isCancelled() || names == null || !scanned.add(directory.getCanonicalPath()))
+        {
+            return result;
+        }
+        String prefix = (dir.length() == 0) ? dir : dir + File.separatorChar;
+        int depth = (dir.length() == 0) ? 0 : getDepth(dir) + 1;
+        for (String child : names)
+        {
+            String name = prefix + child;
+            File file = new File(directory, child);
+            boolean included = isIncluded(name) && !isExcluded(name) && !installed.contains(file);
+            if (file.isDirectory())
+            {
+                if (included)
+                {
+                    getDirectories(depth).add(file);
+                }
+                if (couldHoldIncluded(name) && !contentsExcluded(name))
+                {
+                    result.add(name);
+                }
+            }
+            else if (included)
+            {
+                files.add(file);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Deletes the files found by the last scan.
+     *
+     * @param executor the executor to perform deletion with
+     * @throws ResourceInterruptedException if the sweep is cancelled
+     * @throws IzPackException              for any error
+     */
+    private void deleteFiles(ExecutorService executor)
+    {
+        List<File> list = getFiles();
+        int chunks = Math.max(1, Math.min(list.size() / 64, 64));
+        int size = (list.size() + chunks - 1) / chunks;
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int i = 0; i < list.size(); i += size)
+        {
+            tasks.add(new Delete(list.subList(i, Math.min(i + size, list.size())), false));
+        }
+        invokeAll(executor, tasks);
+    }
+
+    /**
+     * Deletes the empty directories found by the last scan, deepest first.
+     * <p/>
+     * Directories that aren't empty were probably created implicitly as parents of installed files, and are
+     * retained.
+     *
+     * @param executor the executor to perform deletion with
+     * @throws ResourceInterruptedException if the sweep is cancelled
+     * @throws IzPackException              for any error
+     */
+    private void deleteDirectories(ExecutorService executor)
+    {
+        TreeMap<Integer, Collection<File>> byDepth = new TreeMap<Integer, Collection<File>>(directories);
+        for (Collection<File> level : byDepth.descendingMap().values())
+        {
+            // directories at the same depth cannot contain each other, so may be deleted concurrently
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+            for (File dir : level)
+            {
+                tasks.add(new Delete(Collections.singletonList(dir), true));
+            }
+            invokeAll(executor, tasks);
+        }
+    }
+
+    /**
+     * Returns the directories found at the specified depth, creating the collection if required.
+     *
+     * @param depth the depth
+     * @return the directories at the depth
+     */
+    private Collection<File> getDirectories(int depth)
+    {
+        Collection<File> result = directories.get(depth);
+        if (result == null)
+        {
+            synchronized (directories)
+            {
+                result = directories.get(depth);
+                if (result == null)
+                {
+                    result = new ConcurrentLinkedQueue<File>();
+                    directories.put(depth, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Invokes tasks, waiting for them to complete.
+     *
+     * @param executor the executor
+     * @param tasks    the tasks
+     * @return the task results
+     * @throws ResourceInterruptedException if the sweep is cancelled
+     * @throws IzPackException              if a task fails
+     */
+    private <T> List<T> invokeAll(ExecutorService executor, List<Callable<T>> tasks)
+    {
+        List<T> result = new ArrayList<T>();
+        try
+        {
+            for (Future<T> future : executor.invokeAll(tasks))
+            {
+                result.add(future.get());
+            }
+        }
+        catch (ExecutionException exception)
+        {
+            Throwable cause = exception.getCause();
+            if (cause instanceof IzPackException)
+            {
+                throw (IzPackException) cause;
+            }
+            throw new InstallerException(cause);
+        }
+        catch (InterruptedException exception)
+        {
+            throw new ResourceInterruptedException("Installation cancelled");
+        }
+        if (cancellable.isCancelled())
+        {
+            throw new ResourceInterruptedException("Installation cancelled");
+        }
+        return result;
+    }
+
+    /**
+     * Determines if a name matches an include pattern.
+     *
+     * @param name the name, relative to the installation directory
+     * @return {@code true} if the name is included
+     */
+    private boolean isIncluded(String name)
+    {
+        for (String include : includes)
+        {
+            if (SelectorUtils.matchPath(include, name, true))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines if a name matches an exclude pattern.
+     *
+     * @param name the name, relative to the installation directory
+     * @return {@code true} if the name is excluded
+     */
+    private boolean isExcluded(String name)
+    {
+        for (String exclude : excludes)
+        {
+            if (SelectorUtils.matchPath(exclude, name, true))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines if a directory may contain included files or directories.
+     *
+     * @param name the directory name, relative to the installation directory
+     * @return {@code true} if the directory may contain included names
+     */
+    private boolean couldHoldIncluded(String name)
+    {
+        for (String include : includes)
+        {
+            if (SelectorUtils.matchPatternStart(include, name, true))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines if the entire contents of a directory are excluded.
+     *
+     * @param name the directory name, relative to the installation directory
+     * @return {@code true} if the directory contents are excluded
+     */
+    private boolean contentsExcluded(String name)
+    {
+        name = name + File.separatorChar;
+        for (String exclude : excludes)
+        {
+            if (exclude.endsWith("**") && SelectorUtils.matchPath(exclude.substring(0, exclude.length() - 2), name,
+                                                                  true))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of separators in a relative name.
+     *
+     * @param name the name
+     * @return the depth of the name
+     */
+    private static int getDepth(String name)
+    {
+        int result = 0;
+        for (int i = 0; i < name.length(); ++i)
+        {
+            if (name.charAt(i) == File.separatorChar)
+            {
+                ++result;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Normalises a pattern, in the same manner as {@link DirectoryScanner}.
+     *
+     * @param pattern the pattern
+     * @return the normalised pattern
+     */
+    private static String normalise(String pattern)
+    {
+        String result = pattern.replace('/', File.separatorChar).replace('\\', File.separatorChar);
+        if (result.endsWith(File.separator))
+        {
+            result += "**";
+        }
+        return result;
+    }
+
+    /**
+     * Task to delete files or empty directories.
+     */
+    private class Delete implements Callable<Void>
+    {
+
+        /**
+         * The files or directories to delete.
+         */
+        private final List<File> files;
+
+        /**
+         * Determines if the files are directories.
+         */
+        private final boolean directories;
+
+        /**
+         * Constructs a <tt>Delete</tt>.
+         *
+         * @param files       the files or directories to delete
+         * @param directories determines if the files are directories
+         */
+        public Delete(List<File> files, boolean directories)
+        {
+            this.files = files;
+            this.directories = directories;
+        }
+
+        /**
+         * Deletes the files.
+         *
+         * @return {@code null}
+         */
+        @Override
+        public Void call()
+        {
+            for (File file : files)
+            {
+                if (cancellable.isCancelled())
+                {
+                    break;
+                }
+                if (directories)
+                {
+                    String[] children = file.list();
+                    if (children == null || children.length != 0)
+                    {
+                        // doesn't exist, or isn't empty
+                        continue;
+                    }
+                }
+                if (!file.delete())
+                {
+                    logger.warning("Cleanup: Unable to delete " + (directories ? "directory " : "file ") + file);
+                }
+                else
+                {
+                    logger.fine("Cleanup: Deleted " + (directories ? "directory " : "file ") + file);
+                }
+            }
+            return null;
+        }
+    }
+}
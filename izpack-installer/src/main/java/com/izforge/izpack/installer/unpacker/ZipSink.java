@@ -0,0 +1,124 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+
+/**
+ * An {@link InstallationSink} that streams the installation as a zip archive.
+ *
+ * @author Tim Anderson
+ */
+public class ZipSink extends ArchiveSink
+{
+
+    /**
+     * The zip stream.
+     */
+    private final ZipOutputStream zip;
+
+
+    /**
+     * Constructs a {@code ZipSink}.
+     *
+     * @param out the stream to write to
+     */
+    public ZipSink(OutputStream out)
+    {
+        this(new ZipOutputStream(new BufferedOutputStream(out, 64 * 1024)));
+    }
+
+    /**
+     * Constructs a {@code ZipSink}.
+     *
+     * @param zip the zip stream to write to
+     */
+    private ZipSink(ZipOutputStream zip)
+    {
+        super(zip);
+        this.zip = zip;
+    }
+
+    /**
+     * Writes a directory entry.
+     *
+     * @param name         the entry name. This ends in '/'
+     * @param lastModified the last modified timestamp
+     * @throws IOException for any I/O error
+     */
+    @Override
+    protected void writeDirectory(String name, long lastModified) throws IOException
+    {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setTime(lastModified);
+        zip.putNextEntry(entry);
+        zip.closeEntry();
+    }
+
+    /**
+     * Writes a file entry.
+     *
+     * @param name         the entry name
+     * @param length       the length of the file, or {@code -1} if it is not known
+     * @param lastModified the last modified timestamp
+     * @param mode         the POSIX mode bits. Ignored, as {@code java.util.zip} cannot record them
+     * @return a stream to write the file content. Closing the stream completes the entry
+     * @throws IOException for any I/O error
+     */
+    @Override
+    protected OutputStream writeFile(String name, long length, long lastModified, int mode) throws IOException
+    {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setTime(lastModified);
+        zip.putNextEntry(entry);
+        return new FilterOutputStream(zip)
+        {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException
+            {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException
+            {
+                zip.closeEntry();
+            }
+        };
+    }
+
+    /**
+     * Completes the archive by writing the central directory.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Override
+    protected void finish() throws IOException
+    {
+        zip.finish();
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.izforge.izpack.api.data.InstallData;
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.api.data.Variables;
+import com.izforge.izpack.util.DiskSpace;
+import com.izforge.izpack.util.DiskSpace.Volume;
+
+
+/**
+ * Tracks the disk space required by the selected packs, per volume.
+ * <p/>
+ * Packs may install files to several volumes, via variables other than <em>INSTALL_PATH</em>. The target roots
+ * recorded by {@link Pack#getTargetSizes()} are resolved against the current variables and mapped to volumes
+ * using {@link DiskSpace}. Any space reserved by the pack in excess of its file sizes is allocated to the volume
+ * of the installation path.
+ * <p/>
+ * Requirements are updated incrementally as packs are selected and deselected. A selected pack's requirements
+ * are recalculated only if any of its target roots, or the installation path, resolves differently.
+ *
+ * @author Tim Anderson
+ */
+public class DiskRequirements
+{
+
+    /**
+     * The variables.
+     */
+    private final Variables variables;
+
+    /**
+     * The disk space service.
+     */
+    private final DiskSpace diskSpace;
+
+    /**
+     * The space required by each selected pack, per volume.
+     */
+    private final Map<Pack, Map<Volume, Long>> packs = new LinkedHashMap<Pack, Map<Volume, Long>>();
+
+    /**
+     * The space required by all selected packs, per volume.
+     */
+    private final Map<Volume, Long> required = new LinkedHashMap<Volume, Long>();
+
+    /**
+     * The resolved target roots that each selected pack's requirements were calculated for, followed by the
+     * installation directory.
+     */
+    private final Map<Pack, List<File>> roots = new HashMap<Pack, List<File>>();
+
+
+    /**
+     * Constructs a {@code DiskRequirements}.
+     *
+     * @param variables the variables
+     */
+    public DiskRequirements(Variables variables)
+    {
+        this(variables, DiskSpace.getInstance());
+    }
+
+    /**
+     * Constructs a {@code DiskRequirements}.
+     *
+     * @param variables the variables
+     * @param diskSpace the disk space service
+     */
+    public DiskRequirements(Variables variables, DiskSpace diskSpace)
+    {
+        this.variables = variables;
+        this.diskSpace = diskSpace;
+    }
+
+    /**
+     * Updates the requirements to reflect the selected packs.
+     * <p/>
+     * Only packs that have been selected or deselected since the last update, or whose target roots now resolve
+     * differently, are processed.
+     *
+     * @param selected the selected packs
+     */
+    public synchronized void update(Collection<Pack> selected)
+    {
+        Set<Pack> deselected = new HashSet<Pack>(packs.keySet());
+        deselected.removeAll(selected);
+        for (Pack pack : deselected)
+        {
+            remove(pack);
+        }
+        String path = variables.get(InstallData.INSTALL_PATH);
+        File installDir = new File((path != null) ? path : ".");
+        for (Pack pack : selected)
+        {
+            List<File> resolved = resolve(pack, installDir);
+            if (!resolved.equals(roots.get(pack)))
+            {
+                if (packs.containsKey(pack))
+                {
+                    remove(pack);
+                }
+                add(pack, resolved);
+            }
+        }
+    }
+
+    /**
+     * Returns the space required by the selected packs, per volume.
+     *
+     * @return the required space, in bytes, keyed on volume
+     */
+    public synchronized Map<Volume, Long> getRequired()
+    {
+        return new LinkedHashMap<Volume, Long>(required);
+    }
+
+    /**
+     * Returns the total space required by the selected packs.
+     *
+     * @return the total required space, in bytes
+     */
+    public synchronized long getTotal()
+    {
+        long result = 0;
+        for (long bytes : required.values())
+        {
+            result += bytes;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the volumes that have insufficient free space for the selected packs.
+     * <p/>
+     * Volumes whose free space cannot be determined are excluded.
+     *
+     * @return the volumes with insufficient free space
+     */
+    public List<Volume> getInsufficient()
+    {
+        List<Volume> result = new ArrayList<Volume>();
+        for (Map.Entry<Volume, Long> entry : getRequired().entrySet())
+        {
+            Volume volume = entry.getKey();
+            long free = volume.getFreeSpace();
+            if (free >= 0 && free <= entry.getValue())
+            {
+                result.add(volume);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds the requirements of a pack.
+     *
+     * @param pack  the pack
+     * @param roots the pack's resolved target roots, followed by the installation directory
+     */
+    private void add(Pack pack, List<File> roots)
+    {
+        Map<Volume, Long> sizes = getSizes(pack, roots);
+        packs.put(pack, sizes);
+        this.roots.put(pack, roots);
+        for (Map.Entry<Volume, Long> entry : sizes.entrySet())
+        {
+            Long bytes = required.get(entry.getKey());
+            required.put(entry.getKey(), (bytes != null) ? bytes + entry.getValue() : entry.getValue());
+        }
+    }
+
+    /**
+     * Removes the requirements of a pack.
+     *
+     * @param pack the pack
+     */
+    private void remove(Pack pack)
+    {
+        Map<Volume, Long> sizes = packs.remove(pack);
+        roots.remove(pack);
+        for (Map.Entry<Volume, Long> entry : sizes.entrySet())
+        {
+            long bytes = required.get(entry.getKey()) - entry.getValue();
+            if (bytes > 0)
+            {
+                required.put(entry.getKey(), bytes);
+            }
+            else
+            {
+                required.remove(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Resolves the target roots of a pack against the current variables.
+     *
+     * @param pack       the pack
+     * @param installDir the installation directory, used to resolve relative roots
+     * @return the resolved roots, in the order of {@link Pack#getTargetSizes()}, followed by the installation
+     *         directory
+     */
+    private List<File> resolve(Pack pack, File installDir)
+    {
+        List<File> result = new ArrayList<File>();
+        for (String path : pack.getTargetSizes().keySet())
+        {
+            File root = new File(variables.replace(path));
+            if (!root.isAbsolute())
+            {
+                root = new File(installDir, root.getPath());
+            }
+            result.add(root);
+        }
+        result.add(installDir);
+        return result;
+    }
+
+    /**
+     * Determines the space required by a pack, per volume.
+     *
+     * @param pack  the pack
+     * @param roots the pack's resolved target roots, followed by the installation directory
+     * @return the required space, in bytes, keyed on volume
+     */
+    private Map<Volume, Long> getSizes(Pack pack, List<File> roots)
+    {
+        Map<Volume, Long> result = new LinkedHashMap<Volume, Long>();
+        long remaining = pack.getSize();
+        int index = 0;
+        for (long bytes : pack.getTargetSizes().values())
+        {
+            add(diskSpace.getVolume(roots.get(index++)), bytes, result);
+            remaining -= bytes;
+        }
+        if (remaining > 0)
+        {
+            add(diskSpace.getVolume(roots.get(index)), remaining, result);
+        }
+        return result;
+    }
+
+    /**
+     * Adds to the space required on a volume.
+     *
+     * @param volume the volume
+     * @param bytes  the no. of bytes to add
+     * @param sizes  the required space, keyed on volume
+     */
+    private void add(Volume volume, long bytes, Map<Volume, Long> sizes)
+    {
+        Long size = sizes.get(volume);
+        sizes.put(volume, (size != null) ? size + bytes : bytes);
+    }
+
+}
@@ -0,0 +1,906 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.installer.web;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Logger;
+
+import com.izforge.izpack.util.file.FileUtils;
+
+
+/**
+ * Downloads files concurrently to a cache directory.
+ * <p/>
+ * Downloads are written to a <em>.part</em> file which is renamed once complete. Failed downloads are retried, and
+ * resume from the end of the partially downloaded file using an HTTP <em>Range</em> request. Completed downloads
+ * are reused if the same URL is requested again, so pack jars may be {@link #prefetch prefetched} while earlier
+ * packs are being unpacked.
+ * <p/>
+ * Alternatively, URLs may be {@link #open opened} as streams, so that they can be read as they are downloaded.
+ * Streamed URLs are also written to the cache directory, so that opening them again doesn't download them again.
+ *
+ * @author Tim Anderson
+ */
+public class PackDownloader
+{
+
+    /**
+     * Variable specifying the maximum no. of concurrent connections. Defaults to {@link #DEFAULT_CONNECTIONS}.
+     */
+    public static final String CONNECTIONS = "izpack.web.connections";
+
+    /**
+     * Variable specifying the no. of times a failed download is retried. Defaults to {@link #DEFAULT_RETRIES}.
+     */
+    public static final String RETRIES = "izpack.web.retries";
+
+    /**
+     * The default no. of concurrent connections.
+     */
+    public static final int DEFAULT_CONNECTIONS = 4;
+
+    /**
+     * The default no. of retries.
+     */
+    public static final int DEFAULT_RETRIES = 3;
+
+    /**
+     * Variable that, if {@code true}, streams pack jars as they are downloaded, rather than waiting for them to be
+     * downloaded to disk first.
+     */
+    public static final String STREAM = "izpack.web.stream";
+
+    /**
+     * The cache directory.
+     */
+    private final File dir;
+
+    /**
+     * The no. of times a failed download is retried.
+     */
+    private final int retries;
+
+    /**
+     * The delay before the first retry, in milliseconds. This doubles for each subsequent retry.
+     */
+    private final long retryDelay;
+
+    /**
+     * The executor.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The downloads, keyed on URL.
+     */
+    private final Map<String, Future<File>> downloads = new HashMap<String, Future<File>>();
+
+    /**
+     * The open connections, so that they can be disconnected on {@link #shutdown}.
+     */
+    private final Set<URLConnection> connections = Collections.synchronizedSet(new HashSet<URLConnection>());
+
+    /**
+     * The buffers of the streams being written, so that their readers can be failed on {@link #shutdown}.
+     */
+    private final Set<RingBuffer> buffers = Collections.synchronizedSet(new HashSet<RingBuffer>());
+
+    /**
+     * The connect and read timeout, in milliseconds.
+     */
+    private static final int TIMEOUT = 30000;
+
+    /**
+     * HTTP status indicating that a Range request cannot be satisfied.
+     */
+    private static final int RANGE_NOT_SATISFIABLE = 416;
+
+    /**
+     * The suffix of partially downloaded files.
+     */
+    private static final String PART = ".part";
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(PackDownloader.class.getName());
+
+
+    /**
+     * Constructs a <tt>PackDownloader</tt>.
+     *
+     * @param dir         the cache directory
+     * @param connections the maximum no. of concurrent connections
+     * @param retries     the no. of times a failed download is retried
+     * @param retryDelay  the delay before the first retry, in milliseconds
+     */
+    public PackDownloader(File dir, int connections, int retries, long retryDelay)
+    {
+        this.dir = dir;
+        this.retries = retries;
+        this.retryDelay = retryDelay;
+        executor = Executors.newFixedThreadPool(Math.max(1, connections), new ThreadFactory()
+        {
+            public Thread newThread(Runnable runnable)
+            {
+                // don't prevent the installer from exiting
+                Thread thread = new Thread(runnable, "PackDownloader");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Starts downloading a file in the background, if it isn't already being downloaded.
+     *
+     * @param url the URL to download
+     */
+    public void prefetch(URL url)
+    {
+        getDownload(url);
+    }
+
+    /**
+     * Returns a downloaded file, waiting for the download to complete if necessary.
+     *
+     * @param url the URL to download
+     * @return the downloaded file
+     * @throws InterruptedIOException if the download is interrupted
+     * @throws IOException            if the file cannot be downloaded
+     */
+    public File get(URL url) throws IOException
+    {
+        Future<File> download = getDownload(url);
+        try
+        {
+            return download.get();
+        }
+        catch (InterruptedException exception)
+        {
+            download.cancel(true);
+            throw new InterruptedIOException("Download of " + url + " interrupted");
+        }
+        catch (CancellationException exception)
+        {
+            throw new InterruptedIOException("Download of " + url + " cancelled");
+        }
+        catch (ExecutionException exception)
+        {
+            synchronized (downloads)
+            {
+                // allow the download to be attempted again
+                downloads.remove(url.toString());
+            }
+            Throwable cause = exception.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to download " + url, cause);
+        }
+    }
+
+    /**
+     * Opens a stream to a URL, returning data as it is downloaded.
+     * <p/>
+     * If the URL has already been downloaded, the cached file is returned, and if it is being downloaded, the
+     * download is waited on. Otherwise, the URL is streamed through a bounded buffer, and written to the cache
+     * directory as it is streamed. Writing continues if the stream is closed before the end of the URL is reached,
+     * so that the URL may be opened again without being downloaded again.
+     * <p/>
+     * If streaming fails and cannot be resumed, the download to the cache directory is completed instead, and
+     * reading continues from the downloaded file.
+     *
+     * @param url        the URL
+     * @param bufferSize the buffer size, in bytes
+     * @return a stream to the URL
+     * @throws InterruptedIOException if waiting for a download is interrupted
+     * @throws IOException            if the URL cannot be downloaded, or the cached file cannot be opened
+     */
+    public InputStream open(URL url, int bufferSize) throws IOException
+    {
+        File file = getFile(url);
+        if (file.exists())
+        {
+            logger.fine("Using cached download of " + url + ": " + file);
+            return new FileInputStream(file);
+        }
+        synchronized (downloads)
+        {
+            if (!downloads.containsKey(url.toString()))
+            {
+                RingBuffer buffer = new RingBuffer(bufferSize);
+                buffers.add(buffer);
+                downloads.put(url.toString(), executor.submit(new StreamTask(url, file, buffer)));
+                return new StreamingInputStream(url, buffer);
+            }
+        }
+        return new FileInputStream(get(url));
+    }
+
+    /**
+     * Stops all downloads, including those in progress.
+     * <p/>
+     * Open connections are disconnected, as blocked reads aren't interrupted, and streams being read fail with an
+     * {@code InterruptedIOException}. Partially downloaded files are retained, so they can be resumed. Once shut
+     * down, the downloader cannot be used again.
+     */
+    public void shutdown()
+    {
+        executor.shutdownNow();
+        synchronized (downloads)
+        {
+            for (Future<File> download : downloads.values())
+            {
+                download.cancel(true);
+            }
+        }
+        List<RingBuffer> streams;
+        synchronized (buffers)
+        {
+            streams = new ArrayList<RingBuffer>(buffers);
+        }
+        for (RingBuffer buffer : streams)
+        {
+            // the stream may not have started, so its reader would otherwise wait indefinitely
+            buffer.fail(new InterruptedIOException("Download cancelled"));
+        }
+        List<URLConnection> open;
+        synchronized (connections)
+        {
+            open = new ArrayList<URLConnection>(connections);
+        }
+        for (URLConnection connection : open)
+        {
+            if (connection instanceof HttpURLConnection)
+            {
+                ((HttpURLConnection) connection).disconnect();
+            }
+        }
+    }
+
+    /**
+     * Returns the file that a URL is downloaded to.
+     *
+     * @param url the URL
+     * @return the file
+     */
+    public File getFile(URL url)
+    {
+        String path = url.getPath();
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        if (name.length() == 0)
+        {
+            name = Integer.toHexString(url.toString().hashCode());
+        }
+        return new File(dir, name);
+    }
+
+    /**
+     * Returns the download of a URL, scheduling it if required.
+     *
+     * @param url the URL
+     * @return the download
+     */
+    private Future<File> getDownload(final URL url)
+    {
+        synchronized (downloads)
+        {
+            Future<File> result = downloads.get(url.toString());
+            if (result == null)
+            {
+                result = executor.submit(new Callable<File>()
+                {
+                    public File call() throws Exception
+                    {
+                        return download(url);
+                    }
+                });
+                downloads.put(url.toString(), result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Downloads a URL, retrying on failure.
+     *
+     * @param url the URL
+     * @return the downloaded file
+     * @throws FileNotFoundException  if the URL doesn't exist
+     * @throws InterruptedIOException if the download is interrupted
+     * @throws IOException            if the file cannot be downloaded
+     */
+    private File download(URL url) throws IOException
+    {
+        File file = getFile(url);
+        if (file.exists())
+        {
+            logger.fine("Using cached download of " + url + ": " + file);
+            return file;
+        }
+        createDirectory();
+        long delay = retryDelay;
+        for (int attempt = 0; ; ++attempt)
+        {
+            try
+            {
+                download(url, file);
+                return file;
+            }
+            catch (InterruptedIOException exception)
+            {
+                throw exception;
+            }
+            catch (FileNotFoundException exception)
+            {
+                // not worth retrying
+                throw exception;
+            }
+            catch (IOException exception)
+            {
+                if (attempt >= retries)
+                {
+                    throw exception;
+                }
+                logger.warning("Failed to download " + url + ", retrying: " + exception.getMessage());
+            }
+            try
+            {
+                Thread.sleep(delay);
+            }
+            catch (InterruptedException exception)
+            {
+                throw new InterruptedIOException("Download of " + url + " interrupted");
+            }
+            delay *= 2;
+        }
+    }
+
+    /**
+     * Downloads a URL, resuming any partial download.
+     *
+     * @param url  the URL
+     * @param file the file to download to
+     * @throws FileNotFoundException  if the URL doesn't exist
+     * @throws InterruptedIOException if the download is interrupted
+     * @throws IOException            if the file cannot be downloaded
+     */
+    private void download(URL url, File file) throws IOException
+    {
+        File part = new File(file.getPath() + PART);
+        long offset = part.length();
+        URLConnection connection = connect(url, offset);
+        try
+        {
+            download(url, connection, part, offset);
+        }
+        finally
+        {
+            connections.remove(connection);
+        }
+        if (!part.renameTo(file))
+        {
+            throw new IOException("Failed to rename " + part + " to " + file);
+        }
+        logger.fine("Downloaded " + url + " to " + file);
+    }
+
+    /**
+     * Downloads a URL from an open connection to a partially downloaded file.
+     *
+     * @param url        the URL
+     * @param connection the connection
+     * @param part       the partially downloaded file
+     * @param offset     the offset that the connection was opened at
+     * @throws InterruptedIOException if the download is interrupted
+     * @throws IOException            if the file cannot be downloaded
+     */
+    private void download(URL url, URLConnection connection, File part, long offset) throws IOException
+    {
+        if (getStatus(connection) == RANGE_NOT_SATISFIABLE)
+        {
+            // the partial file is no longer valid
+            FileUtils.delete(part);
+            throw new IOException("Cannot resume download of " + url);
+        }
+        boolean append = offset > 0 && getStatus(connection) == HttpURLConnection.HTTP_PARTIAL;
+        if (!append && offset > 0)
+        {
+            logger.fine("Server does not support resuming downloads, restarting download of " + url);
+        }
+
+        long expected = connection.getContentLength();
+        long received = 0;
+        InputStream in = connection.getInputStream();
+        OutputStream out = null;
+        try
+        {
+            out = new FileOutputStream(part, append);
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+            {
+                if (Thread.currentThread().isInterrupted())
+                {
+                    throw new InterruptedIOException("Download of " + url + " interrupted");
+                }
+                out.write(buffer, 0, read);
+                received += read;
+            }
+        }
+        finally
+        {
+            FileUtils.close(out);
+            FileUtils.close(in);
+        }
+        if (expected != -1 && received != expected)
+        {
+            throw new IOException("Incomplete download of " + url + ": expected " + expected + " bytes but received "
+                                          + received);
+        }
+    }
+
+    /**
+     * Creates the cache directory, if it doesn't exist.
+     *
+     * @throws IOException if the directory cannot be created
+     */
+    private void createDirectory() throws IOException
+    {
+        if (!dir.exists() && !dir.mkdirs() && !dir.exists())
+        {
+            throw new IOException("Failed to create directory: " + dir);
+        }
+    }
+
+    /**
+     * Opens a connection to a URL.
+     * <p/>
+     * The connection is registered so that it can be disconnected on {@link #shutdown}; the caller must remove it
+     * from {@link #connections} once done.
+     *
+     * @param url    the URL
+     * @param offset the offset to start reading from. If non-zero, an HTTP <em>Range</em> request is made
+     * @return the connection
+     * @throws FileNotFoundException if the URL doesn't exist
+     * @throws IOException           if the server returns an unexpected status, or for any other I/O error
+     */
+    private URLConnection connect(URL url, long offset) throws IOException
+    {
+        URLConnection connection = url.openConnection();
+        connection.setConnectTimeout(TIMEOUT);
+        connection.setReadTimeout(TIMEOUT);
+        if (offset > 0)
+        {
+            connection.setRequestProperty("Range", "bytes=" + offset + "-");
+        }
+        connections.add(connection);
+        try
+        {
+            int status = getStatus(connection);
+            if (status == HttpURLConnection.HTTP_NOT_FOUND || status == HttpURLConnection.HTTP_GONE)
+            {
+                throw new FileNotFoundException("Failed to download " + url + ": HTTP " + status);
+            }
+            else if (status != -1 && status != HttpURLConnection.HTTP_OK && status != HttpURLConnection.HTTP_PARTIAL
+                    && !(status == RANGE_NOT_SATISFIABLE && offset > 0))
+            {
+                throw new IOException("Failed to download " + url + ": HTTP " + status);
+            }
+        }
+        catch (IOException exception)
+        {
+            connections.remove(connection);
+            throw exception;
+        }
+        return connection;
+    }
+
+    /**
+     * Returns the HTTP status of a connection.
+     *
+     * @param connection the connection
+     * @return the HTTP status, or {@code -1} if it is not an HTTP connection
+     * @throws IOException for any I/O error
+     */
+    private int getStatus(URLConnection connection) throws IOException
+    {
+        return (connection instanceof HttpURLConnection) ? ((HttpURLConnection) connection).getResponseCode() : -1;
+    }
+
+    /**
+     * Streams a URL to a {@link RingBuffer}, and to the cache directory.
+     * <p/>
+     * If the connection fails, the download is resumed from the last byte received using an HTTP <em>Range</em>
+     * request. If the server doesn't support this, or the retries are exhausted, the buffer is failed, and the
+     * partially written file is downloaded to completion instead.
+     */
+    private class StreamTask implements Callable<File>
+    {
+
+        /**
+         * The URL to stream.
+         */
+        private final URL url;
+
+        /**
+         * The file to download to.
+         */
+        private final File file;
+
+        /**
+         * The buffer to write to.
+         */
+        private final RingBuffer buffer;
+
+        /**
+         * The partially downloaded file stream.
+         */
+        private OutputStream out;
+
+        /**
+         * The no. of bytes received.
+         */
+        private long position;
+
+        /**
+         * Constructs a <tt>StreamTask</tt>.
+         *
+         * @param url    the URL to stream
+         * @param file   the file to download to
+         * @param buffer the buffer to write to
+         */
+        public StreamTask(URL url, File file, RingBuffer buffer)
+        {
+            this.url = url;
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        /**
+         * Streams the URL.
+         *
+         * @return the downloaded file
+         * @throws FileNotFoundException  if the URL doesn't exist
+         * @throws InterruptedIOException if the download is interrupted
+         * @throws IOException            if the file cannot be downloaded
+         */
+        @Override
+        public File call() throws IOException
+        {
+            File part = new File(file.getPath() + PART);
+            try
+            {
+                createDirectory();
+                // the URL is streamed from the start, so any existing partial download is replaced
+                out = new FileOutputStream(part);
+                stream();
+                out.close();
+            }
+            catch (IOException exception)
+            {
+                FileUtils.close(out);
+                buffer.fail(exception);
+                if (exception instanceof InterruptedIOException || exception instanceof FileNotFoundException)
+                {
+                    throw exception;
+                }
+                // the stream reader waits on this download
+                logger.warning("Failed to stream " + url + ", downloading instead: " + exception.getMessage());
+                return download(url);
+            }
+            finally
+            {
+                buffers.remove(buffer);
+            }
+            buffer.finish();
+            if (!part.renameTo(file))
+            {
+                throw new IOException("Failed to rename " + part + " to " + file);
+            }
+            logger.fine("Downloaded " + url + " to " + file);
+            return file;
+        }
+
+        /**
+         * Streams the URL, retrying on failure.
+         *
+         * @throws IOException for any I/O error
+         */
+        private void stream() throws IOException
+        {
+            long delay = retryDelay;
+            for (int attempt = 0; ; ++attempt)
+            {
+                try
+                {
+                    transfer();
+                    return;
+                }
+                catch (InterruptedIOException exception)
+                {
+                    throw exception;
+                }
+                catch (FileNotFoundException exception)
+                {
+                    throw exception;
+                }
+                catch (ResumeException exception)
+                {
+                    throw exception;
+                }
+                catch (IOException exception)
+                {
+                    if (attempt >= retries)
+                    {
+                        throw exception;
+                    }
+                    logger.warning("Failed to stream " + url + ", retrying: " + exception.getMessage());
+                }
+                try
+                {
+                    Thread.sleep(delay);
+                }
+                catch (InterruptedException exception)
+                {
+                    throw new InterruptedIOException("Download of " + url + " interrupted");
+                }
+                delay *= 2;
+            }
+        }
+
+        /**
+         * Transfers the remaining bytes of the URL to the buffer.
+         *
+         * @throws ResumeException if the server doesn't support resuming the transfer
+         * @throws IOException     for any I/O error
+         */
+        private void transfer() throws IOException
+        {
+            URLConnection connection = connect(url, position);
+            try
+            {
+                if (position > 0 && getStatus(connection) != HttpURLConnection.HTTP_PARTIAL)
+                {
+                    throw new ResumeException("Cannot resume download of " + url);
+                }
+                long expected = connection.getContentLength();
+                long received = 0;
+                InputStream in = connection.getInputStream();
+                try
+                {
+                    byte[] bytes = new byte[64 * 1024];
+                    int read;
+                    while ((read = in.read(bytes)) != -1)
+                    {
+                        if (Thread.currentThread().isInterrupted())
+                        {
+                            throw new InterruptedIOException("Download of " + url + " interrupted");
+                        }
+                        out.write(bytes, 0, read);
+                        write(bytes, read);
+                        position += read;
+                        received += read;
+                    }
+                }
+                finally
+                {
+                    FileUtils.close(in);
+                }
+                if (expected != -1 && received != expected)
+                {
+                    throw new IOException("Incomplete download of " + url + ": expected " + expected
+                                                  + " bytes but received " + received);
+                }
+            }
+            finally
+            {
+                connections.remove(connection);
+            }
+        }
+
+        /**
+         * Writes bytes to the buffer, unless it has been closed by the reader.
+         *
+         * @param bytes  the bytes to write
+         * @param length the no. of bytes to write
+         * @throws InterruptedIOException if the thread is interrupted
+         */
+        private void write(byte[] bytes, int length) throws InterruptedIOException
+        {
+            if (!buffer.isClosed())
+            {
+                try
+                {
+                    buffer.write(bytes, 0, length);
+                }
+                catch (InterruptedIOException exception)
+                {
+                    if (Thread.currentThread().isInterrupted() || !buffer.isClosed())
+                    {
+                        throw exception;
+                    }
+                    // closed by the reader, so continue writing to the cache directory only
+                }
+            }
+        }
+    }
+
+    /**
+     * Thrown when a download cannot be resumed.
+     */
+    private static class ResumeException extends IOException
+    {
+
+        /**
+         * Constructs a <tt>ResumeException</tt>.
+         *
+         * @param message the message
+         */
+        public ResumeException(String message)
+        {
+            super(message);
+        }
+    }
+
+    /**
+     * Reads a URL from a {@link RingBuffer} as it is streamed, falling back to the downloaded file if streaming
+     * fails.
+     */
+    private class StreamingInputStream extends InputStream
+    {
+
+        /**
+         * The URL.
+         */
+        private final URL url;
+
+        /**
+         * The buffer being streamed to.
+         */
+        private final RingBuffer buffer;
+
+        /**
+         * The downloaded file stream, if streaming failed.
+         */
+        private InputStream file;
+
+        /**
+         * The no. of bytes read.
+         */
+        private long position;
+
+        /**
+         * Constructs a <tt>StreamingInputStream</tt>.
+         *
+         * @param url    the URL
+         * @param buffer the buffer being streamed to
+         */
+        public StreamingInputStream(URL url, RingBuffer buffer)
+        {
+            this.url = url;
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            byte[] bytes = new byte[1];
+            int read = read(bytes, 0, 1);
+            return (read == -1) ? -1 : bytes[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException
+        {
+            int result;
+            if (file != null)
+            {
+                result = file.read(bytes, offset, length);
+            }
+            else
+            {
+                try
+                {
+                    result = buffer.read(bytes, offset, length);
+                }
+                catch (InterruptedIOException exception)
+                {
+                    throw exception;
+                }
+                catch (FileNotFoundException exception)
+                {
+                    throw exception;
+                }
+                catch (IOException exception)
+                {
+                    openFile();
+                    result = file.read(bytes, offset, length);
+                }
+            }
+            if (result > 0)
+            {
+                position += result;
+            }
+            return result;
+        }
+
+        @Override
+        public int available() throws IOException
+        {
+            return (file != null) ? file.available() : buffer.available();
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            // the streaming task continues writing to the cache directory
+            buffer.close();
+            FileUtils.close(file);
+        }
+
+        /**
+         * Waits for the URL to be downloaded to disk, and opens it at the current position.
+         *
+         * @throws IOException if the file cannot be downloaded or read
+         */
+        private void openFile() throws IOException
+        {
+            file = new FileInputStream(get(url));
+            long remaining = position;
+            while (remaining > 0)
+            {
+                long skipped = file.skip(remaining);
+                if (skipped <= 0)
+                {
+                    throw new IOException("Failed to skip to offset " + position + " of " + url);
+                }
+                remaining -= skipped;
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.installer.web;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+
+/**
+ * A bounded, blocking byte buffer used to pass data from a single producer thread to a single consumer thread.
+ * <p/>
+ * The producer blocks while the buffer is full, and the consumer blocks while it is empty. The producer signals
+ * the end of the data via {@link #finish()}, or an error via {@link #fail(IOException)}, which is rethrown to the
+ * consumer once any buffered data has been read. The consumer may {@link #close()} the buffer to stop the producer.
+ *
+ * @author Tim Anderson
+ */
+public class RingBuffer
+{
+
+    /**
+     * The buffer.
+     */
+    private final byte[] buffer;
+
+    /**
+     * The index of the next byte to read.
+     */
+    private int head;
+
+    /**
+     * The no. of bytes available to read.
+     */
+    private int count;
+
+    /**
+     * Determines if the producer has finished writing.
+     */
+    private boolean finished;
+
+    /**
+     * Determines if the consumer has closed the buffer.
+     */
+    private boolean closed;
+
+    /**
+     * The producer error, if any.
+     */
+    private IOException error;
+
+
+    /**
+     * Constructs a <tt>RingBuffer</tt>.
+     *
+     * @param size the buffer size, in bytes
+     */
+    public RingBuffer(int size)
+    {
+        buffer = new byte[size];
+    }
+
+    /**
+     * Writes bytes to the buffer, blocking until they have all been written.
+     *
+     * @param bytes  the bytes to write
+     * @param offset the start offset in the bytes
+     * @param length the no. of bytes to write
+     * @throws InterruptedIOException if the buffer has been closed by the consumer, or the thread is interrupted
+     */
+    public synchronized void write(byte[] bytes, int offset, int length) throws InterruptedIOException
+    {
+        while (length > 0)
+        {
+            while (count == buffer.length && !closed)
+            {
+                await();
+            }
+            if (closed)
+            {
+                throw new InterruptedIOException("Buffer closed");
+            }
+            int tail = (head + count) % buffer.length;
+            int n = Math.min(length, Math.min(buffer.length - count, buffer.length - tail));
+            System.arraycopy(bytes, offset, buffer, tail, n);
+            count += n;
+            offset += n;
+            length -= n;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Reads bytes from the buffer, blocking until at least one byte is available.
+     *
+     * @param bytes  the buffer to read into
+     * @param offset the start offset in the buffer
+     * @param length the maximum no. of bytes to read
+     * @return the no. of bytes read, or {@code -1} if the producer has finished and all bytes have been read
+     * @throws IOException            if the producer failed
+     * @throws InterruptedIOException if the buffer has been closed, or the thread is interrupted
+     */
+    public synchronized int read(byte[] bytes, int offset, int length) throws IOException
+    {
+        if (length == 0)
+        {
+            return 0;
+        }
+        while (count == 0 && !finished && error == null && !closed)
+        {
+            await();
+        }
+        if (closed)
+        {
+            throw new InterruptedIOException("Buffer closed");
+        }
+        if (count == 0)
+        {
+            if (error != null)
+            {
+                throw error;
+            }
+            return -1;
+        }
+        int n = Math.min(length, Math.min(count, buffer.length - head));
+        System.arraycopy(buffer, head, bytes, offset, n);
+        head = (head + n) % buffer.length;
+        count -= n;
+        notifyAll();
+        return n;
+    }
+
+    /**
+     * Returns the no. of bytes that can be read without blocking.
+     *
+     * @return the no. of bytes available
+     */
+    public synchronized int available()
+    {
+        return count;
+    }
+
+    /**
+     * Invoked by the producer to indicate that all data has been written.
+     */
+    public synchronized void finish()
+    {
+        finished = true;
+        notifyAll();
+    }
+
+    /**
+     * Invoked by the producer to indicate that it has failed.
+     *
+     * @param exception the cause of the failure
+     */
+    public synchronized void fail(IOException exception)
+    {
+        error = exception;
+        notifyAll();
+    }
+
+    /**
+     * Invoked by the consumer to discard the buffer and stop the producer.
+     */
+    public synchronized void close()
+    {
+        closed = true;
+        notifyAll();
+    }
+
+    /**
+     * Determines if the buffer has been closed by the consumer.
+     *
+     * @return <tt>true</tt> if the buffer has been closed
+     */
+    public synchronized boolean isClosed()
+    {
+        return closed;
+    }
+
+    /**
+     * Waits to be notified of a change in state.
+     *
+     * @throws InterruptedIOException if the thread is interrupted
+     */
+    private void await() throws InterruptedIOException
+    {
+        try
+        {
+            wait();
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for buffer");
+        }
+    }
+}
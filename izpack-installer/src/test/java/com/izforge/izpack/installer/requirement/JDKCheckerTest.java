@@ -30,6 +30,7 @@ import org.junit.Test;
 import com.izforge.izpack.api.data.AutomatedInstallData;
 import com.izforge.izpack.api.handler.Prompt;
 import com.izforge.izpack.core.handler.ConsolePrompt;
+import com.izforge.izpack.core.os.JavaDiscovery;
 import com.izforge.izpack.test.util.TestConsole;
 import com.izforge.izpack.util.FileExecutor;
 
@@ -85,7 +86,8 @@ public class JDKCheckerTest extends AbstractRequirementCheckerTest
     {
         String[] output = new String[2];
         int code = new FileExecutor().executeCommand(new String[]{"javac", "-help"}, output, null);
-        boolean exists = (code == 0); // exists if javac is in the path
+        // exists if javac is in the path, or a JDK is found in one of the other locations searched
+        boolean exists = (code == 0) || JavaDiscovery.getInstance().getJDK(null, null) != null;
         installData.getInfo().setJdkRequired(true);
 
         TestConsole console = new TestConsole();
@@ -24,10 +24,16 @@ package com.izforge.izpack.installer.requirement;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.mockito.internal.stubbing.answers.Returns;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
+import com.izforge.izpack.api.data.InstallerRequirement;
 import com.izforge.izpack.api.data.Variables;
 import com.izforge.izpack.api.installer.RequirementChecker;
 
@@ -79,6 +85,116 @@ public class RequirementsCheckerTest
         }
     }
 
+    /**
+     * Tests the {@link RequirementsChecker#check()} method when checks are run concurrently.
+     */
+    @Test
+    public void testCheckConcurrently()
+    {
+        Variables variables = createVariables(RequirementsChecker.DEFAULT_TIMEOUT);
+        JDKChecker jdkChecker = mock(JDKChecker.class, true);
+        InstallerRequirementChecker requirementChecker = Mockito.mock(InstallerRequirementChecker.class);
+        Mockito.when(requirementChecker.check((InstallerRequirement) null)).thenReturn(true);
+
+        RequirementsChecker checker = new RequirementsChecker(variables, mock(LangPackChecker.class, true),
+                                                              mock(JavaVersionChecker.class, true), jdkChecker,
+                                                              mock(LockFileChecker.class, true),
+                                                              mock(ExpiredChecker.class, true), requirementChecker);
+        assertTrue(checker.check());
+        Mockito.verify(jdkChecker).exists();
+        Mockito.verify(jdkChecker).check(true);
+        Mockito.verify(jdkChecker, Mockito.never()).check();
+        Mockito.verify(requirementChecker).getUnsatisfied();
+        Mockito.verify(requirementChecker, Mockito.never()).check();
+    }
+
+    /**
+     * Verifies that when a concurrent check times out, it is treated as having failed, and that subsequent checks
+     * are still processed in order.
+     */
+    @Test
+    public void testCheckConcurrentlyTimeout()
+    {
+        Variables variables = createVariables(100);
+        JDKChecker jdkChecker = mock(JDKChecker.class, true);
+        Mockito.doAnswer(new Answer<Boolean>()
+        {
+            public Boolean answer(InvocationOnMock invocation) throws Throwable
+            {
+                Thread.sleep(10000);
+                return true;
+            }
+        }).when(jdkChecker).exists();
+        LockFileChecker lockChecker = mock(LockFileChecker.class, true);
+        InstallerRequirementChecker requirementChecker = Mockito.mock(InstallerRequirementChecker.class);
+        Mockito.when(requirementChecker.check((InstallerRequirement) null)).thenReturn(true);
+
+        RequirementsChecker checker = new RequirementsChecker(variables, mock(LangPackChecker.class, true),
+                                                              mock(JavaVersionChecker.class, true), jdkChecker,
+                                                              lockChecker, mock(ExpiredChecker.class, true),
+                                                              requirementChecker);
+        assertTrue(checker.check());
+        Mockito.verify(jdkChecker).check(false);
+        Mockito.verify(lockChecker).check();
+        Mockito.verify(requirementChecker).check((InstallerRequirement) null);
+    }
+
+    /**
+     * Verifies that when the installation requirements can't be evaluated in time, the evaluation is cancelled and
+     * the check fails.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testCheckConcurrentlyRequirementsTimeout() throws Exception
+    {
+        Variables variables = createVariables(100);
+        final CountDownLatch cancelled = new CountDownLatch(1);
+        InstallerRequirementChecker requirementChecker = Mockito.mock(InstallerRequirementChecker.class);
+        Mockito.doAnswer(new Answer<InstallerRequirement>()
+        {
+            public InstallerRequirement answer(InvocationOnMock invocation) throws Throwable
+            {
+                try
+                {
+                    Thread.sleep(10000);
+                }
+                catch (InterruptedException exception)
+                {
+                    cancelled.countDown();
+                }
+                return null;
+            }
+        }).when(requirementChecker).getUnsatisfied();
+        Mockito.when(requirementChecker.timedOut(100)).thenReturn(false);
+
+        RequirementsChecker checker = new RequirementsChecker(variables, mock(LangPackChecker.class, true),
+                                                              mock(JavaVersionChecker.class, true),
+                                                              mock(JDKChecker.class, true),
+                                                              mock(LockFileChecker.class, true),
+                                                              mock(ExpiredChecker.class, true),
+                                                              requirementChecker);
+        assertFalse(checker.check());
+        Mockito.verify(requirementChecker).timedOut(100);
+        Mockito.verify(requirementChecker, Mockito.never()).check(Mockito.any(InstallerRequirement.class));
+        assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Creates variables that enable concurrent checks.
+     *
+     * @param timeout the timeout for each check, in milliseconds
+     * @return the variables
+     */
+    private Variables createVariables(long timeout)
+    {
+        Variables variables = Mockito.mock(Variables.class);
+        Mockito.when(variables.getBoolean(RequirementsChecker.PARALLEL, false)).thenReturn(true);
+        Mockito.when(variables.getLong(RequirementsChecker.TIMEOUT, RequirementsChecker.DEFAULT_TIMEOUT))
+                .thenReturn(timeout);
+        return variables;
+    }
+
     /**
      * Mocks a RequirementChecker that returns the specified value.
      *
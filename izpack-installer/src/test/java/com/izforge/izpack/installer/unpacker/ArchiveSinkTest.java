@@ -0,0 +1,288 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.installer.unpacker;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.apache.tools.tar.TarEntry;
+import org.apache.tools.tar.TarInputStream;
+import org.junit.Test;
+
+
+/**
+ * Tests the {@link TarSink} and {@link ZipSink} classes.
+ *
+ * @author Tim Anderson
+ */
+public class ArchiveSinkTest
+{
+
+    /**
+     * The installation directory.
+     */
+    private final File installPath = new File(File.separator + "opt" + File.separator + "app");
+
+    /**
+     * The last modified timestamp of written files. Tar timestamps have a resolution of 1 second.
+     */
+    private static final long TIMESTAMP = 1234567890000L;
+
+
+    /**
+     * Verifies that files and their parent directories are written to a tar archive, in order, with their modes.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testTar() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TarSink sink = new TarSink(bytes);
+        byte[] run = "#!/bin/sh\n".getBytes("UTF-8");
+        byte[] data = createData(1500);
+        write(sink, new File(installPath, "bin/run.sh"), run, run.length, 0755);
+        write(sink, new File(installPath, "lib/data.bin"), data, -1, 0600); // length unknown, so spooled
+        sink.createDirectory(new File(installPath, "logs"));
+        assertTrue(sink.setLastModified(new File(installPath, "bin/run.sh"), TIMESTAMP));
+        sink.close();
+
+        TarInputStream in = new TarInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        checkDirectory(in, "opt/");
+        checkDirectory(in, "opt/app/");
+        checkDirectory(in, "opt/app/bin/");
+        checkFile(in, "opt/app/bin/run.sh", run, 0755);
+        checkDirectory(in, "opt/app/lib/");
+        checkFile(in, "opt/app/lib/data.bin", data, 0600);
+        checkDirectory(in, "opt/app/logs/");
+        assertNull(in.getNextEntry());
+        in.close();
+    }
+
+    /**
+     * Verifies that names longer than 100 characters are written using the ustar prefix field where possible,
+     * and GNU long name entries otherwise.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testTarLongNames() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TarSink sink = new TarSink(bytes);
+        String dir = repeat('d', 90);
+        String name = repeat('f', 90);
+        String longName = repeat('x', 120);
+        byte[] content = createData(10);
+        write(sink, new File(installPath, dir + "/" + name), content, content.length, -1);
+        write(sink, new File(installPath, longName), content, content.length, -1);
+        sink.close();
+
+        TarInputStream in = new TarInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        checkDirectory(in, "opt/");
+        checkDirectory(in, "opt/app/");
+        checkDirectory(in, "opt/app/" + dir + "/");
+        checkFile(in, "opt/app/" + dir + "/" + name, content, 0644);
+        checkFile(in, "opt/app/" + longName, content, 0644);
+        assertNull(in.getNextEntry());
+        in.close();
+    }
+
+    /**
+     * Verifies that an exception is thrown if fewer bytes are written to a tar entry than were declared.
+     *
+     * @throws IOException expected
+     */
+    @Test(expected = IOException.class)
+    public void testTarLengthMismatch() throws IOException
+    {
+        TarSink sink = new TarSink(new ByteArrayOutputStream());
+        write(sink, new File(installPath, "file.txt"), createData(5), 10, -1);
+    }
+
+    /**
+     * Verifies that files and their parent directories are written to a zip archive.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testZip() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ZipSink sink = new ZipSink(bytes);
+        byte[] data = createData(5000);
+        write(sink, new File(installPath, "lib/data.bin"), data, data.length, -1);
+        sink.close();
+
+        ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals("opt/", in.getNextEntry().getName());
+        assertEquals("opt/app/", in.getNextEntry().getName());
+        assertEquals("opt/app/lib/", in.getNextEntry().getName());
+        ZipEntry entry = in.getNextEntry();
+        assertEquals("opt/app/lib/data.bin", entry.getName());
+        assertArrayEquals(data, read(in));
+        assertNull(in.getNextEntry());
+        in.close();
+    }
+
+    /**
+     * Verifies that {@link ArchiveSink#exists(File)} only reflects the entries written to the archive, and that
+     * duplicate entries are rejected.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testExists() throws IOException
+    {
+        File file = new File(installPath, "file.txt");
+        ZipSink sink = new ZipSink(new ByteArrayOutputStream());
+        assertFalse(sink.exists(installPath));
+        assertFalse(sink.exists(file));
+        write(sink, file, createData(1), 1, -1);
+        assertTrue(sink.exists(installPath));
+        assertTrue(sink.exists(file));
+        try
+        {
+            sink.createFile(file, 1, TIMESTAMP, -1);
+            throw new AssertionError("Expected duplicate entry to fail");
+        }
+        catch (IOException expected)
+        {
+            // expected
+        }
+        sink.close();
+    }
+
+    /**
+     * Writes a file to a sink.
+     *
+     * @param sink    the sink
+     * @param file    the file
+     * @param content the file content
+     * @param length  the declared length
+     * @param mode    the file mode, or {@code -1} to use the default
+     * @throws IOException for any I/O error
+     */
+    private void write(InstallationSink sink, File file, byte[] content, long length, int mode) throws IOException
+    {
+        OutputStream out = sink.createFile(file, length, TIMESTAMP, mode);
+        out.write(content);
+        out.close();
+    }
+
+    /**
+     * Verifies the next tar entry is a directory.
+     *
+     * @param in   the tar stream
+     * @param name the expected directory name
+     * @throws IOException for any I/O error
+     */
+    private void checkDirectory(TarInputStream in, String name) throws IOException
+    {
+        TarEntry entry = in.getNextEntry();
+        assertEquals(name, entry.getName());
+        assertTrue(entry.isDirectory());
+    }
+
+    /**
+     * Verifies the next tar entry is a file.
+     *
+     * @param in      the tar stream
+     * @param name    the expected file name
+     * @param content the expected content
+     * @param mode    the expected mode
+     * @throws IOException for any I/O error
+     */
+    private void checkFile(TarInputStream in, String name, byte[] content, int mode) throws IOException
+    {
+        TarEntry entry = in.getNextEntry();
+        assertEquals(name, entry.getName());
+        assertFalse(entry.isDirectory());
+        assertEquals(content.length, entry.getSize());
+        assertEquals(TIMESTAMP, entry.getModTime().getTime());
+        assertEquals(mode, entry.getMode());
+        assertArrayEquals(content, read(in));
+    }
+
+    /**
+     * Reads the remainder of a stream.
+     *
+     * @param in the stream
+     * @return the bytes read
+     * @throws IOException for any I/O error
+     */
+    private byte[] read(InputStream in) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1)
+        {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Creates test data.
+     *
+     * @param length the data length
+     * @return the data
+     */
+    private byte[] createData(int length)
+    {
+        byte[] result = new byte[length];
+        for (int i = 0; i < length; ++i)
+        {
+            result[i] = (byte) i;
+        }
+        return result;
+    }
+
+    /**
+     * Creates a string by repeating a character.
+     *
+     * @param ch    the character
+     * @param count the no. of times to repeat it
+     * @return the string
+     */
+    private String repeat(char ch, int count)
+    {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < count; ++i)
+        {
+            result.append(ch);
+        }
+        return result.toString();
+    }
+}
@@ -22,6 +22,12 @@
 package com.izforge.izpack.installer.unpacker;
 
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -29,7 +35,13 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.zip.CRC32;
+
+import org.junit.Test;
 
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.util.FileUtil;
 import com.izforge.izpack.util.IoHelper;
 import com.izforge.izpack.util.os.FileQueue;
 
@@ -42,6 +54,68 @@ import com.izforge.izpack.util.os.FileQueue;
 public class DefaultFileUnpackerTest extends AbstractFileUnpackerTest
 {
 
+    /**
+     * Verifies that files are checked against their checksum as they are unpacked.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testChecksum() throws Exception
+    {
+        File baseDir = temporaryFolder.getRoot();
+        File source = createSourceFile(baseDir);
+        File target = getTargetFile(baseDir);
+        PackFile file = createPackFile(baseDir, source, target, Blockable.BLOCKABLE_NONE);
+
+        CRC32 checksum = new CRC32();
+        FileUtil.getDigest(source, PackFile.DIGEST_ALGORITHM, checksum);
+        file.setChecksum(checksum.getValue());
+        createUnpacker(baseDir, null).unpack(file, createPackStream(source), target);
+        checkTarget(source, target);
+
+        // now corrupt the checksum
+        assertTrue(target.delete());
+        file.setChecksum(checksum.getValue() ^ 1);
+        try
+        {
+            createUnpacker(baseDir, null).unpack(file, createPackStream(source), target);
+            fail("Expected unpack to fail with a checksum mismatch");
+        }
+        catch (IOException expected)
+        {
+            assertEquals("Checksum mismatch for " + target + " (installer corrupted?)", expected.getMessage());
+        }
+    }
+
+    /**
+     * Verifies that files are written to the {@link InstallationSink} rather than directly to the file system, along
+     * with their mode.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testSink() throws Exception
+    {
+        File baseDir = temporaryFolder.getRoot();
+        File source = createSourceFile(baseDir);
+        File target = getTargetFile(baseDir);
+        PackFile file = createPackFile(baseDir, source, target, Blockable.BLOCKABLE_NONE);
+
+        file.setMode(0755);
+
+        MemorySink sink = new MemorySink();
+        sink.createDirectory(baseDir);
+        FileUnpacker unpacker = createUnpacker(baseDir, null);
+        unpacker.setSink(sink);
+        unpacker.unpack(file, createPackStream(source), target);
+
+        assertFalse(target.exists());
+        assertTrue(sink.exists(target));
+        assertArrayEquals(getContent(source), sink.getContent(target));
+        assertEquals(source.lastModified(), sink.getLastModified(target));
+        assertEquals(0755, sink.getMode(target));
+    }
+
     /**
      * Creates a pack file stream.
      *
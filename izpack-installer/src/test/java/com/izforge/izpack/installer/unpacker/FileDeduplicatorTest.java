@@ -0,0 +1,241 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.installer.unpacker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+import com.izforge.izpack.util.FileUtil;
+import com.izforge.izpack.util.IoHelper;
+
+
+/**
+ * Tests the {@link FileDeduplicator} class.
+ *
+ * @author Tim Anderson
+ */
+public class FileDeduplicatorTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The source file.
+     */
+    private File source;
+
+    /**
+     * The pack file.
+     */
+    private PackFile packFile;
+
+    /**
+     * The deduplicator.
+     */
+    private FileDeduplicator deduplicator;
+
+    /**
+     * Sets up the test case.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Before
+    public void setUp() throws IOException
+    {
+        source = temporaryFolder.newFile("license.txt");
+        write(source, "licensed to you");
+        packFile = new PackFile(temporaryFolder.getRoot(), source, "license.txt", null, OverrideType.OVERRIDE_TRUE,
+                                null, Blockable.BLOCKABLE_NONE);
+        packFile.setDigest(FileUtil.getDigest(source, PackFile.DIGEST_ALGORITHM));
+        deduplicator = new FileDeduplicator();
+    }
+
+    /**
+     * Verifies that a file with the same content as an installed file is linked to it.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testLink() throws IOException
+    {
+        if (!FileDeduplicator.isSupported())
+        {
+            return;
+        }
+        File first = install("a");
+        File second = new File(temporaryFolder.newFolder("b"), "license.txt");
+
+        assertFalse(deduplicator.link(packFile, second));  // nothing to link to yet
+        deduplicator.add(packFile, first);
+        assertTrue(deduplicator.link(packFile, second));
+        assertEquals(1, deduplicator.getLinks());
+        assertEquals(source.length(), deduplicator.getSaved());
+        assertEquals("licensed to you", read(second));
+
+        // changes to one link are visible in the other
+        append(first, "!");
+        assertEquals("licensed to you!", read(second));
+    }
+
+    /**
+     * Verifies that {@link FileDeduplicator#unlink(File)} replaces a linked file with a copy, and that it is no
+     * longer linked to.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testUnlink() throws IOException
+    {
+        if (!FileDeduplicator.isSupported())
+        {
+            return;
+        }
+        File first = install("a");
+        File second = new File(temporaryFolder.newFolder("b"), "license.txt");
+        deduplicator.add(packFile, first);
+        assertTrue(deduplicator.link(packFile, second));
+
+        deduplicator.unlink(first);
+        append(first, "!");
+        assertEquals("licensed to you!", read(first));
+        assertEquals("licensed to you", read(second));
+
+        File third = new File(temporaryFolder.newFolder("c"), "license.txt");
+        assertFalse(deduplicator.link(packFile, third));
+    }
+
+    /**
+     * Verifies that {@link FileDeduplicator#prepare(File)} deletes a linked file, so that overwriting it doesn't
+     * affect the file it is linked to.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testPrepare() throws IOException
+    {
+        if (!FileDeduplicator.isSupported())
+        {
+            return;
+        }
+        File first = install("a");
+        File second = new File(temporaryFolder.newFolder("b"), "license.txt");
+        deduplicator.add(packFile, first);
+        assertTrue(deduplicator.link(packFile, second));
+
+        deduplicator.prepare(second);
+        assertFalse(second.exists());
+        write(second, "something else");
+        assertEquals("licensed to you", read(first));
+    }
+
+    /**
+     * Verifies that parsable files aren't linked.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testParsableNotLinked() throws IOException
+    {
+        packFile.setParsable(null, null);
+        assertTrue(deduplicator.isLinkable(packFile));
+        packFile.setParsable(SubstitutionType.TYPE_PLAIN, null);
+        assertFalse(deduplicator.isLinkable(packFile));
+    }
+
+    /**
+     * Installs the source file to a directory.
+     *
+     * @param dir the directory name
+     * @return the installed file
+     * @throws IOException for any I/O error
+     */
+    private File install(String dir) throws IOException
+    {
+        File result = new File(temporaryFolder.newFolder(dir), source.getName());
+        IoHelper.copyFile(source, result);
+        return result;
+    }
+
+    /**
+     * Writes a string to a file.
+     *
+     * @param file  the file
+     * @param value the value to write
+     * @throws IOException for any I/O error
+     */
+    private void write(File file, String value) throws IOException
+    {
+        OutputStream out = new FileOutputStream(file);
+        out.write(value.getBytes("UTF-8"));
+        out.close();
+    }
+
+    /**
+     * Appends a string to a file.
+     *
+     * @param file  the file
+     * @param value the value to append
+     * @throws IOException for any I/O error
+     */
+    private void append(File file, String value) throws IOException
+    {
+        OutputStream out = new FileOutputStream(file, true);
+        out.write(value.getBytes("UTF-8"));
+        out.close();
+    }
+
+    /**
+     * Reads a file.
+     *
+     * @param file the file
+     * @return the file content
+     * @throws IOException for any I/O error
+     */
+    private String read(File file) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FileInputStream in = new FileInputStream(file);
+        IoHelper.copyStream(in, out);
+        in.close();
+        return out.toString("UTF-8");
+    }
+}
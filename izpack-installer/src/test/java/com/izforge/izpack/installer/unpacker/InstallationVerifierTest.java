@@ -0,0 +1,245 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.util.FileUtil;
+
+
+/**
+ * Tests the {@link InstallationVerifier} class.
+ *
+ * @author Tim Anderson
+ */
+public class InstallationVerifierTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The directory containing the pack sources.
+     */
+    private File sourceDir;
+
+    /**
+     * The installation directory.
+     */
+    private File installDir;
+
+    /**
+     * The verifier.
+     */
+    private InstallationVerifier verifier;
+
+    /**
+     * The executor.
+     */
+    private ExecutorService executor;
+
+    /**
+     * Sets up the test case.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Before
+    public void setUp() throws IOException
+    {
+        sourceDir = temporaryFolder.newFolder("source");
+        installDir = temporaryFolder.newFolder("install");
+        verifier = new InstallationVerifier(installDir, new Cancellable()
+        {
+            @Override
+            public boolean isCancelled()
+            {
+                return false;
+            }
+        });
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    /**
+     * Cleans up after the test case.
+     */
+    @After
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Verifies that an installation matching the packs is valid.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testValid() throws IOException
+    {
+        addFile("a.txt", "alpha", "alpha");
+        addFile("lib/b.txt", "beta", "beta");
+        verifier.addDirectory(new File(installDir, "lib"));
+
+        verifier.verify(executor, 2);
+        assertTrue(verifier.isValid());
+        assertTrue(verifier.getExtra().isEmpty());
+    }
+
+    /**
+     * Verifies that missing, modified and extra files are reported.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testInvalid() throws IOException
+    {
+        File missing = addFile("a.txt", "alpha", null);
+        File modified = addFile("lib/b.txt", "beta", "betb");
+        File truncated = addFile("lib/c.txt", "gamma", "gam");
+        File extra = new File(installDir, "lib/d.txt");
+        write(extra, "delta");
+
+        verifier.verify(executor, 2);
+        assertFalse(verifier.isValid());
+        assertEquals(Arrays.asList(missing), verifier.getMissing());
+        assertEquals(Arrays.asList(modified, truncated), verifier.getModified());
+        assertEquals(Arrays.asList(extra), verifier.getExtra());
+
+        StringWriter report = new StringWriter();
+        verifier.write(new PrintWriter(report));
+        String separator = System.getProperty("line.separator");
+        assertEquals("MISSING " + missing.getPath() + separator
+                             + "MODIFIED " + modified.getPath() + separator
+                             + "MODIFIED " + truncated.getPath() + separator
+                             + "EXTRA " + extra.getPath() + separator, report.toString());
+    }
+
+    /**
+     * Verifies that files whose content changes during installation are only checked for existence, and that
+     * excluded files and directories outside the installation directory aren't reported as extra.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testExistenceOnlyAndExclusions() throws IOException
+    {
+        File parsable = addFile("a.txt", "${INSTALL_PATH}", "/opt/app");
+        verifier.setExistenceOnly(parsable);
+        File info = new File(installDir, ".installationinformation");
+        write(info, "info");
+        verifier.exclude(info);
+
+        File shared = temporaryFolder.newFolder("shared");
+        write(new File(shared, "other.txt"), "other");
+        PackFile file = createPackFile("c.txt", "charlie");
+        File target = new File(shared, "c.txt");
+        write(target, "charlie");
+        verifier.addFile(file, target, false);
+
+        verifier.verify(executor, 2);
+        assertTrue(verifier.isValid());
+        assertEquals(Collections.<File>emptyList(), verifier.getExtra());
+    }
+
+    /**
+     * Adds a file to the verifier.
+     *
+     * @param path      the path of the file, relative to the installation directory
+     * @param content   the file content in the pack
+     * @param installed the installed file content, or {@code null} if the file is not installed
+     * @return the installed file
+     * @throws IOException for any I/O error
+     */
+    private File addFile(String path, String content, String installed) throws IOException
+    {
+        PackFile file = createPackFile(path, content);
+        File target = new File(installDir, path);
+        if (installed != null)
+        {
+            write(target, installed);
+        }
+        verifier.addFile(file, target, false);
+        return target;
+    }
+
+    /**
+     * Creates a pack file.
+     *
+     * @param path    the target path, relative to the installation directory
+     * @param content the file content
+     * @return a new pack file
+     * @throws IOException for any I/O error
+     */
+    private PackFile createPackFile(String path, String content) throws IOException
+    {
+        File source = new File(sourceDir, path);
+        write(source, content);
+        PackFile result = new PackFile(sourceDir, source, "$INSTALL_PATH/" + path, null,
+                                       OverrideType.OVERRIDE_TRUE, null, Blockable.BLOCKABLE_NONE);
+        result.setDigest(FileUtil.getDigest(source, PackFile.DIGEST_ALGORITHM));
+        return result;
+    }
+
+    /**
+     * Writes content to a file, creating its parent directories if required.
+     *
+     * @param file    the file
+     * @param content the content
+     * @throws IOException for any I/O error
+     */
+    private void write(File file, String content) throws IOException
+    {
+        file.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(file);
+        try
+        {
+            out.write(content.getBytes("UTF-8"));
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.installer.unpacker;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.izforge.izpack.api.exception.InstallerException;
+
+
+/**
+ * Tests the {@link InstallerVerifier} class.
+ *
+ * @author Tim Anderson
+ */
+public class InstallerVerifierTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The executor.
+     */
+    private ExecutorService executor;
+
+    /**
+     * Never cancels.
+     */
+    private static final Cancellable NOT_CANCELLED = new Cancellable()
+    {
+        @Override
+        public boolean isCancelled()
+        {
+            return false;
+        }
+    };
+
+    /**
+     * Sets up the test case.
+     */
+    @Before
+    public void setUp()
+    {
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    /**
+     * Cleans up after the test case.
+     */
+    @After
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Verifies that an intact jar passes verification.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testVerify() throws IOException
+    {
+        File jar = createJar();
+        new InstallerVerifier(jar, NOT_CANCELLED).verify(executor, 2);
+    }
+
+    /**
+     * Verifies that a corrupt entry is detected.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testCorrupt() throws IOException
+    {
+        File jar = createJar();
+        byte[] content = "ABCDEFGHIJKLMNOPQRSTUVWXYZ".getBytes("US-ASCII");
+        RandomAccessFile file = new RandomAccessFile(jar, "rw");
+        try
+        {
+            // locate the stored content of the entry, and corrupt it
+            byte[] bytes = new byte[(int) file.length()];
+            file.readFully(bytes);
+            int index = indexOf(bytes, content);
+            assertTrue(index != -1);
+            file.seek(index);
+            file.write('a');
+        }
+        finally
+        {
+            file.close();
+        }
+
+        try
+        {
+            new InstallerVerifier(jar, NOT_CANCELLED).verify(executor, 2);
+            fail("Expected verification to fail");
+        }
+        catch (InstallerException expected)
+        {
+            assertTrue(expected.getMessage().startsWith("Checksum mismatch for resources/stored"));
+        }
+    }
+
+    /**
+     * Creates a jar containing a stored entry and several compressed entries.
+     *
+     * @return the jar
+     * @throws IOException for any I/O error
+     */
+    private File createJar() throws IOException
+    {
+        File jar = new File(temporaryFolder.getRoot(), "installer.jar");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+        try
+        {
+            for (int i = 0; i < 5; ++i)
+            {
+                out.putNextEntry(new ZipEntry("resources/deflated" + i));
+                out.write(("Some compressed content " + i).getBytes("US-ASCII"));
+                out.closeEntry();
+            }
+
+            byte[] content = "ABCDEFGHIJKLMNOPQRSTUVWXYZ".getBytes("US-ASCII");
+            CRC32 checksum = new CRC32();
+            checksum.update(content);
+            ZipEntry entry = new ZipEntry("resources/stored");
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(content.length);
+            entry.setCompressedSize(content.length);
+            entry.setCrc(checksum.getValue());
+            out.putNextEntry(entry);
+            out.write(content);
+            out.closeEntry();
+        }
+        finally
+        {
+            out.close();
+        }
+        return jar;
+    }
+
+    /**
+     * Returns the index of a sequence of bytes.
+     *
+     * @param bytes    the bytes to search
+     * @param sequence the sequence to locate
+     * @return the index of the sequence, or {@code -1} if it is not found
+     */
+    private int indexOf(byte[] bytes, byte[] sequence)
+    {
+        for (int i = 0; i <= bytes.length - sequence.length; ++i)
+        {
+            int j = 0;
+            while (j < sequence.length && bytes[i + j] == sequence[j])
+            {
+                ++j;
+            }
+            if (j == sequence.length)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
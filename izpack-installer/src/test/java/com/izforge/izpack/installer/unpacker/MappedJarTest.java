@@ -0,0 +1,187 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.installer.unpacker;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.izforge.izpack.core.resource.ResourceManager;
+
+
+/**
+ * Tests the {@link MappedJar} class.
+ *
+ * @author Tim Anderson
+ */
+public class MappedJarTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The stored content.
+     */
+    private byte[] stored;
+
+    /**
+     * The jar.
+     */
+    private File jar;
+
+    /**
+     * Sets up the test case.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Before
+    public void setUp() throws IOException
+    {
+        stored = new byte[10000];
+        for (int i = 0; i < stored.length; ++i)
+        {
+            stored[i] = (byte) (i * 7);
+        }
+        jar = new File(temporaryFolder.getRoot(), "installer.jar");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+        try
+        {
+            out.putNextEntry(new ZipEntry("resources/packs/pack-Deflated"));
+            out.write(stored);
+            out.closeEntry();
+
+            CRC32 checksum = new CRC32();
+            checksum.update(stored);
+            ZipEntry entry = new ZipEntry("resources/packs/pack-Core Pack");
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(stored.length);
+            entry.setCompressedSize(stored.length);
+            entry.setCrc(checksum.getValue());
+            entry.setExtra(new byte[]{(byte) 0xCA, (byte) 0xFE, 0, 0});
+            out.putNextEntry(entry);
+            out.write(stored);
+            out.closeEntry();
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Verifies that the content of STORED entries can be retrieved, and that compressed entries are not supported.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testGetEntry() throws IOException
+    {
+        MappedJar mapped = new MappedJar(jar);
+        ByteBuffer buffer = mapped.getEntry("resources/packs/pack-Core Pack");
+        assertEquals(stored.length, buffer.remaining());
+        byte[] bytes = new byte[stored.length];
+        buffer.get(bytes);
+        assertArrayEquals(stored, bytes);
+
+        // verify random access
+        assertEquals(stored[5000], mapped.getEntry("resources/packs/pack-Core Pack").get(5000));
+
+        assertNull(mapped.getEntry("resources/packs/pack-Deflated"));
+        assertNull(mapped.getEntry("resources/packs/pack-Missing"));
+    }
+
+    /**
+     * Verifies that entry streams support skipping.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testSkip() throws IOException
+    {
+        InputStream in = new MappedJar(jar).getInputStream("resources/packs/pack-Core Pack");
+        assertEquals(stored.length, in.available());
+        assertEquals(4000, in.skip(4000));
+        assertEquals(stored[4000] & 0xFF, in.read());
+        assertEquals(stored.length - 4001, in.skip(stored.length));
+        assertEquals(-1, in.read());
+    }
+
+    /**
+     * Verifies that {@link AbstractPackResources} reads STORED packs from the mapped jar, and falls back to the
+     * class loader for compressed packs.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testPackResources() throws IOException
+    {
+        URLClassLoader loader = new URLClassLoader(new URL[]{jar.toURI().toURL()}, null);
+        AbstractPackResources resources = new ConsolePackResources(new ResourceManager(loader), null);
+
+        InputStream mapped = resources.getLocalPackStream("Core Pack");
+        assertTrue(mapped.markSupported());
+        assertArrayEquals(stored, read(mapped));
+
+        assertArrayEquals(stored, read(resources.getLocalPackStream("Deflated")));
+    }
+
+    /**
+     * Reads a stream.
+     *
+     * @param in the stream
+     * @return the stream content
+     * @throws IOException for any I/O error
+     */
+    private byte[] read(InputStream in) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1)
+        {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+}
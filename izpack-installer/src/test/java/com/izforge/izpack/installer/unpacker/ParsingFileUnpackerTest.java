@@ -0,0 +1,170 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.PrintWriter;
+
+import org.junit.Test;
+
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+import com.izforge.izpack.core.data.DefaultVariables;
+import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
+import com.izforge.izpack.util.IoHelper;
+import com.izforge.izpack.util.os.FileQueue;
+
+
+/**
+ * Tests the {@link ParsingFileUnpacker} class.
+ *
+ * @author Tim Anderson
+ */
+public class ParsingFileUnpackerTest extends AbstractFileUnpackerTest
+{
+
+    /**
+     * The variables.
+     */
+    private final DefaultVariables variables = new DefaultVariables();
+
+    /**
+     * Verifies that variables are substituted as a file is unpacked, and that the pack stream is left positioned
+     * at the following file.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testSubstitute() throws Exception
+    {
+        variables.set("APP_NAME", "Test & Co");
+        File baseDir = temporaryFolder.getRoot();
+        File source1 = createFile(baseDir, "source1.xml", "<name>${APP_NAME}</name>");
+        File source2 = createFile(baseDir, "source2.txt", "app=$APP_NAME");
+        File target1 = new File(baseDir, "target1.xml");
+        File target2 = new File(baseDir, "target2.txt");
+
+        PackFile file1 = new PackFile(baseDir, source1, target1.getName(), null, OverrideType.OVERRIDE_TRUE, null,
+                                      Blockable.BLOCKABLE_NONE);
+        file1.setParsable(SubstitutionType.TYPE_XML, null);
+        PackFile file2 = new PackFile(baseDir, source2, target2.getName(), null, OverrideType.OVERRIDE_TRUE, null,
+                                      Blockable.BLOCKABLE_NONE);
+        file2.setParsable(SubstitutionType.TYPE_PLAIN, null);
+
+        ObjectInputStream packStream = createPackStream(source1, source2);
+        createUnpacker(baseDir, null).unpack(file1, packStream, target1);
+        createUnpacker(baseDir, null).unpack(file2, packStream, target2);
+
+        assertEquals("<name>Test &amp; Co</name>", read(target1));
+        assertEquals("app=Test & Co", read(target2));
+        assertEquals(source1.lastModified(), target1.lastModified());
+    }
+
+    /**
+     * Creates a pack file stream.
+     *
+     * @param source the source
+     * @return a new stream
+     * @throws IOException for any I/O error
+     */
+    @Override
+    protected ObjectInputStream createPackStream(File source) throws IOException
+    {
+        return createPackStream(new File[]{source});
+    }
+
+    /**
+     * Helper to create an unpacker.
+     *
+     * @param sourceDir the source directory
+     * @param queue     the file queue. May be {@code null}
+     * @return a new unpacker
+     */
+    @Override
+    protected FileUnpacker createUnpacker(File sourceDir, FileQueue queue)
+    {
+        return new ParsingFileUnpacker(getCancellable(), queue, new VariableSubstitutorImpl(variables));
+    }
+
+    /**
+     * Creates a pack file stream containing the supplied files.
+     *
+     * @param sources the source files
+     * @return a new stream
+     * @throws IOException for any I/O error
+     */
+    private ObjectInputStream createPackStream(File... sources) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ObjectOutputStream objectOut = new ObjectOutputStream(out);
+        for (File source : sources)
+        {
+            FileInputStream in = new FileInputStream(source);
+            IoHelper.copyStream(in, objectOut);
+            in.close();
+        }
+        objectOut.close();
+        return new ObjectInputStream(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    /**
+     * Creates a file.
+     *
+     * @param dir     the directory
+     * @param name    the file name
+     * @param content the file content
+     * @return the file
+     * @throws IOException for any I/O error
+     */
+    private File createFile(File dir, String name, String content) throws IOException
+    {
+        File file = new File(dir, name);
+        PrintWriter writer = new PrintWriter(file, "UTF-8");
+        writer.print(content);
+        writer.close();
+        return file;
+    }
+
+    /**
+     * Reads a file.
+     *
+     * @param file the file
+     * @return the file content
+     * @throws IOException for any I/O error
+     */
+    private String read(File file) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FileInputStream in = new FileInputStream(file);
+        IoHelper.copyStream(in, out);
+        in.close();
+        return out.toString("UTF-8");
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.izforge.izpack.api.data.Variables;
+import com.izforge.izpack.core.data.DefaultVariables;
+import com.izforge.izpack.util.IoHelper;
+
+
+/**
+ * Tests the {@link TargetPathResolver} class.
+ *
+ * @author Tim Anderson
+ */
+public class TargetPathResolverTest
+{
+
+    /**
+     * The paths to resolve.
+     */
+    private static final String[] PATHS = {"$INSTALL_PATH/lib/a.jar", "${INSTALL_PATH}/lib", "$INSTALL_PATH",
+            "plain/path", "$", "${", "${}", "${FOO", "$1a/$A", "$$A/b", "${A$B}/c", "$B.c-d/e", "$UNDEFINED/x",
+            "${UNDEFINED}/x", "${SYSTEM[user.home]}/x", "${SYSTEM_user_home}/z", "a\\/b/$A", "$A}", "${A}}",
+            "$INSTALL_PATH/lib/b.jar"};
+
+    /**
+     * The variables.
+     */
+    private Variables variables;
+
+
+    /**
+     * Sets up the test case.
+     */
+    @Before
+    public void setUp()
+    {
+        variables = new DefaultVariables();
+        variables.set("INSTALL_PATH", "/opt/app");
+        variables.set("A", "x$B");
+        variables.set("B.c-d", "q");
+    }
+
+    /**
+     * Verifies that paths are resolved the same way as {@link IoHelper#translatePath(String, Variables)}.
+     */
+    @Test
+    public void testResolve()
+    {
+        TargetPathResolver resolver = new TargetPathResolver(variables);
+        checkPaths(resolver);
+
+        // resolve again, to use the compiled templates
+        checkPaths(resolver);
+    }
+
+    /**
+     * Verifies that changes to variables are reflected in resolved paths.
+     */
+    @Test
+    public void testVariableChange()
+    {
+        TargetPathResolver resolver = new TargetPathResolver(variables);
+        assertEquals(IoHelper.translatePath("/opt/app/lib/a.jar"), resolver.resolve("$INSTALL_PATH/lib/a.jar"));
+
+        variables.set("INSTALL_PATH", "/usr/local/app");
+        assertEquals(IoHelper.translatePath("/usr/local/app/lib/a.jar"), resolver.resolve("$INSTALL_PATH/lib/a.jar"));
+        checkPaths(resolver);
+
+        variables.set("INSTALL_PATH", null);
+        assertEquals(IoHelper.translatePath("$INSTALL_PATH/lib/a.jar"), resolver.resolve("$INSTALL_PATH/lib/a.jar"));
+        checkPaths(resolver);
+    }
+
+    /**
+     * Verifies each of the {@link #PATHS} resolves to the expected value.
+     *
+     * @param resolver the resolver
+     */
+    private void checkPaths(TargetPathResolver resolver)
+    {
+        for (String path : PATHS)
+        {
+            assertEquals(path, IoHelper.translatePath(path, variables), resolver.resolve(path));
+        }
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.installer.unpacker;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.util.FileUtil;
+
+
+/**
+ * Tests the {@link UnpackJournal} class.
+ *
+ * @author Tim Anderson
+ */
+public class UnpackJournalTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The journal file.
+     */
+    private File file;
+
+    /**
+     * Sets up the test case.
+     */
+    @Before
+    public void setUp()
+    {
+        file = new File(temporaryFolder.getRoot(), UnpackJournal.NAME);
+    }
+
+    /**
+     * Verifies that a resumed journal reports the completed packs and files.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testResume() throws IOException
+    {
+        File a = createFile("a.txt", "a");
+        File b = createFile("b.txt", "bb");
+        File c = createFile("c.txt", "ccc");
+
+        UnpackJournal journal = new UnpackJournal(file, "app 1.0");
+        journal.open(false);
+        journal.file(a, null, false);
+        journal.pack("pack1");
+        journal.file(b, null, true);
+        journal.file(c, null, false);
+        journal.close();
+
+        // change the content of c after it was recorded, without changing its size
+        write(c, "ddd");
+
+        journal = new UnpackJournal(file, "app 1.0");
+        journal.open(true);
+        assertTrue(journal.isComplete("pack1"));
+        assertFalse(journal.isComplete("pack2"));
+        assertTrue(journal.isComplete(a));
+        assertFalse(journal.isParsed(a));
+        assertTrue(journal.isComplete(b));
+        assertTrue(journal.isParsed(b));
+        assertFalse(journal.isComplete(c));
+        assertFalse(journal.isComplete(new File(temporaryFolder.getRoot(), "d.txt")));
+
+        // records appended after resuming are retained
+        journal.file(c, null, false);
+        journal.pack("pack2");
+        journal.close();
+
+        journal = new UnpackJournal(file, "app 1.0");
+        journal.open(true);
+        assertTrue(journal.isComplete("pack2"));
+        assertTrue(journal.isComplete(c));
+        journal.delete();
+        assertFalse(file.exists());
+    }
+
+    /**
+     * Verifies that a file whose content doesn't match the recorded digest isn't complete, as happens if the
+     * machine fails before the content reaches the disk.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testDigest() throws IOException
+    {
+        File a = createFile("a.txt", "a");
+        File b = createFile("b.txt", "b");
+        UnpackJournal journal = new UnpackJournal(file, "app 1.0");
+        journal.open(false);
+        journal.file(a, FileUtil.getDigest(a, PackFile.DIGEST_ALGORITHM), false);
+        journal.file(b, FileUtil.getDigest(a, PackFile.DIGEST_ALGORITHM), false);
+        journal.close();
+
+        journal = new UnpackJournal(file, "app 1.0");
+        journal.open(true);
+        assertTrue(journal.isComplete(a));
+        assertFalse(journal.isComplete(b));
+        journal.close();
+    }
+
+    /**
+     * Verifies that a journal for a different installation isn't resumed.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testDifferentInstallation() throws IOException
+    {
+        File a = createFile("a.txt", "a");
+        UnpackJournal journal = new UnpackJournal(file, "app 1.0");
+        journal.open(false);
+        journal.file(a, null, false);
+        journal.pack("pack1");
+        journal.close();
+
+        journal = new UnpackJournal(file, "app 1.1");
+        journal.open(true);
+        assertFalse(journal.isComplete("pack1"));
+        assertFalse(journal.isComplete(a));
+        journal.close();
+    }
+
+    /**
+     * Verifies that partially written records are ignored.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testPartialRecord() throws IOException
+    {
+        File a = createFile("a.txt", "a");
+        UnpackJournal journal = new UnpackJournal(file, "app 1.0");
+        journal.open(false);
+        journal.file(a, null, false);
+        journal.close();
+
+        FileOutputStream out = new FileOutputStream(file, true);
+        out.write("F\t12".getBytes("UTF-8"));
+        out.close();
+
+        journal = new UnpackJournal(file, "app 1.0");
+        journal.open(true);
+        assertTrue(journal.isComplete(a));
+        journal.pack("pack1");
+        journal.close();
+
+        journal = new UnpackJournal(file, "app 1.0");
+        journal.open(true);
+        assertTrue(journal.isComplete("pack1"));
+        journal.close();
+    }
+
+    /**
+     * Creates a file.
+     *
+     * @param name    the file name
+     * @param content the file content
+     * @return the file
+     * @throws IOException for any I/O error
+     */
+    private File createFile(String name, String content) throws IOException
+    {
+        File result = temporaryFolder.newFile(name);
+        write(result, content);
+        return result;
+    }
+
+    /**
+     * Writes a string to a file.
+     *
+     * @param file    the file
+     * @param content the content to write
+     * @throws IOException for any I/O error
+     */
+    private void write(File file, String content) throws IOException
+    {
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(content.getBytes("UTF-8"));
+        out.close();
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.izforge.izpack.installer.unpacker;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+import com.izforge.izpack.util.FileUtil;
+
+
+/**
+ * Tests the {@link Unpacker} class.
+ *
+ * @author Tim Anderson
+ */
+public class UnpackerTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The pack file.
+     */
+    private PackFile packFile;
+
+    /**
+     * The installed file.
+     */
+    private File target;
+
+    /**
+     * The unpacker.
+     */
+    private Unpacker unpacker;
+
+    /**
+     * Sets up the test case.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Before
+    public void setUp() throws IOException
+    {
+        File source = temporaryFolder.newFile("app.properties");
+        write(source, "port=8080");
+        packFile = new PackFile(temporaryFolder.getRoot(), source, "app.properties", null,
+                                OverrideType.OVERRIDE_TRUE, null, Blockable.BLOCKABLE_NONE);
+        packFile.setDigest(FileUtil.getDigest(source, PackFile.DIGEST_ALGORITHM));
+
+        target = new File(temporaryFolder.newFolder("install"), "app.properties");
+        unpacker = new Unpacker(null, null, null, null, null, null, null, null, null, null);
+    }
+
+    /**
+     * Verifies that a file with the same size and modification time as the pack file is unchanged, and that one
+     * with the same size but different content is changed.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testUnchanged() throws IOException
+    {
+        write(target, "port=8080");
+        assertTrue(target.setLastModified(packFile.lastModified()));
+        assertTrue(unpacker.isUnchanged(packFile, target));
+
+        write(target, "port=9090");
+        assertTrue(target.setLastModified(packFile.lastModified() - 10000));
+        assertFalse(unpacker.isUnchanged(packFile, target));
+    }
+
+    /**
+     * Verifies that a parsable file is always changed, even if the installed file has the same size and
+     * modification time as the pack file, as it holds content substituted by a previous installation.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testParsableChanged() throws IOException
+    {
+        packFile.setParsable(SubstitutionType.TYPE_JAVA_PROPERTIES, null);
+        write(target, "port=9090");
+        assertTrue(target.setLastModified(packFile.lastModified()));
+        assertFalse(unpacker.isUnchanged(packFile, target));
+    }
+
+    /**
+     * Writes a string to a file.
+     *
+     * @param file  the file
+     * @param value the value to write
+     * @throws IOException for any I/O error
+     */
+    private void write(File file, String value) throws IOException
+    {
+        OutputStream out = new FileOutputStream(file);
+        out.write(value.getBytes("UTF-8"));
+        out.close();
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.installer.unpacker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.izforge.izpack.util.file.DirectoryScanner;
+
+
+/**
+ * Tests the {@link UpdateCheckSweep} class.
+ *
+ * @author Tim Anderson
+ */
+public class UpdateCheckSweepTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The installation directory.
+     */
+    private File basedir;
+
+    /**
+     * The executor.
+     */
+    private ExecutorService executor;
+
+    /**
+     * Never cancels.
+     */
+    private static final Cancellable NOT_CANCELLED = new Cancellable()
+    {
+        @Override
+        public boolean isCancelled()
+        {
+            return false;
+        }
+    };
+
+
+    /**
+     * Sets up the test case.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Before
+    public void setUp() throws IOException
+    {
+        basedir = temporaryFolder.getRoot();
+        for (String name : Arrays.asList("lib/a.jar", "lib/b.jar", "lib/old/c.jar", "lib/old/d.txt", "bin/run.sh",
+                                         "doc/readme.txt", "CVS/Entries", "empty/nested/.keep"))
+        {
+            File file = new File(basedir, name);
+            assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+            assertTrue(file.createNewFile());
+        }
+        assertTrue(new File(basedir, "lib/empty").mkdir());
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    /**
+     * Cleans up after the test case.
+     */
+    @After
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Verifies that a scan selects the same files and directories as a {@link DirectoryScanner}, excluding those
+     * that are installed.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testScanMatchesDirectoryScanner() throws Exception
+    {
+        checkScan(Arrays.asList("lib/**"), Collections.<String>emptyList());
+        checkScan(Arrays.asList("**/*.jar"), Arrays.asList("lib/old/"));
+        checkScan(Collections.<String>emptyList(), Arrays.asList("doc/**", "**/*.sh"));
+        checkScan(Arrays.asList("lib/", "empty/**"), Arrays.asList("**/b.jar"));
+    }
+
+    /**
+     * Verifies that matching files and empty directories are deleted, but installed files, and directories
+     * that aren't empty, are retained.
+     */
+    @Test
+    public void testRun()
+    {
+        List<String> installed = Arrays.asList("lib/a.jar", new File(basedir, "lib/old/d.txt").getPath());
+        UpdateCheckSweep sweep = new UpdateCheckSweep(basedir, Arrays.asList("lib/**", "empty/**"),
+                                                      Collections.<String>emptyList(), installed, NOT_CANCELLED);
+        sweep.run(executor);
+
+        assertTrue(new File(basedir, "lib/a.jar").exists());
+        assertFalse(new File(basedir, "lib/b.jar").exists());
+        assertFalse(new File(basedir, "lib/old/c.jar").exists());
+        assertTrue(new File(basedir, "lib/old/d.txt").exists());
+        assertFalse(new File(basedir, "lib/empty").exists());
+        assertFalse(new File(basedir, "empty").exists());
+        assertTrue(new File(basedir, "bin/run.sh").exists());
+    }
+
+    /**
+     * Verifies a scan selects the same files and directories as a {@link DirectoryScanner}.
+     *
+     * @param includes the include patterns
+     * @param excludes the exclude patterns
+     * @throws Exception for any error
+     */
+    private void checkScan(List<String> includes, List<String> excludes) throws Exception
+    {
+        List<String> installed = Arrays.asList("lib/a.jar");
+        UpdateCheckSweep sweep = new UpdateCheckSweep(basedir, includes, excludes, installed, NOT_CANCELLED);
+        sweep.scan(executor);
+
+        DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir(basedir);
+        if (!includes.isEmpty())
+        {
+            scanner.setIncludes(includes.toArray(new String[includes.size()]));
+        }
+        scanner.setExcludes(excludes.toArray(new String[excludes.size()]));
+        scanner.addDefaultExcludes();
+        scanner.scan();
+
+        Set<File> expectedFiles = new TreeSet<File>();
+        for (String name : scanner.getIncludedFiles())
+        {
+            expectedFiles.add(new File(basedir, name));
+        }
+        expectedFiles.remove(new File(basedir, "lib/a.jar"));
+        Set<File> expectedDirs = new TreeSet<File>();
+        for (String name : scanner.getIncludedDirectories())
+        {
+            if (name.length() != 0)
+            {
+                expectedDirs.add(new File(basedir, name));
+            }
+        }
+        assertEquals(new ArrayList<File>(expectedFiles), new ArrayList<File>(new TreeSet<File>(sweep.getFiles())));
+        assertEquals(new ArrayList<File>(expectedDirs),
+                     new ArrayList<File>(new TreeSet<File>(sweep.getDirectories())));
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.izforge.izpack.api.data.InstallData;
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.core.data.DefaultVariables;
+import com.izforge.izpack.util.DiskSpace;
+import com.izforge.izpack.util.DiskSpace.Volume;
+
+
+/**
+ * Tests the {@link DiskRequirements} class.
+ *
+ * @author Tim Anderson
+ */
+public class DiskRequirementsTest
+{
+
+    /**
+     * The temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The variables.
+     */
+    private DefaultVariables variables;
+
+    /**
+     * The disk space service.
+     */
+    private DiskSpace diskSpace;
+
+    /**
+     * The installation directory.
+     */
+    private File installDir;
+
+
+    /**
+     * Sets up the test case.
+     */
+    @Before
+    public void setUp()
+    {
+        installDir = new File(temporaryFolder.getRoot(), "install");
+        variables = new DefaultVariables();
+        variables.set(InstallData.INSTALL_PATH, installDir.getPath());
+        variables.set("DATA_PATH", temporaryFolder.getRoot().getPath());
+        diskSpace = new DiskSpace(0);
+    }
+
+    /**
+     * Verifies that file sizes are recorded against the root of their target paths.
+     */
+    @Test
+    public void testTargetSizes()
+    {
+        Pack pack = createPack("pack", 0);
+        pack.addTargetSize("$INSTALL_PATH/lib/a.jar", 10);
+        pack.addTargetSize("$INSTALL_PATH/b.txt", 5);
+        pack.addTargetSize("${DATA_PATH}\\c.txt", 3);
+        pack.addTargetSize("/opt/app/d.txt", 2);
+
+        Map<String, Long> sizes = pack.getTargetSizes();
+        assertEquals(3, sizes.size());
+        assertEquals(15, (long) sizes.get("$INSTALL_PATH"));
+        assertEquals(3, (long) sizes.get("${DATA_PATH}"));
+        assertEquals(2, (long) sizes.get("/opt/app"));
+    }
+
+    /**
+     * Verifies that requirements are updated as packs are selected and deselected.
+     */
+    @Test
+    public void testUpdate()
+    {
+        Pack pack1 = createPack("pack1", 0);
+        pack1.addTargetSize("$INSTALL_PATH/a.txt", 100);
+        pack1.addTargetSize("$DATA_PATH/b.txt", 50);
+        Pack pack2 = createPack("pack2", 0);
+        pack2.addTargetSize("$INSTALL_PATH/c.txt", 25);
+
+        DiskRequirements requirements = new DiskRequirements(variables, diskSpace);
+        requirements.update(Arrays.asList(pack1, pack2));
+        assertEquals(175, requirements.getTotal());
+
+        // both paths reside in the temporary folder, so should be on the same volume
+        Volume volume = diskSpace.getVolume(installDir);
+        assertSame(volume, diskSpace.getVolume(temporaryFolder.getRoot()));
+        assertEquals(Collections.singletonMap(volume, 175L), requirements.getRequired());
+
+        requirements.update(Arrays.asList(pack2));
+        assertEquals(25, requirements.getTotal());
+
+        requirements.update(Collections.<Pack>emptyList());
+        assertEquals(0, requirements.getTotal());
+        assertTrue(requirements.getRequired().isEmpty());
+    }
+
+    /**
+     * Verifies that space reserved by a pack in excess of its files is allocated to the installation path,
+     * and that packs compiled without target sizes are allocated to the installation path.
+     */
+    @Test
+    public void testReservedSpace()
+    {
+        Pack pack1 = createPack("pack1", 1000);
+        pack1.addTargetSize("$DATA_PATH/a.txt", 100);
+        Pack pack2 = createPack("pack2", 500);
+
+        DiskRequirements requirements = new DiskRequirements(variables, diskSpace);
+        requirements.update(Arrays.asList(pack1, pack2));
+        assertEquals(1500, requirements.getTotal());
+    }
+
+    /**
+     * Verifies that volumes with insufficient space are reported.
+     */
+    @Test
+    public void testInsufficient()
+    {
+        Pack small = createPack("small", 1);
+        Pack large = createPack("large", Long.MAX_VALUE / 2);
+
+        DiskRequirements requirements = new DiskRequirements(variables, diskSpace);
+        requirements.update(Arrays.asList(small));
+        assertTrue(requirements.getInsufficient().isEmpty());
+
+        requirements.update(Arrays.asList(small, large));
+        assertEquals(Arrays.asList(diskSpace.getVolume(installDir)), requirements.getInsufficient());
+    }
+
+    /**
+     * Verifies that requirements are recalculated if the installation path changes.
+     */
+    @Test
+    public void testChangeInstallPath()
+    {
+        Pack pack = createPack("pack", 0);
+        pack.addTargetSize("$INSTALL_PATH/a.txt", 10);
+
+        DiskRequirements requirements = new DiskRequirements(variables, diskSpace);
+        requirements.update(Arrays.asList(pack));
+        assertEquals(10, requirements.getTotal());
+
+        File other = new File(temporaryFolder.getRoot(), "other");
+        variables.set(InstallData.INSTALL_PATH, other.getPath());
+        requirements.update(Arrays.asList(pack));
+        assertEquals(10, requirements.getTotal());
+        assertEquals(Collections.singletonMap(diskSpace.getVolume(other), 10L), requirements.getRequired());
+    }
+
+    /**
+     * Verifies that a pack's requirements are recalculated if a variable other than <em>INSTALL_PATH</em> that its
+     * target roots refer to changes, and are otherwise not recalculated.
+     */
+    @Test
+    public void testChangeTargetRoot()
+    {
+        final List<File> paths = new ArrayList<File>();
+        DiskSpace diskSpace = new DiskSpace(0)
+        {
+            @Override
+            public synchronized Volume getVolume(File path)
+            {
+                paths.add(path);
+                return super.getVolume(path);
+            }
+        };
+        Pack pack = createPack("pack", 0);
+        pack.addTargetSize("$DATA_PATH/a.txt", 10);
+
+        DiskRequirements requirements = new DiskRequirements(variables, diskSpace);
+        requirements.update(Arrays.asList(pack));
+        assertEquals(Arrays.asList(temporaryFolder.getRoot()), paths);
+
+        // nothing has changed, so the volumes aren't looked up again
+        paths.clear();
+        requirements.update(Arrays.asList(pack));
+        assertTrue(paths.isEmpty());
+
+        File other = new File(temporaryFolder.getRoot(), "other");
+        variables.set("DATA_PATH", other.getPath());
+        requirements.update(Arrays.asList(pack));
+        assertEquals(Arrays.asList(other), paths);
+        assertEquals(10, requirements.getTotal());
+        assertEquals(Collections.singletonMap(diskSpace.getVolume(other), 10L), requirements.getRequired());
+    }
+
+    /**
+     * Creates a pack.
+     *
+     * @param name the pack name
+     * @param size the pack size
+     * @return a new pack
+     */
+    private Pack createPack(String name, long size)
+    {
+        return new Pack(name, null, null, null, null, false, true, false, null, false, size);
+    }
+}
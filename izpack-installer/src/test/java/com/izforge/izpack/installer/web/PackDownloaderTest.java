@@ -0,0 +1,569 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.installer.web;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+
+/**
+ * Tests the {@link PackDownloader} class.
+ * <p/>
+ * This uses an embedded HTTP server.
+ *
+ * @author Tim Anderson
+ */
+public class PackDownloaderTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The HTTP server.
+     */
+    private HttpServer server;
+
+    /**
+     * The content served.
+     */
+    private byte[] content;
+
+    /**
+     * The no. of requests received.
+     */
+    private final AtomicInteger requests = new AtomicInteger();
+
+    /**
+     * The Range headers received.
+     */
+    private final List<String> ranges = Collections.synchronizedList(new ArrayList<String>());
+
+    /**
+     * The no. of requests to fail by truncating the response.
+     */
+    private final AtomicInteger truncate = new AtomicInteger();
+
+    /**
+     * Determines if Range requests are supported.
+     */
+    private volatile boolean supportRanges = true;
+
+    /**
+     * Counted down once half of <em>slow.jar</em> has been sent.
+     */
+    private final CountDownLatch sending = new CountDownLatch(1);
+
+    /**
+     * Counted down to send the remainder of <em>slow.jar</em>.
+     */
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    /**
+     * The downloader.
+     */
+    private PackDownloader downloader;
+
+    /**
+     * The cache directory.
+     */
+    private File dir;
+
+    /**
+     * Sets up the test case.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Before
+    public void setUp() throws IOException
+    {
+        content = new byte[200000];
+        for (int i = 0; i < content.length; ++i)
+        {
+            content[i] = (byte) (i * 31);
+        }
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler()
+        {
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                serve(exchange);
+            }
+        });
+        server.start();
+        dir = new File(temporaryFolder.getRoot(), "cache");
+        downloader = new PackDownloader(dir, 3, 2, 10);
+    }
+
+    /**
+     * Cleans up after the test case.
+     */
+    @After
+    public void tearDown()
+    {
+        release.countDown();
+        downloader.shutdown();
+        server.stop(0);
+    }
+
+    /**
+     * Verifies that files can be prefetched concurrently, and are only downloaded once.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testPrefetch() throws IOException
+    {
+        List<URL> urls = new ArrayList<URL>();
+        for (int i = 0; i < 5; ++i)
+        {
+            URL url = getURL("install.pack-" + i + ".jar");
+            urls.add(url);
+            downloader.prefetch(url);
+        }
+        for (URL url : urls)
+        {
+            File file = downloader.get(url);
+            assertEquals(downloader.getFile(url), file);
+            checkContent(file);
+            assertFalse(new File(file.getPath() + ".part").exists());
+        }
+        assertEquals(5, requests.get());
+
+        // verify files are only downloaded once
+        checkContent(downloader.get(urls.get(0)));
+        assertEquals(5, requests.get());
+
+        // verify completed downloads are reused across downloaders
+        PackDownloader other = new PackDownloader(dir, 1, 0, 10);
+        try
+        {
+            checkContent(other.get(urls.get(1)));
+        }
+        finally
+        {
+            other.shutdown();
+        }
+        assertEquals(5, requests.get());
+    }
+
+    /**
+     * Verifies that a partially downloaded file is resumed using a Range request.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testResume() throws IOException
+    {
+        URL url = getURL("install.pack-core.jar");
+        File part = new File(downloader.getFile(url).getPath() + ".part");
+        assertTrue(dir.mkdirs());
+        OutputStream out = new FileOutputStream(part);
+        out.write(content, 0, 1000);
+        out.close();
+
+        checkContent(downloader.get(url));
+        assertEquals(1, requests.get());
+        assertEquals("bytes=1000-", ranges.get(0));
+    }
+
+    /**
+     * Verifies that a download is restarted if the server doesn't support Range requests.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testRestart() throws IOException
+    {
+        supportRanges = false;
+        URL url = getURL("install.pack-core.jar");
+        File part = new File(downloader.getFile(url).getPath() + ".part");
+        assertTrue(dir.mkdirs());
+        OutputStream out = new FileOutputStream(part);
+        out.write(new byte[1000]);
+        out.close();
+
+        checkContent(downloader.get(url));
+        assertEquals(1, requests.get());
+    }
+
+    /**
+     * Verifies that an interrupted download is retried, resuming from where it failed.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testRetry() throws IOException
+    {
+        truncate.set(2);
+        URL url = getURL("install.pack-core.jar");
+        checkContent(downloader.get(url));
+        assertEquals(3, requests.get());
+        assertNull(ranges.get(0));
+        assertEquals("bytes=" + content.length / 2 + "-", ranges.get(1));
+        assertEquals("bytes=" + (content.length / 2 + content.length / 4) + "-", ranges.get(2));
+    }
+
+    /**
+     * Verifies that a download fails once the retries are exhausted.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testRetriesExhausted() throws IOException
+    {
+        truncate.set(3);
+        URL url = getURL("install.pack-core.jar");
+        try
+        {
+            downloader.get(url);
+            fail("Expected download to fail");
+        }
+        catch (IOException expected)
+        {
+            // expected
+        }
+        assertEquals(3, requests.get());
+        assertFalse(downloader.getFile(url).exists());
+
+        // the download can be attempted again, and resumes from the partial file
+        checkContent(downloader.get(url));
+        assertEquals(4, requests.get());
+    }
+
+    /**
+     * Verifies that a missing file fails without being retried.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testNotFound() throws IOException
+    {
+        URL url = getURL("missing.jar");
+        try
+        {
+            downloader.get(url);
+            fail("Expected download to fail");
+        }
+        catch (FileNotFoundException expected)
+        {
+            assertEquals("Failed to download " + url + ": HTTP 404", expected.getMessage());
+        }
+        assertEquals(1, requests.get());
+    }
+
+    /**
+     * Verifies that a URL can be read as it is streamed, and that it is written to the cache directory so that it
+     * isn't downloaded again when reopened.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testStream() throws IOException
+    {
+        URL url = getURL("install.pack-core.jar");
+        checkContent(downloader.open(url, 1024));
+        checkContent(downloader.open(url, 1024));
+        assertEquals(1, requests.get());
+        checkContent(downloader.getFile(url));
+    }
+
+    /**
+     * Verifies that a stream closed before the end of the URL is reached continues to be written to the cache
+     * directory.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testStreamClosed() throws IOException
+    {
+        URL url = getURL("install.pack-core.jar");
+        InputStream in = downloader.open(url, 1024);
+        assertEquals(content[0] & 0xFF, in.read());
+        in.close();
+
+        checkContent(downloader.get(url));
+        checkContent(downloader.open(url, 1024));
+        assertEquals(1, requests.get());
+    }
+
+    /**
+     * Verifies that a failed stream is resumed using a Range request.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testStreamResume() throws IOException
+    {
+        truncate.set(1);
+        URL url = getURL("install.pack-core.jar");
+        checkContent(downloader.open(url, 1024));
+        assertEquals(2, requests.get());
+        assertEquals("bytes=" + content.length / 2 + "-", ranges.get(1));
+        checkContent(downloader.get(url));
+        assertEquals(2, requests.get());
+    }
+
+    /**
+     * Verifies that if a failed stream cannot be resumed, the URL is downloaded to disk, and reading continues
+     * from the downloaded file.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testStreamFallback() throws IOException
+    {
+        truncate.set(1);
+        supportRanges = false;
+        URL url = getURL("install.pack-core.jar");
+        checkContent(downloader.open(url, 1024));
+        assertEquals(3, requests.get());
+        checkContent(downloader.getFile(url));
+    }
+
+    /**
+     * Verifies that a cached download is used in preference to streaming.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testStreamCached() throws IOException
+    {
+        URL url = getURL("install.pack-core.jar");
+        downloader.get(url);
+        checkContent(downloader.open(url, 1024));
+        assertEquals(1, requests.get());
+    }
+
+    /**
+     * Verifies that shutting down the downloader stops downloads in progress, including those blocked reading
+     * from the server, and those not yet started.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testShutdown() throws Exception
+    {
+        downloader.shutdown();
+        downloader = new PackDownloader(dir, 1, 2, 10);
+        URL slow = getURL("slow.jar");
+        URL queued = getURL("install.pack-core.jar");
+        downloader.prefetch(slow);
+        downloader.prefetch(queued);
+        assertTrue(sending.await(10, TimeUnit.SECONDS));
+
+        downloader.shutdown();
+        checkCancelled(slow);
+        checkCancelled(queued);
+
+        // the blocked download stops without waiting for the read timeout
+        long end = System.currentTimeMillis() + 10000;
+        while (isDownloading() && System.currentTimeMillis() < end)
+        {
+            Thread.sleep(50);
+        }
+        assertFalse(isDownloading());
+        assertFalse(downloader.getFile(slow).exists());
+        assertEquals(1, requests.get());
+    }
+
+    /**
+     * Verifies that retrieving a URL fails because the downloader has been shut down.
+     *
+     * @param url the URL
+     * @throws IOException for any I/O error
+     */
+    private void checkCancelled(URL url) throws IOException
+    {
+        try
+        {
+            downloader.get(url);
+            fail("Expected download to be cancelled");
+        }
+        catch (InterruptedIOException expected)
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Determines if any downloader thread is running.
+     *
+     * @return {@code true} if a downloader thread is running
+     */
+    private boolean isDownloading()
+    {
+        for (Thread thread : Thread.getAllStackTraces().keySet())
+        {
+            if (thread.isAlive() && "PackDownloader".equals(thread.getName()))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Serves a request.
+     * <p/>
+     * Requests for <em>missing.jar</em> return 404, otherwise {@link #content} is served, honouring any Range
+     * header if {@link #supportRanges} is set. If {@link #truncate} is non-zero, only half the requested bytes are
+     * sent. For <em>slow.jar</em>, half the content is sent, and the remainder once {@link #release} is counted
+     * down.
+     *
+     * @param exchange the exchange
+     * @throws IOException for any I/O error
+     */
+    private void serve(HttpExchange exchange) throws IOException
+    {
+        requests.incrementAndGet();
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        ranges.add(range);
+        if (exchange.getRequestURI().getPath().endsWith("missing.jar"))
+        {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        int offset = 0;
+        int status = 200;
+        if (range != null && supportRanges)
+        {
+            offset = Integer.parseInt(range.substring("bytes=".length(), range.indexOf('-')));
+            status = 206;
+            exchange.getResponseHeaders().add("Content-Range", "bytes " + offset + "-" + (content.length - 1)
+                    + "/" + content.length);
+        }
+        int length = content.length - offset;
+        exchange.sendResponseHeaders(status, length);
+        OutputStream out = exchange.getResponseBody();
+        if (exchange.getRequestURI().getPath().endsWith("slow.jar"))
+        {
+            out.write(content, offset, length / 2);
+            out.flush();
+            sending.countDown();
+            try
+            {
+                release.await(30, TimeUnit.SECONDS);
+                out.write(content, offset + length / 2, length - length / 2);
+            }
+            catch (Exception ignore)
+            {
+                // the client has disconnected
+            }
+        }
+        else if (truncate.getAndDecrement() > 0)
+        {
+            // closing the exchange before the content length has been written aborts the connection
+            out.write(content, offset, length / 2);
+            out.flush();
+        }
+        else
+        {
+            out.write(content, offset, length);
+        }
+        exchange.close();
+    }
+
+    /**
+     * Returns a URL on the server.
+     *
+     * @param name the file name
+     * @return the URL
+     * @throws IOException for any error
+     */
+    private URL getURL(String name) throws IOException
+    {
+        return new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/packs/" + name);
+    }
+
+    /**
+     * Verifies a downloaded file matches the served content.
+     *
+     * @param file the file
+     * @throws IOException for any I/O error
+     */
+    private void checkContent(File file) throws IOException
+    {
+        assertEquals(content.length, file.length());
+        checkContent(new FileInputStream(file));
+    }
+
+    /**
+     * Verifies a stream matches the served content.
+     *
+     * @param in the stream. This is closed on completion
+     * @throws IOException for any I/O error
+     */
+    private void checkContent(InputStream in) throws IOException
+    {
+        try
+        {
+            byte[] bytes = new byte[content.length];
+            int offset = 0;
+            int read;
+            while (offset < bytes.length && (read = in.read(bytes, offset, bytes.length - offset)) != -1)
+            {
+                offset += read;
+            }
+            assertArrayEquals(content, bytes);
+            assertEquals(-1, in.read());
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+}
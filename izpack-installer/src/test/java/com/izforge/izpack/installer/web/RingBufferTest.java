@@ -0,0 +1,150 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.installer.web;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+import org.junit.Test;
+
+
+/**
+ * Tests the {@link RingBuffer} class.
+ *
+ * @author Tim Anderson
+ */
+public class RingBufferTest
+{
+
+    /**
+     * Verifies that data larger than the buffer is passed from a producer to a consumer intact.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testTransfer() throws Exception
+    {
+        final byte[] content = new byte[100000];
+        for (int i = 0; i < content.length; ++i)
+        {
+            content[i] = (byte) i;
+        }
+        final RingBuffer buffer = new RingBuffer(1000);
+        Thread producer = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    for (int i = 0; i < content.length; i += 777)
+                    {
+                        buffer.write(content, i, Math.min(777, content.length - i));
+                    }
+                    buffer.finish();
+                }
+                catch (IOException exception)
+                {
+                    buffer.fail(exception);
+                }
+            }
+        };
+        producer.start();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] bytes = new byte[333];
+        int read;
+        while ((read = buffer.read(bytes, 0, bytes.length)) != -1)
+        {
+            out.write(bytes, 0, read);
+        }
+        producer.join();
+        assertArrayEquals(content, out.toByteArray());
+    }
+
+    /**
+     * Verifies that a producer failure is reported to the consumer after the buffered data has been read.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testFail() throws IOException
+    {
+        RingBuffer buffer = new RingBuffer(10);
+        buffer.write(new byte[]{1, 2, 3}, 0, 3);
+        IOException error = new IOException("Connection reset");
+        buffer.fail(error);
+
+        byte[] bytes = new byte[10];
+        assertEquals(3, buffer.read(bytes, 0, bytes.length));
+        try
+        {
+            buffer.read(bytes, 0, bytes.length);
+            fail("Expected read to fail");
+        }
+        catch (IOException expected)
+        {
+            assertSame(error, expected);
+        }
+    }
+
+    /**
+     * Verifies that closing the buffer stops a blocked producer.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testClose() throws Exception
+    {
+        final RingBuffer buffer = new RingBuffer(10);
+        final IOException[] error = new IOException[1];
+        Thread producer = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    buffer.write(new byte[20], 0, 20);
+                }
+                catch (IOException exception)
+                {
+                    error[0] = exception;
+                }
+            }
+        };
+        producer.start();
+        while (buffer.available() < 10)
+        {
+            Thread.sleep(10);
+        }
+        buffer.close();
+        producer.join();
+        assertTrue(error[0] instanceof InterruptedIOException);
+    }
+}
@@ -4,6 +4,8 @@ import com.coi.tools.os.win.MSWinConstants;
 import com.izforge.izpack.api.data.InstallData;
 import com.izforge.izpack.api.exception.NativeLibException;
 import com.izforge.izpack.api.resource.Messages;
+import com.izforge.izpack.core.os.JavaDiscovery;
+import com.izforge.izpack.core.os.JavaDiscovery.JavaInstallation;
 import com.izforge.izpack.core.os.RegistryDefaultHandler;
 import com.izforge.izpack.core.os.RegistryHandler;
 import com.izforge.izpack.panels.path.PathInputBase;
@@ -65,23 +67,45 @@ public class JDKPathPanelHelper
             defaultValue = (new File(installData.getVariable("JAVA_HOME"))).getParent();
         }
 
-        //See if java from currently running jre is valid, otherwise check the registry.
+        //See if java from currently running jre is valid, otherwise check the other installations found.
         //If java is still not found set path ot JAVA_HOME to an empty string.
         Platform platform = installData.getPlatform();
         detectedJavaVersion = JDKPathPanelHelper.getCurrentJavaVersion(defaultValue, platform);
         if (!JDKPathPanelHelper.pathIsValid(defaultValue) || !JDKPathPanelHelper.verifyVersion(detectedJavaVersion))
         {
-            defaultValue = JDKPathPanelHelper.getJavaHomeFromRegistry(handler);
-            detectedJavaVersion = JDKPathPanelHelper.getCurrentJavaVersion(defaultValue, platform);
-            if (!JDKPathPanelHelper.pathIsValid(defaultValue) || !JDKPathPanelHelper.verifyVersion(detectedJavaVersion))
-            {
-                defaultValue = "";
-            }
+            defaultValue = JDKPathPanelHelper.getJavaHome(installData, handler);
         }
 
         return PathInputBase.normalizePath(defaultValue);
     }
 
+    /**
+     * Returns the path to the JDK with the highest allowed version, found by {@link JavaDiscovery}.
+     * This searches the registry as well as the environment and standard installation directories.
+     *
+     * @param installData the installation data
+     * @param handler     the registry handler
+     * @return the path to the JDK, or an empty string if none was found
+     */
+    public static String getJavaHome(InstallData installData, RegistryDefaultHandler handler)
+    {
+        String javaHome = "";
+        String javaHomeVersion = null;
+        String roots = installData.getVariable(JavaDiscovery.ROOTS);
+        for (JavaInstallation installation : JavaDiscovery.getInstance().getInstallations(handler, roots))
+        {
+            String path = installation.getHome().getPath();
+            String version = installation.getVersion();
+            if (version != null && pathIsValid(path) && verifyVersion(version)
+                    && (javaHomeVersion == null || !compareVersions(version, javaHomeVersion, false)))
+            {
+                javaHome = path;
+                javaHomeVersion = version;
+            }
+        }
+        return javaHome;
+    }
+
     /**
      * Returns the path to the needed JDK if found in the registry. If there are more than one JDKs
      * registered, that one with the highest allowed version will be returned. Works only on windows.
@@ -226,6 +250,13 @@ public class JDKPathPanelHelper
      */
     public static String getCurrentJavaVersion(String path, Platform platform)
     {
+        // use the version from the release file, or from the shared java -version output, if available
+        JavaInstallation installation = JavaDiscovery.getInstance().getInstallation(new File(path));
+        if (installation != null && installation.getVersion() != null)
+        {
+            return installation.getVersion();
+        }
+
         String[] params;
         if (platform.isA(Platform.Name.WINDOWS))
         {
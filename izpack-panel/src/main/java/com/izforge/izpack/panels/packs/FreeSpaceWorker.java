@@ -0,0 +1,133 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.panels.packs;
+
+import java.io.File;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.swing.JLabel;
+import javax.swing.SwingWorker;
+
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.installer.util.DiskRequirements;
+import com.izforge.izpack.util.DiskSpace;
+import com.izforge.izpack.util.DiskSpace.Volume;
+
+
+/**
+ * Determines the free space available for the installation path in the background, to avoid blocking the event
+ * dispatch thread, and displays it in a label.
+ * <p/>
+ * The free space of each volume that the selected packs install to is also determined, so that validating the
+ * disk requirements doesn't need to query them.
+ *
+ * @author Tim Anderson
+ */
+public class FreeSpaceWorker extends SwingWorker<Long, Object>
+{
+
+    /**
+     * The installation path.
+     */
+    private final File path;
+
+    /**
+     * The disk requirements of the selected packs.
+     */
+    private final DiskRequirements requirements;
+
+    /**
+     * The label to display the free space in.
+     */
+    private final JLabel label;
+
+    /**
+     * The text to display if the free space cannot be determined.
+     */
+    private final String unknown;
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(FreeSpaceWorker.class.getName());
+
+
+    /**
+     * Constructs a {@code FreeSpaceWorker}.
+     *
+     * @param path         the installation path
+     * @param requirements the disk requirements of the selected packs
+     * @param label        the label to display the free space in
+     * @param unknown      the text to display if the free space cannot be determined
+     */
+    public FreeSpaceWorker(File path, DiskRequirements requirements, JLabel label, String unknown)
+    {
+        this.path = path;
+        this.requirements = requirements;
+        this.label = label;
+        this.unknown = unknown;
+    }
+
+    /**
+     * Determines the free space of the installation path.
+     *
+     * @return the free space, in bytes, or {@code -1} if it cannot be determined
+     */
+    @Override
+    protected Long doInBackground()
+    {
+        // prime the free space of each volume, so validation doesn't need to query them
+        for (Volume volume : requirements.getRequired().keySet())
+        {
+            volume.getFreeSpace();
+        }
+        return DiskSpace.getInstance().getFreeSpace(path);
+    }
+
+    /**
+     * Displays the free space, on the event dispatch thread.
+     */
+    @Override
+    protected void done()
+    {
+        long freeBytes;
+        try
+        {
+            freeBytes = get();
+        }
+        catch (Exception exception)
+        {
+            logger.log(Level.WARNING, "Failed to determine free space: " + exception.getMessage(), exception);
+            freeBytes = -1;
+        }
+        showFreeSpace(freeBytes);
+    }
+
+    /**
+     * Displays the free space.
+     *
+     * @param freeBytes the free space, in bytes, or {@code -1} if it cannot be determined
+     */
+    protected void showFreeSpace(long freeBytes)
+    {
+        label.setText((freeBytes < 0) ? unknown : Pack.toByteUnitsString(freeBytes));
+    }
+}
@@ -30,6 +30,7 @@ import com.izforge.izpack.api.data.PackColor;
 import com.izforge.izpack.api.data.Variables;
 import com.izforge.izpack.api.resource.Messages;
 import com.izforge.izpack.api.rules.RulesEngine;
+import com.izforge.izpack.installer.util.DiskRequirements;
 import com.izforge.izpack.installer.util.PackHelper;
 
 import javax.swing.table.AbstractTableModel;
@@ -64,6 +65,11 @@ public class PacksModel extends AbstractTableModel
 
     private boolean modifyInstallation;
 
+    /**
+     * The disk space required by the packs to install, updated as the selection changes.
+     */
+    private final DiskRequirements requirements;
+
     //Negative number represent that the checkbox is unselectable
     public final int PARTIAL_SELECTED = 2;
     public final int SELECTED = 1;
@@ -84,6 +90,7 @@ public class PacksModel extends AbstractTableModel
         }
         this.variables = idata.getVariables();
         this.packsToInstall = idata.getSelectedPacks();
+        this.requirements = new DiskRequirements(variables);
 
         this.modifyInstallation = Boolean.valueOf(idata.getVariable(InstallData.MODIFY_INSTALLATION));
         this.installedPacks = loadInstallationInformation(modifyInstallation);
@@ -712,9 +719,22 @@ public class PacksModel extends AbstractTableModel
         }
 
         installData.setSelectedPacks(packsToInstall);
+        requirements.update(packsToInstall);
         return packsToInstall;
     }
 
+    /**
+     * Returns the disk space required by the packs to install.
+     * <p/>
+     * This reflects the selection as of the last {@link #updatePacksToInstall()}.
+     *
+     * @return the disk space requirements
+     */
+    public DiskRequirements getDiskRequirements()
+    {
+        return requirements;
+    }
+
 
     /**
      * This function updates the checkboxes after a change by disabling packs that cannot be
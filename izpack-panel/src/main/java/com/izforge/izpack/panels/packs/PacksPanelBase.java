@@ -78,6 +78,7 @@ import com.izforge.izpack.installer.gui.InstallerFrame;
 import com.izforge.izpack.installer.gui.IzPanel;
 import com.izforge.izpack.installer.util.PackHelper;
 import com.izforge.izpack.panels.treepacks.PackValidator;
+import com.izforge.izpack.util.DiskSpace.Volume;
 import com.izforge.izpack.util.IoHelper;
 
 /**
@@ -264,34 +265,39 @@ public abstract class PacksPanelBase extends IzPanel implements PacksPanelInterf
     {
         if (IoHelper.supported("getFreeSpace") && freeSpaceLabel != null)
         {
-            String msg;
-            freeBytes = IoHelper.getFreeSpace(IoHelper.existingParent(
-                    new File(this.installData.getInstallPath())).getAbsolutePath());
-            if (freeBytes < 0)
+            File path = new File(this.installData.getInstallPath());
+            new FreeSpaceWorker(path, packsModel.getDiskRequirements(), freeSpaceLabel,
+                                getString("PacksPanel.notAscertainable"))
             {
-                msg = getString("PacksPanel.notAscertainable");
-            }
-            else
-            {
-                msg = Pack.toByteUnitsString(freeBytes);
-            }
-            freeSpaceLabel.setText(msg);
+                @Override
+                protected void showFreeSpace(long bytes)
+                {
+                    freeBytes = bytes;
+                    super.showFreeSpace(bytes);
+                }
+            }.execute();
         }
     }
 
     /**
      * Indicates wether the panel has been validated or not.
      *
-     * @return true if the needed space is less than the free space, else false
+     * @return true if the needed space is less than the free space on each volume, else false
      */
     @Override
     public boolean isValidated()
     {
-        if (IoHelper.supported("getFreeSpace") && freeBytes >= 0 && freeBytes <= bytes)
+        packsModel.updatePacksToInstall();
+        if (IoHelper.supported("getFreeSpace"))
         {
-            JOptionPane.showMessageDialog(this, getString("PacksPanel.notEnoughSpace"),
-                                          getString("installer.error"), JOptionPane.ERROR_MESSAGE);
-            return (false);
+            List<Volume> insufficient = packsModel.getDiskRequirements().getInsufficient();
+            if (!insufficient.isEmpty())
+            {
+                logger.info("Insufficient space on: " + insufficient);
+                JOptionPane.showMessageDialog(this, getString("PacksPanel.notEnoughSpace"),
+                                              getString("installer.error"), JOptionPane.ERROR_MESSAGE);
+                return (false);
+            }
         }
 
         for (Pack pack : this.installData.getAvailablePacks())
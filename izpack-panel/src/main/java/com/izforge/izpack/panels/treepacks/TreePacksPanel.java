@@ -44,8 +44,10 @@ import com.izforge.izpack.installer.gui.InstallerFrame;
 import com.izforge.izpack.installer.gui.IzPanel;
 import com.izforge.izpack.installer.util.PackHelper;
 import com.izforge.izpack.installer.web.WebAccessor;
+import com.izforge.izpack.panels.packs.FreeSpaceWorker;
 import com.izforge.izpack.panels.packs.PacksModel;
 import com.izforge.izpack.panels.packs.PacksPanelAutomationHelper;
+import com.izforge.izpack.util.DiskSpace.Volume;
 import com.izforge.izpack.util.IoHelper;
 import com.izforge.izpack.util.file.FileUtils;
 
@@ -294,50 +296,41 @@ public class TreePacksPanel extends IzPanel
         }
     }
 
-    private long getAvaiableBytes()
-    {
-        return IoHelper.getFreeSpace(IoHelper.existingParent(
-                new File(this.installData.getInstallPath())).getAbsolutePath());
-    }
     /**
      * Show the amount of free space available for the installation path.
+     * <p/>
+     * The free space is determined in the background, to avoid blocking the event dispatch thread.
      */
     private void showFreeSpace()
     {
         if (IoHelper.supported("getFreeSpace") && freeSpaceLabel != null)
         {
-            String msg = null;
-            long freeBytes = getAvaiableBytes();
-            if (freeBytes < 0)
-            {
-                msg = getString("PacksPanel.notAscertainable");
-            }
-            else
-            {
-                msg = Pack.toByteUnitsString(freeBytes);
-            }
-            freeSpaceLabel.setText(msg);
+            File path = new File(this.installData.getInstallPath());
+            new FreeSpaceWorker(path, packsModel.getDiskRequirements(), freeSpaceLabel,
+                                getString("PacksPanel.notAscertainable")).execute();
         }
     }
 
     /**
      * Indicates whether the panel has been validated or not.
      *
-     * @return true if the needed space is less than the free space, else false
+     * @return true if the needed space is less than the free space on each volume, else false
      */
     @Override
     public boolean isValidated()
     {
         packsModel.updatePacksToInstall();
-        long freeBytes = getAvaiableBytes();
-        if (IoHelper.supported("getFreeSpace")
-                && freeBytes >= 0
-                && freeBytes <= packsModel.getTotalByteSize())
+        if (IoHelper.supported("getFreeSpace"))
         {
-            JOptionPane.showMessageDialog(
-                this, getString("PacksPanel.notEnoughSpace"), getString("installer.error"),
-                                 JOptionPane.ERROR_MESSAGE);
-            return false;
+            List<Volume> insufficient = packsModel.getDiskRequirements().getInsufficient();
+            if (!insufficient.isEmpty())
+            {
+                logger.info("Insufficient space on: " + insufficient);
+                JOptionPane.showMessageDialog(
+                    this, getString("PacksPanel.notEnoughSpace"), getString("installer.error"),
+                                     JOptionPane.ERROR_MESSAGE);
+                return false;
+            }
         }
         return true;
     }
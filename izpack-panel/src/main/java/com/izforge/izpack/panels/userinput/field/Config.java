@@ -29,9 +29,11 @@ import java.util.logging.Logger;
 
 import com.izforge.izpack.api.adaptator.IXMLElement;
 import com.izforge.izpack.api.adaptator.IXMLParser;
+import com.izforge.izpack.api.adaptator.impl.BinaryXML;
 import com.izforge.izpack.api.adaptator.impl.XMLParser;
 import com.izforge.izpack.api.data.InstallData;
 import com.izforge.izpack.api.exception.IzPackException;
+import com.izforge.izpack.api.exception.ResourceNotFoundException;
 import com.izforge.izpack.api.factory.ObjectFactory;
 import com.izforge.izpack.api.resource.Messages;
 import com.izforge.izpack.api.resource.Resources;
@@ -89,6 +91,8 @@ public class Config
 
     /**
      * Constructs a {@code Config}.
+     * <p/>
+     * If the compiler has precompiled the resource, this is read in preference to parsing the XML.
      *
      * @param path        the resource path
      * @param resources   the resources
@@ -99,28 +103,13 @@ public class Config
     public Config(String path, Resources resources, InstallData installData, ObjectFactory factory,
                   Messages messages)
     {
-        IXMLParser parser = new XMLParser();
-
         URL url = resources.getURL(path);
         this.path = url.getPath();
         this.installData = installData;
         this.factory = factory;
         this.messages = messages;
 
-        InputStream input = null;
-        try
-        {
-            input = url.openStream();
-            root = parser.parse(input);
-        }
-        catch (IOException exception)
-        {
-            throw new IzPackException("Failed to open: " + path);
-        }
-        finally
-        {
-            FileUtils.close(input);
-        }
+        root = read(path, url, resources);
     }
 
     /**
@@ -399,4 +388,42 @@ public class Config
         return factory;
     }
 
+    /**
+     * Reads the root element of a configuration, preferring the compiled form if it is present.
+     *
+     * @param path      the resource path
+     * @param url       the URL of the XML resource
+     * @param resources the resources
+     * @return the root element
+     * @throws IzPackException if the configuration cannot be read
+     */
+    private static IXMLElement read(String path, URL url, Resources resources)
+    {
+        IXMLElement result;
+        InputStream input = null;
+        try
+        {
+            try
+            {
+                input = resources.getInputStream(BinaryXML.getResourceName(path));
+                result = BinaryXML.read(input);
+            }
+            catch (ResourceNotFoundException exception)
+            {
+                IXMLParser parser = new XMLParser();
+                input = url.openStream();
+                result = parser.parse(input);
+            }
+        }
+        catch (IOException exception)
+        {
+            throw new IzPackException("Failed to open: " + path);
+        }
+        finally
+        {
+            FileUtils.close(input);
+        }
+        return result;
+    }
+
 }
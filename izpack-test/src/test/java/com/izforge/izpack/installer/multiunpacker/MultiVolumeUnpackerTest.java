@@ -27,14 +27,19 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
+import java.io.OutputStream;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import org.junit.Rule;
 import org.junit.Test;
@@ -68,7 +73,9 @@ import com.izforge.izpack.installer.data.UninstallData;
 import com.izforge.izpack.installer.event.InstallerListeners;
 import com.izforge.izpack.installer.unpacker.ConsolePackResources;
 import com.izforge.izpack.installer.unpacker.FileQueueFactory;
+import com.izforge.izpack.installer.unpacker.InstallationSinkFactory;
 import com.izforge.izpack.installer.unpacker.PackResources;
+import com.izforge.izpack.installer.unpacker.UnpackerBase;
 import com.izforge.izpack.merge.MergeManager;
 import com.izforge.izpack.merge.resolve.MergeableResolver;
 import com.izforge.izpack.test.util.TestHelper;
@@ -169,6 +176,72 @@ public class MultiVolumeUnpackerTest
         assertFileNotExists(installDir, file6.getName());
     }
 
+    /**
+     * Verifies that when installing to an archive, a file installed by more than one pack is written once, with
+     * the content from the first pack, rather than failing the installation.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testUnpackSharedFileToArchive() throws Exception
+    {
+        File baseDir = temporaryFolder.getRoot();
+        File packageDir = new File(baseDir, "package");
+        File installerJar = new File(packageDir, "installer.jar");
+        File installDir = new File(baseDir, "install");
+        File archive = new File(baseDir, "install.zip");
+        File dir1 = new File(baseDir, "dir1");
+        File dir2 = new File(baseDir, "dir2");
+        assertTrue(packageDir.mkdir());
+        assertTrue(dir1.mkdir());
+        assertTrue(dir2.mkdir());
+
+        // create two packs that install different content to the same path, the second overriding the first
+        File file1 = createFile(dir1, "shared.dat", 1024);
+        File file2 = createFile(dir2, "shared.dat", 2048);
+        PackInfo base = createPack("base", dir1, file1);
+        PackInfo pack1 = new PackInfo("pack1", "pack1", "The pack1 package", false, false, null, true, 0);
+        pack1.addFile(dir2, file2, "$INSTALL_PATH/" + file2.getName(), null, OverrideType.OVERRIDE_TRUE, null,
+                      Blockable.BLOCKABLE_NONE, null, null);
+
+        MultiVolumePackager packager = createPackager(baseDir, installerJar);
+        packager.addPack(base);
+        packager.addPack(pack1);
+        packager.createInstaller();
+
+        // unpack the installer to a zip archive
+        Resources resources = createResources(installerJar);
+        AutomatedInstallData installData = createInstallData(packageDir, installDir, resources);
+        installData.setVariable(UnpackerBase.SINK, InstallationSinkFactory.ZIP + archive.getPath());
+        setSelectedPacks(installData, "base", "pack1");
+        MultiVolumeUnpacker unpacker = createUnpacker(resources, installData);
+        unpacker.unpack();
+
+        // verify the archive contains a single entry for the shared file, with the content from the first pack
+        String name = new File(installDir, file1.getName()).getAbsolutePath().replace(File.separatorChar, '/');
+        File extracted = new File(baseDir, "extracted.dat");
+        int found = 0;
+        ZipInputStream in = new ZipInputStream(new FileInputStream(archive));
+        try
+        {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null)
+            {
+                if (name.endsWith("/" + entry.getName()))
+                {
+                    ++found;
+                    copy(in, extracted);
+                }
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        assertEquals(1, found);
+        assertFileEquals(file1, extracted);
+    }
+
     /**
      * Helper to set the selected packs.
      *
@@ -385,6 +458,31 @@ public class MultiVolumeUnpackerTest
         return TestHelper.createFile(new File(baseDir, name), size);
     }
 
+    /**
+     * Helper to copy a stream to a file.
+     *
+     * @param in   the stream to copy
+     * @param file the file to write to
+     * @throws IOException for any I/O error
+     */
+    private void copy(InputStream in, File file) throws IOException
+    {
+        OutputStream out = new FileOutputStream(file);
+        try
+        {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+            {
+                out.write(buffer, 0, read);
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
     /**
      * Verifies a file has been installed.
      *
@@ -24,8 +24,11 @@ package com.izforge.izpack.util;
 import java.io.*;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.Checksum;
 
 
 /**
@@ -275,4 +278,58 @@ public class FileUtil
         return null;
     }
 
+    /**
+     * Calculates the digest of a file's content.
+     *
+     * @param file      the file
+     * @param algorithm the digest algorithm
+     * @return the digest
+     * @throws IOException if the file cannot be read, or the algorithm isn't supported
+     */
+    public static byte[] getDigest(File file, String algorithm) throws IOException
+    {
+        return getDigest(file, algorithm, null);
+    }
+
+    /**
+     * Calculates the digest of a file's content, optionally updating a checksum in the same pass.
+     *
+     * @param file      the file
+     * @param algorithm the digest algorithm
+     * @param checksum  the checksum to update. May be {@code null}
+     * @return the digest
+     * @throws IOException if the file cannot be read, or the algorithm isn't supported
+     */
+    public static byte[] getDigest(File file, String algorithm, Checksum checksum) throws IOException
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance(algorithm);
+        }
+        catch (NoSuchAlgorithmException exception)
+        {
+            throw new IOException("Unsupported digest algorithm: " + algorithm, exception);
+        }
+        InputStream in = new FileInputStream(file);
+        try
+        {
+            byte[] buffer = new byte[65536];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+            {
+                digest.update(buffer, 0, read);
+                if (checksum != null)
+                {
+                    checksum.update(buffer, 0, read);
+                }
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        return digest.digest();
+    }
+
 }
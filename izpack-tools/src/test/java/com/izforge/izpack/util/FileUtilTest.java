@@ -0,0 +1,90 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+/**
+ * Tests the {@link FileUtil} class.
+ *
+ * @author Tim Anderson
+ */
+public class FileUtilTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Tests the {@link FileUtil#getDigest(File, String)} method.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testGetDigest() throws IOException
+    {
+        File file = temporaryFolder.newFile("abc.txt");
+        FileOutputStream out = new FileOutputStream(file);
+        out.write("abc".getBytes("US-ASCII"));
+        out.close();
+
+        assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d", toHex(FileUtil.getDigest(file, "SHA-1")));
+
+        // empty file
+        File empty = temporaryFolder.newFile("empty.txt");
+        assertEquals("da39a3ee5e6b4b0d3255bfef95601890afd80709", toHex(FileUtil.getDigest(empty, "SHA-1")));
+    }
+
+    /**
+     * Verifies that an {@link IOException} is thrown for unsupported digest algorithms.
+     *
+     * @throws IOException expected
+     */
+    @Test(expected = IOException.class)
+    public void testUnsupportedAlgorithm() throws IOException
+    {
+        FileUtil.getDigest(temporaryFolder.newFile("file.txt"), "unknown");
+    }
+
+    /**
+     * Converts a SHA-1 digest to hex.
+     *
+     * @param digest the digest
+     * @return the hex form of the digest
+     */
+    private String toHex(byte[] digest)
+    {
+        return String.format("%040x", new BigInteger(1, digest));
+    }
+}
@@ -223,9 +223,10 @@ public class PackInfo implements Serializable
      * @param osList     the target operation system(s) of this pack.
      * @param override   what to do if the file already exists when installing
      * @param condition
+     * @return the pack file
      * @throws FileNotFoundException if the file specified does not exist.
      */
-    public void addFile(File baseDir, File file, String targetfile, List<OsModel> osList, OverrideType override,
+    public PackFile addFile(File baseDir, File file, String targetfile, List<OsModel> osList, OverrideType override,
                         String overrideRenameTo, Blockable blockable, Map additionals, String condition)
             throws IOException
     {
@@ -239,6 +240,7 @@ public class PackInfo implements Serializable
         packFile.setLoosePackInfo(pack.isLoose());
         packFile.setCondition(condition);
         files.put(packFile, file);
+        return packFile;
     }
 
     /**
@@ -0,0 +1,344 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Determines the free space of the volumes that paths reside on, without starting external processes.
+ * <p/>
+ * Paths are mapped to volumes using {@code java.nio.file.Files.getFileStore} when running on a JVM that provides
+ * it, accessed reflectively as the installer targets Java 6. This allows paths on the same volume to share a
+ * single {@link Volume}, so that space requirements can be aggregated per volume. Otherwise, each existing
+ * directory is treated as its own volume.
+ * <p/>
+ * The free space of each volume is cached for a configurable period, so that it may be queried repeatedly as
+ * pack selections change.
+ *
+ * @author Tim Anderson
+ */
+public class DiskSpace
+{
+
+    /**
+     * The default period to cache free space for, in milliseconds.
+     */
+    public static final long DEFAULT_EXPIRY = 5000;
+
+    /**
+     * The shared instance.
+     */
+    private static final DiskSpace INSTANCE = new DiskSpace(DEFAULT_EXPIRY);
+
+    /**
+     * The maximum number of paths to cache the volumes of.
+     */
+    private static final int MAX_PATHS = 256;
+
+    /**
+     * The period to cache free space for, in nanoseconds.
+     */
+    private final long expiry;
+
+    /**
+     * The volumes, keyed on absolute path.
+     */
+    private final Map<File, Volume> paths = new HashMap<File, Volume>();
+
+    /**
+     * The volumes, keyed on file store, or existing directory if file stores are not available.
+     */
+    private final Map<Object, Volume> volumes = new HashMap<Object, Volume>();
+
+    /**
+     * {@code File.toPath()}, or {@code null} if NIO is not available.
+     */
+    private static final Method TO_PATH;
+
+    /**
+     * {@code Files.getFileStore(Path)}, or {@code null} if NIO is not available.
+     */
+    private static final Method GET_FILE_STORE;
+
+    /**
+     * {@code FileStore.getUsableSpace()}, or {@code null} if NIO is not available.
+     */
+    private static final Method GET_USABLE_SPACE;
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(DiskSpace.class.getName());
+
+    static
+    {
+        Method toPath = null;
+        Method getFileStore = null;
+        Method getUsableSpace = null;
+        try
+        {
+            Class<?> files = Class.forName("java.nio.file.Files");
+            Class<?> path = Class.forName("java.nio.file.Path");
+            toPath = File.class.getMethod("toPath");
+            getFileStore = files.getMethod("getFileStore", path);
+            getUsableSpace = Class.forName("java.nio.file.FileStore").getMethod("getUsableSpace");
+        }
+        catch (Exception exception)
+        {
+            logger.fine("File stores not available: " + exception);
+            toPath = null;
+        }
+        TO_PATH = toPath;
+        GET_FILE_STORE = getFileStore;
+        GET_USABLE_SPACE = getUsableSpace;
+    }
+
+    /**
+     * Constructs a {@code DiskSpace}.
+     *
+     * @param expiry the period to cache free space for, in milliseconds. If {@code 0}, free space is determined
+     *               each time it is requested
+     */
+    public DiskSpace(long expiry)
+    {
+        this.expiry = expiry * 1000000L;
+    }
+
+    /**
+     * Returns the shared instance.
+     *
+     * @return the shared instance
+     */
+    public static DiskSpace getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the volume that a path resides on, or would reside on, if it doesn't exist.
+     *
+     * @param path the path
+     * @return the volume
+     */
+    public synchronized Volume getVolume(File path)
+    {
+        File file = path.getAbsoluteFile();
+        Volume result = paths.get(file);
+        if (result == null)
+        {
+            File dir = IoHelper.existingParent(file);
+            Object store = getFileStore(dir);
+            Object key = (store != null) ? store : dir;
+            result = volumes.get(key);
+            if (result == null)
+            {
+                String name = (store != null) ? store.toString() : dir.getPath();
+                result = new Volume(name, dir, store);
+                volumes.put(key, result);
+            }
+            if (paths.size() >= MAX_PATHS)
+            {
+                paths.clear();
+            }
+            paths.put(file, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the free space of the volume that a path resides on.
+     *
+     * @param path the path
+     * @return the free space, in bytes, or {@code -1} if it cannot be determined
+     */
+    public long getFreeSpace(File path)
+    {
+        return getVolume(path).getFreeSpace();
+    }
+
+    /**
+     * Discards the cached volumes of paths, and the cached free space of each volume.
+     * <p/>
+     * This should be invoked if directories may have been created or volumes mounted since paths were last queried.
+     */
+    public synchronized void invalidate()
+    {
+        paths.clear();
+        for (Volume volume : volumes.values())
+        {
+            volume.invalidate();
+        }
+    }
+
+    /**
+     * Returns the file store of an existing directory.
+     *
+     * @param dir the directory
+     * @return the file store, or {@code null} if file stores are not available
+     */
+    private Object getFileStore(File dir)
+    {
+        Object result = null;
+        if (TO_PATH != null)
+        {
+            try
+            {
+                result = GET_FILE_STORE.invoke(null, TO_PATH.invoke(dir));
+            }
+            catch (Exception exception)
+            {
+                logger.log(Level.FINE, "Failed to determine file store of " + dir, exception);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A volume, and its cached free space.
+     */
+    public class Volume
+    {
+
+        /**
+         * The volume name.
+         */
+        private final String name;
+
+        /**
+         * An existing directory on the volume.
+         */
+        private final File dir;
+
+        /**
+         * The file store. May be {@code null}.
+         */
+        private final Object store;
+
+        /**
+         * The cached free space.
+         */
+        private long freeSpace;
+
+        /**
+         * Determines if the free space has been determined.
+         */
+        private boolean cached;
+
+        /**
+         * The time when the free space was determined, in nanoseconds.
+         */
+        private long time;
+
+        /**
+         * Constructs a {@code Volume}.
+         *
+         * @param name  the volume name
+         * @param dir   an existing directory on the volume
+         * @param store the file store. May be {@code null}
+         */
+        Volume(String name, File dir, Object store)
+        {
+            this.name = name;
+            this.dir = dir;
+            this.store = store;
+        }
+
+        /**
+         * Returns the volume name.
+         *
+         * @return the volume name
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * Returns the free space of the volume.
+         * <p/>
+         * This is cached for the expiry period of the parent {@link DiskSpace}.
+         *
+         * @return the free space, in bytes, or {@code -1} if it cannot be determined
+         */
+        public synchronized long getFreeSpace()
+        {
+            long now = System.nanoTime();
+            if (!cached || now - time >= expiry)
+            {
+                freeSpace = determineFreeSpace();
+                time = now;
+                cached = true;
+            }
+            return freeSpace;
+        }
+
+        /**
+         * Discards the cached free space.
+         */
+        public synchronized void invalidate()
+        {
+            cached = false;
+        }
+
+        /**
+         * Returns the volume name.
+         *
+         * @return the volume name
+         */
+        @Override
+        public String toString()
+        {
+            return name;
+        }
+
+        /**
+         * Determines the free space of the volume.
+         *
+         * @return the free space, in bytes, or {@code -1} if it cannot be determined
+         */
+        private long determineFreeSpace()
+        {
+            long result = -1;
+            if (store != null)
+            {
+                try
+                {
+                    result = (Long) GET_USABLE_SPACE.invoke(store);
+                }
+                catch (Exception exception)
+                {
+                    logger.log(Level.FINE, "Failed to determine free space of " + name, exception);
+                }
+            }
+            if (result < 0 && dir.exists())
+            {
+                result = dir.getUsableSpace();
+            }
+            return result;
+        }
+    }
+
+}
@@ -332,13 +332,17 @@ public class FileExecutor
             {
                 // fix executable permission for unix systems
                 logger.fine("Making file executable (setting executable flag)");
-                String[] params = {"/bin/chmod", permissions, file.toString()};
-                exitStatus = executeCommand(params, output);
-                if (exitStatus != 0)
+                if (!file.setExecutable(true, false))
                 {
-                    handler.emitWarning("file execution error", "Error executing \n" + params[0]
-                            + " " + params[1] + " " + params[2]);
-                    continue;
+                    // fall back to chmod
+                    String[] params = {"/bin/chmod", permissions, file.toString()};
+                    exitStatus = executeCommand(params, output);
+                    if (exitStatus != 0)
+                    {
+                        handler.emitWarning("file execution error", "Error executing \n" + params[0]
+                                + " " + params[1] + " " + params[2]);
+                        continue;
+                    }
                 }
             }
 
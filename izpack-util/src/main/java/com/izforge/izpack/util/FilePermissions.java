@@ -0,0 +1,351 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Reads and sets POSIX file permissions without starting a <em>chmod</em> process where possible.
+ * <p/>
+ * Permissions are set using {@code java.nio.file.Files.setPosixFilePermissions} when running on a JVM that provides
+ * it, accessed reflectively as the installer targets Java 6. Otherwise, modes whose group and other bits are the
+ * same are set using the {@code java.io.File} permission methods. Only when neither is possible is <em>chmod</em>
+ * run, once per directory and mode.
+ * <p/>
+ * Instances collect the permissions to set so they can be applied as a batch.
+ *
+ * @author Tim Anderson
+ */
+public class FilePermissions
+{
+
+    /**
+     * The pending permissions, keyed on directory, then mode.
+     */
+    private final Map<File, Map<Integer, List<File>>> pending = new LinkedHashMap<File, Map<Integer, List<File>>>();
+
+    /**
+     * The maximum number of files to pass to a single <em>chmod</em> invocation.
+     */
+    private static final int MAX_CHMOD_FILES = 100;
+
+    /**
+     * {@code File.toPath()}, or {@code null} if NIO is not available.
+     */
+    private static final Method TO_PATH;
+
+    /**
+     * {@code Files.getPosixFilePermissions(Path, LinkOption...)}, or {@code null} if NIO is not available.
+     */
+    private static final Method GET_PERMISSIONS;
+
+    /**
+     * {@code Files.setPosixFilePermissions(Path, Set)}, or {@code null} if NIO is not available.
+     */
+    private static final Method SET_PERMISSIONS;
+
+    /**
+     * The {@code PosixFilePermission} constants, in mode bit order from {@code OWNER_READ} to
+     * {@code OTHERS_EXECUTE}, or {@code null} if NIO is not available.
+     */
+    private static final Object[] PERMISSIONS;
+
+    /**
+     * The empty {@code LinkOption} array, or {@code null} if NIO is not available.
+     */
+    private static final Object NO_LINK_OPTIONS;
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(FilePermissions.class.getName());
+
+    static
+    {
+        Method toPath = null;
+        Method getPermissions = null;
+        Method setPermissions = null;
+        Object[] permissions = null;
+        Object noLinkOptions = null;
+        try
+        {
+            Class<?> files = Class.forName("java.nio.file.Files");
+            Class<?> path = Class.forName("java.nio.file.Path");
+            Class<?> linkOption = Class.forName("java.nio.file.LinkOption");
+            noLinkOptions = Array.newInstance(linkOption, 0);
+            toPath = File.class.getMethod("toPath");
+            getPermissions = files.getMethod("getPosixFilePermissions", path, noLinkOptions.getClass());
+            setPermissions = files.getMethod("setPosixFilePermissions", path, Set.class);
+            permissions = Class.forName("java.nio.file.attribute.PosixFilePermission").getEnumConstants();
+        }
+        catch (Exception exception)
+        {
+            logger.fine("POSIX file permissions not available: " + exception);
+            toPath = null;
+        }
+        TO_PATH = toPath;
+        GET_PERMISSIONS = getPermissions;
+        SET_PERMISSIONS = setPermissions;
+        PERMISSIONS = permissions;
+        NO_LINK_OPTIONS = noLinkOptions;
+    }
+
+    /**
+     * Adds a file whose permissions should be set when {@link #apply()} is invoked.
+     *
+     * @param file the file
+     * @param mode the POSIX mode bits, e.g. {@code 0755}
+     */
+    public synchronized void add(File file, int mode)
+    {
+        File dir = file.getAbsoluteFile().getParentFile();
+        Map<Integer, List<File>> modes = pending.get(dir);
+        if (modes == null)
+        {
+            modes = new LinkedHashMap<Integer, List<File>>();
+            pending.put(dir, modes);
+        }
+        List<File> files = modes.get(mode);
+        if (files == null)
+        {
+            files = new ArrayList<File>();
+            modes.put(mode, files);
+        }
+        files.add(file);
+    }
+
+    /**
+     * Determines if there are permissions to apply.
+     *
+     * @return <tt>true</tt> if there are no permissions to apply
+     */
+    public synchronized boolean isEmpty()
+    {
+        return pending.isEmpty();
+    }
+
+    /**
+     * Sets the permissions of each added file.
+     * <p/>
+     * This is a no-op on platforms other than UNIX.
+     *
+     * @throws IOException if the permissions of a file cannot be set
+     */
+    public synchronized void apply() throws IOException
+    {
+        try
+        {
+            if (OsVersion.IS_UNIX)
+            {
+                for (Map<Integer, List<File>> modes : pending.values())
+                {
+                    for (Map.Entry<Integer, List<File>> entry : modes.entrySet())
+                    {
+                        int mode = entry.getKey();
+                        List<File> failed = new ArrayList<File>();
+                        for (File file : entry.getValue())
+                        {
+                            if (!setMode(file, mode))
+                            {
+                                failed.add(file);
+                            }
+                        }
+                        chmod(failed, mode);
+                    }
+                }
+            }
+        }
+        finally
+        {
+            pending.clear();
+        }
+    }
+
+    /**
+     * Returns the POSIX mode bits of a file.
+     *
+     * @param file the file
+     * @return the mode bits, or {@code -1} if they cannot be determined
+     */
+    public static int getMode(File file)
+    {
+        int result = -1;
+        if (TO_PATH != null)
+        {
+            try
+            {
+                Set<?> permissions = (Set<?>) GET_PERMISSIONS.invoke(null, TO_PATH.invoke(file), NO_LINK_OPTIONS);
+                result = 0;
+                for (int i = 0; i < PERMISSIONS.length; ++i)
+                {
+                    if (permissions.contains(PERMISSIONS[i]))
+                    {
+                        result |= 0400 >> i;
+                    }
+                }
+            }
+            catch (Exception exception)
+            {
+                // UnsupportedOperationException if the file system isn't POSIX compliant
+                logger.log(Level.FINE, "Cannot read permissions of " + file, exception);
+                result = -1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sets the POSIX mode bits of a file, without starting a process.
+     * <p/>
+     * NIO can't express the setuid, setgid and sticky bits, so modes that include them require <em>chmod</em>.
+     *
+     * @param file the file
+     * @param mode the mode bits
+     * @return <tt>true</tt> if the mode was set, <tt>false</tt> if it cannot be set without <em>chmod</em>
+     */
+    public static boolean setMode(File file, int mode)
+    {
+        if (TO_PATH != null && (mode & 07000) == 0)
+        {
+            try
+            {
+                Set<Object> permissions = new HashSet<Object>();
+                for (int i = 0; i < PERMISSIONS.length; ++i)
+                {
+                    if ((mode & (0400 >> i)) != 0)
+                    {
+                        permissions.add(PERMISSIONS[i]);
+                    }
+                }
+                SET_PERMISSIONS.invoke(null, TO_PATH.invoke(file), permissions);
+                return true;
+            }
+            catch (InvocationTargetException exception)
+            {
+                // UnsupportedOperationException if the file system isn't POSIX compliant
+                logger.log(Level.FINE, "Cannot set permissions of " + file, exception.getCause());
+            }
+            catch (IllegalAccessException exception)
+            {
+                logger.log(Level.FINE, "Cannot set permissions of " + file, exception);
+            }
+        }
+        return setModeIO(file, mode);
+    }
+
+    /**
+     * Returns a mode in the octal form accepted by <em>chmod</em>.
+     *
+     * @param mode the mode bits
+     * @return the octal mode
+     */
+    public static String toString(int mode)
+    {
+        String result = Integer.toOctalString(mode & 07777);
+        while (result.length() < 4)
+        {
+            result = "0" + result;
+        }
+        return result;
+    }
+
+    /**
+     * Sets the mode of a file using the {@code java.io.File} permission methods.
+     * <p/>
+     * These can only set the owner's permissions, or everyone's, so modes where group and other bits differ,
+     * or that include setuid, setgid or sticky bits, are not supported.
+     *
+     * @param file the file
+     * @param mode the mode bits
+     * @return <tt>true</tt> if the mode was set, <tt>false</tt> if it is not supported
+     */
+    private static boolean setModeIO(File file, int mode)
+    {
+        int group = (mode >> 3) & 07;
+        int other = mode & 07;
+        if (group != other || (mode & 07000) != 0)
+        {
+            return false;
+        }
+        int owner = (mode >> 6) & 07;
+        boolean result = file.setReadable((other & 04) != 0, false)
+                && file.setWritable((other & 02) != 0, false)
+                && file.setExecutable((other & 01) != 0, false);
+        if (result)
+        {
+            // set the owner bits that differ from everyone's
+            if ((owner & 04) != (other & 04))
+            {
+                result = file.setReadable((owner & 04) != 0, true);
+            }
+            if (result && (owner & 02) != (other & 02))
+            {
+                result = file.setWritable((owner & 02) != 0, true);
+            }
+            if (result && (owner & 01) != (other & 01))
+            {
+                result = file.setExecutable((owner & 01) != 0, true);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Runs <em>chmod</em> to set the mode of files in the same directory.
+     *
+     * @param files the files
+     * @param mode  the mode bits
+     * @throws IOException if <em>chmod</em> fails
+     */
+    private static void chmod(List<File> files, int mode) throws IOException
+    {
+        FileExecutor executor = new FileExecutor();
+        for (int start = 0; start < files.size(); start += MAX_CHMOD_FILES)
+        {
+            List<File> batch = files.subList(start, Math.min(files.size(), start + MAX_CHMOD_FILES));
+            String[] params = new String[batch.size() + 2];
+            params[0] = "chmod";
+            params[1] = toString(mode);
+            for (int i = 0; i < batch.size(); ++i)
+            {
+                params[i + 2] = batch.get(i).getAbsolutePath();
+            }
+            String[] output = new String[2];
+            if (executor.executeCommand(params, output) != 0)
+            {
+                throw new IOException("Failed to set permissions " + params[1] + " of " + batch + ": " + output[1]);
+            }
+        }
+    }
+}
@@ -312,6 +312,8 @@ public class IoHelper
     /**
      * Changes the permissions of the given file to the given POSIX permissions. This method will be
      * raised an exception, if the OS is not UNIX.
+     * <p/>
+     * Octal permissions are set without starting a <em>chmod</em> process where possible. See {@link FilePermissions}.
      *
      * @param path        the absolute path of the file for which the permissions should be changed
      * @param permissions POSIX permissions to be set
@@ -322,6 +324,11 @@ public class IoHelper
         // Perform UNIX
         if (OsVersion.IS_UNIX)
         {
+            if (permissions.matches("[0-7]{1,4}") && FilePermissions.setMode(new File(path),
+                                                                            Integer.parseInt(permissions, 8)))
+            {
+                return;
+            }
             String[] params = {"chmod", permissions, path};
             String[] output = new String[2];
             FileExecutor fe = new FileExecutor();
@@ -335,51 +342,16 @@ public class IoHelper
 
     /**
      * Returns the free (disk) space for the given path. If it is not ascertainable -1 returns.
+     * <p/>
+     * The free space is determined without starting an external process, and is cached per volume
+     * by {@link DiskSpace}.
      *
      * @param path path for which the free space should be detected
      * @return the free space for the given path
      */
     public static long getFreeSpace(String path)
     {
-        long retval = -1;
-        if (OsVersion.IS_WINDOWS)
-        {
-            String command = "cmd.exe";
-            if (System.getProperty("os.name").toLowerCase().contains("windows 9"))
-            {
-                return (-1);
-            }
-            String[] params = {command, "/C", "\"dir /D /-C \"" + path + "\"\""};
-            String[] output = new String[2];
-            FileExecutor fe = new FileExecutor();
-            fe.executeCommand(params, output);
-            retval = extractLong(output[0], -3, 3, "%");
-        }
-        else if (OsVersion.IS_SUNOS)
-        {
-            String[] params = {"df", "-k", path};
-            String[] output = new String[2];
-            FileExecutor fe = new FileExecutor();
-            fe.executeCommand(params, output);
-            retval = extractLong(output[0], -3, 3, "%") * 1024;
-        }
-        else if (OsVersion.IS_HPUX)
-        {
-            String[] params = {"bdf", path};
-            String[] output = new String[2];
-            FileExecutor fe = new FileExecutor();
-            fe.executeCommand(params, output);
-            retval = extractLong(output[0], -3, 3, "%") * 1024;
-        }
-        else if (OsVersion.IS_UNIX)
-        {
-            String[] params = {"df", "-Pk", path};
-            String[] output = new String[2];
-            FileExecutor fe = new FileExecutor();
-            fe.executeCommand(params, output);
-            retval = extractLong(output[0], -3, 3, "%") * 1024;
-        }
-        return retval;
+        return DiskSpace.getInstance().getFreeSpace(new File(path));
     }
 
     /**
@@ -394,18 +366,7 @@ public class IoHelper
     {
         if ("getFreeSpace".equals(method))
         {
-            if (OsVersion.IS_UNIX)
-            {
-                return true;
-            }
-            if (OsVersion.IS_WINDOWS)
-            { // getFreeSpace do not work on Windows 98.
-                if (System.getProperty("os.name").toLowerCase().contains("windows 9"))
-                {
-                    return (false);
-                }
-                return (true);
-            }
+            return true;
         }
         else if ("chmod".equals(method))
         {
@@ -457,60 +418,6 @@ public class IoHelper
         return result;
     }
 
-    /**
-     * Extracts a long value from a string in a special manner. The string will be broken into
-     * tokens with a standard StringTokenizer. Arround the assumed place (with the given half range)
-     * the tokens are scaned reverse for a token which represents a long. if useNotIdentifier is not
-     * null, tokens which are contains this string will be ignored. The first founded long returns.
-     *
-     * @param in               the string which should be parsed
-     * @param assumedPlace     token number which should contain the value
-     * @param halfRange        half range for detection range
-     * @param useNotIdentifier string which determines tokens which should be ignored
-     * @return founded long
-     */
-    private static long extractLong(String in, int assumedPlace, int halfRange,
-                                    String useNotIdentifier)
-    {
-        long retval = -1;
-        StringTokenizer st = new StringTokenizer(in);
-        int length = st.countTokens();
-        int i;
-        int currentRange = 0;
-        String[] interestedEntries = new String[halfRange + halfRange];
-        for (i = 0; i < length - halfRange + assumedPlace; ++i)
-        {
-            st.nextToken(); // Forget this entries.
-        }
-
-        for (i = 0; i < halfRange + halfRange; ++i)
-        { // Put the interesting Strings into an intermediaer array.
-            if (st.hasMoreTokens())
-            {
-                interestedEntries[i] = st.nextToken();
-                currentRange++;
-            }
-        }
-
-        for (i = currentRange - 1; i >= 0; --i)
-        {
-            if (useNotIdentifier != null && interestedEntries[i].contains(useNotIdentifier))
-            {
-                continue;
-            }
-            try
-            {
-                retval = Long.parseLong(interestedEntries[i]);
-            }
-            catch (NumberFormatException nfe)
-            {
-                continue;
-            }
-            break;
-        }
-        return retval;
-    }
-
     /**
      * Returns the primary group of the current user. This feature will be supported only on Unix.
      * On other systems null returns.
@@ -0,0 +1,265 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * A low overhead tracer of installer events, such as condition evaluation, dynamic variable refreshes, variable
+ * changes, panel switches and unpacking.
+ * <p/>
+ * Tracing is disabled by default. When disabled, the cost of each trace point is a single volatile read. It may be
+ * enabled by setting the <em>izpack.trace</em> system property to the path of a file to write events to, or
+ * programmatically via {@link #enable(Writer)}.
+ * <p/>
+ * Each event is written as a single line, containing the time in milliseconds, the thread name, the event type,
+ * the duration in microseconds, and any event specific fields as name=value pairs. E.g.:
+ * <pre>
+ * 1370836251030 main condition 12 id=izpack.linuxinstall result=true
+ * </pre>
+ * Trace points should be written as:
+ * <pre>
+ * long start = Tracer.start();
+ * ...
+ * if (Tracer.isEnabled())
+ * {
+ *     Tracer.event("condition", start, "id", id, "result", result);
+ * }
+ * </pre>
+ * so that the event fields aren't constructed unless tracing is enabled.
+ *
+ * @author Tim Anderson
+ */
+public final class Tracer
+{
+
+    /**
+     * The system property naming the file to write events to.
+     */
+    public static final String TRACE_PROPERTY = "izpack.trace";
+
+    /**
+     * The writer to write events to, or {@code null} if tracing is disabled.
+     */
+    private static volatile PrintWriter writer;
+
+    /**
+     * Determines if the shutdown hook to flush events has been registered.
+     */
+    private static boolean hook;
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(Tracer.class.getName());
+
+    static
+    {
+        String path = System.getProperty(TRACE_PROPERTY);
+        if (path != null && path.trim().length() != 0)
+        {
+            try
+            {
+                enable(new File(path.trim()));
+            }
+            catch (IOException exception)
+            {
+                logger.log(Level.WARNING, "Failed to enable tracing to " + path, exception);
+            }
+        }
+    }
+
+    /**
+     * Default constructor.
+     */
+    private Tracer()
+    {
+    }
+
+    /**
+     * Determines if tracing is enabled.
+     *
+     * @return {@code true} if tracing is enabled
+     */
+    public static boolean isEnabled()
+    {
+        return writer != null;
+    }
+
+    /**
+     * Returns the start time of an event.
+     *
+     * @return the current time in nanoseconds if tracing is enabled, otherwise {@code 0}
+     */
+    public static long start()
+    {
+        return (writer != null) ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Writes an event, if tracing is enabled.
+     *
+     * @param type   the event type
+     * @param start  the start time of the event, as returned by {@link #start()}, or {@code 0} if the event has no
+     *               duration
+     * @param fields the event fields, as alternating names and values
+     */
+    public static void event(String type, long start, Object... fields)
+    {
+        PrintWriter out = writer;
+        if (out != null)
+        {
+            long duration = (start != 0) ? (System.nanoTime() - start) / 1000 : 0;
+            StringBuilder line = new StringBuilder();
+            line.append(System.currentTimeMillis()).append(' ');
+            append(Thread.currentThread().getName(), line);
+            line.append(' ').append(type).append(' ').append(duration);
+            for (int i = 0; i + 1 < fields.length; i += 2)
+            {
+                line.append(' ').append(fields[i]).append('=');
+                append(fields[i + 1], line);
+            }
+            synchronized (Tracer.class)
+            {
+                if (writer == out)
+                {
+                    out.println(line);
+                }
+            }
+        }
+    }
+
+    /**
+     * Enables tracing to a file.
+     * <p/>
+     * The file is overwritten.
+     *
+     * @param file the file to write events to
+     * @throws IOException if the file cannot be created
+     */
+    public static void enable(File file) throws IOException
+    {
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        enable(out);
+        logger.info("Tracing to " + file.getAbsolutePath());
+    }
+
+    /**
+     * Enables tracing to a writer.
+     * <p/>
+     * Any writer previously traced to is closed.
+     *
+     * @param out the writer to write events to
+     */
+    public static synchronized void enable(Writer out)
+    {
+        disable();
+        writer = new PrintWriter(new BufferedWriter(out));
+        if (!hook)
+        {
+            hook = true;
+            Runtime.getRuntime().addShutdownHook(new Thread("IzPack tracer shutdown")
+            {
+                @Override
+                public void run()
+                {
+                    disable();
+                }
+            });
+        }
+    }
+
+    /**
+     * Disables tracing.
+     * <p/>
+     * The writer being traced to is flushed and closed.
+     */
+    public static synchronized void disable()
+    {
+        PrintWriter out = writer;
+        writer = null;
+        if (out != null)
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Flushes any buffered events.
+     */
+    public static synchronized void flush()
+    {
+        if (writer != null)
+        {
+            writer.flush();
+        }
+    }
+
+    /**
+     * Appends a field value, quoting it if it contains white space, quotes or '='.
+     *
+     * @param value the value. May be {@code null}
+     * @param line  the line to append to
+     */
+    private static void append(Object value, StringBuilder line)
+    {
+        String text = String.valueOf(value);
+        boolean quote = text.length() == 0;
+        for (int i = 0; i < text.length() && !quote; ++i)
+        {
+            char ch = text.charAt(i);
+            quote = Character.isWhitespace(ch) || ch == '"' || ch == '=';
+        }
+        if (quote)
+        {
+            line.append('"');
+            for (int i = 0; i < text.length(); ++i)
+            {
+                char ch = text.charAt(i);
+                if (ch == '"' || ch == '\\')
+                {
+                    line.append('\\').append(ch);
+                }
+                else if (ch == '\n' || ch == '\r')
+                {
+                    line.append(' ');
+                }
+                else
+                {
+                    line.append(ch);
+                }
+            }
+            line.append('"');
+        }
+        else
+        {
+            line.append(text);
+        }
+    }
+}
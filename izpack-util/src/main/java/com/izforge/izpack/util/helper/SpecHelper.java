@@ -30,6 +30,7 @@ import java.util.List;
 
 import com.izforge.izpack.api.adaptator.IXMLElement;
 import com.izforge.izpack.api.adaptator.IXMLParser;
+import com.izforge.izpack.api.adaptator.impl.BinaryXML;
 import com.izforge.izpack.api.adaptator.impl.XMLParser;
 import com.izforge.izpack.api.exception.InstallerException;
 import com.izforge.izpack.api.exception.ResourceNotFoundException;
@@ -90,12 +91,31 @@ public class SpecHelper
 
     /**
      * Reads the XML specification given by the file name. The result is stored in spec.
+     * <p/>
+     * If the compiler has precompiled the specification, this is read instead. The compiler only does this for
+     * specifications that contain no variable references, so no substitution is required.
      *
      * @throws Exception for any problems in reading the specification
      */
     /*--------------------------------------------------------------------------*/
     public void readSpec(String specFileName, VariableSubstitutor substitutor) throws Exception
     {
+        InputStream compiled = getResource(BinaryXML.getResourceName(specFileName));
+        if (compiled != null)
+        {
+            try
+            {
+                spec = BinaryXML.read(compiled);
+            }
+            finally
+            {
+                compiled.close();
+            }
+            _haveSpec = true;
+            this.specFilename = specFileName;
+            return;
+        }
+
         // open an input stream
         InputStream input = null;
         try
@@ -0,0 +1,152 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+/**
+ * Tests {@link FilePermissions}.
+ *
+ * @author Tim Anderson
+ */
+public class FilePermissionsTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Verifies that modes applied in a batch can be read back.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testApply() throws IOException
+    {
+        if (!OsVersion.IS_UNIX)
+        {
+            return;
+        }
+        File script = temporaryFolder.newFile("run.sh");
+        File config = temporaryFolder.newFile("app.conf");
+        File secret = temporaryFolder.newFile("secret.key");
+        File lib = temporaryFolder.newFolder("lib");
+        File jar = new File(lib, "app.jar");
+        assertTrue(jar.createNewFile());
+
+        FilePermissions permissions = new FilePermissions();
+        permissions.add(script, 0750);
+        permissions.add(config, 0644);
+        permissions.add(secret, 0600);
+        permissions.add(jar, 0444);
+        assertTrue(!permissions.isEmpty());
+        permissions.apply();
+        assertTrue(permissions.isEmpty());
+
+        checkMode(script, 0750);
+        checkMode(config, 0644);
+        checkMode(secret, 0600);
+        checkMode(jar, 0444);
+    }
+
+    /**
+     * Verifies that {@link FilePermissions#setMode(File, int)} sets modes expressible without NIO.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testSetMode() throws IOException
+    {
+        if (!OsVersion.IS_UNIX)
+        {
+            return;
+        }
+        File file = temporaryFolder.newFile("file.txt");
+        assertTrue(FilePermissions.setMode(file, 0755));
+        checkMode(file, 0755);
+        assertTrue(FilePermissions.setMode(file, 0600));
+        checkMode(file, 0600);
+    }
+
+    /**
+     * Verifies that {@link FilePermissions#setMode(File, int)} doesn't set modes including setuid, setgid or sticky
+     * bits, which would otherwise be silently dropped, leaving them to <em>chmod</em>.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testSetModeSpecialBits() throws IOException
+    {
+        if (!OsVersion.IS_UNIX)
+        {
+            return;
+        }
+        File file = temporaryFolder.newFile("file.txt");
+        assertTrue(FilePermissions.setMode(file, 0600));
+        assertFalse(FilePermissions.setMode(file, 04755));
+        assertFalse(FilePermissions.setMode(file, 02755));
+        assertFalse(FilePermissions.setMode(file, 01777));
+        checkMode(file, 0600);
+    }
+
+    /**
+     * Tests {@link FilePermissions#toString(int)}.
+     */
+    @Test
+    public void testToString()
+    {
+        assertEquals("0755", FilePermissions.toString(0755));
+        assertEquals("0644", FilePermissions.toString(0644));
+        assertEquals("4755", FilePermissions.toString(04755));
+    }
+
+    /**
+     * Verifies the mode of a file, if it can be read.
+     *
+     * @param file the file
+     * @param mode the expected mode
+     */
+    private void checkMode(File file, int mode)
+    {
+        int actual = FilePermissions.getMode(file);
+        if (actual != -1)
+        {
+            assertEquals(FilePermissions.toString(mode), FilePermissions.toString(actual));
+        }
+        else
+        {
+            // NIO not available. Verify what can be determined
+            assertEquals((mode & 0100) != 0, file.canExecute());
+        }
+    }
+}
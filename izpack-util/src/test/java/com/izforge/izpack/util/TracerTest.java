@@ -0,0 +1,77 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests {@link Tracer}.
+ *
+ * @author Tim Anderson
+ */
+public class TracerTest
+{
+
+    /**
+     * Disables tracing after each test.
+     */
+    @After
+    public void tearDown()
+    {
+        Tracer.disable();
+    }
+
+    /**
+     * Verifies that events are only written while tracing is enabled, and that field values are quoted where
+     * required.
+     */
+    @Test
+    public void testEvent()
+    {
+        StringWriter out = new StringWriter();
+        assertFalse(Tracer.isEnabled());
+        assertEquals(0, Tracer.start());
+        Tracer.event("ignored", 0, "a", "b");
+
+        Tracer.enable(out);
+        assertTrue(Tracer.isEnabled());
+        long start = Tracer.start();
+        assertTrue(start != 0);
+        Tracer.event("condition", start, "id", "izpack.windowsinstall", "result", true, "text", "a \"b\"");
+        Tracer.disable();
+        assertFalse(Tracer.isEnabled());
+        Tracer.event("ignored", 0, "a", "b");
+
+        String[] lines = out.toString().trim().split("\\r?\\n");
+        assertEquals(1, lines.length);
+        String[] parts = lines[0].split(" ", 5);
+        assertEquals(Thread.currentThread().getName(), parts[1]);
+        assertEquals("condition", parts[2]);
+        assertTrue(Long.parseLong(parts[3]) >= 0);
+        assertEquals("id=izpack.windowsinstall result=true text=\"a \\\"b\\\"\"", parts[4]);
+    }
+}